@@ -0,0 +1,86 @@
+package dev.gamov.colorfullogback.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.pattern.DynamicConverter;
+import dev.gamov.colorfullogback.CustomHighlightingArguments;
+import dev.gamov.colorfullogback.CustomHighlightingLogLevel;
+import dev.gamov.colorfullogback.CustomHighlightingMessage;
+import dev.gamov.colorfullogback.CustomHighlightingPackageName;
+import dev.gamov.colorfullogback.CustomHighlightingTimestampLevel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Shared fixtures for the benchmarks
+ */
+final class BenchmarkSupport {
+
+    private static final Level[] LEVELS = {Level.INFO, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR, Level.TRACE};
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Create a logger context with the same conversion rules as {@code logback-spring.xml}.
+     */
+    static LoggerContext newLoggerContext() {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        // benchmarks usually run with stdout redirected, which would switch the converters to pass-through
+        loggerContext.putProperty("colorful.logback.color", "always");
+        Map<String, Supplier<DynamicConverter>> rules = new HashMap<>();
+        rules.put("colorLevel", CustomHighlightingLogLevel::new);
+        rules.put("colorPackage", CustomHighlightingPackageName::new);
+        rules.put("colorMessage", CustomHighlightingMessage::new);
+        rules.put("colorArgs", CustomHighlightingArguments::new);
+        rules.put("colorTimeLevel", CustomHighlightingTimestampLevel::new);
+        loggerContext.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+        return loggerContext;
+    }
+
+    /**
+     * Create events cycling through all levels. The message is formatted and the thread name
+     * captured up front, so the benchmarks measure rendering rather than event preparation.
+     */
+    static ILoggingEvent[] newEvents(LoggerContext loggerContext, MessageSize messageSize) {
+        Logger logger = loggerContext.getLogger("dev.gamov.colorfullogback.demo.service.LoggingDemoService");
+        ILoggingEvent[] events = new ILoggingEvent[LEVELS.length];
+        for (int i = 0; i < events.length; i++) {
+            LoggingEvent event = new LoggingEvent(BenchmarkSupport.class.getName(), logger, LEVELS[i],
+                    messageSize.getTemplate(), null, messageSize.getArguments());
+            event.prepareForDeferredProcessing();
+            events[i] = event;
+        }
+        return events;
+    }
+
+    /**
+     * Copy prepared events, so a thread can change its copies without affecting other threads.
+     */
+    static LoggingEvent[] copyEvents(ILoggingEvent[] events) {
+        LoggingEvent[] copies = new LoggingEvent[events.length];
+        for (int i = 0; i < events.length; i++) {
+            ILoggingEvent event = events[i];
+            LoggingEvent copy = new LoggingEvent();
+            copy.setLoggerContextRemoteView(event.getLoggerContextVO());
+            copy.setLoggerName(event.getLoggerName());
+            copy.setLevel(event.getLevel());
+            copy.setMessage(event.getMessage());
+            copy.setArgumentArray(event.getArgumentArray());
+            copy.setThreadName(event.getThreadName());
+            copy.setTimeStamp(event.getTimeStamp());
+            copy.setMDCPropertyMap(event.getMDCPropertyMap());
+            copy.prepareForDeferredProcessing();
+            copies[i] = copy;
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,55 @@
+package dev.gamov.colorfullogback.benchmarks;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rendering a line through {@link PatternLayout} with the colorful converters,
+ * logback's {@code %highlight} and no color at all.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConverterBenchmark {
+
+    @Param
+    public PatternVariant variant;
+
+    @Param
+    public MessageSize messageSize;
+
+    private PatternLayout layout;
+    private ILoggingEvent[] events;
+
+    @Setup
+    public void setUp() {
+        LoggerContext loggerContext = BenchmarkSupport.newLoggerContext();
+        layout = new PatternLayout();
+        layout.setContext(loggerContext);
+        layout.setPattern(variant.getPattern());
+        layout.start();
+        events = BenchmarkSupport.newEvents(loggerContext, messageSize);
+    }
+
+    @Benchmark
+    public String doLayout(EventCursor cursor) {
+        return layout.doLayout(cursor.next(events));
+    }
+}
@@ -0,0 +1,72 @@
+package dev.gamov.colorfullogback.benchmarks;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import dev.gamov.colorfullogback.ColorfulPatternEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an event into the bytes handed to an appender, comparing logback's
+ * {@link PatternLayoutEncoder} with {@link ColorfulPatternEncoder}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncoderBenchmark {
+
+    public enum EncoderType {
+        PATTERN_LAYOUT,
+        COLORFUL
+    }
+
+    @Param
+    public EncoderType encoderType;
+
+    @Param({"UNCOLORED", "HIGHLIGHT_ALL", "COLOR_ALL"})
+    public PatternVariant variant;
+
+    @Param
+    public MessageSize messageSize;
+
+    private Encoder<ILoggingEvent> encoder;
+    private ILoggingEvent[] events;
+
+    @Setup
+    public void setUp() {
+        LoggerContext loggerContext = BenchmarkSupport.newLoggerContext();
+        if (encoderType == EncoderType.COLORFUL) {
+            ColorfulPatternEncoder colorfulEncoder = new ColorfulPatternEncoder();
+            colorfulEncoder.setPattern(variant.getPattern());
+            encoder = colorfulEncoder;
+        } else {
+            PatternLayoutEncoder patternLayoutEncoder = new PatternLayoutEncoder();
+            patternLayoutEncoder.setPattern(variant.getPattern());
+            encoder = patternLayoutEncoder;
+        }
+        encoder.setContext(loggerContext);
+        encoder.start();
+        events = BenchmarkSupport.newEvents(loggerContext, messageSize);
+    }
+
+    @Benchmark
+    public byte[] encode(EventCursor cursor) {
+        return encoder.encode(cursor.next(events));
+    }
+}
@@ -0,0 +1,38 @@
+package dev.gamov.colorfullogback.benchmarks;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread position in the shared event array, so every thread cycles through all levels.
+ * <p>
+ * Each thread works on its own copies of the events and moves the clock 1 ms ahead on every
+ * call, so timestamp caches see a new millisecond each time and a new second every 1000 calls,
+ * as in a steady stream of logging rather than a burst within one millisecond.
+ */
+@State(Scope.Thread)
+public class EventCursor {
+
+    static final long TIME_STEP_MILLIS = 1;
+
+    private ILoggingEvent[] source;
+    private LoggingEvent[] own;
+    private long timeStamp;
+    private int index;
+
+    ILoggingEvent next(ILoggingEvent[] events) {
+        if (events != source) {
+            source = events;
+            own = BenchmarkSupport.copyEvents(events);
+            timeStamp = events[0].getTimeStamp();
+            index = 0;
+        }
+        LoggingEvent event = own[index];
+        index = index + 1 == own.length ? 0 : index + 1;
+        timeStamp += TIME_STEP_MILLIS;
+        event.setTimeStamp(timeStamp);
+        return event;
+    }
+}
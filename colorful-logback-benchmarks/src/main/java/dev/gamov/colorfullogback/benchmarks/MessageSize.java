@@ -0,0 +1,31 @@
+package dev.gamov.colorfullogback.benchmarks;
+
+/**
+ * Message shapes used by the benchmarks
+ */
+public enum MessageSize {
+
+    SHORT("Order {} shipped", "A-42"),
+
+    LONG("Processed batch {} for customer {} with {} line items; validation, pricing, tax calculation, "
+            + "inventory reservation and fraud screening all completed within the configured service level "
+            + "objective, and the downstream fulfilment, invoicing and notification services acknowledged "
+            + "the request without retries or partial failures being reported by any of the participants",
+            "batch-2025-07-11-0042", "customer-7f3c9a", 128);
+
+    private final String template;
+    private final Object[] arguments;
+
+    MessageSize(String template, Object... arguments) {
+        this.template = template;
+        this.arguments = arguments;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public Object[] getArguments() {
+        return arguments.clone();
+    }
+}
@@ -0,0 +1,36 @@
+package dev.gamov.colorfullogback.benchmarks;
+
+/**
+ * Patterns compared by the benchmarks: an uncolored baseline, logback's stock
+ * {@code %highlight} and the library converters, span by span and combined.
+ */
+public enum PatternVariant {
+
+    UNCOLORED("%-5level [%thread] %logger{36}: %msg%n"),
+
+    HIGHLIGHT_LEVEL("%highlight(%-5level) [%thread] %logger{36}: %msg%n"),
+    COLOR_LEVEL("%colorLevel(%-5level) [%thread] %logger{36}: %msg%n"),
+
+    HIGHLIGHT_PACKAGE("%-5level %highlight([%thread] %logger{36}): %msg%n"),
+    COLOR_PACKAGE("%-5level %colorPackage([%thread] %logger{36}): %msg%n"),
+
+    HIGHLIGHT_MESSAGE("%-5level [%thread] %logger{36}: %highlight(%msg%n)"),
+    COLOR_MESSAGE("%-5level [%thread] %logger{36}: %colorMessage(%msg%n)"),
+    COLOR_ARGS("%-5level [%thread] %logger{36}: %colorArgs%n"),
+
+    HIGHLIGHT_ALL("%highlight(%-5level) %highlight([%thread] %logger{36}): %highlight(%msg%n)"),
+    COLOR_ALL("%colorLevel(%-5level) %colorPackage([%thread] %logger{36}): %colorMessage(%msg%n)"),
+
+    COLOR_DATE_LEVEL("%colorLevel(%d{yyyy-MM-dd HH:mm:ss.SSS} %-5level) %msg%n"),
+    COLOR_TIME_LEVEL("%colorTimeLevel{yyyy-MM-dd HH:mm:ss.SSS} %msg%n");
+
+    private final String pattern;
+
+    PatternVariant(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+}
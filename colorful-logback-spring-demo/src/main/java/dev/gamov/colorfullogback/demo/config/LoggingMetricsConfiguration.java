@@ -0,0 +1,20 @@
+package dev.gamov.colorfullogback.demo.config;
+
+import ch.qos.logback.classic.LoggerContext;
+import dev.gamov.colorfullogback.LoggingPipelineMetrics;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exports the logging pipeline meters (events, bytes, encode time, async queue backpressure)
+ * to the actuator's meter registry, see {@code /actuator/metrics/logback.pipeline.blocked}
+ */
+@Configuration(proxyBeanMethods = false)
+public class LoggingMetricsConfiguration {
+
+    @Bean
+    public LoggingPipelineMetrics loggingPipelineMetrics() {
+        return new LoggingPipelineMetrics((LoggerContext) LoggerFactory.getILoggerFactory());
+    }
+}
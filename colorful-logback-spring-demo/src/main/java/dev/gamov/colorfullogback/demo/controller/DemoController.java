@@ -1,9 +1,11 @@
 package dev.gamov.colorfullogback.demo.controller;
 
+import dev.gamov.colorfullogback.demo.service.LoadGeneratorService;
 import dev.gamov.colorfullogback.demo.service.LoggingDemoService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,6 +23,9 @@ public class DemoController {
     @Autowired
     private LoggingDemoService loggingDemoService;
 
+    @Autowired
+    private LoadGeneratorService loadGeneratorService;
+
     @GetMapping
     public ResponseEntity<Map<String, Object>> demonstrateLogging() {
         logger.info("🌐 HTTP GET /demo - Demonstrating colorful logging");
@@ -46,7 +51,7 @@ public class DemoController {
             return ResponseEntity.ok(Map.of("message", "This shouldn't happen"));
             
         } catch (Exception e) {
-            logger.error("🔥 Simulated error occurred: {}", e.getMessage());
+            logger.error("🔥 Simulated error occurred: {}", e.getMessage(), e);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", "Simulated error", "message", e.getMessage()));
         }
@@ -68,4 +73,56 @@ public class DemoController {
             "colors", new String[]{"MAGENTA", "BLUE", "GREEN", "YELLOW", "RED"}
         ));
     }
+
+    @GetMapping("/thread")
+    public ResponseEntity<Map<String, Object>> describeRequestThread() {
+        Thread thread = Thread.currentThread();
+        boolean virtual = isVirtual(thread);
+        logger.info("🧵 HTTP GET /demo/thread - Served by {} thread {}", virtual ? "virtual" : "platform", thread);
+
+        return ResponseEntity.ok(Map.of(
+            "thread", thread.toString(),
+            "virtual", virtual
+        ));
+    }
+
+    @PostMapping("/load")
+    public ResponseEntity<Map<String, Object>> generateLoad(
+            @RequestParam(name = "rate", defaultValue = "10000") int rate,
+            @RequestParam(name = "seconds", defaultValue = "10") int seconds,
+            @RequestParam(name = "threads", defaultValue = "4") int threads,
+            @RequestParam(name = "virtual", defaultValue = "false") boolean virtual,
+            @RequestParam(name = "levels", defaultValue = LoadGeneratorService.DEFAULT_LEVELS) String levels) {
+        logger.info("🏋️ HTTP POST /demo/load - Generating {} events/s for {} s", rate, seconds);
+
+        try {
+            LoadGeneratorService.LoadSettings settings =
+                new LoadGeneratorService.LoadSettings(rate, seconds, threads, virtual, levels);
+            return ResponseEntity.ok(loadGeneratorService.run(settings));
+
+        } catch (IllegalArgumentException e) {
+            logger.warn("⚠️ Invalid load settings: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "Invalid load settings", "message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            logger.warn("⚠️ Load rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Load already running", "message", e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", "Interrupted", "message", "The load run was interrupted"));
+        }
+    }
+
+    /**
+     * Thread.isVirtual() exists from Java 21 on; the demo is compiled for Java 17
+     */
+    static boolean isVirtual(Thread thread) {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,369 @@
+package dev.gamov.colorfullogback.demo.service;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import dev.gamov.colorfullogback.DuplicateCollapsingFilter;
+import dev.gamov.colorfullogback.LevelAwareAsyncAppender;
+import dev.gamov.colorfullogback.RingBufferConsoleAppender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator that logs a steady stream of events through the appenders configured in
+ * {@code logback-spring.xml} and reports what the logging calls cost: achieved throughput,
+ * per-call latency percentiles and the events the appenders dropped.
+ * <p>
+ * Events are spread evenly over the worker threads and paced to the requested rate; a level is
+ * picked for each event from a shuffled table built from the level mix, so the run is the same
+ * every time. The events are marked with {@link DuplicateCollapsingFilter#NO_COLLAPSE_MARKER},
+ * since collapsing the repeated statement would leave the appenders idle. Only the logging call
+ * itself is timed; the latencies are kept in one preallocated array, which bounds a run to
+ * {@value #MAX_EVENTS} events.
+ */
+@Service
+public class LoadGeneratorService {
+
+    public static final String DEFAULT_LEVELS = "info=80,debug=15,warn=4,error=1";
+
+    static final int MAX_EVENTS = 5_000_000;
+    static final int MAX_SECONDS = 300;
+    static final int MAX_THREADS = 1024;
+    static final String LOAD_LOGGER = "dev.gamov.colorfullogback.demo.load";
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGeneratorService.class);
+    private static final Logger load = LoggerFactory.getLogger(LOAD_LOGGER);
+    private static final String MESSAGE = "📈 Load event {} of {}";
+    private static final long MIN_PARK_NANOS = 50_000;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Run one load and wait for it to finish.
+     *
+     * @param settings what to generate
+     * @return the report
+     * @throws IllegalStateException if another run is in progress
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Map<String, Object> run(LoadSettings settings) throws InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A load run is already in progress");
+        }
+        try {
+            return generate(settings);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> generate(LoadSettings settings) throws InterruptedException {
+        logger.info("🏋️ Starting load: {} events/s for {} s on {} {} threads, levels {}", settings.rate,
+                settings.seconds, settings.threads, settings.virtual ? "virtual" : "platform", settings.levelSpec);
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        ThreadFactory factory = settings.virtual ? virtualThreadFactory() : platformThreadFactory();
+        int total = settings.rate * settings.seconds;
+        long[] latencies = new long[total];
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        Map<String, Long> droppedBefore = droppedCounts(context);
+
+        long start = System.nanoTime() + 10_000_000;
+        Thread[] workers = new Thread[settings.threads];
+        for (int i = 0; i < workers.length; i++) {
+            int first = i;
+            workers[i] = factory.newThread(() -> {
+                if (mdc != null) {
+                    MDC.setContextMap(mdc);
+                }
+                try {
+                    work(settings, first, start, latencies);
+                } finally {
+                    MDC.clear();
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, Long> dropped = droppedCounts(context);
+        long droppedTotal = 0;
+        for (Map.Entry<String, Long> entry : dropped.entrySet()) {
+            entry.setValue(entry.getValue() - droppedBefore.getOrDefault(entry.getKey(), 0L));
+            droppedTotal += entry.getValue();
+        }
+        Arrays.sort(latencies);
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", percentile(latencies, 0.50));
+        latency.put("p99", percentile(latencies, 0.99));
+        latency.put("p999", percentile(latencies, 0.999));
+        latency.put("max", latencies[latencies.length - 1]);
+        long achievedRate = Math.round(total * 1e9 / Math.max(1, elapsed));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("events", total);
+        report.put("threads", settings.threads);
+        report.put("threadType", settings.virtual ? "virtual" : "platform");
+        report.put("levels", settings.levelCounts(total));
+        report.put("targetRate", settings.rate);
+        report.put("achievedRate", achievedRate);
+        report.put("elapsedMs", elapsed / 1_000_000);
+        report.put("latencyNanos", latency);
+        report.put("dropped", dropped);
+        report.put("droppedTotal", droppedTotal);
+        logger.info("🏁 Load finished: {} events at {} events/s, p99 {} ns, {} dropped", total, achievedRate,
+                latency.get("p99"), droppedTotal);
+        return report;
+    }
+
+    /**
+     * Log this worker's share of the events, which are the ones whose sequence number is
+     * {@code first} modulo the thread count, each at its due time.
+     */
+    private static void work(LoadSettings settings, int first, long start, long[] latencies) {
+        double nanosPerEvent = 1e9 / settings.rate;
+        int total = latencies.length;
+        Integer totalArgument = total;
+        for (int sequence = first; sequence < total; sequence += settings.threads) {
+            long wait = start + (long) (sequence * nanosPerEvent) - System.nanoTime();
+            if (wait > MIN_PARK_NANOS) {
+                LockSupport.parkNanos(wait);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+            Level level = settings.mix[sequence % settings.mix.length];
+            long before = System.nanoTime();
+            log(level, sequence, totalArgument);
+            latencies[sequence] = System.nanoTime() - before;
+        }
+    }
+
+    private static void log(Level level, Integer sequence, Integer total) {
+        switch (level) {
+            case ERROR:
+                load.error(DuplicateCollapsingFilter.NO_COLLAPSE_MARKER, MESSAGE, sequence, total);
+                break;
+            case WARN:
+                load.warn(DuplicateCollapsingFilter.NO_COLLAPSE_MARKER, MESSAGE, sequence, total);
+                break;
+            case INFO:
+                load.info(DuplicateCollapsingFilter.NO_COLLAPSE_MARKER, MESSAGE, sequence, total);
+                break;
+            case DEBUG:
+                load.debug(DuplicateCollapsingFilter.NO_COLLAPSE_MARKER, MESSAGE, sequence, total);
+                break;
+            default:
+                load.trace(DuplicateCollapsingFilter.NO_COLLAPSE_MARKER, MESSAGE, sequence, total);
+                break;
+        }
+    }
+
+    static long percentile(long[] sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /**
+     * Events dropped so far by each appender that counts them: full ring buffers and events the
+     * level-aware queues shed, found through the appenders attached to any logger.
+     */
+    static Map<String, Long> droppedCounts(LoggerContext context) {
+        Map<String, Long> counts = new TreeMap<>();
+        Set<Appender<ILoggingEvent>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ch.qos.logback.classic.Logger each : context.getLoggerList()) {
+            for (Iterator<Appender<ILoggingEvent>> it = each.iteratorForAppenders(); it.hasNext(); ) {
+                collectDropped(it.next(), seen, counts);
+            }
+        }
+        return counts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectDropped(Appender<ILoggingEvent> appender, Set<Appender<ILoggingEvent>> seen,
+                                       Map<String, Long> counts) {
+        if (!seen.add(appender)) {
+            return;
+        }
+        if (appender instanceof RingBufferConsoleAppender) {
+            counts.put(appender.getName(), ((RingBufferConsoleAppender) appender).getDroppedCount());
+        } else if (appender instanceof LevelAwareAsyncAppender) {
+            LevelAwareAsyncAppender async = (LevelAwareAsyncAppender) appender;
+            // TRACE and DEBUG share one count
+            counts.put(appender.getName(), async.getShedCount(ch.qos.logback.classic.Level.ERROR)
+                    + async.getShedCount(ch.qos.logback.classic.Level.WARN)
+                    + async.getShedCount(ch.qos.logback.classic.Level.INFO)
+                    + async.getShedCount(ch.qos.logback.classic.Level.DEBUG));
+        }
+        if (appender instanceof AppenderAttachable) {
+            for (Iterator<Appender<ILoggingEvent>> it = ((AppenderAttachable<ILoggingEvent>) appender)
+                    .iteratorForAppenders(); it.hasNext(); ) {
+                collectDropped(it.next(), seen, counts);
+            }
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        return new ThreadFactory() {
+            private int count;
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "load-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Thread.ofVirtual() exists from Java 21 on; the demo is compiled for Java 17
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "load-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Virtual threads need Java 21 or later");
+        }
+    }
+
+    /**
+     * What a load run generates: the rate, duration, worker threads and level mix.
+     */
+    public static final class LoadSettings {
+        final int rate;
+        final int seconds;
+        final int threads;
+        final boolean virtual;
+        final String levelSpec;
+        final Level[] mix;
+
+        /**
+         * @param rate events per second, over all threads
+         * @param seconds how long to run
+         * @param threads number of worker threads
+         * @param virtual whether the workers are virtual threads
+         * @param levels level weights, e.g. {@value LoadGeneratorService#DEFAULT_LEVELS}
+         * @throws IllegalArgumentException if a setting is out of range
+         */
+        public LoadSettings(int rate, int seconds, int threads, boolean virtual, String levels) {
+            if (rate < 1) {
+                throw new IllegalArgumentException("rate must be positive, was " + rate);
+            }
+            if (seconds < 1 || seconds > MAX_SECONDS) {
+                throw new IllegalArgumentException("seconds must be between 1 and " + MAX_SECONDS + ", was " + seconds);
+            }
+            if ((long) rate * seconds > MAX_EVENTS) {
+                throw new IllegalArgumentException("rate * seconds must be at most " + MAX_EVENTS + ", was "
+                        + (long) rate * seconds);
+            }
+            if (threads < 1 || threads > MAX_THREADS) {
+                throw new IllegalArgumentException("threads must be between 1 and " + MAX_THREADS + ", was " + threads);
+            }
+            this.rate = rate;
+            this.seconds = seconds;
+            this.threads = threads;
+            this.virtual = virtual;
+            this.levelSpec = levels;
+            this.mix = parseMix(levels);
+        }
+
+        /**
+         * Build the level table from weights such as {@code info=80,debug=15,warn=4,error=1},
+         * shuffled with a fixed seed so the levels interleave the same way on every run.
+         */
+        static Level[] parseMix(String levels) {
+            Map<Level, Integer> weights = new EnumMap<>(Level.class);
+            int sum = 0;
+            for (String part : levels.split(",")) {
+                String trimmed = part.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int eq = trimmed.indexOf('=');
+                if (eq <= 0) {
+                    throw new IllegalArgumentException("Expected level=weight, was [" + trimmed + "]");
+                }
+                Level level;
+                int weight;
+                try {
+                    level = Level.valueOf(trimmed.substring(0, eq).trim().toUpperCase(Locale.ROOT));
+                    weight = Integer.parseInt(trimmed.substring(eq + 1).trim());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Expected level=weight, was [" + trimmed + "]");
+                }
+                if (weight < 0 || weight > 10_000) {
+                    throw new IllegalArgumentException("Weight must be between 0 and 10000, was [" + trimmed + "]");
+                }
+                sum += weight - weights.getOrDefault(level, 0);
+                weights.put(level, weight);
+            }
+            if (sum == 0) {
+                throw new IllegalArgumentException("The level mix needs at least one positive weight, was ["
+                        + levels + "]");
+            }
+            Level[] mix = new Level[sum];
+            int next = 0;
+            for (Map.Entry<Level, Integer> entry : weights.entrySet()) {
+                for (int i = 0; i < entry.getValue(); i++) {
+                    mix[next++] = entry.getKey();
+                }
+            }
+            Random random = new Random(42);
+            for (int i = mix.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Level swap = mix[i];
+                mix[i] = mix[j];
+                mix[j] = swap;
+            }
+            return mix;
+        }
+
+        Map<String, Integer> levelCounts(int total) {
+            int[] counts = new int[Level.values().length];
+            for (int sequence = 0; sequence < total; sequence++) {
+                counts[mix[sequence % mix.length].ordinal()]++;
+            }
+            Map<String, Integer> result = new LinkedHashMap<>();
+            for (Level level : Level.values()) {
+                if (counts[level.ordinal()] > 0) {
+                    result.put(level.name(), counts[level.ordinal()]);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package dev.gamov.colorfullogback.demo.controller;
 
+import dev.gamov.colorfullogback.demo.service.LoadGeneratorService;
 import dev.gamov.colorfullogback.demo.service.LoggingDemoService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,6 +22,9 @@ class DemoControllerTest {
     @Mock
     private LoggingDemoService loggingDemoService;
 
+    @Mock
+    private LoadGeneratorService loadGeneratorService;
+
     @InjectMocks
     private DemoController demoController;
 
@@ -126,4 +130,53 @@ class DemoControllerTest {
         // Then
         verifyNoInteractions(loggingDemoService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void describeRequestThread_shouldReportAPlatformThread() {
+        // When
+        ResponseEntity<Map<String, Object>> response = demoController.describeRequestThread();
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsEntry("virtual", false);
+        assertThat(response.getBody()).containsEntry("thread", Thread.currentThread().toString());
+    }
+
+    @Test
+    void generateLoad_shouldReturnTheReport() throws InterruptedException {
+        // Given
+        Map<String, Object> report = Map.of("events", 1000, "droppedTotal", 0L);
+        when(loadGeneratorService.run(any())).thenReturn(report);
+
+        // When
+        ResponseEntity<Map<String, Object>> response = demoController.generateLoad(100, 10, 2, false, "info=1");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(report);
+    }
+
+    @Test
+    void generateLoad_shouldReturnBadRequest_whenSettingsAreInvalid() {
+        // When
+        ResponseEntity<Map<String, Object>> response = demoController.generateLoad(100, 10, 2, false, "loud=1");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).containsEntry("error", "Invalid load settings");
+        verifyNoInteractions(loadGeneratorService);
+    }
+
+    @Test
+    void generateLoad_shouldReturnConflict_whenALoadIsRunning() throws InterruptedException {
+        // Given
+        when(loadGeneratorService.run(any())).thenThrow(new IllegalStateException("A load run is already in progress"));
+
+        // When
+        ResponseEntity<Map<String, Object>> response = demoController.generateLoad(100, 10, 2, false, "info=1");
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(response.getBody()).containsEntry("message", "A load run is already in progress");
+    }
+}
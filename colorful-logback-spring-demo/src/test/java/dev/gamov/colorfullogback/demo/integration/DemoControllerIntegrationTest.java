@@ -8,6 +8,9 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebM
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
@@ -55,6 +58,24 @@ class DemoControllerIntegrationTest {
         assertThat(response.getBody()).containsKey("timestamp");
     }
 
+    @Test
+    void requests_shouldCarryARequestId() {
+        // When
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Request-Id", "client-42");
+        ResponseEntity<Map> echoed = restTemplate.exchange(
+            getBaseUrl() + "/demo/levels",
+            HttpMethod.GET,
+            new HttpEntity<>(headers),
+            Map.class
+        );
+        ResponseEntity<Map> generated = restTemplate.getForEntity(getBaseUrl() + "/demo/levels", Map.class);
+
+        // Then
+        assertThat(echoed.getHeaders().getFirst("X-Request-Id")).isEqualTo("client-42");
+        assertThat(generated.getHeaders().getFirst("X-Request-Id")).matches("[0-9a-f]{8}");
+    }
+
     @Test
     void postSimulateErrorEndpoint_shouldReturnBadRequest() {
         // When
@@ -123,6 +144,19 @@ class DemoControllerIntegrationTest {
         assertThat(response.getBody()).containsEntry("status", "UP");
     }
 
+    @Test
+    void actuatorMetricsEndpoint_shouldExposeLoggingPipelineMeters() {
+        // When
+        ResponseEntity<Map> response = restTemplate.getForEntity(
+            getBaseUrl() + "/actuator/metrics/logback.pipeline.events",
+            Map.class
+        );
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsEntry("name", "logback.pipeline.events");
+    }
+
     @Test
     void nonExistentEndpoint_shouldReturn404() {
         // When
@@ -0,0 +1,42 @@
+package dev.gamov.colorfullogback.demo.integration;
+
+import dev.gamov.colorfullogback.demo.ColorfulLogbackSpringDemoApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(
+    classes = ColorfulLogbackSpringDemoApplication.class,
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT
+)
+@ActiveProfiles("virtual")
+class VirtualThreadProfileIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void virtualProfile_shouldServeRequestsOnVirtualThreadsFromJava21() {
+        // When
+        ResponseEntity<Map> response = restTemplate.getForEntity(
+            "http://localhost:" + port + "/demo/thread",
+            Map.class
+        );
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).containsEntry("virtual", Runtime.version().feature() >= 21);
+    }
+}
@@ -0,0 +1,79 @@
+package dev.gamov.colorfullogback.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadGeneratorServiceTest {
+
+    private final LoadGeneratorService loadGeneratorService = new LoadGeneratorService();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void run_shouldLogEveryEventAndReportThroughputAndLatency() throws InterruptedException {
+        // Given
+        LoadGeneratorService.LoadSettings settings =
+            new LoadGeneratorService.LoadSettings(400, 1, 3, false, "info=3,warn=1");
+
+        // When
+        Map<String, Object> report = loadGeneratorService.run(settings);
+
+        // Then
+        assertThat(report).containsEntry("events", 400);
+        assertThat(report).containsEntry("threads", 3);
+        assertThat(report).containsEntry("threadType", "platform");
+        assertThat(report).containsEntry("levels", Map.of("WARN", 100, "INFO", 300));
+        assertThat((Long) report.get("achievedRate")).isPositive();
+        assertThat((Long) report.get("elapsedMs")).isGreaterThanOrEqualTo(900);
+        Map<String, Long> latency = (Map<String, Long>) report.get("latencyNanos");
+        assertThat(latency).containsOnlyKeys("p50", "p99", "p999", "max");
+        assertThat(latency.get("p50")).isPositive()
+            .isLessThanOrEqualTo(latency.get("p99"));
+        assertThat(latency.get("p999")).isBetween(latency.get("p99"), latency.get("max"));
+        assertThat(report).containsKeys("dropped", "droppedTotal");
+    }
+
+    @Test
+    void loadSettings_shouldRejectSettingsOutOfRange() {
+        assertThatThrownBy(() -> new LoadGeneratorService.LoadSettings(0, 10, 4, false, "info=1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("rate");
+        assertThatThrownBy(() -> new LoadGeneratorService.LoadSettings(1_000_000, 10, 4, false, "info=1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("rate * seconds");
+        assertThatThrownBy(() -> new LoadGeneratorService.LoadSettings(100, 10, 0, false, "info=1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("threads");
+        assertThatThrownBy(() -> new LoadGeneratorService.LoadSettings(100, 10, 4, false, "loud=1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("level=weight");
+        assertThatThrownBy(() -> new LoadGeneratorService.LoadSettings(100, 10, 4, false, "info=0,debug=0"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("positive weight");
+    }
+
+    @Test
+    void parseMix_shouldHoldEachLevelAsOftenAsItsWeight() {
+        // When
+        Level[] mix = LoadGeneratorService.LoadSettings.parseMix(" INFO=80, debug=15,warn=4 ,error=1");
+
+        // Then
+        assertThat(mix).hasSize(100);
+        assertThat(Arrays.stream(mix).filter(level -> level == Level.INFO)).hasSize(80);
+        assertThat(Arrays.stream(mix).filter(level -> level == Level.ERROR)).hasSize(1);
+        assertThat(mix).isEqualTo(LoadGeneratorService.LoadSettings.parseMix("info=80,debug=15,warn=4,error=1"));
+    }
+
+    @Test
+    void percentile_shouldPickTheNearestRank() {
+        long[] sorted = new long[1000];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+
+        assertThat(LoadGeneratorService.percentile(sorted, 0.50)).isEqualTo(500);
+        assertThat(LoadGeneratorService.percentile(sorted, 0.99)).isEqualTo(990);
+        assertThat(LoadGeneratorService.percentile(sorted, 0.999)).isEqualTo(999);
+        assertThat(LoadGeneratorService.percentile(new long[]{7}, 0.999)).isEqualTo(7);
+    }
+}
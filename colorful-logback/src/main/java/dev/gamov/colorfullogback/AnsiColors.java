@@ -0,0 +1,291 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.core.pattern.color.ANSIConstants;
+
+import java.util.Locale;
+
+/**
+ * Parses color names used in configuration into ANSI color codes.
+ * <p>
+ * Besides the 16 basic colors, 256-color ({@code color(208)}) and truecolor ({@code #ff8700},
+ * {@code rgb(255,135,0)}) values are accepted. They are mapped to the nearest color the
+ * terminal can show when it supports fewer colors, see {@link Depth}.
+ */
+final class AnsiColors {
+
+    /**
+     * Number of colors a terminal can display
+     */
+    enum Depth {
+        ANSI_16,
+        ANSI_256,
+        TRUECOLOR
+    }
+
+    /**
+     * xterm's default RGB values of the 16 basic colors
+     */
+    private static final int[][] BASIC_RGB = {
+            {0, 0, 0}, {205, 0, 0}, {0, 205, 0}, {205, 205, 0},
+            {0, 0, 238}, {205, 0, 205}, {0, 205, 205}, {229, 229, 229},
+            {127, 127, 127}, {255, 0, 0}, {0, 255, 0}, {255, 255, 0},
+            {92, 92, 255}, {255, 0, 255}, {0, 255, 255}, {255, 255, 255}
+    };
+
+    private static final int[] CUBE_LEVELS = {0, 95, 135, 175, 215, 255};
+
+    private AnsiColors() {
+    }
+
+    /**
+     * Translate a color specification into an ANSI color code, without limiting the color depth.
+     *
+     * @param spec the color specification
+     * @return the ANSI color code
+     * @throws IllegalArgumentException if the specification is not recognized
+     * @see #parse(String, Depth)
+     */
+    static String parse(String spec) {
+        return parse(spec, Depth.TRUECOLOR);
+    }
+
+    /**
+     * Translate a color specification into an ANSI color code.
+     * Accepts
+     * <ul>
+     *     <li>the eight basic color names and {@code default}, optionally prefixed with {@code bold}
+     *     (e.g. {@code boldBlue}, like logback's {@code %boldBlue}) or {@code bright}
+     *     ({@code brightRed})</li>
+     *     <li>a 256-color index, {@code color(208)}</li>
+     *     <li>a truecolor value, {@code #ff8700}, {@code #f80} or {@code rgb(255,135,0)}</li>
+     *     <li>any of the above after attributes {@code bold}, {@code dim}, {@code italic} or
+     *     {@code underline}, separated by spaces or {@code +}: {@code bold #ff8700}</li>
+     *     <li>a raw SGR code such as {@code 1;34}, used as is</li>
+     * </ul>
+     * Colors beyond the given depth are replaced by the nearest color within it.
+     *
+     * @param spec the color specification
+     * @param depth the color depth of the terminal
+     * @return the ANSI color code
+     * @throws IllegalArgumentException if the specification is not recognized
+     */
+    static String parse(String spec, Depth depth) {
+        String value = spec.trim();
+        if (!value.isEmpty() && Character.isDigit(value.charAt(0))) {
+            if (!value.matches("\\d+(;\\d+)*")) {
+                throw new IllegalArgumentException("Invalid ANSI code [" + spec + "]");
+            }
+            return value;
+        }
+        // drop blanks inside rgb(...) so the value can be split on blanks
+        String[] tokens = value.replaceAll("\\s*([(),])\\s*", "$1").split("[\\s+]+");
+        StringBuilder attributes = new StringBuilder();
+        String color = null;
+        for (String token : tokens) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            String attribute = attribute(token.toLowerCase(Locale.ROOT));
+            if (attribute != null) {
+                attributes.append(attribute);
+                continue;
+            }
+            if (color != null) {
+                throw new IllegalArgumentException("More than one color in [" + spec + "]");
+            }
+            color = color(token, depth);
+            if (color == null) {
+                throw new IllegalArgumentException("Unknown color [" + spec + "]");
+            }
+        }
+        if (color == null) {
+            if (attributes.length() == 0) {
+                throw new IllegalArgumentException("Unknown color [" + spec + "]");
+            }
+            // attributes only, e.g. "bold": keep the default foreground
+            color = ANSIConstants.DEFAULT_FG;
+        }
+        return attributes + color;
+    }
+
+    private static String attribute(String token) {
+        switch (token) {
+            case "bold":
+                return ANSIConstants.BOLD;
+            case "dim":
+                return "2;";
+            case "italic":
+                return "3;";
+            case "underline":
+                return "4;";
+            default:
+                return null;
+        }
+    }
+
+    private static String color(String token, Depth depth) {
+        String name = token.toLowerCase(Locale.ROOT);
+        if (name.startsWith("#")) {
+            int[] rgb = hexColor(token);
+            return rgb == null ? null : rgbColor(rgb[0], rgb[1], rgb[2], depth);
+        }
+        if (name.startsWith("rgb(") && name.endsWith(")")) {
+            String[] parts = name.substring(4, name.length() - 1).split(",");
+            if (parts.length != 3) {
+                return null;
+            }
+            return rgbColor(component(parts[0]), component(parts[1]), component(parts[2]), depth);
+        }
+        if (name.startsWith("color(") && name.endsWith(")")) {
+            return indexedColor(component(name.substring(6, name.length() - 1)), depth);
+        }
+        boolean bold = name.startsWith("bold");
+        if (bold) {
+            name = name.substring("bold".length());
+        }
+        name = name.replace("_", "").replace("-", "");
+        String code;
+        if (name.startsWith("bright")) {
+            int index = basicIndex(name.substring("bright".length()));
+            code = index < 0 ? null : String.valueOf(90 + index);
+        } else if ("default".equals(name)) {
+            code = ANSIConstants.DEFAULT_FG;
+        } else {
+            int index = basicIndex(name);
+            code = index < 0 ? null : String.valueOf(30 + index);
+        }
+        if (code == null) {
+            return null;
+        }
+        return bold ? ANSIConstants.BOLD + code : code;
+    }
+
+    private static int basicIndex(String name) {
+        switch (name) {
+            case "black":
+                return 0;
+            case "red":
+                return 1;
+            case "green":
+                return 2;
+            case "yellow":
+                return 3;
+            case "blue":
+                return 4;
+            case "magenta":
+                return 5;
+            case "cyan":
+                return 6;
+            case "white":
+                return 7;
+            default:
+                return -1;
+        }
+    }
+
+    private static int component(String value) {
+        try {
+            int component = Integer.parseInt(value.trim());
+            if (component >= 0 && component <= 255) {
+                return component;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Color component out of range [" + value + "]");
+    }
+
+    private static int[] hexColor(String token) {
+        String hex = token.substring(1);
+        if (hex.length() == 3) {
+            hex = new String(new char[]{hex.charAt(0), hex.charAt(0), hex.charAt(1), hex.charAt(1),
+                    hex.charAt(2), hex.charAt(2)});
+        }
+        if (!hex.matches("[0-9a-fA-F]{6}")) {
+            return null;
+        }
+        int value = Integer.parseInt(hex, 16);
+        return new int[]{value >> 16, (value >> 8) & 0xff, value & 0xff};
+    }
+
+    private static String indexedColor(int index, Depth depth) {
+        if (depth != Depth.ANSI_16) {
+            return "38;5;" + index;
+        }
+        if (index < 16) {
+            return basicCode(index);
+        }
+        int[] rgb = xtermRgb(index);
+        return basicCode(nearestBasic(rgb[0], rgb[1], rgb[2]));
+    }
+
+    private static String rgbColor(int r, int g, int b, Depth depth) {
+        switch (depth) {
+            case TRUECOLOR:
+                return "38;2;" + r + ';' + g + ';' + b;
+            case ANSI_256:
+                return "38;5;" + nearestXterm(r, g, b);
+            default:
+                return basicCode(nearestBasic(r, g, b));
+        }
+    }
+
+    private static String basicCode(int index) {
+        return String.valueOf(index < 8 ? 30 + index : 90 + index - 8);
+    }
+
+    /**
+     * RGB value of an entry of the xterm 256-color palette
+     */
+    static int[] xtermRgb(int index) {
+        if (index < 16) {
+            return BASIC_RGB[index];
+        }
+        if (index < 232) {
+            int cube = index - 16;
+            return new int[]{CUBE_LEVELS[cube / 36], CUBE_LEVELS[(cube / 6) % 6], CUBE_LEVELS[cube % 6]};
+        }
+        int gray = 8 + 10 * (index - 232);
+        return new int[]{gray, gray, gray};
+    }
+
+    /**
+     * Nearest entry of the 6x6x6 color cube or the grayscale ramp of the 256-color palette
+     */
+    static int nearestXterm(int r, int g, int b) {
+        int cube = 16 + 36 * nearestCubeLevel(r) + 6 * nearestCubeLevel(g) + nearestCubeLevel(b);
+        int grayStep = Math.min(23, Math.max(0, Math.round(((r + g + b) / 3f - 8) / 10f)));
+        int gray = 232 + grayStep;
+        return distance(xtermRgb(cube), r, g, b) <= distance(xtermRgb(gray), r, g, b) ? cube : gray;
+    }
+
+    private static int nearestCubeLevel(int component) {
+        int best = 0;
+        for (int i = 1; i < CUBE_LEVELS.length; i++) {
+            if (Math.abs(CUBE_LEVELS[i] - component) < Math.abs(CUBE_LEVELS[best] - component)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int nearestBasic(int r, int g, int b) {
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < BASIC_RGB.length; i++) {
+            int d = distance(BASIC_RGB[i], r, g, b);
+            if (d < bestDistance) {
+                best = i;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    private static int distance(int[] rgb, int r, int g, int b) {
+        int dr = rgb[0] - r;
+        int dg = rgb[1] - g;
+        int db = rgb[2] - b;
+        return dr * dr + dg * dg + db * db;
+    }
+}
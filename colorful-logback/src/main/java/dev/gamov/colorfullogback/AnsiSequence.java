@@ -0,0 +1,40 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.core.pattern.color.ANSIConstants;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Precomputed ANSI escape sequence, kept both as a String and as pre-encoded bytes
+ * so converters can emit it without building the sequence per event.
+ */
+final class AnsiSequence {
+
+    /**
+     * Sequence that restores the default foreground color after a colored span
+     */
+    static final AnsiSequence RESET = of(ANSIConstants.RESET + ANSIConstants.DEFAULT_FG);
+
+    final String chars;
+    final byte[] bytes;
+
+    private AnsiSequence(String chars) {
+        this.chars = chars;
+        this.bytes = chars.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Wrap an ANSI color code such as {@link ANSIConstants#RED_FG} into a complete escape sequence.
+     *
+     * @param colorCode the ANSI color code
+     * @return the escape sequence for the code
+     */
+    static AnsiSequence of(String colorCode) {
+        return new AnsiSequence(ANSIConstants.ESC_START + colorCode + ANSIConstants.ESC_END);
+    }
+
+    @Override
+    public String toString() {
+        return chars;
+    }
+}
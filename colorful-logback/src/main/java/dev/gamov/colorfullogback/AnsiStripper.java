@@ -0,0 +1,130 @@
+package dev.gamov.colorfullogback;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Removes ANSI escape sequences from rendered UTF-8 bytes, so that one colored pattern can
+ * feed both the console and a plain file.
+ * <p>
+ * Works on bytes rather than characters: ESC never occurs inside a multi-byte UTF-8 sequence,
+ * so the line does not need to be decoded. Recognized are CSI sequences ({@code ESC [},
+ * parameter and intermediate bytes, one final byte in {@code @..~}), which cover every color
+ * and attribute this library emits, and two-byte escapes ({@code ESC} plus one byte). A
+ * sequence cut off at the end of the input is dropped.
+ */
+final class AnsiStripper {
+
+    private static final byte ESC = 0x1b;
+
+    private AnsiStripper() {
+    }
+
+    /**
+     * Copy bytes into a buffer, leaving out escape sequences.
+     *
+     * @param src the rendered bytes
+     * @param offset the first byte to copy
+     * @param length the number of bytes to read
+     * @param dst the destination, with at least {@code length} bytes remaining
+     * @return the number of bytes written to {@code dst}
+     */
+    static int copy(byte[] src, int offset, int length, ByteBuffer dst) {
+        int start = dst.position();
+        int end = offset + length;
+        int run = offset;
+        int i = offset;
+        while (i < end) {
+            if (src[i] != ESC) {
+                i++;
+                continue;
+            }
+            if (i > run) {
+                dst.put(src, run, i - run);
+            }
+            i = skip(src, i, end);
+            run = i;
+        }
+        if (end > run) {
+            dst.put(src, run, end - run);
+        }
+        return dst.position() - start;
+    }
+
+    /**
+     * Append bytes to a line buffer, leaving out escape sequences.
+     *
+     * @param src the rendered bytes
+     * @param offset the first byte to copy
+     * @param length the number of bytes to read
+     * @param dst the buffer to append to
+     * @return the number of bytes appended to {@code dst}
+     */
+    static int copy(byte[] src, int offset, int length, LineBuffer dst) {
+        int start = dst.length();
+        int end = offset + length;
+        int run = offset;
+        int i = offset;
+        while (i < end) {
+            if (src[i] != ESC) {
+                i++;
+                continue;
+            }
+            if (i > run) {
+                dst.append(src, run, i - run);
+            }
+            i = skip(src, i, end);
+            run = i;
+        }
+        if (end > run) {
+            dst.append(src, run, end - run);
+        }
+        return dst.length() - start;
+    }
+
+    /**
+     * Remove escape sequences in place.
+     *
+     * @param buf the rendered bytes
+     * @param offset the first byte
+     * @param length the number of bytes
+     * @return the number of bytes left, starting at {@code offset}
+     */
+    static int strip(byte[] buf, int offset, int length) {
+        int end = offset + length;
+        int out = offset;
+        int i = offset;
+        while (i < end) {
+            if (buf[i] == ESC) {
+                i = skip(buf, i, end);
+            } else {
+                buf[out++] = buf[i++];
+            }
+        }
+        return out - offset;
+    }
+
+    /**
+     * The index after the escape sequence starting at {@code index}.
+     */
+    private static int skip(byte[] buf, int index, int end) {
+        int i = index + 1;
+        if (i >= end) {
+            return end;
+        }
+        if (buf[i] != '[') {
+            return i + 1;
+        }
+        i++;
+        while (i < end) {
+            byte b = buf[i++];
+            if (b >= 0x40 && b <= 0x7e) {
+                return i;
+            }
+            if (b < 0x20 || b > 0x3f) {
+                // not a valid CSI byte: drop the introducer and keep the rest
+                return i - 1;
+            }
+        }
+        return end;
+    }
+}
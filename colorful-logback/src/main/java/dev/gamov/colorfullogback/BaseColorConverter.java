@@ -2,14 +2,53 @@ package dev.gamov.colorfullogback;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.Converter;
 import ch.qos.logback.core.pattern.color.ANSIConstants;
 import ch.qos.logback.core.pattern.color.ForegroundCompositeConverterBase;
 
 /**
  * Base abstract class for custom colorful logging converters.
  * Provides common color mapping logic and null safety checks.
+ * <p>
+ * The escape sequences for every level are compiled once, and each event is rendered
+ * into a reused per-thread buffer instead of the intermediate builders and Strings
+ * created by {@link ForegroundCompositeConverterBase#transform}.
+ * <p>
+ * When colors are disabled (output is not a terminal, {@code NO_COLOR}, {@code TERM=dumb},
+ * see {@link ColorSupport}) the converter is a pure pass-through of its children's output.
+ * <p>
+ * The built-in converters take their colors from the context's {@link ColorTheme} when one is
+ * configured (see {@link ThemeHolder}); the theme then wins over {@link #getColorForLevel(Level)}.
  */
-public abstract class BaseColorConverter extends ForegroundCompositeConverterBase<ILoggingEvent> {
+public abstract class BaseColorConverter extends ForegroundCompositeConverterBase<ILoggingEvent>
+        implements ByteWritingConverter {
+
+    static final int ERROR_INDEX = 0;
+    static final int WARN_INDEX = 1;
+    static final int INFO_INDEX = 2;
+    static final int DEBUG_INDEX = 3;
+    static final int TRACE_INDEX = 4;
+    static final int DEFAULT_INDEX = 5;
+
+    private static final Level[] INDEXED_LEVELS = {Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.TRACE};
+    private static final int MAX_RETAINED_CAPACITY = 2048;
+    private static final ThreadBuffers<RenderBuffer> RENDER_BUFFERS = new ThreadBuffers<>(RenderBuffer::new);
+
+    private AnsiSequence[] prefixes;
+    private ThemeHolder theme;
+    private ColorTheme.Role themeRole;
+    private ConverterChainWriter childWriter;
+    private boolean colorEnabled = true;
+
+    @Override
+    public void start() {
+        colorEnabled = ColorSupport.isColorEnabled(getContext());
+        prefixes = compilePrefixes();
+        themeRole = themeRole();
+        theme = colorEnabled && themeRole != null ? ThemeHolder.forContext(getContext()) : null;
+        childWriter = ConverterChainWriter.compile(getChildConverter());
+        super.start();
+    }
 
     @Override
     protected String getForegroundColorCode(ILoggingEvent event) {
@@ -28,6 +67,16 @@ public abstract class BaseColorConverter extends ForegroundCompositeConverterBas
      * @return the ANSI color code
      */
     protected String getColorForLevel(Level level) {
+        return defaultColorForLevel(level);
+    }
+
+    /**
+     * The default level color mapping, shared with converters that are not composites.
+     *
+     * @param level the log level
+     * @return the ANSI color code
+     */
+    static String defaultColorForLevel(Level level) {
         switch (level.toInt()) {
             case Level.ERROR_INT:
                 return ANSIConstants.RED_FG;
@@ -43,4 +92,168 @@ public abstract class BaseColorConverter extends ForegroundCompositeConverterBas
                 return ANSIConstants.DEFAULT_FG;
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        RenderBuffer renderBuffer = RENDER_BUFFERS.acquire();
+        if (renderBuffer.inUse) {
+            // a composite nested inside this converter is converting on the same thread
+            StringBuilder buf = new StringBuilder();
+            writeTo(buf, event);
+            return buf.toString();
+        }
+        renderBuffer.inUse = true;
+        try {
+            StringBuilder buf = renderBuffer.builder;
+            buf.setLength(0);
+            writeTo(buf, event);
+            return buf.toString();
+        } finally {
+            renderBuffer.release();
+            RENDER_BUFFERS.release(renderBuffer);
+        }
+    }
+
+    /**
+     * Write the colored output of the child converters straight into the given buffer.
+     *
+     * @param buf the buffer to append to
+     * @param event the logging event
+     */
+    public void writeTo(StringBuilder buf, ILoggingEvent event) {
+        if (!colorEnabled) {
+            writeChildren(buf, event);
+            return;
+        }
+        buf.append(prefixFor(event).chars);
+        writeChildren(buf, event);
+        buf.append(AnsiSequence.RESET.chars);
+    }
+
+    private void writeChildren(StringBuilder buf, ILoggingEvent event) {
+        for (Converter<ILoggingEvent> c = getChildConverter(); c != null; c = c.getNext()) {
+            if (c instanceof BaseColorConverter && ((BaseColorConverter) c).getFormattingInfo() == null) {
+                ((BaseColorConverter) c).writeTo(buf, event);
+            } else {
+                c.write(buf, event);
+            }
+        }
+    }
+
+    @Override
+    public void writeTo(LineBuffer out, ILoggingEvent event) {
+        ConverterChainWriter writer = childWriter;
+        if (writer == null) {
+            writer = ConverterChainWriter.compile(getChildConverter());
+            childWriter = writer;
+        }
+        if (!colorEnabled) {
+            writer.write(event, out);
+            return;
+        }
+        out.append(prefixFor(event).bytes);
+        writer.write(event, out);
+        out.append(AnsiSequence.RESET.bytes);
+    }
+
+    @Override
+    protected String transform(ILoggingEvent event, String in) {
+        if (!colorEnabled) {
+            return in;
+        }
+        return prefixFor(event).chars + in + AnsiSequence.RESET.chars;
+    }
+
+    /**
+     * Whether this converter emits ANSI sequences, as resolved when it was started.
+     *
+     * @return true if colors are enabled
+     */
+    public boolean isColorEnabled() {
+        return colorEnabled;
+    }
+
+    /**
+     * Get the precomputed escape sequence that opens the colored span for the given event.
+     *
+     * @param event the logging event
+     * @return the opening escape sequence
+     */
+    AnsiSequence prefixFor(ILoggingEvent event) {
+        return prefixTable()[levelIndex(event.getLevel())];
+    }
+
+    /**
+     * The role whose colors this converter takes from a configured theme.
+     *
+     * @return the theme role, or null if the converter ignores themes
+     */
+    ColorTheme.Role themeRole() {
+        return null;
+    }
+
+    /**
+     * The level lookup table in effect: the theme's table for this converter's role when a theme
+     * is configured, otherwise the table compiled from {@link #getColorForLevel(Level)}.
+     */
+    AnsiSequence[] prefixTable() {
+        ThemeHolder holder = theme;
+        return holder != null ? holder.current().table(themeRole) : prefixes();
+    }
+
+    AnsiSequence[] prefixes() {
+        AnsiSequence[] compiled = prefixes;
+        if (compiled == null) {
+            compiled = compilePrefixes();
+            prefixes = compiled;
+        }
+        return compiled;
+    }
+
+    private AnsiSequence[] compilePrefixes() {
+        AnsiSequence[] compiled = new AnsiSequence[DEFAULT_INDEX + 1];
+        for (int i = 0; i < INDEXED_LEVELS.length; i++) {
+            compiled[i] = AnsiSequence.of(getColorForLevel(INDEXED_LEVELS[i]));
+        }
+        compiled[DEFAULT_INDEX] = AnsiSequence.of(ANSIConstants.DEFAULT_FG);
+        return compiled;
+    }
+
+    /**
+     * Map a log level to its slot in the precomputed lookup tables.
+     *
+     * @param level the log level, may be null
+     * @return the table index
+     */
+    static int levelIndex(Level level) {
+        if (level == null) {
+            return DEFAULT_INDEX;
+        }
+        switch (level.toInt()) {
+            case Level.ERROR_INT:
+                return ERROR_INDEX;
+            case Level.WARN_INT:
+                return WARN_INDEX;
+            case Level.INFO_INT:
+                return INFO_INDEX;
+            case Level.DEBUG_INT:
+                return DEBUG_INDEX;
+            case Level.TRACE_INT:
+                return TRACE_INDEX;
+            default:
+                return DEFAULT_INDEX;
+        }
+    }
+
+    private static final class RenderBuffer {
+        StringBuilder builder = new StringBuilder(256);
+        boolean inUse;
+
+        void release() {
+            inUse = false;
+            if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+                builder = new StringBuilder(256);
+            }
+        }
+    }
+}
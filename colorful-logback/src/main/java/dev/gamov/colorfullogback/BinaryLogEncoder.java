@@ -0,0 +1,415 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.encoder.EncoderBase;
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encoder writing a compact binary record per event instead of text, for files nobody reads
+ * until something goes wrong. {@link BinaryLogRenderer} turns the files back into colored text.
+ * <p>
+ * A file is a sequence of records, each a varint length followed by a type byte:
+ * <ul>
+ *     <li>header: {@code "CLB"}, a version byte, the session (8 bytes, random per encoder
+ *     start) and the base time as a varint; followed by a definition record for every string
+ *     interned so far, so that each file of a rolling appender can be read on its own</li>
+ *     <li>definition: an id and a string; the first event using a logger, thread, MDC key,
+ *     marker or stack frame name defines it right before its own record</li>
+ *     <li>event: the timestamp as a zig-zag varint relative to the base time, a level byte,
+ *     the logger and thread as dictionary references, the raw message template (interned
+ *     when the event has arguments, inline otherwise), the arguments as strings, the MDC, markers, key-value pairs and the throwable with its
+ *     frames</li>
+ * </ul>
+ * Nothing is formatted on the logging thread: the message template and arguments are stored
+ * as they are, and no date is printed. The dictionary holds up to {@code maxDictionarySize}
+ * strings (default {@value #DEFAULT_MAX_DICTIONARY_SIZE}); further strings are written inline.
+ * <pre>
+ * &lt;encoder class="dev.gamov.colorfullogback.BinaryLogEncoder"/&gt;
+ * </pre>
+ * Caller data and sequence numbers are not stored.
+ */
+public class BinaryLogEncoder extends EncoderBase<ILoggingEvent> {
+
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 8192;
+
+    static final byte[] MAGIC = {'C', 'L', 'B'};
+    static final int VERSION = 1;
+
+    static final int HEADER = 0;
+    static final int DEFINE = 1;
+    static final int EVENT = 2;
+
+    /** Reference to a null string. */
+    static final int NULL_REF = 0;
+    /** Reference followed by the string itself. */
+    static final int INLINE_REF = 1;
+    /** Dictionary ids start at this reference value. */
+    static final int FIRST_ID_REF = 2;
+
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadBuffers<Scratch> SCRATCH = new ThreadBuffers<>(Scratch::new);
+
+    private int maxDictionarySize = DEFAULT_MAX_DICTIONARY_SIZE;
+    private final ConcurrentHashMap<String, Integer> dictionary = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private long session;
+    private long baseTime;
+
+    @Override
+    public void start() {
+        session = ThreadLocalRandom.current().nextLong();
+        baseTime = System.currentTimeMillis();
+        super.start();
+    }
+
+    /**
+     * The header record, plus the strings interned so far. Appenders write it at the start of
+     * every file, including the ones opened after a rollover.
+     */
+    @Override
+    public byte[] headerBytes() {
+        LineBuffer out = new LineBuffer();
+        LineBuffer body = new LineBuffer(32);
+        body.append((byte) HEADER);
+        body.append(MAGIC);
+        body.append((byte) VERSION);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            body.append((byte) (session >>> shift));
+        }
+        writeVarint(body, baseTime);
+        writeRecord(out, body);
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            writeDefinition(out, body, entry.getValue(), entry.getKey());
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        Scratch scratch = SCRATCH.acquire();
+        try {
+            LineBuffer out = scratch.out;
+            LineBuffer body = scratch.body;
+            out.reset();
+            body.reset();
+            body.append((byte) EVENT);
+            writeVarint(body, zigZag(event.getTimeStamp() - baseTime));
+            body.append(levelCode(event.getLevel()));
+            writeRef(scratch, event.getLoggerName());
+            writeRef(scratch, event.getThreadName());
+            Object[] arguments = event.getArgumentArray();
+            if (arguments == null || arguments.length == 0) {
+                writeInline(body, event.getMessage());
+            } else {
+                // a parameterized template is a constant of the calling code, worth interning
+                writeRef(scratch, event.getMessage());
+            }
+            writeArguments(body, arguments);
+            writeMdc(scratch, event.getMDCPropertyMap());
+            writeMarkers(scratch, event.getMarkerList());
+            writeKeyValuePairs(scratch, event.getKeyValuePairs());
+            writeThrowable(scratch, event.getThrowableProxy());
+            writeRecord(out, body);
+            return out.toByteArray();
+        } finally {
+            scratch.out.trim(MAX_RETAINED_CAPACITY);
+            scratch.body.trim(MAX_RETAINED_CAPACITY);
+            SCRATCH.release(scratch);
+        }
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    private static void writeArguments(LineBuffer body, Object[] arguments) {
+        if (arguments == null) {
+            writeVarint(body, 0);
+            return;
+        }
+        writeVarint(body, arguments.length);
+        for (Object argument : arguments) {
+            writeString(body, argumentText(argument));
+        }
+    }
+
+    private void writeMdc(Scratch scratch, Map<String, String> mdc) {
+        if (mdc == null || mdc.isEmpty()) {
+            writeVarint(scratch.body, 0);
+            return;
+        }
+        writeVarint(scratch.body, mdc.size());
+        for (Map.Entry<String, String> entry : mdc.entrySet()) {
+            writeRef(scratch, entry.getKey());
+            writeString(scratch.body, entry.getValue());
+        }
+    }
+
+    private void writeMarkers(Scratch scratch, List<Marker> markers) {
+        if (markers == null) {
+            writeVarint(scratch.body, 0);
+            return;
+        }
+        writeVarint(scratch.body, markers.size());
+        for (Marker marker : markers) {
+            writeRef(scratch, marker.getName());
+        }
+    }
+
+    private void writeKeyValuePairs(Scratch scratch, List<KeyValuePair> pairs) {
+        if (pairs == null) {
+            writeVarint(scratch.body, 0);
+            return;
+        }
+        writeVarint(scratch.body, pairs.size());
+        for (KeyValuePair pair : pairs) {
+            writeRef(scratch, pair.key);
+            writeString(scratch.body, argumentText(pair.value));
+        }
+    }
+
+    private void writeThrowable(Scratch scratch, IThrowableProxy throwable) {
+        LineBuffer body = scratch.body;
+        if (throwable == null) {
+            body.append((byte) 0);
+            return;
+        }
+        body.append((byte) (throwable.isCyclic() ? 2 : 1));
+        writeRef(scratch, throwable.getClassName());
+        writeString(body, throwable.getMessage());
+        StackTraceElementProxy[] frames = throwable.getStackTraceElementProxyArray();
+        int frameCount = frames == null ? 0 : frames.length;
+        writeVarint(body, frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            StackTraceElement frame = frames[i].getStackTraceElement();
+            writeRef(scratch, frameLocation(frame));
+            writeRef(scratch, frame.getClassName());
+            writeRef(scratch, frame.getMethodName());
+            writeRef(scratch, frame.getFileName());
+            writeVarint(body, zigZag(frame.getLineNumber()));
+        }
+        writeVarint(body, throwable.getCommonFrames());
+        IThrowableProxy[] suppressed = throwable.getSuppressed();
+        int suppressedCount = suppressed == null ? 0 : suppressed.length;
+        writeVarint(body, suppressedCount);
+        for (int i = 0; i < suppressedCount; i++) {
+            writeThrowable(scratch, suppressed[i]);
+        }
+        writeThrowable(scratch, throwable.getCause());
+    }
+
+    /**
+     * The class loader and module part of a frame as the JVM prints it, such as
+     * {@code "java.base/"}, or null if it prints none. The JVM leaves out built-in loaders and
+     * JDK module versions, which a frame rebuilt from its fields would not know to do.
+     */
+    static String frameLocation(StackTraceElement frame) {
+        if (frame.getClassLoaderName() == null && frame.getModuleName() == null) {
+            return null;
+        }
+        String text = frame.toString();
+        int end = text.indexOf(frame.getClassName() + '.' + frame.getMethodName() + '(');
+        return end <= 0 ? null : text.substring(0, end);
+    }
+
+    /**
+     * Write a dictionary reference, interning the string and defining it in the output if it is new.
+     */
+    private void writeRef(Scratch scratch, String value) {
+        if (value == null) {
+            writeVarint(scratch.body, NULL_REF);
+            return;
+        }
+        Integer id = dictionary.get(value);
+        if (id == null && dictionary.size() < maxDictionarySize) {
+            int[] assigned = {-1};
+            id = dictionary.computeIfAbsent(value, key -> assigned[0] = nextId.getAndIncrement());
+            if (assigned[0] >= 0) {
+                writeDefinition(scratch.out, scratch.definition, assigned[0], value);
+            }
+        }
+        if (id == null) {
+            writeVarint(scratch.body, INLINE_REF);
+            writeString(scratch.body, value);
+        } else {
+            writeVarint(scratch.body, FIRST_ID_REF + id);
+        }
+    }
+
+    private static void writeInline(LineBuffer body, String value) {
+        if (value == null) {
+            writeVarint(body, NULL_REF);
+        } else {
+            writeVarint(body, INLINE_REF);
+            writeString(body, value);
+        }
+    }
+
+    private static void writeDefinition(LineBuffer out, LineBuffer scratch, int id, String value) {
+        scratch.reset();
+        scratch.append((byte) DEFINE);
+        writeVarint(scratch, id);
+        writeString(scratch, value);
+        writeRecord(out, scratch);
+    }
+
+    private static void writeRecord(LineBuffer out, LineBuffer body) {
+        writeVarint(out, body.length());
+        out.append(body.array(), 0, body.length());
+    }
+
+    /**
+     * Write a nullable string: its UTF-8 length plus one (zero for null), then the bytes.
+     */
+    static void writeString(LineBuffer out, String value) {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, utf8Length(value) + 1L);
+        out.appendUtf8(value);
+    }
+
+    static void writeVarint(LineBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.append((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.append((byte) value);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * The number of bytes {@link LineBuffer#appendUtf8(CharSequence)} writes for the string.
+     */
+    static int utf8Length(String value) {
+        int length = value.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes++;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    static byte levelCode(Level level) {
+        if (level == null) {
+            return -1;
+        }
+        switch (level.toInt()) {
+            case Level.TRACE_INT:
+                return 0;
+            case Level.DEBUG_INT:
+                return 1;
+            case Level.INFO_INT:
+                return 2;
+            case Level.WARN_INT:
+                return 3;
+            case Level.ERROR_INT:
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    static Level levelOf(byte code) {
+        switch (code) {
+            case 0:
+                return Level.TRACE;
+            case 1:
+                return Level.DEBUG;
+            case 2:
+                return Level.INFO;
+            case 3:
+                return Level.WARN;
+            case 4:
+                return Level.ERROR;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The text SLF4J would substitute for an argument.
+     */
+    static String argumentText(Object argument) {
+        if (argument == null || argument instanceof String) {
+            return (String) argument;
+        }
+        try {
+            if (!argument.getClass().isArray()) {
+                return argument.toString();
+            }
+            if (argument instanceof Object[]) {
+                return Arrays.deepToString((Object[]) argument);
+            }
+            if (argument instanceof int[]) {
+                return Arrays.toString((int[]) argument);
+            }
+            if (argument instanceof long[]) {
+                return Arrays.toString((long[]) argument);
+            }
+            if (argument instanceof byte[]) {
+                return Arrays.toString((byte[]) argument);
+            }
+            if (argument instanceof char[]) {
+                return Arrays.toString((char[]) argument);
+            }
+            if (argument instanceof short[]) {
+                return Arrays.toString((short[]) argument);
+            }
+            if (argument instanceof boolean[]) {
+                return Arrays.toString((boolean[]) argument);
+            }
+            if (argument instanceof float[]) {
+                return Arrays.toString((float[]) argument);
+            }
+            return Arrays.toString((double[]) argument);
+        } catch (RuntimeException e) {
+            return "[FAILED toString()]";
+        }
+    }
+
+    public int getMaxDictionarySize() {
+        return maxDictionarySize;
+    }
+
+    public void setMaxDictionarySize(int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    /**
+     * The buffers one encode call works in: the definitions and the event record end up in
+     * {@code out}; the record being built is assembled in {@code body} and {@code definition}.
+     */
+    private static final class Scratch {
+        final LineBuffer out = new LineBuffer();
+        final LineBuffer body = new LineBuffer();
+        final LineBuffer definition = new LineBuffer(64);
+    }
+}
@@ -0,0 +1,525 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.helpers.BasicMarkerFactory;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the records written by {@link BinaryLogEncoder} back into events.
+ * <p>
+ * Appenders encode outside their write lock, so an event using a string may reach the file
+ * just before the record of another thread that defines it. Such events are held back until
+ * the definition arrives (at most {@value #MAX_PENDING} of them), which moves them by a few
+ * lines at most; strings that are never defined are shown as {@code #<id>}. A record cut off
+ * by a crash at the end of the input is ignored.
+ */
+final class BinaryLogReader implements Closeable {
+
+    static final int MAX_PENDING = 1024;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+    private static final BasicMarkerFactory MARKERS = new BasicMarkerFactory();
+
+    private final InputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Deque<byte[]> pending = new ArrayDeque<>();
+    private final Deque<ILoggingEvent> ready = new ArrayDeque<>();
+    private long session;
+    private long baseTime;
+    private boolean headerSeen;
+    private boolean finished;
+
+    BinaryLogReader(InputStream in) {
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 64 * 1024);
+    }
+
+    /**
+     * The next event, or null at the end of the input.
+     *
+     * @throws IOException if the input cannot be read or is not a binary log
+     */
+    ILoggingEvent next() throws IOException {
+        while (ready.isEmpty()) {
+            if (finished) {
+                return null;
+            }
+            byte[] record = readRecord();
+            try {
+                if (record == null) {
+                    finished = true;
+                    flushPending();
+                } else {
+                    accept(record);
+                }
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        return ready.poll();
+    }
+
+    private void accept(byte[] record) throws IOException {
+        Cursor cursor = new Cursor(record);
+        int type = cursor.readByte();
+        if (!headerSeen && type != BinaryLogEncoder.HEADER) {
+            throw new IOException("Not a binary log: the input does not start with a header");
+        }
+        switch (type) {
+            case BinaryLogEncoder.HEADER:
+                readHeader(cursor);
+                break;
+            case BinaryLogEncoder.DEFINE:
+                int id = (int) cursor.readVarint();
+                while (dictionary.size() <= id) {
+                    dictionary.add(null);
+                }
+                dictionary.set(id, cursor.readString());
+                retryPending();
+                break;
+            case BinaryLogEncoder.EVENT:
+                ILoggingEvent event = decode(record, false);
+                if (event == null) {
+                    pending.add(record);
+                    if (pending.size() > MAX_PENDING) {
+                        ready.add(decode(pending.poll(), true));
+                    }
+                } else {
+                    ready.add(event);
+                }
+                break;
+            default:
+                // a record type added by a later version
+                break;
+        }
+    }
+
+    private void readHeader(Cursor cursor) throws IOException {
+        for (byte b : BinaryLogEncoder.MAGIC) {
+            if (cursor.readByte() != b) {
+                throw new IOException("Not a binary log: bad magic");
+            }
+        }
+        int version = cursor.readByte();
+        if (version > BinaryLogEncoder.VERSION) {
+            throw new IOException("Unsupported binary log version " + version);
+        }
+        long newSession = 0;
+        for (int i = 0; i < 8; i++) {
+            newSession = (newSession << 8) | cursor.readByte();
+        }
+        if (!headerSeen || newSession != session) {
+            // another process appended to the file: its ids mean other strings
+            flushPending();
+            dictionary.clear();
+        }
+        session = newSession;
+        baseTime = cursor.readVarint();
+        headerSeen = true;
+    }
+
+    private void retryPending() {
+        for (Iterator<byte[]> it = pending.iterator(); it.hasNext(); ) {
+            ILoggingEvent event = decode(it.next(), false);
+            if (event != null) {
+                ready.add(event);
+                it.remove();
+            }
+        }
+    }
+
+    private void flushPending() {
+        while (!pending.isEmpty()) {
+            ready.add(decode(pending.poll(), true));
+        }
+    }
+
+    /**
+     * Decode an event record, or return null if it uses an undefined string and
+     * {@code lenient} is false.
+     */
+    private ILoggingEvent decode(byte[] record, boolean lenient) {
+        Cursor cursor = new Cursor(record);
+        cursor.lenient = lenient;
+        cursor.readByte();
+        DecodedEvent event = new DecodedEvent();
+        event.timeStamp = baseTime + unZigZag(cursor.readVarint());
+        event.level = BinaryLogEncoder.levelOf((byte) cursor.readByte());
+        event.loggerName = cursor.readRef();
+        event.threadName = cursor.readRef();
+        event.message = cursor.readRef();
+        int argumentCount = (int) cursor.readVarint();
+        if (argumentCount > 0) {
+            Object[] arguments = new Object[argumentCount];
+            for (int i = 0; i < argumentCount; i++) {
+                arguments[i] = cursor.readString();
+            }
+            event.arguments = arguments;
+        }
+        int mdcCount = (int) cursor.readVarint();
+        if (mdcCount > 0) {
+            Map<String, String> mdc = new LinkedHashMap<>();
+            for (int i = 0; i < mdcCount; i++) {
+                mdc.put(cursor.readRef(), cursor.readString());
+            }
+            event.mdc = mdc;
+        }
+        int markerCount = (int) cursor.readVarint();
+        if (markerCount > 0) {
+            List<Marker> markers = new ArrayList<>(markerCount);
+            for (int i = 0; i < markerCount; i++) {
+                markers.add(MARKERS.getMarker(cursor.readRef()));
+            }
+            event.markers = markers;
+        }
+        int pairCount = (int) cursor.readVarint();
+        if (pairCount > 0) {
+            List<KeyValuePair> pairs = new ArrayList<>(pairCount);
+            for (int i = 0; i < pairCount; i++) {
+                pairs.add(new KeyValuePair(cursor.readRef(), cursor.readString()));
+            }
+            event.keyValuePairs = pairs;
+        }
+        event.throwable = readThrowable(cursor);
+        return cursor.unresolved ? null : event;
+    }
+
+    private static DecodedThrowable readThrowable(Cursor cursor) {
+        int kind = cursor.readByte();
+        if (kind == 0) {
+            return null;
+        }
+        DecodedThrowable throwable = new DecodedThrowable();
+        throwable.cyclic = kind == 2;
+        throwable.className = cursor.readRef();
+        throwable.message = cursor.readString();
+        int frameCount = (int) cursor.readVarint();
+        throwable.frames = new StackTraceElementProxy[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            String location = cursor.readRef();
+            String declaringClass = cursor.readRef();
+            String method = cursor.readRef();
+            String file = cursor.readRef();
+            int line = (int) unZigZag(cursor.readVarint());
+            throwable.frames[i] = new StackTraceElementProxy(frame(location,
+                    declaringClass == null ? "?" : declaringClass, method == null ? "?" : method, file, line));
+        }
+        throwable.commonFrames = (int) cursor.readVarint();
+        int suppressedCount = (int) cursor.readVarint();
+        throwable.suppressed = new IThrowableProxy[suppressedCount];
+        for (int i = 0; i < suppressedCount; i++) {
+            throwable.suppressed[i] = readThrowable(cursor);
+        }
+        throwable.cause = readThrowable(cursor);
+        return throwable;
+    }
+
+    /**
+     * A frame that prints like the original, given the location written by
+     * {@link BinaryLogEncoder#frameLocation(StackTraceElement)}: {@code loader/module@version/},
+     * where each part is present only if the original printed it.
+     */
+    static StackTraceElement frame(String location, String declaringClass, String method, String file, int line) {
+        String classLoader = null;
+        String module = null;
+        String moduleVersion = null;
+        if (location != null && location.endsWith("/")) {
+            String names = location.substring(0, location.length() - 1);
+            int slash = names.indexOf('/');
+            if (slash >= 0) {
+                classLoader = names.substring(0, slash);
+                names = names.substring(slash + 1);
+            }
+            int at = names.indexOf('@');
+            if (at >= 0) {
+                moduleVersion = names.substring(at + 1);
+                names = names.substring(0, at);
+            }
+            module = names.isEmpty() ? null : names;
+        }
+        return new StackTraceElement(classLoader, module, moduleVersion, declaringClass, method, file, line);
+    }
+
+    /**
+     * The payload of the next record, or null at the end of the input or of a truncated record.
+     */
+    private byte[] readRecord() throws IOException {
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            if (shift > 28) {
+                throw new IOException("Corrupt binary log: bad record length");
+            }
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length == 0 || length > MAX_RECORD_LENGTH) {
+            throw new IOException(headerSeen ? "Corrupt binary log: record length " + length
+                    : "Not a binary log: the input does not start with a header");
+        }
+        byte[] record = new byte[(int) length];
+        int read = in.readNBytes(record, 0, record.length);
+        if (read < record.length) {
+            if (!headerSeen) {
+                throw new IOException("Not a binary log: the input does not start with a header");
+            }
+            return null;
+        }
+        return record;
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the fields of one record.
+     */
+    private final class Cursor {
+        private final byte[] bytes;
+        private int position;
+        boolean lenient;
+        boolean unresolved;
+
+        Cursor(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            if (position >= bytes.length) {
+                throw new IllegalStateException("Corrupt binary log: record too short");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Corrupt binary log: varint too long");
+        }
+
+        String readString() {
+            long length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            int count = (int) (length - 1);
+            if (count > bytes.length - position) {
+                throw new IllegalStateException("Corrupt binary log: string past record end");
+            }
+            String value = new String(bytes, position, count, StandardCharsets.UTF_8);
+            position += count;
+            return value;
+        }
+
+        String readRef() {
+            long ref = readVarint();
+            if (ref == BinaryLogEncoder.NULL_REF) {
+                return null;
+            }
+            if (ref == BinaryLogEncoder.INLINE_REF) {
+                return readString();
+            }
+            int id = (int) (ref - BinaryLogEncoder.FIRST_ID_REF);
+            String value = id < dictionary.size() ? dictionary.get(id) : null;
+            if (value == null) {
+                unresolved = !lenient;
+                return "#" + id;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * An event read back from a binary log.
+     */
+    private static final class DecodedEvent implements ILoggingEvent {
+        long timeStamp;
+        Level level;
+        String loggerName;
+        String threadName;
+        String message;
+        Object[] arguments;
+        Map<String, String> mdc = Collections.emptyMap();
+        List<Marker> markers;
+        List<KeyValuePair> keyValuePairs;
+        DecodedThrowable throwable;
+        private String formattedMessage;
+
+        @Override
+        public String getThreadName() {
+            return threadName;
+        }
+
+        @Override
+        public Level getLevel() {
+            return level;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public Object[] getArgumentArray() {
+            return arguments;
+        }
+
+        @Override
+        public String getFormattedMessage() {
+            if (formattedMessage == null) {
+                formattedMessage = arguments == null ? message
+                        : MessageFormatter.basicArrayFormat(message, arguments);
+            }
+            return formattedMessage;
+        }
+
+        @Override
+        public String getLoggerName() {
+            return loggerName;
+        }
+
+        @Override
+        public LoggerContextVO getLoggerContextVO() {
+            return null;
+        }
+
+        @Override
+        public IThrowableProxy getThrowableProxy() {
+            return throwable;
+        }
+
+        @Override
+        public StackTraceElement[] getCallerData() {
+            return new StackTraceElement[0];
+        }
+
+        @Override
+        public boolean hasCallerData() {
+            return false;
+        }
+
+        @Override
+        public List<Marker> getMarkerList() {
+            return markers;
+        }
+
+        @Override
+        public Map<String, String> getMDCPropertyMap() {
+            return mdc;
+        }
+
+        @Override
+        @Deprecated
+        public Map<String, String> getMdc() {
+            return mdc;
+        }
+
+        @Override
+        public long getTimeStamp() {
+            return timeStamp;
+        }
+
+        @Override
+        public int getNanoseconds() {
+            return (int) Math.floorMod(timeStamp, 1000L) * 1_000_000;
+        }
+
+        @Override
+        public long getSequenceNumber() {
+            return 0;
+        }
+
+        @Override
+        public List<KeyValuePair> getKeyValuePairs() {
+            return keyValuePairs;
+        }
+
+        @Override
+        public void prepareForDeferredProcessing() {
+        }
+    }
+
+    /**
+     * A throwable read back from a binary log.
+     */
+    private static final class DecodedThrowable implements IThrowableProxy {
+        String className;
+        String message;
+        StackTraceElementProxy[] frames;
+        int commonFrames;
+        IThrowableProxy[] suppressed;
+        IThrowableProxy cause;
+        boolean cyclic;
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public StackTraceElementProxy[] getStackTraceElementProxyArray() {
+            return frames;
+        }
+
+        @Override
+        public int getCommonFrames() {
+            return commonFrames;
+        }
+
+        @Override
+        public IThrowableProxy getCause() {
+            return cause;
+        }
+
+        @Override
+        public IThrowableProxy[] getSuppressed() {
+            return suppressed;
+        }
+
+        @Override
+        public boolean isCyclic() {
+            return cyclic;
+        }
+    }
+}
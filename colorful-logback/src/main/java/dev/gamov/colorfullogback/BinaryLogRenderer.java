@@ -0,0 +1,195 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.status.Status;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line renderer turning files written by {@link BinaryLogEncoder} into colored text.
+ * <p>
+ * Events are rendered through a {@link ColorfulPatternEncoder} with the converters of this
+ * library, so levels, packages and arguments get the same colors (and theme) as on the console:
+ * <pre>
+ * java -cp colorful-logback.jar:logback-classic.jar:logback-core.jar:slf4j-api.jar \
+ *     dev.gamov.colorfullogback.BinaryLogRenderer [options] [file ...]
+ *
+ *   --pattern &lt;pattern&gt;          pattern to render with (default {@value #DEFAULT_PATTERN})
+ *   --color auto|always|never    whether to emit colors (default auto)
+ *   --theme &lt;file&gt;               color theme, as for the colorful.logback.theme property
+ * </pre>
+ * Files ending in {@code .gz} are decompressed; without files standard input is read.
+ */
+public final class BinaryLogRenderer {
+
+    public static final String DEFAULT_PATTERN =
+            "%colorTimeLevel{yyyy-MM-dd HH:mm:ss.SSS} %colorPackage([%thread] %logger{36}): %colorArgs%n%colorEx";
+
+    private static final String USAGE = "Usage: BinaryLogRenderer [--pattern <pattern>] "
+            + "[--color auto|always|never] [--theme <file>] [file ...]";
+
+    private BinaryLogRenderer() {
+    }
+
+    public static void main(String[] args) {
+        int status = run(args, System.in, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Render the binary logs named in the arguments.
+     *
+     * @param args the command line
+     * @param stdin read when no file is given
+     * @param out receives the rendered text
+     * @param err receives usage and error messages
+     * @return the exit status: 0 on success, 1 if a file could not be read, 2 on bad usage
+     */
+    static int run(String[] args, InputStream stdin, OutputStream out, PrintStream err) {
+        String pattern = DEFAULT_PATTERN;
+        String color = "auto";
+        String theme = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--pattern") || arg.equals("--color") || arg.equals("--theme")) {
+                if (i + 1 >= args.length) {
+                    err.println("Missing value for " + arg);
+                    err.println(USAGE);
+                    return 2;
+                }
+                String value = args[++i];
+                if (arg.equals("--pattern")) {
+                    pattern = value;
+                } else if (arg.equals("--color")) {
+                    color = value;
+                } else {
+                    theme = value;
+                }
+            } else if (arg.equals("--help") || arg.equals("-h")) {
+                err.println(USAGE);
+                return 0;
+            } else if (arg.startsWith("--")) {
+                err.println("Unknown option " + arg);
+                err.println(USAGE);
+                return 2;
+            } else {
+                files.add(arg);
+            }
+        }
+
+        LoggerContext context = newContext(color, theme);
+        try {
+            ColorfulPatternEncoder encoder = newEncoder(context, pattern, err);
+            if (encoder == null) {
+                return 2;
+            }
+            OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+            LineBuffer line = new LineBuffer();
+            int status = 0;
+            if (files.isEmpty()) {
+                status = render("<stdin>", stdin, encoder, line, buffered, err);
+            }
+            for (String file : files) {
+                try (InputStream in = open(Paths.get(file))) {
+                    status = Math.max(status, render(file, in, encoder, line, buffered, err));
+                } catch (IOException e) {
+                    err.println(file + ": " + e.getMessage());
+                    status = 1;
+                }
+            }
+            buffered.flush();
+            return status;
+        } catch (IOException e) {
+            err.println("Failed to write: " + e.getMessage());
+            return 1;
+        } finally {
+            context.stop();
+        }
+    }
+
+    private static int render(String name, InputStream in, ColorfulPatternEncoder encoder, LineBuffer line,
+                              OutputStream out, PrintStream err) throws IOException {
+        BinaryLogReader reader = new BinaryLogReader(in);
+        try {
+            for (ILoggingEvent event = reader.next(); event != null; event = reader.next()) {
+                line.reset();
+                encoder.encodeTo(event, line);
+                out.write(line.array(), 0, line.length());
+            }
+            return 0;
+        } catch (IOException e) {
+            // only reading can fail here; a failing output surfaces on the final flush
+            out.flush();
+            err.println(name + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    /**
+     * A logger context with the conversion words of this library registered.
+     *
+     * @param color the color mode: auto, always or never
+     * @param theme the theme file, or null for the default colors
+     * @return the context
+     */
+    static LoggerContext newContext(String color, String theme) {
+        LoggerContext context = new LoggerContext();
+        context.putProperty(ColorSupport.COLOR_PROPERTY, color);
+        if (theme != null) {
+            context.putProperty(ThemeHolder.THEME_PROPERTY, theme);
+        }
+        Map<String, Supplier<?>> rules = new HashMap<>();
+        rules.put("colorLevel", CustomHighlightingLogLevel::new);
+        rules.put("colorPackage", CustomHighlightingPackageName::new);
+        rules.put("colorMessage", CustomHighlightingMessage::new);
+        rules.put("colorArgs", CustomHighlightingArguments::new);
+        rules.put("colorEx", CustomHighlightingThrowable::new);
+        rules.put("colorTimeLevel", CustomHighlightingTimestampLevel::new);
+        rules.put("colorCaller", CustomHighlightingCallerLocation::new);
+        context.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+        return context;
+    }
+
+    /**
+     * A started encoder for the pattern, or null after printing why the pattern is unusable.
+     */
+    static ColorfulPatternEncoder newEncoder(LoggerContext context, String pattern, PrintStream err) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(pattern);
+        encoder.start();
+        if (!encoder.isStarted()) {
+            err.println("Invalid pattern: " + pattern);
+            for (Status status : context.getStatusManager().getCopyOfStatusList()) {
+                if (status.getLevel() == Status.ERROR) {
+                    err.println("  " + status.getMessage());
+                }
+            }
+            return null;
+        }
+        return encoder;
+    }
+}
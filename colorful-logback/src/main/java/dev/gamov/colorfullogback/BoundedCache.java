@@ -0,0 +1,88 @@
+package dev.gamov.colorfullogback;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Small lock-free cache with a fixed number of slots.
+ * <p>
+ * Each key maps to exactly one slot (direct-mapped), and a colliding key simply replaces
+ * the previous entry, so memory stays bounded no matter how many distinct keys are seen.
+ * Lookups are a hash, an array read and a reference or {@code equals} comparison;
+ * they never lock and never allocate on a hit.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class BoundedCache<K, V> {
+
+    private final AtomicReferenceArray<Entry<K, V>> slots;
+    private final int mask;
+    private final boolean identityKeys;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     * @param identityKeys compare keys by reference and {@link System#identityHashCode} instead of equals
+     */
+    BoundedCache(int capacity, boolean identityKeys) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.identityKeys = identityKeys;
+    }
+
+    V get(K key) {
+        Entry<K, V> entry = slots.get(indexFor(key));
+        if (entry != null && (entry.key == key || (!identityKeys && entry.key.equals(key)))) {
+            return entry.value;
+        }
+        return null;
+    }
+
+    V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        int index = indexFor(key);
+        Entry<K, V> entry = slots.get(index);
+        if (entry != null && (entry.key == key || (!identityKeys && entry.key.equals(key)))) {
+            return entry.value;
+        }
+        V value = loader.apply(key);
+        if (value != null) {
+            slots.set(index, new Entry<>(key, value));
+        }
+        return value;
+    }
+
+    void put(K key, V value) {
+        slots.set(indexFor(key), new Entry<>(key, value));
+    }
+
+    /**
+     * Remove the entry for the key, unless it was replaced by another value in the meantime.
+     */
+    void remove(K key, V value) {
+        int index = indexFor(key);
+        Entry<K, V> entry = slots.get(index);
+        if (entry != null && entry.value == value) {
+            slots.compareAndSet(index, entry, null);
+        }
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    private int indexFor(K key) {
+        int h = identityKeys ? System.identityHashCode(key) : key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static final class Entry<K, V> {
+        final K key;
+        final V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
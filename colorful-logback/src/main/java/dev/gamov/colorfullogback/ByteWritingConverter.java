@@ -0,0 +1,18 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Implemented by converters that can render themselves directly into a {@link LineBuffer}
+ * without producing an intermediate String.
+ */
+interface ByteWritingConverter {
+
+    /**
+     * Render the converter output for the event into the buffer.
+     *
+     * @param out the buffer to append to
+     * @param event the logging event
+     */
+    void writeTo(LineBuffer out, ILoggingEvent event);
+}
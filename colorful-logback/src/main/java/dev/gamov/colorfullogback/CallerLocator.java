@@ -0,0 +1,92 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.Context;
+
+import java.lang.StackWalker.StackFrame;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Finds the application frame that issued the current logging call with {@link StackWalker}.
+ * <p>
+ * Uses the same rule as logback's {@code CallerData}: the caller is the first frame below the
+ * outermost run of logging framework frames. Unlike {@code LoggingEvent.getCallerData()} it neither
+ * fills in a {@link Throwable} stack trace nor materializes more than one frame, and it stops after
+ * a bounded number of frames. It must run on the thread that logged the event.
+ */
+final class CallerLocator {
+
+    static final int DEFAULT_MAX_DEPTH = 64;
+
+    private static final String LOGGER_CLASS = Logger.class.getName();
+    private static final String[] BUILT_IN_FRAMEWORK_PREFIXES = {
+            "org.slf4j.Logger",
+            "org.slf4j.bridge.",
+            "org.apache.log4j.Category",
+            "org.apache.logging.slf4j.",
+            "org.apache.commons.logging."
+    };
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final String[] frameworkPrefixes;
+    private final int maxDepth;
+
+    CallerLocator(Context context, int maxDepth) {
+        List<String> prefixes = new ArrayList<>(List.of(BUILT_IN_FRAMEWORK_PREFIXES));
+        if (context instanceof LoggerContext) {
+            prefixes.addAll(((LoggerContext) context).getFrameworkPackages());
+        }
+        this.frameworkPrefixes = prefixes.toArray(new String[0]);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Locate the caller of the logging statement currently executing on this thread.
+     *
+     * @return the caller frame, or null if no logging call was found within the frame limit
+     */
+    StackFrame locate() {
+        return WALKER.walk(this::findCaller);
+    }
+
+    /**
+     * Locate the caller as a stack trace element, suitable for {@code LoggingEvent.setCallerData}.
+     *
+     * @return a single-element caller data array, or an empty array if the caller was not found
+     */
+    StackTraceElement[] locateCallerData() {
+        StackFrame frame = locate();
+        return frame == null ? new StackTraceElement[0] : new StackTraceElement[]{frame.toStackTraceElement()};
+    }
+
+    private StackFrame findCaller(Stream<StackFrame> frames) {
+        boolean inFramework = false;
+        Iterator<StackFrame> it = frames.limit(maxDepth).iterator();
+        while (it.hasNext()) {
+            StackFrame frame = it.next();
+            if (isFramework(frame.getClassName())) {
+                inFramework = true;
+            } else if (inFramework) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private boolean isFramework(String className) {
+        if (className.equals(LOGGER_CLASS)) {
+            return true;
+        }
+        for (String prefix : frameworkPrefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,254 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.util.Duration;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Console appender that coalesces encoded lines into a direct buffer and writes them to
+ * file descriptor 1 (or 2) through a {@link java.nio.channels.FileChannel}, instead of one
+ * {@code write} plus {@code flush} per event.
+ * <p>
+ * The buffer is written when it fills up, when the oldest buffered line is older than
+ * {@code maxFlushDelay}, or immediately for events at or above {@code immediateFlushLevel}.
+ * Lines larger than the free space are not copied into the buffer; they are handed to the
+ * kernel together with the pending batch in a single gathering write.
+ * <pre>
+ * &lt;appender name="CONSOLE" class="dev.gamov.colorfullogback.CoalescingConsoleAppender"&gt;
+ *     &lt;bufferSize&gt;65536&lt;/bufferSize&gt;
+ *     &lt;maxFlushDelay&gt;100 milliseconds&lt;/maxFlushDelay&gt;
+ *     &lt;immediateFlushLevel&gt;WARN&lt;/immediateFlushLevel&gt;
+ *     &lt;encoder class="dev.gamov.colorfullogback.ColorfulPatternEncoder"&gt;
+ *         &lt;pattern&gt;%colorLevel(%-5level) %colorMessage(%msg%n)&lt;/pattern&gt;
+ *     &lt;/encoder&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class CoalescingConsoleAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final Duration DEFAULT_MAX_FLUSH_DELAY = Duration.buildByMilliseconds(100);
+
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadBuffers<LineBuffer> LINE_BUFFERS = new ThreadBuffers<>(LineBuffer::new);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private Duration maxFlushDelay = DEFAULT_MAX_FLUSH_DELAY;
+    private Level immediateFlushLevel = Level.WARN;
+    private String target = "System.out";
+    private Encoder<ILoggingEvent> encoder;
+
+    private GatheringByteChannel channel;
+    private ByteBuffer pending;
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    private long oldestPendingNanos;
+    private long writeCount;
+    private ScheduledFuture<?> flushTask;
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (encoder == null) {
+            addError("No encoder set for the appender named \"" + name + "\".");
+            return;
+        }
+        if (channel == null) {
+            if ("System.out".equalsIgnoreCase(target)) {
+                channel = new FileOutputStream(FileDescriptor.out).getChannel();
+            } else if ("System.err".equalsIgnoreCase(target)) {
+                channel = new FileOutputStream(FileDescriptor.err).getChannel();
+            } else {
+                addError("[" + target + "] should be one of System.out or System.err");
+                return;
+            }
+        }
+        pending = ByteBuffer.allocateDirect(bufferSize);
+        super.start();
+
+        long delayMillis = maxFlushDelay.getMilliseconds();
+        if (delayMillis > 0 && getContext() != null) {
+            flushTask = getContext().getScheduledExecutorService()
+                    .scheduleAtFixedRate(this::flushIfStale, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+            getContext().addScheduledFuture(flushTask);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        lock.lock();
+        try {
+            flush();
+        } catch (IOException e) {
+            addError("Failed to write to " + target, e);
+        } finally {
+            super.stop();
+            lock.unlock();
+        }
+        // the channel wraps the process-wide stdout/stderr descriptor and must stay open
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        LineBuffer line = LINE_BUFFERS.acquire();
+        try {
+            line.reset();
+            if (encoder instanceof ColorfulPatternEncoder) {
+                ((ColorfulPatternEncoder) encoder).encodeTo(event, line);
+            } else {
+                byte[] bytes = encoder.encode(event);
+                if (bytes != null) {
+                    line.append(bytes);
+                }
+            }
+            boolean urgent = event.getLevel() != null && event.getLevel().isGreaterOrEqual(immediateFlushLevel);
+            write(line, urgent);
+        } catch (IOException e) {
+            addError("Failed to write to " + target, e);
+        } finally {
+            line.trim(MAX_RETAINED_CAPACITY);
+            LINE_BUFFERS.release(line);
+        }
+    }
+
+    private void write(LineBuffer line, boolean urgent) throws IOException {
+        lock.lock();
+        try {
+            if (!isStarted()) {
+                return;
+            }
+            if (line.length() <= pending.remaining()) {
+                if (pending.position() == 0) {
+                    oldestPendingNanos = System.nanoTime();
+                }
+                pending.put(line.array(), 0, line.length());
+                if (urgent || !pending.hasRemaining()) {
+                    flush();
+                }
+            } else {
+                // gather the pending batch and the oversized line into one write, without copying the line
+                pending.flip();
+                gather[0] = pending;
+                gather[1] = ByteBuffer.wrap(line.array(), 0, line.length());
+                try {
+                    while (gather[1].hasRemaining()) {
+                        channel.write(gather);
+                        writeCount++;
+                    }
+                } finally {
+                    gather[1] = null;
+                    pending.clear();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushIfStale() {
+        lock.lock();
+        try {
+            if (isStarted() && pending.position() > 0
+                    && System.nanoTime() - oldestPendingNanos >= TimeUnit.MILLISECONDS.toNanos(maxFlushDelay.getMilliseconds())) {
+                flush();
+            }
+        } catch (IOException e) {
+            addError("Failed to write to " + target, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+                writeCount++;
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Get the number of write calls issued to the channel, for comparison with the number of events.
+     *
+     * @return the write call count
+     */
+    public long getWriteCount() {
+        lock.lock();
+        try {
+            return writeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public Duration getMaxFlushDelay() {
+        return maxFlushDelay;
+    }
+
+    public void setMaxFlushDelay(Duration maxFlushDelay) {
+        this.maxFlushDelay = maxFlushDelay;
+    }
+
+    public Level getImmediateFlushLevel() {
+        return immediateFlushLevel;
+    }
+
+    public void setImmediateFlushLevel(Level immediateFlushLevel) {
+        this.immediateFlushLevel = immediateFlushLevel;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public Encoder<ILoggingEvent> getEncoder() {
+        return encoder;
+    }
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+
+    void setChannel(GatheringByteChannel channel) {
+        this.channel = channel;
+    }
+}
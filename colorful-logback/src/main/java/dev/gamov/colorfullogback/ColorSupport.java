@@ -0,0 +1,163 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.core.Context;
+
+import java.io.Console;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides whether ANSI colors should be emitted at all.
+ * <p>
+ * The environment is inspected once per JVM, following the usual conventions:
+ * <ol>
+ *     <li>the {@value #COLOR_PROPERTY} logback context property or system property
+ *     ({@code always}, {@code never} or {@code auto}) wins when set</li>
+ *     <li>a non-empty {@code NO_COLOR} disables colors</li>
+ *     <li>{@code CLICOLOR_FORCE} set to anything but {@code 0} enables colors</li>
+ *     <li>{@code TERM=dumb} disables colors</li>
+ *     <li>otherwise colors are enabled only when the JVM is attached to a terminal</li>
+ * </ol>
+ * From JDK 22 on {@link System#console()} also returns a console when the output is piped or
+ * redirected, so the terminal check asks {@code Console.isTerminal()} where it exists. Before
+ * that a console exists only when both standard input and output are terminals, so redirecting
+ * standard input alone also turns colors off there.
+ * The color depth is resolved the same way: the {@value #DEPTH_PROPERTY} property ({@code 16},
+ * {@code 256} or {@code truecolor}) wins, otherwise {@code COLORTERM=truecolor} or {@code 24bit}
+ * means truecolor, a {@code TERM} containing {@code 256color} means 256 colors, and anything
+ * else is treated as a 16-color terminal.
+ */
+final class ColorSupport {
+
+    static final String COLOR_PROPERTY = "colorful.logback.color";
+    static final String DEPTH_PROPERTY = "colorful.logback.colorDepth";
+
+    private static final MethodHandle IS_TERMINAL = findIsTerminal();
+    private static final boolean ENVIRONMENT_SUPPORTS_COLOR =
+            detect(System.getenv(), isTerminal(System.console(), IS_TERMINAL));
+    private static final AnsiColors.Depth ENVIRONMENT_DEPTH = detectDepth(System.getenv());
+
+    private ColorSupport() {
+    }
+
+    /**
+     * Resolve the color mode for converters started in the given context.
+     *
+     * @param context the logback context, may be null
+     * @return true if ANSI sequences should be written
+     */
+    static boolean isColorEnabled(Context context) {
+        String mode = context != null ? context.getProperty(COLOR_PROPERTY) : null;
+        if (mode == null) {
+            mode = System.getProperty(COLOR_PROPERTY);
+        }
+        return resolve(mode, ENVIRONMENT_SUPPORTS_COLOR);
+    }
+
+    /**
+     * Resolve the color depth for converters started in the given context.
+     *
+     * @param context the logback context, may be null
+     * @return the number of colors the terminal can show
+     */
+    static AnsiColors.Depth colorDepth(Context context) {
+        String depth = context != null ? context.getProperty(DEPTH_PROPERTY) : null;
+        if (depth == null) {
+            depth = System.getProperty(DEPTH_PROPERTY);
+        }
+        return resolveDepth(depth, ENVIRONMENT_DEPTH);
+    }
+
+    static AnsiColors.Depth resolveDepth(String depth, AnsiColors.Depth environmentDepth) {
+        if (depth != null) {
+            switch (depth.trim().toLowerCase(Locale.ROOT)) {
+                case "16":
+                    return AnsiColors.Depth.ANSI_16;
+                case "256":
+                    return AnsiColors.Depth.ANSI_256;
+                case "truecolor":
+                case "24bit":
+                    return AnsiColors.Depth.TRUECOLOR;
+                default:
+                    break;
+            }
+        }
+        return environmentDepth;
+    }
+
+    static AnsiColors.Depth detectDepth(Map<String, String> env) {
+        String colorTerm = env.get("COLORTERM");
+        if ("truecolor".equals(colorTerm) || "24bit".equals(colorTerm)) {
+            return AnsiColors.Depth.TRUECOLOR;
+        }
+        String term = env.get("TERM");
+        if (term != null && term.contains("256color")) {
+            return AnsiColors.Depth.ANSI_256;
+        }
+        return AnsiColors.Depth.ANSI_16;
+    }
+
+    static boolean resolve(String mode, boolean environmentSupportsColor) {
+        if (mode != null) {
+            switch (mode.trim().toLowerCase(Locale.ROOT)) {
+                case "always":
+                case "true":
+                    return true;
+                case "never":
+                case "false":
+                    return false;
+                default:
+                    break;
+            }
+        }
+        return environmentSupportsColor;
+    }
+
+    static boolean detect(Map<String, String> env, boolean terminal) {
+        String noColor = env.get("NO_COLOR");
+        if (noColor != null && !noColor.isEmpty()) {
+            return false;
+        }
+        String forceColor = env.get("CLICOLOR_FORCE");
+        if (forceColor != null && !forceColor.isEmpty() && !"0".equals(forceColor)) {
+            return true;
+        }
+        if ("dumb".equals(env.get("TERM"))) {
+            return false;
+        }
+        return terminal;
+    }
+
+    /**
+     * Whether the console is attached to a terminal.
+     *
+     * @param console the console, may be null
+     * @param isTerminal {@code Console.isTerminal()}, or null before JDK 22, where a console
+     *                   exists only for a terminal
+     */
+    static boolean isTerminal(Object console, MethodHandle isTerminal) {
+        if (console == null) {
+            return false;
+        }
+        if (isTerminal == null) {
+            return true;
+        }
+        try {
+            return (boolean) isTerminal.invoke(console);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle findIsTerminal() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(Console.class, "isTerminal", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
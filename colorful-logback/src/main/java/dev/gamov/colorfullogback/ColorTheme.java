@@ -0,0 +1,183 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.core.pattern.color.ANSIConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * An immutable, compiled color theme: one escape sequence per converter role and level.
+ * <p>
+ * Themes are written as properties (or the XML properties format) with one key per role and level:
+ * <pre>
+ * level.error   = bold #ff5f5f
+ * level.warn    = color(214)
+ * level.info    = green
+ * package.info  = brightCyan
+ * message.debug = rgb(135, 135, 255)
+ * argument.info = bold underline green
+ * </pre>
+ * Roles are {@code level} ({@code %colorLevel}, {@code %colorTimeLevel}), {@code package}
+ * ({@code %colorPackage}, {@code %colorCaller}), {@code message} ({@code %colorMessage},
+ * {@code %colorArgs}) and {@code argument} (the arguments in {@code %colorArgs}). Levels are
+ * {@code error}, {@code warn}, {@code info}, {@code debug} and {@code trace}. Colors use the
+ * syntax of {@link AnsiColors} and are compiled for the terminal's color depth, so a truecolor
+ * theme degrades to the nearest 256 or 16 colors. Keys that are left out keep the built-in
+ * colors; {@code message} falls back to {@code level}, and {@code argument} to the bold
+ * {@code message} color.
+ */
+final class ColorTheme {
+
+    /**
+     * Converter role a color table is used for
+     */
+    enum Role {
+        LEVEL,
+        PACKAGE,
+        MESSAGE,
+        ARGUMENT;
+
+        final String key = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final String[] LEVEL_KEYS = {"error", "warn", "info", "debug", "trace"};
+    private static final Level[] INDEXED_LEVELS = {Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.TRACE};
+
+    private static final ColorTheme DEFAULTS = compile("default", new Properties(), AnsiColors.Depth.TRUECOLOR);
+
+    private final String name;
+    private final AnsiSequence[][] tables;
+
+    private ColorTheme(String name, AnsiSequence[][] tables) {
+        this.name = name;
+        this.tables = tables;
+    }
+
+    /**
+     * The built-in colors, identical to the converters' hard-coded defaults.
+     *
+     * @return the default theme
+     */
+    static ColorTheme defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Read a theme in the properties format, or the XML properties format when the name ends in {@code .xml}.
+     *
+     * @param name the theme name, usually the file name
+     * @param in the theme contents
+     * @param depth the color depth to compile for
+     * @return the compiled theme
+     * @throws IOException if the contents cannot be read
+     * @throws IllegalArgumentException if a key or color is invalid
+     */
+    static ColorTheme read(String name, InputStream in, AnsiColors.Depth depth) throws IOException {
+        Properties properties = new Properties();
+        if (name.toLowerCase(Locale.ROOT).endsWith(".xml")) {
+            properties.loadFromXML(in);
+        } else {
+            properties.load(in);
+        }
+        return compile(name, properties, depth);
+    }
+
+    /**
+     * Compile theme properties into lookup tables.
+     *
+     * @param name the theme name
+     * @param properties the role and level keys
+     * @param depth the color depth to compile for
+     * @return the compiled theme
+     * @throws IllegalArgumentException if a key or color is invalid
+     */
+    static ColorTheme compile(String name, Properties properties, AnsiColors.Depth depth) {
+        for (String key : properties.stringPropertyNames()) {
+            if (!isKnownKey(key)) {
+                throw new IllegalArgumentException("Unknown theme key [" + key + "] in " + name);
+            }
+        }
+        String[][] codes = new String[Role.values().length][];
+        codes[Role.LEVEL.ordinal()] = codes(properties, Role.LEVEL, depth, builtIn(Role.LEVEL));
+        codes[Role.PACKAGE.ordinal()] = codes(properties, Role.PACKAGE, depth, builtIn(Role.PACKAGE));
+        codes[Role.MESSAGE.ordinal()] = codes(properties, Role.MESSAGE, depth, codes[Role.LEVEL.ordinal()]);
+        String[] boldMessage = new String[LEVEL_KEYS.length];
+        for (int i = 0; i < boldMessage.length; i++) {
+            boldMessage[i] = ANSIConstants.BOLD + codes[Role.MESSAGE.ordinal()][i];
+        }
+        codes[Role.ARGUMENT.ordinal()] = codes(properties, Role.ARGUMENT, depth, boldMessage);
+
+        AnsiSequence[][] tables = new AnsiSequence[codes.length][];
+        for (Role role : Role.values()) {
+            AnsiSequence[] table = new AnsiSequence[BaseColorConverter.DEFAULT_INDEX + 1];
+            for (int i = 0; i < LEVEL_KEYS.length; i++) {
+                table[i] = AnsiSequence.of(codes[role.ordinal()][i]);
+            }
+            table[BaseColorConverter.DEFAULT_INDEX] = AnsiSequence.of(role == Role.ARGUMENT
+                    ? ANSIConstants.BOLD + ANSIConstants.DEFAULT_FG
+                    : ANSIConstants.DEFAULT_FG);
+            tables[role.ordinal()] = table;
+        }
+        return new ColorTheme(name, tables);
+    }
+
+    /**
+     * The escape sequences of a role, indexed by {@link BaseColorConverter#levelIndex(Level)}.
+     * The returned array must not be modified.
+     *
+     * @param role the converter role
+     * @return the lookup table
+     */
+    AnsiSequence[] table(Role role) {
+        return tables[role.ordinal()];
+    }
+
+    String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "ColorTheme[" + name + "]";
+    }
+
+    private static String[] codes(Properties properties, Role role, AnsiColors.Depth depth, String[] fallback) {
+        String[] codes = new String[LEVEL_KEYS.length];
+        for (int i = 0; i < LEVEL_KEYS.length; i++) {
+            String spec = properties.getProperty(role.key + '.' + LEVEL_KEYS[i]);
+            codes[i] = spec == null || spec.trim().isEmpty() ? fallback[i] : AnsiColors.parse(spec, depth);
+        }
+        return codes;
+    }
+
+    private static String[] builtIn(Role role) {
+        String[] codes = new String[LEVEL_KEYS.length];
+        for (int i = 0; i < LEVEL_KEYS.length; i++) {
+            codes[i] = role == Role.PACKAGE && i > BaseColorConverter.WARN_INDEX
+                    ? ANSIConstants.CYAN_FG
+                    : BaseColorConverter.defaultColorForLevel(INDEXED_LEVELS[i]);
+        }
+        return codes;
+    }
+
+    private static boolean isKnownKey(String key) {
+        int dot = key.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        String roleKey = key.substring(0, dot);
+        String levelKey = key.substring(dot + 1);
+        boolean knownRole = false;
+        for (Role role : Role.values()) {
+            knownRole |= role.key.equals(roleKey);
+        }
+        boolean knownLevel = false;
+        for (String level : LEVEL_KEYS) {
+            knownLevel |= level.equals(levelKey);
+        }
+        return knownRole && knownLevel;
+    }
+}
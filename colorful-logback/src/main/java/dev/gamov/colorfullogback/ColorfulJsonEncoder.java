@@ -0,0 +1,572 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.encoder.EncoderBase;
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoder writing one JSON object per event, for log pipelines, or the same object pretty-printed
+ * and colored for a developer's terminal.
+ * <p>
+ * The JSON is written straight into a reused per-thread byte buffer: strings are escaped and
+ * UTF-8 encoded as they are copied, keys are pre-encoded, and numbers and the timestamp are
+ * printed digit by digit, so no object tree, builder or intermediate String is created per event
+ * (the formatted message is the event's own, shared with every other appender). The output
+ * carries the timestamp (ISO-8601 in UTC), level, thread, logger, formatted message, the raw
+ * arguments as JSON values, MDC, markers, key-value pairs and the throwable with its frames,
+ * causes and suppressed exceptions; empty fields are left out:
+ * <pre>
+ * {"timestamp":"2025-07-01T12:02:00.123Z","level":"ERROR","thread":"http-1","logger":"com.example.Orders",
+ *  "message":"Payment of 12 failed","arguments":[12],"mdc":{"requestId":"a1"},
+ *  "throwable":{"class":"java.lang.IllegalStateException","message":"declined","frames":[...]}}
+ * </pre>
+ * With {@code pretty} set, each member goes on its own indented line, and when colors are enabled
+ * (see {@link ColorSupport}) keys and the level are colored with the event level's color, the
+ * message and arguments with the message and argument colors, as the converters and the
+ * configured {@link ColorTheme} map them. One configuration serves both profiles:
+ * <pre>
+ * &lt;encoder class="dev.gamov.colorfullogback.ColorfulJsonEncoder"&gt;
+ *     &lt;pretty&gt;${JSON_PRETTY}&lt;/pretty&gt;
+ * &lt;/encoder&gt;
+ * </pre>
+ * Caller data and sequence numbers are not written.
+ */
+public class ColorfulJsonEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadBuffers<Scratch> SCRATCH = new ThreadBuffers<>(Scratch::new);
+
+    private static final byte[] TIMESTAMP = key("timestamp");
+    private static final byte[] LEVEL = key("level");
+    private static final byte[] THREAD = key("thread");
+    private static final byte[] LOGGER = key("logger");
+    private static final byte[] MESSAGE = key("message");
+    private static final byte[] ARGUMENTS = key("arguments");
+    private static final byte[] MDC = key("mdc");
+    private static final byte[] MARKERS = key("markers");
+    private static final byte[] KEY_VALUES = key("keyValues");
+    private static final byte[] THROWABLE = key("throwable");
+    private static final byte[] CLASS = key("class");
+    private static final byte[] FRAMES = key("frames");
+    private static final byte[] COMMON_FRAMES = key("commonFrames");
+    private static final byte[] CIRCULAR = key("circular");
+    private static final byte[] SUPPRESSED = key("suppressed");
+    private static final byte[] CAUSE = key("cause");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    private static final byte[] INDENT = ascii("                                ");
+
+    private boolean pretty;
+    private boolean colorEnabled;
+    private ThemeHolder theme;
+
+    @Override
+    public void start() {
+        colorEnabled = pretty && ColorSupport.isColorEnabled(getContext());
+        theme = colorEnabled ? ThemeHolder.forContext(getContext()) : null;
+        super.start();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        Scratch scratch = SCRATCH.acquire();
+        try {
+            scratch.writer.out.reset();
+            encodeTo(event, scratch);
+            return scratch.writer.out.toByteArray();
+        } finally {
+            scratch.writer.out.trim(MAX_RETAINED_CAPACITY);
+            SCRATCH.release(scratch);
+        }
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    private void encodeTo(ILoggingEvent event, Scratch scratch) {
+        Writer json = scratch.writer;
+        if (colorEnabled) {
+            ColorTheme colors = theme != null ? theme.current() : ColorTheme.defaults();
+            int level = BaseColorConverter.levelIndex(event.getLevel());
+            json.start(pretty, colors.table(ColorTheme.Role.LEVEL)[level]);
+            scratch.messageColor = colors.table(ColorTheme.Role.MESSAGE)[level];
+            scratch.argumentColor = colors.table(ColorTheme.Role.ARGUMENT)[level];
+        } else {
+            json.start(pretty, null);
+            scratch.messageColor = null;
+            scratch.argumentColor = null;
+        }
+
+        json.openObject();
+        json.name(TIMESTAMP);
+        timestamp(scratch, event.getTimeStamp());
+        json.name(LEVEL);
+        Level level = event.getLevel();
+        json.string(level == null ? null : level.levelStr, json.keyColor);
+        json.name(THREAD);
+        json.string(event.getThreadName(), null);
+        json.name(LOGGER);
+        json.string(event.getLoggerName(), null);
+        json.name(MESSAGE);
+        json.string(event.getFormattedMessage(), scratch.messageColor);
+        writeArguments(scratch, event.getArgumentArray());
+        writeMdc(json, event.getMDCPropertyMap());
+        writeMarkers(json, event.getMarkerList());
+        writeKeyValuePairs(scratch, event.getKeyValuePairs());
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            json.name(THROWABLE);
+            writeThrowable(json, throwable);
+        }
+        json.closeObject();
+        json.out.append((byte) '\n');
+    }
+
+    private static void writeArguments(Scratch scratch, Object[] arguments) {
+        if (arguments == null || arguments.length == 0) {
+            return;
+        }
+        Writer json = scratch.writer;
+        json.name(ARGUMENTS);
+        json.openArray();
+        for (Object argument : arguments) {
+            json.element();
+            value(json, argument, scratch.argumentColor);
+        }
+        json.closeArray();
+    }
+
+    private static void writeMdc(Writer json, Map<String, String> mdc) {
+        if (mdc == null || mdc.isEmpty()) {
+            return;
+        }
+        json.name(MDC);
+        json.openObject();
+        for (Map.Entry<String, String> entry : mdc.entrySet()) {
+            json.name(entry.getKey());
+            json.string(entry.getValue(), null);
+        }
+        json.closeObject();
+    }
+
+    private static void writeMarkers(Writer json, List<Marker> markers) {
+        if (markers == null || markers.isEmpty()) {
+            return;
+        }
+        json.name(MARKERS);
+        json.openArray();
+        for (Marker marker : markers) {
+            json.element();
+            json.string(marker.getName(), null);
+        }
+        json.closeArray();
+    }
+
+    private static void writeKeyValuePairs(Scratch scratch, List<KeyValuePair> pairs) {
+        if (pairs == null || pairs.isEmpty()) {
+            return;
+        }
+        Writer json = scratch.writer;
+        json.name(KEY_VALUES);
+        json.openObject();
+        for (KeyValuePair pair : pairs) {
+            json.name(pair.key);
+            value(json, pair.value, scratch.argumentColor);
+        }
+        json.closeObject();
+    }
+
+    private static void writeThrowable(Writer json, IThrowableProxy throwable) {
+        json.openObject();
+        json.name(CLASS);
+        json.string(throwable.getClassName(), null);
+        if (throwable.getMessage() != null) {
+            json.name(MESSAGE);
+            json.string(throwable.getMessage(), null);
+        }
+        if (throwable.isCyclic()) {
+            json.name(CIRCULAR);
+            json.out.append(TRUE);
+            json.closeObject();
+            return;
+        }
+        StackTraceElementProxy[] frames = throwable.getStackTraceElementProxyArray();
+        int common = throwable.getCommonFrames();
+        int shown = frames == null ? 0 : frames.length - common;
+        if (shown > 0) {
+            json.name(FRAMES);
+            json.openArray();
+            for (int i = 0; i < shown; i++) {
+                json.element();
+                frame(json.out, frames[i].getStackTraceElement());
+            }
+            json.closeArray();
+        }
+        if (common > 0) {
+            json.name(COMMON_FRAMES);
+            number(json.out, common);
+        }
+        IThrowableProxy[] suppressed = throwable.getSuppressed();
+        if (suppressed != null && suppressed.length > 0) {
+            json.name(SUPPRESSED);
+            json.openArray();
+            for (IThrowableProxy each : suppressed) {
+                json.element();
+                writeThrowable(json, each);
+            }
+            json.closeArray();
+        }
+        if (throwable.getCause() != null) {
+            json.name(CAUSE);
+            writeThrowable(json, throwable.getCause());
+        }
+        json.closeObject();
+    }
+
+    /**
+     * Write a frame as {@code "class.method(File.java:42)"}.
+     */
+    private static void frame(LineBuffer out, StackTraceElement frame) {
+        out.append((byte) '"');
+        escaped(out, frame.getClassName());
+        out.append((byte) '.');
+        escaped(out, frame.getMethodName());
+        out.append((byte) '(');
+        if (frame.isNativeMethod()) {
+            out.appendUtf8("Native Method");
+        } else if (frame.getFileName() == null) {
+            out.appendUtf8("Unknown Source");
+        } else {
+            escaped(out, frame.getFileName());
+            if (frame.getLineNumber() >= 0) {
+                out.append((byte) ':');
+                number(out, frame.getLineNumber());
+            }
+        }
+        out.append((byte) ')');
+        out.append((byte) '"');
+    }
+
+    /**
+     * Write an argument as a JSON number or boolean where it is one, otherwise as the string
+     * SLF4J would substitute for it.
+     */
+    private static void value(Writer json, Object value, AnsiSequence color) {
+        if (value == null) {
+            json.literal(NULL, color);
+        } else if (value instanceof Boolean) {
+            json.literal((Boolean) value ? TRUE : FALSE, color);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            json.colorOn(color);
+            number(json.out, ((Number) value).longValue());
+            json.colorOff(color);
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                json.string(value.toString(), color);
+            } else {
+                json.colorOn(color);
+                json.out.appendUtf8(value.toString());
+                json.colorOff(color);
+            }
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            json.colorOn(color);
+            json.out.appendUtf8(value.toString());
+            json.colorOff(color);
+        } else {
+            json.string(BinaryLogEncoder.argumentText(value), color);
+        }
+    }
+
+    /**
+     * Write the timestamp as {@code "yyyy-MM-ddTHH:mm:ss.SSSZ"}, formatting the date and time
+     * only when the second changes.
+     */
+    private static void timestamp(Scratch scratch, long millis) {
+        long second = Math.floorDiv(millis, 1000L);
+        if (second != scratch.second) {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+            byte[] text = scratch.secondText;
+            digits(text, 0, time.getYear(), 4);
+            text[4] = '-';
+            digits(text, 5, time.getMonthValue(), 2);
+            text[7] = '-';
+            digits(text, 8, time.getDayOfMonth(), 2);
+            text[10] = 'T';
+            digits(text, 11, time.getHour(), 2);
+            text[13] = ':';
+            digits(text, 14, time.getMinute(), 2);
+            text[16] = ':';
+            digits(text, 17, time.getSecond(), 2);
+            text[19] = '.';
+            scratch.second = second;
+        }
+        LineBuffer out = scratch.writer.out;
+        out.append((byte) '"');
+        out.append(scratch.secondText);
+        int fraction = (int) Math.floorMod(millis, 1000L);
+        out.append((byte) ('0' + fraction / 100));
+        out.append((byte) ('0' + fraction / 10 % 10));
+        out.append((byte) ('0' + fraction % 10));
+        out.append((byte) 'Z');
+        out.append((byte) '"');
+    }
+
+    private static void digits(byte[] text, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            text[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * Write a whole number without going through a String.
+     */
+    static void number(LineBuffer out, long value) {
+        if (value == Long.MIN_VALUE) {
+            out.appendUtf8(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            out.append((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Append the string with JSON escaping: quote, backslash and control characters are escaped,
+     * everything else is copied as UTF-8 in runs.
+     */
+    static void escaped(LineBuffer out, String s) {
+        int length = s.length();
+        int run = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            if (i > run) {
+                out.appendUtf8(s, run, i);
+            }
+            out.append((byte) '\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.append((byte) c);
+                    break;
+                case '\n':
+                    out.append((byte) 'n');
+                    break;
+                case '\r':
+                    out.append((byte) 'r');
+                    break;
+                case '\t':
+                    out.append((byte) 't');
+                    break;
+                case '\b':
+                    out.append((byte) 'b');
+                    break;
+                case '\f':
+                    out.append((byte) 'f');
+                    break;
+                default:
+                    out.append((byte) 'u');
+                    out.append((byte) '0');
+                    out.append((byte) '0');
+                    out.append(HEX[c >> 4]);
+                    out.append(HEX[c & 0xF]);
+            }
+            run = i + 1;
+        }
+        if (run < length) {
+            out.appendUtf8(s, run, length);
+        }
+    }
+
+    private static byte[] key(String name) {
+        return ascii('"' + name + '"');
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public boolean isPretty() {
+        return pretty;
+    }
+
+    public void setPretty(boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    /**
+     * Per-thread state of one encode call.
+     */
+    private static final class Scratch {
+        final Writer writer = new Writer(new LineBuffer());
+        final byte[] secondText = new byte[20];
+        long second = Long.MIN_VALUE;
+        AnsiSequence messageColor;
+        AnsiSequence argumentColor;
+    }
+
+    /**
+     * Writes JSON tokens, with the separators and, when pretty-printing, the line breaks and
+     * indentation between them. Only whether the current container has a member yet is tracked:
+     * closing a container always leaves its parent with one.
+     */
+    private static final class Writer {
+        final LineBuffer out;
+        boolean pretty;
+        AnsiSequence keyColor;
+        private int depth;
+        private boolean first;
+
+        Writer(LineBuffer out) {
+            this.out = out;
+        }
+
+        void start(boolean pretty, AnsiSequence keyColor) {
+            this.pretty = pretty;
+            this.keyColor = keyColor;
+            depth = 0;
+            first = true;
+        }
+
+        void openObject() {
+            out.append((byte) '{');
+            depth++;
+            first = true;
+        }
+
+        void closeObject() {
+            close((byte) '}');
+        }
+
+        void openArray() {
+            out.append((byte) '[');
+            depth++;
+            first = true;
+        }
+
+        void closeArray() {
+            close((byte) ']');
+        }
+
+        /**
+         * Start a member with a pre-encoded, quoted key.
+         */
+        void name(byte[] quotedKey) {
+            element();
+            colorOn(keyColor);
+            out.append(quotedKey);
+            colorOff(keyColor);
+            separator();
+        }
+
+        /**
+         * Start a member with a key that may need escaping.
+         */
+        void name(String key) {
+            element();
+            string(key, keyColor);
+            separator();
+        }
+
+        /**
+         * Start an array element or object member.
+         */
+        void element() {
+            if (!first) {
+                out.append((byte) ',');
+            }
+            first = false;
+            newLine(depth);
+        }
+
+        void string(String s, AnsiSequence color) {
+            if (s == null) {
+                literal(NULL, color);
+                return;
+            }
+            colorOn(color);
+            out.append((byte) '"');
+            escaped(out, s);
+            out.append((byte) '"');
+            colorOff(color);
+        }
+
+        void literal(byte[] literal, AnsiSequence color) {
+            colorOn(color);
+            out.append(literal);
+            colorOff(color);
+        }
+
+        void colorOn(AnsiSequence color) {
+            if (color != null) {
+                out.append(color.bytes);
+            }
+        }
+
+        void colorOff(AnsiSequence color) {
+            if (color != null) {
+                out.append(AnsiSequence.RESET.bytes);
+            }
+        }
+
+        private void separator() {
+            out.append((byte) ':');
+            if (pretty) {
+                out.append((byte) ' ');
+            }
+        }
+
+        private void close(byte bracket) {
+            depth--;
+            if (!first) {
+                newLine(depth);
+            }
+            out.append(bracket);
+            first = false;
+        }
+
+        private void newLine(int indent) {
+            if (!pretty) {
+                return;
+            }
+            out.append((byte) '\n');
+            for (int spaces = indent * 2; spaces > 0; spaces -= INDENT.length) {
+                out.append(INDENT, 0, Math.min(spaces, INDENT.length));
+            }
+        }
+    }
+}
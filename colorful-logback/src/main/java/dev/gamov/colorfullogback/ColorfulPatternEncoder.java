@@ -0,0 +1,165 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.pattern.EnsureExceptionHandling;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Encoder that renders a (colored) pattern straight into a per-thread byte buffer.
+ * <p>
+ * Unlike {@code PatternLayoutEncoder}, the line is never materialized as a String:
+ * the colorful converters copy their pre-encoded ANSI sequences into the buffer,
+ * other converters are UTF-8 encoded as they are appended, and the appender receives
+ * a single copy of the rendered bytes. It is a drop-in replacement:
+ * <pre>
+ * &lt;encoder class="dev.gamov.colorfullogback.ColorfulPatternEncoder"&gt;
+ *     &lt;pattern&gt;%colorLevel(%-5level) %colorMessage(%msg%n)&lt;/pattern&gt;
+ * &lt;/encoder&gt;
+ * </pre>
+ * Charsets other than UTF-8 fall back to regular String rendering.
+ * <p>
+ * The encoder counts the bytes it renders and, when a listener is registered (see
+ * {@link LoggingPipelineMetrics}), reports the time spent per event; without a listener the
+ * clock is never read.
+ */
+public class ColorfulPatternEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadBuffers<LineBuffer> LINE_BUFFERS = new ThreadBuffers<>(LineBuffer::new);
+
+    private String pattern;
+    private Charset charset = StandardCharsets.UTF_8;
+    private PatternLayout layout;
+    private ConverterChainWriter chainWriter;
+    private boolean utf8;
+    private final LongAdder bytesEncoded = new LongAdder();
+    private volatile LongConsumer encodeTimeListener;
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    @Override
+    public void start() {
+        if (pattern == null || pattern.isEmpty()) {
+            addError("No pattern set for ColorfulPatternEncoder");
+            return;
+        }
+        EnsureExceptionHandling ensureExceptionHandling = new EnsureExceptionHandling();
+        PatternLayout patternLayout = new PatternLayout();
+        patternLayout.setContext(context);
+        patternLayout.setPattern(pattern);
+        patternLayout.setPostCompileProcessor((ctx, compiledHead) -> {
+            ensureExceptionHandling.process(ctx, compiledHead);
+            chainWriter = ConverterChainWriter.compile(compiledHead);
+        });
+        patternLayout.start();
+        if (!patternLayout.isStarted()) {
+            addError("Failed to start the pattern layout for \"" + pattern + "\"");
+            return;
+        }
+        this.layout = patternLayout;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        if (layout != null) {
+            layout.stop();
+        }
+        super.stop();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        LineBuffer out = LINE_BUFFERS.acquire();
+        try {
+            encodeTo(event, out);
+            return out.toByteArray();
+        } finally {
+            out.trim(MAX_RETAINED_CAPACITY);
+            LINE_BUFFERS.release(out);
+        }
+    }
+
+    /**
+     * Render the event into the given buffer, appending to whatever it already holds.
+     * Appenders that manage their own output buffers use this to avoid the byte[] copy
+     * required by {@link #encode(ILoggingEvent)}.
+     *
+     * @param event the logging event
+     * @param out the buffer to append to
+     */
+    void encodeTo(ILoggingEvent event, LineBuffer out) {
+        LongConsumer listener = encodeTimeListener;
+        long start = listener != null ? System.nanoTime() : 0L;
+        int before = out.length();
+        render(event, out);
+        bytesEncoded.add(out.length() - before);
+        if (listener != null) {
+            listener.accept(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Run the converter chain for the event and append the result to the buffer.
+     *
+     * @param event the logging event
+     * @param out the buffer to append to
+     */
+    void render(ILoggingEvent event, LineBuffer out) {
+        if (utf8) {
+            chainWriter.write(event, out);
+        } else {
+            out.append(layout.doLayout(event).getBytes(charset));
+        }
+    }
+
+    /**
+     * Get the number of bytes rendered by this encoder, which for the appenders of this library
+     * is the number of bytes they wrote.
+     *
+     * @return the rendered byte count
+     */
+    public long getBytesEncoded() {
+        return bytesEncoded.sum();
+    }
+
+    /**
+     * Register a listener receiving the time spent rendering each event, in nanoseconds.
+     *
+     * @param encodeTimeListener the listener, or null to stop timing
+     */
+    public void setEncodeTimeListener(LongConsumer encodeTimeListener) {
+        this.encodeTimeListener = encodeTimeListener;
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+}
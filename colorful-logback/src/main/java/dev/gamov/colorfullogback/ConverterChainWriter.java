@@ -0,0 +1,69 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.Converter;
+import ch.qos.logback.core.pattern.FormattingConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A converter chain compiled for rendering into a {@link LineBuffer}.
+ * <p>
+ * The chain is classified once: byte-aware converters write directly into the buffer,
+ * and runs of all other converters are rendered together into the buffer's scratch
+ * builder and encoded in one pass. Nothing is type-checked per event.
+ */
+final class ConverterChainWriter {
+
+    private final Converter<ILoggingEvent>[] converters;
+    private final ByteWritingConverter[] byteWriters;
+
+    private ConverterChainWriter(Converter<ILoggingEvent>[] converters, ByteWritingConverter[] byteWriters) {
+        this.converters = converters;
+        this.byteWriters = byteWriters;
+    }
+
+    static ConverterChainWriter compile(Converter<ILoggingEvent> head) {
+        List<Converter<ILoggingEvent>> chain = new ArrayList<>();
+        for (Converter<ILoggingEvent> c = head; c != null; c = c.getNext()) {
+            chain.add(c);
+        }
+        // generic arrays cannot be created, so the array is made raw and typed by the assignment
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Converter<ILoggingEvent>[] converters = chain.toArray(new Converter[0]);
+        ByteWritingConverter[] byteWriters = new ByteWritingConverter[converters.length];
+        for (int i = 0; i < converters.length; i++) {
+            if (converters[i] instanceof ByteWritingConverter && isUnformatted(converters[i])) {
+                byteWriters[i] = (ByteWritingConverter) converters[i];
+            }
+        }
+        return new ConverterChainWriter(converters, byteWriters);
+    }
+
+    void write(ILoggingEvent event, LineBuffer out) {
+        StringBuilder pending = null;
+        for (int i = 0; i < converters.length; i++) {
+            ByteWritingConverter byteWriter = byteWriters[i];
+            if (byteWriter != null) {
+                if (pending != null) {
+                    out.appendUtf8(pending);
+                    pending = null;
+                }
+                byteWriter.writeTo(out, event);
+            } else {
+                if (pending == null) {
+                    pending = out.scratch();
+                }
+                converters[i].write(pending, event);
+            }
+        }
+        if (pending != null) {
+            out.appendUtf8(pending);
+        }
+    }
+
+    private static boolean isUnformatted(Converter<ILoggingEvent> c) {
+        return !(c instanceof FormattingConverter) || ((FormattingConverter<ILoggingEvent>) c).getFormattingInfo() == null;
+    }
+}
@@ -0,0 +1,310 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.color.ANSIConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Custom converter rendering the log message with its arguments highlighted.
+ * <p>
+ * The message is colored like {@code %colorMessage(%msg)}, and every value substituted for a
+ * {@code {}} placeholder is shown in a distinct color: the bold variant of the level color by
+ * default, or the color given as option ({@code %colorArgs{boldYellow}}, see {@link AnsiColors}).
+ * The text matches SLF4J's {@code MessageFormatter}, including {@code \{}} escapes.
+ * <p>
+ * Instead of formatting the whole message into a String first, the template is parsed once into
+ * its placeholder positions and literal UTF-8 bytes, and each event writes the literal slices and
+ * the arguments straight into the output buffer. Parsed templates are cached by identity in a
+ * bounded cache, as templates are almost always constants.
+ * <p>
+ * With a {@link ColorTheme} configured, the message and argument colors come from the theme's
+ * {@code message} and {@code argument} roles; a color given as option still wins for arguments.
+ */
+public class CustomHighlightingArguments extends ClassicConverter implements ByteWritingConverter {
+
+    static final int CACHE_SIZE = 1024;
+
+    private static final Level[] INDEXED_LEVELS = {Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.TRACE};
+
+    private final BoundedCache<String, MessageTemplate> templates = new BoundedCache<>(CACHE_SIZE, true);
+    private AnsiSequence[] messagePrefixes;
+    private AnsiSequence[] argumentPrefixes;
+    private ThemeHolder theme;
+    private boolean themedArguments;
+    private boolean colorEnabled = true;
+
+    @Override
+    public void start() {
+        String argumentColor = null;
+        List<String> options = getOptionList();
+        if (options != null && !options.isEmpty() && !options.get(0).trim().isEmpty()) {
+            try {
+                argumentColor = AnsiColors.parse(options.get(0), ColorSupport.colorDepth(getContext()));
+            } catch (IllegalArgumentException e) {
+                addError("Invalid argument color: " + e.getMessage());
+            }
+        }
+        messagePrefixes = new AnsiSequence[BaseColorConverter.DEFAULT_INDEX + 1];
+        argumentPrefixes = new AnsiSequence[BaseColorConverter.DEFAULT_INDEX + 1];
+        for (int i = 0; i <= BaseColorConverter.DEFAULT_INDEX; i++) {
+            String levelColor = i < INDEXED_LEVELS.length
+                    ? BaseColorConverter.defaultColorForLevel(INDEXED_LEVELS[i])
+                    : ANSIConstants.DEFAULT_FG;
+            messagePrefixes[i] = AnsiSequence.of(levelColor);
+            argumentPrefixes[i] = AnsiSequence.of(argumentColor != null ? argumentColor : ANSIConstants.BOLD + levelColor);
+        }
+        colorEnabled = ColorSupport.isColorEnabled(getContext());
+        theme = colorEnabled ? ThemeHolder.forContext(getContext()) : null;
+        themedArguments = argumentColor == null;
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        StringBuilder buf = new StringBuilder(128);
+        int index = BaseColorConverter.levelIndex(event.getLevel());
+        AnsiSequence messagePrefix = null;
+        AnsiSequence argumentPrefix = null;
+        if (colorEnabled) {
+            ColorTheme current = theme != null ? theme.current() : null;
+            messagePrefix = messagePrefix(current, index);
+            argumentPrefix = argumentPrefix(current, index);
+            buf.append(messagePrefix.chars);
+        }
+        String message = event.getMessage();
+        Object[] arguments = event.getArgumentArray();
+        if (message == null || arguments == null || arguments.length == 0) {
+            buf.append(message);
+        } else {
+            template(message).render(buf, arguments, messagePrefix, argumentPrefix);
+        }
+        if (colorEnabled) {
+            buf.append(AnsiSequence.RESET.chars);
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public void writeTo(LineBuffer out, ILoggingEvent event) {
+        int index = BaseColorConverter.levelIndex(event.getLevel());
+        AnsiSequence messagePrefix = null;
+        AnsiSequence argumentPrefix = null;
+        if (colorEnabled) {
+            ColorTheme current = theme != null ? theme.current() : null;
+            messagePrefix = messagePrefix(current, index);
+            argumentPrefix = argumentPrefix(current, index);
+            out.append(messagePrefix.bytes);
+        }
+        String message = event.getMessage();
+        Object[] arguments = event.getArgumentArray();
+        if (message == null || arguments == null || arguments.length == 0) {
+            out.appendUtf8(String.valueOf(message));
+        } else {
+            template(message).render(out, arguments, messagePrefix, argumentPrefix);
+        }
+        if (colorEnabled) {
+            out.append(AnsiSequence.RESET.bytes);
+        }
+    }
+
+    private AnsiSequence messagePrefix(ColorTheme current, int index) {
+        return current != null ? current.table(ColorTheme.Role.MESSAGE)[index] : messagePrefixes[index];
+    }
+
+    private AnsiSequence argumentPrefix(ColorTheme current, int index) {
+        return current != null && themedArguments
+                ? current.table(ColorTheme.Role.ARGUMENT)[index]
+                : argumentPrefixes[index];
+    }
+
+    MessageTemplate template(String message) {
+        MessageTemplate template = templates.get(message);
+        if (template == null) {
+            template = MessageTemplate.parse(message);
+            templates.put(message, template);
+        }
+        return template;
+    }
+
+    /**
+     * A message template split at its placeholders, following the rules of SLF4J's
+     * {@code MessageFormatter.arrayFormat}: {@code \{}} is a literal {@code {}}, and
+     * {@code \\{}} is a backslash followed by a placeholder. Once the arguments run out,
+     * the rest of the template is copied verbatim.
+     */
+    static final class MessageTemplate {
+        static final byte PLACEHOLDER = 0;
+        static final byte ESCAPED = 1;
+        static final byte DOUBLE_ESCAPED = 2;
+
+        final String pattern;
+        final byte[] utf8;
+        final byte[] siteTypes;
+        final int[] siteChars;
+        final int[] siteBytes;
+
+        private MessageTemplate(String pattern, byte[] siteTypes, int[] siteChars) {
+            this.pattern = pattern;
+            this.utf8 = pattern.getBytes(StandardCharsets.UTF_8);
+            this.siteTypes = siteTypes;
+            this.siteChars = siteChars;
+            this.siteBytes = new int[siteChars.length];
+            for (int s = 0; s < siteChars.length; s++) {
+                siteBytes[s] = pattern.substring(0, siteChars[s]).getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+
+        static MessageTemplate parse(String pattern) {
+            byte[] types = new byte[8];
+            int[] positions = new int[8];
+            int count = 0;
+            int i = 0;
+            int j;
+            while ((j = pattern.indexOf("{}", i)) >= 0) {
+                byte type;
+                if (j > 0 && pattern.charAt(j - 1) == '\\') {
+                    type = j > 1 && pattern.charAt(j - 2) == '\\' ? DOUBLE_ESCAPED : ESCAPED;
+                } else {
+                    type = PLACEHOLDER;
+                }
+                if (count == types.length) {
+                    types = Arrays.copyOf(types, count * 2);
+                    positions = Arrays.copyOf(positions, count * 2);
+                }
+                types[count] = type;
+                positions[count] = j;
+                count++;
+                i = type == ESCAPED ? j + 1 : j + 2;
+            }
+            return new MessageTemplate(pattern, Arrays.copyOf(types, count), Arrays.copyOf(positions, count));
+        }
+
+        void render(StringBuilder buf, Object[] arguments, AnsiSequence messagePrefix, AnsiSequence argumentPrefix) {
+            int i = 0;
+            int used = 0;
+            for (int s = 0; s < siteTypes.length && used < arguments.length; s++) {
+                int j = siteChars[s];
+                switch (siteTypes[s]) {
+                    case ESCAPED:
+                        buf.append(pattern, i, j - 1).append('{');
+                        i = j + 1;
+                        break;
+                    case DOUBLE_ESCAPED:
+                        buf.append(pattern, i, j - 1);
+                        appendArgument(buf, arguments[used++], messagePrefix, argumentPrefix);
+                        i = j + 2;
+                        break;
+                    default:
+                        buf.append(pattern, i, j);
+                        appendArgument(buf, arguments[used++], messagePrefix, argumentPrefix);
+                        i = j + 2;
+                        break;
+                }
+            }
+            buf.append(pattern, i, pattern.length());
+        }
+
+        void render(LineBuffer out, Object[] arguments, AnsiSequence messagePrefix, AnsiSequence argumentPrefix) {
+            int ib = 0;
+            int used = 0;
+            for (int s = 0; s < siteTypes.length && used < arguments.length; s++) {
+                int jb = siteBytes[s];
+                switch (siteTypes[s]) {
+                    case ESCAPED:
+                        out.append(utf8, ib, jb - 1 - ib);
+                        out.append((byte) '{');
+                        ib = jb + 1;
+                        break;
+                    case DOUBLE_ESCAPED:
+                        out.append(utf8, ib, jb - 1 - ib);
+                        appendArgument(out, arguments[used++], messagePrefix, argumentPrefix);
+                        ib = jb + 2;
+                        break;
+                    default:
+                        out.append(utf8, ib, jb - ib);
+                        appendArgument(out, arguments[used++], messagePrefix, argumentPrefix);
+                        ib = jb + 2;
+                        break;
+                }
+            }
+            out.append(utf8, ib, utf8.length - ib);
+        }
+
+        private static void appendArgument(StringBuilder buf, Object argument,
+                                           AnsiSequence messagePrefix, AnsiSequence argumentPrefix) {
+            if (argumentPrefix != null) {
+                buf.append(argumentPrefix.chars);
+            }
+            buf.append(argumentText(argument));
+            if (messagePrefix != null) {
+                buf.append(messagePrefix.chars);
+            }
+        }
+
+        private static void appendArgument(LineBuffer out, Object argument,
+                                           AnsiSequence messagePrefix, AnsiSequence argumentPrefix) {
+            if (argumentPrefix != null) {
+                out.append(argumentPrefix.bytes);
+            }
+            if (argument instanceof String) {
+                out.appendUtf8((String) argument);
+            } else if (argument instanceof Integer || argument instanceof Long) {
+                StringBuilder digits = out.scratch();
+                digits.append(((Number) argument).longValue());
+                out.appendUtf8(digits);
+            } else {
+                out.appendUtf8(argumentText(argument));
+            }
+            if (messagePrefix != null) {
+                out.append(messagePrefix.bytes);
+            }
+        }
+
+        /**
+         * Render an argument the way SLF4J does: arrays element by element, and a failing
+         * {@code toString()} as {@code [FAILED toString()]}.
+         */
+        static String argumentText(Object argument) {
+            if (argument == null) {
+                return "null";
+            }
+            if (!argument.getClass().isArray()) {
+                try {
+                    return argument.toString();
+                } catch (Throwable t) {
+                    return "[FAILED toString()]";
+                }
+            }
+            if (argument instanceof Object[]) {
+                return Arrays.deepToString((Object[]) argument);
+            }
+            if (argument instanceof int[]) {
+                return Arrays.toString((int[]) argument);
+            }
+            if (argument instanceof long[]) {
+                return Arrays.toString((long[]) argument);
+            }
+            if (argument instanceof byte[]) {
+                return Arrays.toString((byte[]) argument);
+            }
+            if (argument instanceof short[]) {
+                return Arrays.toString((short[]) argument);
+            }
+            if (argument instanceof char[]) {
+                return Arrays.toString((char[]) argument);
+            }
+            if (argument instanceof boolean[]) {
+                return Arrays.toString((boolean[]) argument);
+            }
+            if (argument instanceof float[]) {
+                return Arrays.toString((float[]) argument);
+            }
+            return Arrays.toString((double[]) argument);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.pattern.Abbreviator;
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.pattern.TargetLengthBasedClassNameAbbreviator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.color.ANSIConstants;
+
+import java.lang.StackWalker.StackFrame;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Custom converter rendering the caller location as a colored {@code Class.method(line)}.
+ * <p>
+ * A cheap replacement for {@code %logger{36}.%M\(%line\)} when the logger name is the class name:
+ * <pre>
+ * %colorCaller{36}        class name abbreviated to 36 characters
+ * %colorCaller{36, 32}    ... and look at most 32 frames deep for the caller
+ * %colorCaller{36, palette, com.example.service=blue}
+ *                         ... colored per package like {@code %colorPackage(...){palette}}
+ * </pre>
+ * The caller is found with {@link StackWalker} instead of the full {@link Throwable} stack trace
+ * logback builds for {@code %M} and {@code %line}, and the rendered text is cached per call site,
+ * so a repeated logging statement costs a short stack walk and a cache lookup. Caller data already
+ * attached to the event (e.g. by an asynchronous appender with {@code includeCallerData}) is used
+ * as is. Colors follow {@code %colorPackage}: cyan, yellow for WARN and red for ERROR, or the
+ * {@code package} colors of a configured {@link ColorTheme}. The palette options of
+ * {@code %colorPackage} apply to the caller class name, and its color is resolved once per call
+ * site; WARN and ERROR events keep the level colors.
+ */
+public class CustomHighlightingCallerLocation extends ClassicConverter implements ByteWritingConverter {
+
+    static final String NA_TEXT = "?.?(?)";
+    static final int CACHE_SIZE = 1024;
+
+    private static final CallSiteText NA = new CallSiteText(NA_TEXT, null);
+
+    private final BoundedCache<CallSite, CallSiteText> cache = new BoundedCache<>(CACHE_SIZE, false);
+    private Abbreviator abbreviator;
+    private CallerLocator locator;
+    private AnsiSequence[] prefixes;
+    private PackagePalette palette;
+    private ThemeHolder theme;
+    private boolean colorEnabled = true;
+
+    @Override
+    public void start() {
+        int maxDepth = CallerLocator.DEFAULT_MAX_DEPTH;
+        List<String> options = getOptionList();
+        List<String> paletteOptions = new ArrayList<>();
+        if (options != null) {
+            // the length and frame limit come first, everything else configures the palette
+            for (int i = 0; i < options.size(); i++) {
+                String option = options.get(i).trim();
+                if (i < 2 && isNumber(option)) {
+                    int value = Integer.parseInt(option);
+                    if (i == 0 && value > 0) {
+                        abbreviator = new TargetLengthBasedClassNameAbbreviator(value);
+                    } else if (i == 1 && value > 0) {
+                        maxDepth = value;
+                    }
+                } else {
+                    paletteOptions.add(option);
+                }
+            }
+        }
+        locator = new CallerLocator(getContext(), maxDepth);
+        colorEnabled = ColorSupport.isColorEnabled(getContext());
+        prefixes = new AnsiSequence[BaseColorConverter.DEFAULT_INDEX + 1];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = AnsiSequence.of(ANSIConstants.CYAN_FG);
+        }
+        prefixes[BaseColorConverter.ERROR_INDEX] = AnsiSequence.of(ANSIConstants.RED_FG);
+        prefixes[BaseColorConverter.WARN_INDEX] = AnsiSequence.of(ANSIConstants.YELLOW_FG);
+        theme = colorEnabled ? ThemeHolder.forContext(getContext()) : null;
+        palette = colorEnabled ? PackagePalette.parse(paletteOptions, this) : null;
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        CallSiteText text = lookup(event);
+        if (!colorEnabled) {
+            return text.chars;
+        }
+        return text.colored(BaseColorConverter.levelIndex(event.getLevel()), prefixTable());
+    }
+
+    @Override
+    public void writeTo(LineBuffer out, ILoggingEvent event) {
+        CallSiteText text = lookup(event);
+        if (!colorEnabled) {
+            out.append(text.bytes);
+            return;
+        }
+        out.append(text.prefix(BaseColorConverter.levelIndex(event.getLevel()), prefixTable()).bytes);
+        out.append(text.bytes);
+        out.append(AnsiSequence.RESET.bytes);
+    }
+
+    private AnsiSequence[] prefixTable() {
+        ThemeHolder holder = theme;
+        return holder != null ? holder.current().table(ColorTheme.Role.PACKAGE) : prefixes;
+    }
+
+    CallSiteText lookup(ILoggingEvent event) {
+        if (event.hasCallerData()) {
+            StackTraceElement[] callerData = event.getCallerData();
+            if (callerData == null || callerData.length == 0) {
+                return NA;
+            }
+            StackTraceElement element = callerData[0];
+            CallSite site = new CallSite(element.getClassName(), element.getMethodName(), element.getLineNumber(), false);
+            CallSiteText text = cache.get(site);
+            if (text == null) {
+                text = render(site.className, site.methodName, element.getLineNumber());
+                cache.put(site, text);
+            }
+            return text;
+        }
+        StackFrame frame = locator.locate();
+        if (frame == null) {
+            return NA;
+        }
+        CallSite site = new CallSite(frame.getClassName(), frame.getMethodName(), frame.getByteCodeIndex(), true);
+        CallSiteText text = cache.get(site);
+        if (text == null) {
+            text = render(site.className, site.methodName, frame.getLineNumber());
+            cache.put(site, text);
+        }
+        return text;
+    }
+
+    private CallSiteText render(String className, String methodName, int lineNumber) {
+        String abbreviated = abbreviator == null ? className : abbreviator.abbreviate(className);
+        String line = lineNumber < 0 ? "?" : Integer.toString(lineNumber);
+        AnsiSequence packageColor = palette == null ? null : palette.colorFor(className);
+        return new CallSiteText(abbreviated + '.' + methodName + '(' + line + ')', packageColor);
+    }
+
+    private static boolean isNumber(String option) {
+        if (option.isEmpty() || option.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < option.length(); i++) {
+            if (!Character.isDigit(option.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Identifies a logging statement: the caller class and method plus the bytecode index
+     * (from a stack walk) or line number (from existing caller data).
+     */
+    private static final class CallSite {
+        final String className;
+        final String methodName;
+        final int position;
+        final boolean bytecodeIndex;
+        private final int hash;
+
+        CallSite(String className, String methodName, int position, boolean bytecodeIndex) {
+            this.className = className;
+            this.methodName = methodName;
+            this.position = position;
+            this.bytecodeIndex = bytecodeIndex;
+            this.hash = (className.hashCode() * 31 + methodName.hashCode()) * 31 + position;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CallSite)) {
+                return false;
+            }
+            CallSite other = (CallSite) o;
+            return position == other.position
+                    && bytecodeIndex == other.bytecodeIndex
+                    && className.equals(other.className)
+                    && methodName.equals(other.methodName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Rendered location of one call site, with colored variants filled in on first use.
+     * The palette color of the caller class, if any, replaces the level color below WARN.
+     */
+    static final class CallSiteText {
+        final String chars;
+        final byte[] bytes;
+        private final AnsiSequence packageColor;
+        private final Colored[] colored = new Colored[BaseColorConverter.DEFAULT_INDEX + 1];
+
+        CallSiteText(String chars, AnsiSequence packageColor) {
+            this.chars = chars;
+            this.bytes = chars.getBytes(StandardCharsets.UTF_8);
+            this.packageColor = packageColor;
+        }
+
+        AnsiSequence prefix(int index, AnsiSequence[] prefixes) {
+            if (packageColor != null && index != BaseColorConverter.ERROR_INDEX
+                    && index != BaseColorConverter.WARN_INDEX) {
+                return packageColor;
+            }
+            return prefixes[index];
+        }
+
+        String colored(int index, AnsiSequence[] prefixes) {
+            Colored result = colored[index];
+            AnsiSequence prefix = prefix(index, prefixes);
+            if (result == null || result.prefix != prefix) {
+                // rendered for the first time, or the theme changed since
+                result = new Colored(prefix, prefix.chars + chars + AnsiSequence.RESET.chars);
+                colored[index] = result;
+            }
+            return result.text;
+        }
+
+        private static final class Colored {
+            final AnsiSequence prefix;
+            final String text;
+
+            Colored(AnsiSequence prefix, String text) {
+                this.prefix = prefix;
+                this.text = text;
+            }
+        }
+    }
+}
@@ -4,5 +4,10 @@ package dev.gamov.colorfullogback;
  * Custom converter for colorizing log levels in console output
  */
 public class CustomHighlightingLogLevel extends BaseColorConverter {
-    // Uses the default color mapping from BaseColorConverter
+    // Uses the default color mapping from BaseColorConverter, or the theme's level colors
+
+    @Override
+    ColorTheme.Role themeRole() {
+        return ColorTheme.Role.LEVEL;
+    }
 }
@@ -0,0 +1,282 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.util.OptionHelper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Custom converter rendering an MDC value, such as a request or trace id, in a color of its own,
+ * so the interleaved lines of concurrent requests can be told apart:
+ * <pre>
+ * %colorMdc{requestId}                              the value of requestId, empty if not set
+ * %colorMdc{requestId:--}                           ... or "-" if not set, like %X
+ * %colorMdc{traceId, capacity=128, blue, #ff8700}   own palette, colors as for %colorPackage
+ * </pre>
+ * Each distinct value is assigned a palette color when it is first seen and keeps it while it is
+ * in use. Assignments are kept for at most {@code capacity} values (default
+ * {@value #DEFAULT_CAPACITY}); when all are taken, the least recently logged value gives up its
+ * entry, so the colors of finished requests are reused. A new value gets the color with the
+ * fewest values assigned, preferring the one seen least recently, so concurrent requests differ
+ * in color as long as there are enough colors.
+ * <p>
+ * Looking up the assignment of a value seen before is a read of the event's MDC map and a
+ * lock-free cache hit; the value's bytes and colored text are kept with the assignment, so no
+ * per-event objects are created. Only a value without an assignment takes a lock.
+ */
+public class CustomHighlightingMdc extends ClassicConverter implements ByteWritingConverter {
+
+    static final String CAPACITY_OPTION = "capacity";
+    static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * No red or yellow, which stand for ERROR and WARN elsewhere in the line
+     */
+    private static final String[] DEFAULT_PALETTE = {
+            "cyan", "blue", "magenta", "green",
+            "boldCyan", "boldBlue", "boldMagenta", "boldGreen",
+            "brightCyan", "brightBlue", "brightMagenta", "brightGreen"
+    };
+
+    private String key;
+    private String defaultValue = "";
+    private byte[] defaultBytes = new byte[0];
+    private Assignments assignments;
+    private boolean colorEnabled = true;
+
+    @Override
+    public void start() {
+        String[] keyInfo = OptionHelper.extractDefaultReplacement(getFirstOption());
+        key = keyInfo[0] == null ? null : keyInfo[0].trim();
+        if (key == null || key.isEmpty()) {
+            addError("%colorMdc needs the MDC key as its first option, e.g. %colorMdc{requestId}");
+            return;
+        }
+        if (keyInfo[1] != null) {
+            defaultValue = keyInfo[1];
+            defaultBytes = defaultValue.getBytes(StandardCharsets.UTF_8);
+        }
+        int capacity = DEFAULT_CAPACITY;
+        AnsiColors.Depth depth = ColorSupport.colorDepth(getContext());
+        List<AnsiSequence> palette = new ArrayList<>();
+        List<String> options = getOptionList();
+        for (int i = 1; i < options.size(); i++) {
+            String option = options.get(i).trim();
+            if (option.isEmpty()) {
+                continue;
+            }
+            if (option.startsWith(CAPACITY_OPTION + "=")) {
+                String value = option.substring(CAPACITY_OPTION.length() + 1).trim();
+                try {
+                    capacity = Math.max(1, Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    addWarn("Invalid capacity [" + value + "], using " + DEFAULT_CAPACITY);
+                }
+                continue;
+            }
+            try {
+                palette.add(AnsiSequence.of(AnsiColors.parse(option, depth)));
+            } catch (IllegalArgumentException e) {
+                addError("Invalid palette color [" + option + "]: " + e.getMessage());
+            }
+        }
+        if (palette.isEmpty()) {
+            for (String color : DEFAULT_PALETTE) {
+                palette.add(AnsiSequence.of(AnsiColors.parse(color, depth)));
+            }
+        }
+        colorEnabled = ColorSupport.isColorEnabled(getContext());
+        assignments = new Assignments(palette.toArray(new AnsiSequence[0]), capacity);
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        String value = valueOf(event);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!colorEnabled) {
+            return value;
+        }
+        return assignments.assign(value).colored;
+    }
+
+    @Override
+    public void writeTo(LineBuffer out, ILoggingEvent event) {
+        String value = valueOf(event);
+        if (value == null) {
+            out.append(defaultBytes);
+            return;
+        }
+        if (!colorEnabled) {
+            out.appendUtf8(value);
+            return;
+        }
+        Assignment assignment = assignments.assign(value);
+        out.append(assignment.prefix.bytes);
+        out.append(assignment.bytes);
+        out.append(AnsiSequence.RESET.bytes);
+    }
+
+    private String valueOf(ILoggingEvent event) {
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        return mdc == null ? null : mdc.get(key);
+    }
+
+    /**
+     * Whether this converter emits ANSI sequences, as resolved when it was started.
+     *
+     * @return true if colors are enabled
+     */
+    public boolean isColorEnabled() {
+        return colorEnabled;
+    }
+
+    Assignments assignments() {
+        return assignments;
+    }
+
+    /**
+     * Bounded table of value to color assignments that evicts the least recently used value.
+     * <p>
+     * Assigned values are found through a lock-free {@link BoundedCache}; a value that is not
+     * in the cache, because it is new or collided with another one, is looked up in the table
+     * under the lock, which is where values are added and evicted.
+     */
+    static final class Assignments {
+
+        private final AnsiSequence[] palette;
+        private final BoundedCache<String, Assignment> index;
+        // a lock instead of a monitor, so a virtual thread waiting for it does not pin its carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        // guarded by lock
+        private final Assignment[] table;
+        private final int[] liveCounts;
+        private final long[] youngestAges;
+
+        Assignments(AnsiSequence[] palette, int capacity) {
+            this.palette = palette;
+            this.index = new BoundedCache<>(capacity * 4, false);
+            this.table = new Assignment[capacity];
+            this.liveCounts = new int[palette.length];
+            this.youngestAges = new long[palette.length];
+        }
+
+        /**
+         * Get the assignment of the value, assigning a color if it has none.
+         *
+         * @param value the MDC value
+         * @return the assignment, with the value's color
+         */
+        Assignment assign(String value) {
+            Assignment assignment = index.get(value);
+            if (assignment != null && !assignment.evicted) {
+                assignment.lastUsed = System.nanoTime();
+                return assignment;
+            }
+            return assignSlow(value);
+        }
+
+        private Assignment assignSlow(String value) {
+            lock.lock();
+            try {
+                return assignLocked(value);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Assignment assignLocked(String value) {
+            long now = System.nanoTime();
+            Arrays.fill(liveCounts, 0);
+            Arrays.fill(youngestAges, Long.MAX_VALUE);
+            int free = -1;
+            int oldest = -1;
+            long oldestAge = Long.MIN_VALUE;
+            for (int i = 0; i < table.length; i++) {
+                Assignment assignment = table[i];
+                if (assignment == null) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                    continue;
+                }
+                if (assignment.value.equals(value)) {
+                    assignment.lastUsed = now;
+                    index.put(value, assignment);
+                    return assignment;
+                }
+                long age = now - assignment.lastUsed;
+                if (age > oldestAge) {
+                    oldestAge = age;
+                    oldest = i;
+                }
+                liveCounts[assignment.color]++;
+                youngestAges[assignment.color] = Math.min(youngestAges[assignment.color], age);
+            }
+            int slot = free;
+            if (slot < 0) {
+                Assignment evicted = table[oldest];
+                evicted.evicted = true;
+                index.remove(evicted.value, evicted);
+                liveCounts[evicted.color]--;
+                slot = oldest;
+            }
+            int color = 0;
+            for (int i = 1; i < palette.length; i++) {
+                if (liveCounts[i] < liveCounts[color]
+                        || (liveCounts[i] == liveCounts[color] && youngestAges[i] > youngestAges[color])) {
+                    color = i;
+                }
+            }
+            Assignment assignment = new Assignment(value, color, palette[color], now);
+            table[slot] = assignment;
+            index.put(value, assignment);
+            return assignment;
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                int size = 0;
+                for (Assignment assignment : table) {
+                    if (assignment != null) {
+                        size++;
+                    }
+                }
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The color of one MDC value, with the value rendered as bytes and as colored text.
+     */
+    static final class Assignment {
+        final String value;
+        final int color;
+        final AnsiSequence prefix;
+        final byte[] bytes;
+        final String colored;
+        volatile long lastUsed;
+        volatile boolean evicted;
+
+        Assignment(String value, int color, AnsiSequence prefix, long lastUsed) {
+            this.value = value;
+            this.color = color;
+            this.prefix = prefix;
+            this.bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.colored = prefix.chars + value + AnsiSequence.RESET.chars;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -4,5 +4,10 @@ package dev.gamov.colorfullogback;
  * Custom converter for colorizing log messages in console output
  */
 public class CustomHighlightingMessage extends BaseColorConverter {
-    // Uses the default color mapping from BaseColorConverter
+    // Uses the default color mapping from BaseColorConverter, or the theme's message colors
+
+    @Override
+    ColorTheme.Role themeRole() {
+        return ColorTheme.Role.MESSAGE;
+    }
 }
@@ -1,13 +1,39 @@
 package dev.gamov.colorfullogback;
 
 import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.pattern.color.ANSIConstants;
 
+import java.util.List;
+
 /**
  * Custom converter for colorizing package names in console output
+ * <p>
+ * By default every package is cyan, and WARN/ERROR events use the level colors.
+ * With the {@code palette} option each package gets its own stable color instead:
+ * <pre>
+ * %colorPackage(%logger{36}){palette, com.example.service=blue, com.example.repository=boldMagenta}
+ * </pre>
+ * Logger names are matched against the configured prefixes (longest prefix wins, on package
+ * boundaries); names without a match get a color picked by hashing their package name, so all
+ * classes of one package share a color. WARN and ERROR events keep the level colors.
+ * <p>
+ * The resolved sequence is cached per logger name in a bounded lock-free cache
+ * (size set with {@code cacheSize=N}, default 1024), so dynamic logger names neither cost a
+ * prefix lookup on every event nor grow memory without limit. {@code %colorCaller} accepts the
+ * same options.
  */
 public class CustomHighlightingPackageName extends BaseColorConverter {
-    
+
+    private PackagePalette palette;
+
+    @Override
+    public void start() {
+        List<String> options = getOptionList();
+        palette = options == null ? null : PackagePalette.parse(options, this);
+        super.start();
+    }
+
     @Override
     protected String getColorForLevel(Level level) {
         switch (level.toInt()) {
@@ -22,4 +48,38 @@ public class CustomHighlightingPackageName extends BaseColorConverter {
                 return ANSIConstants.CYAN_FG;
         }
     }
+
+    @Override
+    ColorTheme.Role themeRole() {
+        return ColorTheme.Role.PACKAGE;
+    }
+
+    @Override
+    AnsiSequence prefixFor(ILoggingEvent event) {
+        if (palette == null) {
+            return super.prefixFor(event);
+        }
+        int index = levelIndex(event.getLevel());
+        if (index == ERROR_INDEX || index == WARN_INDEX) {
+            return prefixTable()[index];
+        }
+        String loggerName = event.getLoggerName();
+        if (loggerName == null) {
+            return prefixTable()[index];
+        }
+        return palette.colorFor(loggerName);
+    }
+
+    /**
+     * Whether the per-package palette is active.
+     *
+     * @return true if the palette option or a package mapping was configured
+     */
+    public boolean isPalette() {
+        return palette != null;
+    }
+
+    AnsiSequence resolve(String loggerName) {
+        return palette.resolve(loggerName);
+    }
 }
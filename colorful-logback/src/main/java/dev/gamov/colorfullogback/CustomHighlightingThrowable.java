@@ -0,0 +1,319 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.pattern.ThrowableHandlingConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.pattern.color.ANSIConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Custom converter rendering the throwable of an event with colors.
+ * <p>
+ * The layout follows logback's {@code %ex}: the exception class is bold red, the message red,
+ * application frames cyan and framework frames ({@code java.}, {@code jdk.internal.},
+ * {@code org.springframework.}, servlet containers, ...) dimmed. Options:
+ * <pre>
+ * %colorEx                            full traces, repeated traces collapsed
+ * %colorEx{short}                     one frame per throwable ({@code full} or a number also work)
+ * %colorEx{full, com.acme.framework}  additional packages to dim
+ * %colorEx{full, nodedup}             always print the full trace
+ * </pre>
+ * Every trace gets a number, and a trace whose classes and frames were already printed is
+ * shortened to its exception headers and {@code ... identical to trace #N}. Traces are identified
+ * by a hash over the exception classes and frames; messages are not part of it, so the same
+ * failure with a different message still collapses while its messages are kept. The rendered
+ * line of each frame is cached per {@link StackTraceElement}; both caches are bounded.
+ * <p>
+ * The seen traces live in a direct-mapped table of primitive longs: the slot comes from the low
+ * bits of the trace hash and each entry packs the high 32 bits of the hash with the trace number,
+ * so a lookup neither boxes the hash nor allocates an entry.
+ */
+public class CustomHighlightingThrowable extends ThrowableHandlingConverter implements ByteWritingConverter {
+
+    static final String NO_DEDUP_OPTION = "nodedup";
+    static final int FRAME_CACHE_SIZE = 4096;
+    static final int TRACE_CACHE_SIZE = 256;
+
+    private static final String[] DEFAULT_FRAMEWORK_PREFIXES = {
+            "java.",
+            "javax.",
+            "jakarta.",
+            "jdk.internal.",
+            "sun.",
+            "org.springframework.",
+            "org.apache.catalina.",
+            "org.apache.coyote.",
+            "org.apache.tomcat.",
+            "org.junit.",
+            "ch.qos.logback."
+    };
+
+    private static final String DIM = "2";
+    private static final byte[] LINE_SEPARATOR = CoreConstants.LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadBuffers<LineBuffer> LINE_BUFFERS = new ThreadBuffers<>(LineBuffer::new);
+
+    private final BoundedCache<StackTraceElement, byte[]> frames = new BoundedCache<>(FRAME_CACHE_SIZE, false);
+    private final AtomicLongArray traces = new AtomicLongArray(TRACE_CACHE_SIZE);
+    private final AtomicInteger traceCounter = new AtomicInteger();
+    private String[] frameworkPrefixes = DEFAULT_FRAMEWORK_PREFIXES;
+    private int depth = Integer.MAX_VALUE;
+    private boolean dedup = true;
+    private boolean colorEnabled = true;
+    private AnsiSequence classColor;
+    private AnsiSequence messageColor;
+    private AnsiSequence frameColor;
+    private AnsiSequence frameworkFrameColor;
+
+    @Override
+    public void start() {
+        List<String> prefixes = new ArrayList<>(List.of(DEFAULT_FRAMEWORK_PREFIXES));
+        List<String> options = getOptionList();
+        if (options != null) {
+            for (int i = 0; i < options.size(); i++) {
+                String option = options.get(i).trim();
+                if (option.isEmpty()) {
+                    continue;
+                }
+                if (i == 0 && parseDepth(option)) {
+                    continue;
+                }
+                if (NO_DEDUP_OPTION.equalsIgnoreCase(option)) {
+                    dedup = false;
+                } else {
+                    prefixes.add(option.endsWith(".") ? option : option + ".");
+                }
+            }
+        }
+        frameworkPrefixes = prefixes.toArray(new String[0]);
+        colorEnabled = ColorSupport.isColorEnabled(getContext());
+        classColor = AnsiSequence.of(ANSIConstants.BOLD + ANSIConstants.RED_FG);
+        messageColor = AnsiSequence.of(ANSIConstants.RED_FG);
+        frameColor = AnsiSequence.of(ANSIConstants.CYAN_FG);
+        frameworkFrameColor = AnsiSequence.of(DIM);
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        IThrowableProxy tp = event.getThrowableProxy();
+        if (tp == null) {
+            return CoreConstants.EMPTY_STRING;
+        }
+        LineBuffer out = LINE_BUFFERS.acquire();
+        try {
+            out.reset();
+            render(out, tp);
+            return new String(out.array(), 0, out.length(), StandardCharsets.UTF_8);
+        } finally {
+            out.trim(MAX_RETAINED_CAPACITY);
+            LINE_BUFFERS.release(out);
+        }
+    }
+
+    @Override
+    public void writeTo(LineBuffer out, ILoggingEvent event) {
+        IThrowableProxy tp = event.getThrowableProxy();
+        if (tp != null) {
+            render(out, tp);
+        }
+    }
+
+    private void render(LineBuffer out, IThrowableProxy tp) {
+        if (!dedup) {
+            appendThrowable(out, null, 1, tp, true);
+            return;
+        }
+        long hash = traceHash(tp);
+        int seen = seenTrace(hash);
+        if (seen != 0) {
+            appendFirstLine(out, null, 1, tp);
+            out.append(LINE_SEPARATOR);
+            out.append((byte) '\t');
+            appendColored(out, frameworkFrameColor, "... identical to trace #" + seen);
+            out.append(LINE_SEPARATOR);
+            appendNested(out, 1, tp, false);
+            return;
+        }
+        int number = traceCounter.incrementAndGet();
+        rememberTrace(hash, number);
+        appendFirstLine(out, null, 1, tp);
+        out.append((byte) ' ');
+        appendColored(out, frameworkFrameColor, "[trace #" + number + "]");
+        out.append(LINE_SEPARATOR);
+        appendFrames(out, 1, tp);
+        appendNested(out, 1, tp, true);
+    }
+
+    /**
+     * @return the number of the trace printed with this hash, or 0 if it was not seen or was evicted
+     */
+    private int seenTrace(long hash) {
+        long entry = traces.get(traceSlot(hash));
+        return (entry & 0xFFFFFFFF00000000L) == (hash & 0xFFFFFFFF00000000L) ? (int) entry : 0;
+    }
+
+    private void rememberTrace(long hash, int number) {
+        traces.set(traceSlot(hash), (hash & 0xFFFFFFFF00000000L) | (number & 0xFFFFFFFFL));
+    }
+
+    private static int traceSlot(long hash) {
+        return (int) hash & (TRACE_CACHE_SIZE - 1);
+    }
+
+    private void appendThrowable(LineBuffer out, String prefix, int indent, IThrowableProxy tp, boolean withFrames) {
+        if (tp == null) {
+            return;
+        }
+        appendFirstLine(out, prefix, indent, tp);
+        out.append(LINE_SEPARATOR);
+        if (withFrames) {
+            appendFrames(out, indent, tp);
+        }
+        appendNested(out, indent, tp, withFrames);
+    }
+
+    private void appendNested(LineBuffer out, int indent, IThrowableProxy tp, boolean withFrames) {
+        IThrowableProxy[] suppressed = tp.getSuppressed();
+        if (suppressed != null) {
+            for (IThrowableProxy current : suppressed) {
+                appendThrowable(out, CoreConstants.SUPPRESSED, indent + 1, current, withFrames);
+            }
+        }
+        appendThrowable(out, CoreConstants.CAUSED_BY, indent, tp.getCause(), withFrames);
+    }
+
+    private void appendFirstLine(LineBuffer out, String prefix, int indent, IThrowableProxy tp) {
+        indent(out, indent - 1);
+        if (colorEnabled) {
+            out.append(classColor.bytes);
+        }
+        if (prefix != null) {
+            out.appendUtf8(prefix);
+        }
+        if (tp.isCyclic()) {
+            out.appendUtf8("[CIRCULAR REFERENCE: ");
+        }
+        out.appendUtf8(tp.getClassName());
+        if (colorEnabled) {
+            out.append(AnsiSequence.RESET.bytes);
+        }
+        out.append((byte) ':');
+        out.append((byte) ' ');
+        appendColored(out, messageColor, String.valueOf(tp.getMessage()));
+        if (tp.isCyclic()) {
+            out.append((byte) ']');
+        }
+    }
+
+    private void appendFrames(LineBuffer out, int indent, IThrowableProxy tp) {
+        StackTraceElementProxy[] stepArray = tp.getStackTraceElementProxyArray();
+        int commonFrames = tp.getCommonFrames();
+        boolean unrestricted = depth > stepArray.length;
+        int maxIndex = unrestricted ? stepArray.length : depth;
+        if (commonFrames > 0 && unrestricted) {
+            maxIndex -= commonFrames;
+        }
+        for (int i = 0; i < maxIndex; i++) {
+            indent(out, indent);
+            out.append(frameLine(stepArray[i].getStackTraceElement()));
+            out.append(LINE_SEPARATOR);
+        }
+        if (commonFrames > 0 && unrestricted) {
+            indent(out, indent);
+            appendColored(out, frameworkFrameColor, "... " + commonFrames + " common frames omitted");
+            out.append(LINE_SEPARATOR);
+        }
+    }
+
+    private byte[] frameLine(StackTraceElement element) {
+        byte[] line = frames.get(element);
+        if (line == null) {
+            String text = "at " + element;
+            if (colorEnabled) {
+                AnsiSequence color = isFramework(element.getClassName()) ? frameworkFrameColor : frameColor;
+                text = color.chars + text + AnsiSequence.RESET.chars;
+            }
+            line = text.getBytes(StandardCharsets.UTF_8);
+            frames.put(element, line);
+        }
+        return line;
+    }
+
+    private boolean isFramework(String className) {
+        for (String prefix : frameworkPrefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendColored(LineBuffer out, AnsiSequence color, String text) {
+        if (colorEnabled) {
+            out.append(color.bytes);
+            out.appendUtf8(text);
+            out.append(AnsiSequence.RESET.bytes);
+        } else {
+            out.appendUtf8(text);
+        }
+    }
+
+    private static void indent(LineBuffer out, int indent) {
+        for (int i = 0; i < indent; i++) {
+            out.append((byte) '\t');
+        }
+    }
+
+    private boolean parseDepth(String option) {
+        if ("full".equalsIgnoreCase(option)) {
+            depth = Integer.MAX_VALUE;
+            return true;
+        }
+        if ("short".equalsIgnoreCase(option)) {
+            depth = 1;
+            return true;
+        }
+        try {
+            depth = Math.max(0, Integer.parseInt(option));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hash over the exception classes, frames and nesting of a trace, without messages.
+     */
+    static long traceHash(IThrowableProxy tp) {
+        long h = 1125899906842597L;
+        if (tp == null) {
+            return h;
+        }
+        h = 31 * h + tp.getClassName().hashCode();
+        h = 31 * h + tp.getCommonFrames();
+        for (StackTraceElementProxy step : tp.getStackTraceElementProxyArray()) {
+            h = 31 * h + step.getStackTraceElement().hashCode();
+        }
+        IThrowableProxy[] suppressed = tp.getSuppressed();
+        if (suppressed != null) {
+            for (IThrowableProxy current : suppressed) {
+                h = 31 * h + traceHash(current);
+            }
+        }
+        if (tp.getCause() != null && !tp.isCyclic()) {
+            h = 31 * h + traceHash(tp.getCause());
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,268 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.CoreConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Custom converter rendering the colored timestamp and padded level prefix of a line.
+ * <p>
+ * Produces the same output as {@code %colorLevel(%d{pattern} %-5level)}:
+ * <pre>
+ * %colorTimeLevel                                    yyyy-MM-dd HH:mm:ss.SSS, system time zone
+ * %colorTimeLevel{ISO8601}                           like %d{ISO8601}
+ * %colorTimeLevel{yyyy-MM-dd HH:mm:ss.SSS, UTC}      pattern and time zone
+ * </pre>
+ * Each thread keeps the finished line prefix per level, as chars and as UTF-8 bytes. The date is
+ * formatted at most once per second and level; within the same second only the three millisecond
+ * digits are patched in place, and events within the same millisecond reuse the prefix unchanged.
+ * With a {@link ColorTheme} configured the level colors come from the theme, and a thread drops
+ * its prefixes when it sees that the theme was swapped.
+ */
+public class CustomHighlightingTimestampLevel extends ClassicConverter implements ByteWritingConverter {
+
+    static final String DEFAULT_PATTERN = "yyyy-MM-dd HH:mm:ss.SSS";
+
+    private static final String[] PADDED_LEVELS = {"ERROR", "WARN ", "INFO ", "DEBUG", "TRACE"};
+    private static final Level[] INDEXED_LEVELS = {Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.TRACE};
+
+    private final ThreadBuffers<Lines> lines = new ThreadBuffers<>(Lines::new);
+    private DateTimeFormatter formatter;
+    private AnsiSequence[] prefixes;
+    private ThemeHolder theme;
+    private boolean colorEnabled = true;
+    /**
+     * Position of the millisecond digits in the formatted date, or -1 if they cannot be patched
+     */
+    private int millisOffset = -1;
+    private boolean subSecondPattern;
+
+    @Override
+    public void start() {
+        String pattern = DEFAULT_PATTERN;
+        ZoneId zoneId = ZoneId.systemDefault();
+        List<String> options = getOptionList();
+        if (options != null && !options.isEmpty()) {
+            String option = options.get(0).trim();
+            if (CoreConstants.ISO8601_STR.equals(option)) {
+                pattern = CoreConstants.ISO8601_PATTERN;
+            } else if (CoreConstants.STRICT_STR.equals(option)) {
+                pattern = CoreConstants.STRICT_ISO8601_PATTERN;
+            } else if (!option.isEmpty()) {
+                pattern = option;
+            }
+            if (options.size() > 1) {
+                String zone = options.get(1).trim();
+                try {
+                    zoneId = ZoneId.of(zone);
+                } catch (DateTimeException e) {
+                    addWarn("Invalid time zone [" + zone + "], using " + zoneId, e);
+                }
+            }
+        }
+        try {
+            formatter = DateTimeFormatter.ofPattern(pattern).withZone(zoneId);
+        } catch (IllegalArgumentException e) {
+            addWarn("Could not instantiate date formatter with pattern [" + pattern + "], using " + DEFAULT_PATTERN, e);
+            pattern = DEFAULT_PATTERN;
+            formatter = DateTimeFormatter.ofPattern(pattern).withZone(zoneId);
+        }
+        subSecondPattern = hasSubSecondField(pattern);
+        millisOffset = findMillisOffset(pattern);
+
+        colorEnabled = ColorSupport.isColorEnabled(getContext());
+        prefixes = new AnsiSequence[INDEXED_LEVELS.length];
+        for (int i = 0; i < INDEXED_LEVELS.length; i++) {
+            prefixes[i] = AnsiSequence.of(BaseColorConverter.defaultColorForLevel(INDEXED_LEVELS[i]));
+        }
+        theme = colorEnabled ? ThemeHolder.forContext(getContext()) : null;
+        super.start();
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        int index = BaseColorConverter.levelIndex(event.getLevel());
+        if (index == BaseColorConverter.DEFAULT_INDEX) {
+            return render(event.getTimeStamp(), event.getLevel());
+        }
+        Lines cached = lines.acquire();
+        try {
+            cached.refresh(index, event.getTimeStamp());
+            String result = cached.strings[index];
+            if (result == null) {
+                result = new String(cached.chars[index]);
+                cached.strings[index] = result;
+            }
+            return result;
+        } finally {
+            lines.release(cached);
+        }
+    }
+
+    @Override
+    public void writeTo(LineBuffer out, ILoggingEvent event) {
+        int index = BaseColorConverter.levelIndex(event.getLevel());
+        if (index == BaseColorConverter.DEFAULT_INDEX) {
+            out.appendUtf8(render(event.getTimeStamp(), event.getLevel()));
+            return;
+        }
+        Lines cached = lines.acquire();
+        try {
+            cached.refresh(index, event.getTimeStamp());
+            out.append(cached.bytes[index]);
+        } finally {
+            lines.release(cached);
+        }
+    }
+
+    private String render(long timestamp, Level level) {
+        String levelText = level == null ? "" : level.toString();
+        StringBuilder buf = new StringBuilder(48);
+        if (colorEnabled) {
+            buf.append(AnsiSequence.of(BaseColorConverter.defaultColorForLevel(level == null ? Level.OFF : level)).chars);
+        }
+        buf.append(formatter.format(Instant.ofEpochMilli(timestamp))).append(' ').append(levelText);
+        for (int i = levelText.length(); i < 5; i++) {
+            buf.append(' ');
+        }
+        if (colorEnabled) {
+            buf.append(AnsiSequence.RESET.chars);
+        }
+        return buf.toString();
+    }
+
+    private static boolean hasSubSecondField(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && (c == 'S' || c == 'n' || c == 'N' || c == 'A')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Locate the millisecond digits by formatting two instants of the same second that differ in
+     * every millisecond digit. The digits can only be patched when the pattern has exactly one
+     * {@code SSS} field and no other sub-second field.
+     */
+    private int findMillisOffset(String pattern) {
+        String unquoted = pattern.replaceAll("'[^']*'", "");
+        if (!unquoted.contains("SSS") || unquoted.replaceFirst("SSS", "").matches(".*[SnNA].*")
+                || unquoted.contains("SSSS")) {
+            return -1;
+        }
+        String zero = formatter.format(Instant.ofEpochMilli(1_000_000L));
+        String other = formatter.format(Instant.ofEpochMilli(1_000_987L));
+        if (zero.length() != other.length()) {
+            return -1;
+        }
+        int first = -1;
+        int count = 0;
+        for (int i = 0; i < zero.length(); i++) {
+            if (zero.charAt(i) != other.charAt(i)) {
+                if (first < 0) {
+                    first = i;
+                }
+                count++;
+            }
+        }
+        if (count != 3 || !zero.startsWith("000", first) || !other.startsWith("987", first)) {
+            return -1;
+        }
+        return first;
+    }
+
+    /**
+     * Per-thread rendered prefixes, one per indexed level
+     */
+    private final class Lines {
+        final char[][] chars = new char[INDEXED_LEVELS.length][];
+        final byte[][] bytes = new byte[INDEXED_LEVELS.length][];
+        final String[] strings = new String[INDEXED_LEVELS.length];
+        final long[] seconds = new long[INDEXED_LEVELS.length];
+        final long[] timestamps = new long[INDEXED_LEVELS.length];
+        final int[] byteOffsets = new int[INDEXED_LEVELS.length];
+        final int[] charOffsets = new int[INDEXED_LEVELS.length];
+        AnsiSequence[] levelColors = prefixes;
+
+        void refresh(int index, long timestamp) {
+            if (theme != null) {
+                AnsiSequence[] current = theme.current().table(ColorTheme.Role.LEVEL);
+                if (current != levelColors) {
+                    levelColors = current;
+                    Arrays.fill(chars, null);
+                }
+            }
+            if (chars[index] != null && timestamps[index] == timestamp) {
+                return;
+            }
+            long second = Math.floorDiv(timestamp, 1000L);
+            if (chars[index] != null && seconds[index] == second) {
+                if (!subSecondPattern) {
+                    timestamps[index] = timestamp;
+                    return;
+                }
+                if (millisOffset >= 0) {
+                    patchMillis(index, (int) Math.floorMod(timestamp, 1000L));
+                    timestamps[index] = timestamp;
+                    return;
+                }
+            }
+            rebuild(index, timestamp, second);
+        }
+
+        private void rebuild(int index, long timestamp, long second) {
+            StringBuilder buf = new StringBuilder(48);
+            if (colorEnabled) {
+                buf.append(levelColors[index].chars);
+            }
+            int dateStart = buf.length();
+            buf.append(formatter.format(Instant.ofEpochMilli(timestamp)))
+                    .append(' ')
+                    .append(PADDED_LEVELS[index]);
+            if (colorEnabled) {
+                buf.append(AnsiSequence.RESET.chars);
+            }
+            String line = buf.toString();
+            chars[index] = line.toCharArray();
+            bytes[index] = line.getBytes(StandardCharsets.UTF_8);
+            strings[index] = line;
+            seconds[index] = second;
+            timestamps[index] = timestamp;
+            if (millisOffset >= 0) {
+                charOffsets[index] = dateStart + millisOffset;
+                byteOffsets[index] = line.substring(0, dateStart + millisOffset).getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+
+        private void patchMillis(int index, int millis) {
+            char hundreds = (char) ('0' + millis / 100);
+            char tens = (char) ('0' + (millis / 10) % 10);
+            char ones = (char) ('0' + millis % 10);
+            char[] c = chars[index];
+            int ci = charOffsets[index];
+            c[ci] = hundreds;
+            c[ci + 1] = tens;
+            c[ci + 2] = ones;
+            byte[] b = bytes[index];
+            int bi = byteOffsets[index];
+            b[bi] = (byte) hundreds;
+            b[bi + 1] = (byte) tens;
+            b[bi + 2] = (byte) ones;
+            strings[index] = null;
+        }
+    }
+}
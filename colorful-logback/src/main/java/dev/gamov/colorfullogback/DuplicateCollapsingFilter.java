@@ -0,0 +1,245 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import ch.qos.logback.core.util.Duration;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * TurboFilter that collapses bursts of the same log statement into one summary line.
+ * <p>
+ * Events are keyed by their message template, logger and level. Within a window the first
+ * {@code allowedRepetitions + 1} events pass, later ones are denied and counted. When the window
+ * closes (on the next matching event, or from a periodic sweep when the statement went quiet) a
+ * summary is sent to the logger's appenders at the original level, marked with {@link #SUMMARY_MARKER}:
+ * <pre>
+ * Last message repeated 18234 more times within 10 seconds: Performance degradation detected - ...
+ * </pre>
+ * The count is an argument, so {@code %colorArgs} highlights it. Configuration:
+ * <pre>
+ * &lt;turboFilter class="dev.gamov.colorfullogback.DuplicateCollapsingFilter"&gt;
+ *     &lt;window&gt;10 seconds&lt;/window&gt;
+ *     &lt;allowedRepetitions&gt;5&lt;/allowedRepetitions&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ * Events marked with {@link #NO_COLLAPSE_MARKER}, events carrying a throwable (whose stack trace a
+ * summary would lose) and events at or above {@code exemptLevel} (default {@code ERROR}; {@code OFF}
+ * collapses every level) always pass and are not counted.
+ * <p>
+ * Counters live in a fixed table of slots, each with its own atomic counter, so unrelated
+ * statements never contend and the hot path takes no lock. When all probed slots belong to other
+ * active statements the event simply passes untracked.
+ */
+public class DuplicateCollapsingFilter extends TurboFilter {
+
+    public static final Duration DEFAULT_WINDOW = Duration.buildBySeconds(10);
+    public static final int DEFAULT_ALLOWED_REPETITIONS = 5;
+    public static final int DEFAULT_TABLE_SIZE = 4096;
+    public static final Level DEFAULT_EXEMPT_LEVEL = Level.ERROR;
+
+    /**
+     * Marker carried by summary events
+     */
+    public static final Marker SUMMARY_MARKER = MarkerFactory.getMarker("COLLAPSED_REPEATS");
+
+    /**
+     * Marker for events that are never collapsed, e.g. generated load that must reach the appenders
+     */
+    public static final Marker NO_COLLAPSE_MARKER = MarkerFactory.getMarker("NO_COLLAPSE");
+
+    static final String SUMMARY_MESSAGE = "Last message repeated {} more times within {}: {}";
+
+    private static final int MAX_PROBES = 4;
+    private static final long CLOSED = Long.MIN_VALUE / 2;
+
+    private Duration window = DEFAULT_WINDOW;
+    private int allowedRepetitions = DEFAULT_ALLOWED_REPETITIONS;
+    private int tableSize = DEFAULT_TABLE_SIZE;
+    private Level exemptLevel = DEFAULT_EXEMPT_LEVEL;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private AtomicReferenceArray<Slot> slots;
+    private int mask;
+    private long windowMillis;
+    private ScheduledFuture<?> sweepTask;
+
+    @Override
+    public void start() {
+        if (tableSize < 2 || Integer.bitCount(tableSize) != 1) {
+            addError("tableSize must be a power of two greater than one, was " + tableSize);
+            return;
+        }
+        windowMillis = window.getMilliseconds();
+        if (windowMillis <= 0) {
+            addError("window must be positive, was " + window);
+            return;
+        }
+        slots = new AtomicReferenceArray<>(tableSize);
+        mask = tableSize - 1;
+        super.start();
+        if (getContext() != null) {
+            sweepTask = getContext().getScheduledExecutorService()
+                    .scheduleAtFixedRate(this::sweep, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+            getContext().addScheduledFuture(sweepTask);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+        }
+        if (slots != null) {
+            for (int i = 0; i < slots.length(); i++) {
+                Slot slot = slots.getAndSet(i, null);
+                if (slot != null) {
+                    close(slot);
+                }
+            }
+        }
+        super.stop();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || format == null || logger == null || level == null
+                || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            // level checks and disabled statements are not counted
+            return FilterReply.NEUTRAL;
+        }
+        if (level.isGreaterOrEqual(exemptLevel) || t != null || endsWithThrowable(params)
+                || marker != null && marker.contains(NO_COLLAPSE_MARKER)) {
+            return FilterReply.NEUTRAL;
+        }
+        long now = clock.getAsLong();
+        int hash = (format.hashCode() * 31 + System.identityHashCode(logger)) * 31 + level.levelInt;
+        hash ^= hash >>> 16;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int index = (hash + probe) & mask;
+            while (true) {
+                Slot slot = slots.get(index);
+                if (slot == null) {
+                    if (slots.compareAndSet(index, null, new Slot(format, logger, level, now))) {
+                        return FilterReply.NEUTRAL;
+                    }
+                    continue;
+                }
+                if (now - slot.windowStart >= windowMillis) {
+                    // the window of whatever statement owns the slot has ended: close it and take over
+                    if (slots.compareAndSet(index, slot, new Slot(format, logger, level, now))) {
+                        close(slot);
+                        return FilterReply.NEUTRAL;
+                    }
+                    continue;
+                }
+                if (slot.logger != logger || slot.level != level
+                        || (slot.format != format && !slot.format.equals(format))) {
+                    break;
+                }
+                long count = slot.count.incrementAndGet();
+                if (count < 0) {
+                    // closed concurrently by a sweep or another thread, retry with the replacement
+                    continue;
+                }
+                return count <= allowedRepetitions + 1 ? FilterReply.NEUTRAL : FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    /**
+     * SLF4J passes a trailing throwable of a parameterized call in the arguments rather than in {@code t}
+     */
+    private static boolean endsWithThrowable(Object[] params) {
+        return params != null && params.length > 0 && params[params.length - 1] instanceof Throwable;
+    }
+
+    /**
+     * Close every slot whose window has ended and emit its summary.
+     */
+    void sweep() {
+        long now = clock.getAsLong();
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && now - slot.windowStart >= windowMillis && slots.compareAndSet(i, slot, null)) {
+                close(slot);
+            }
+        }
+    }
+
+    private void close(Slot slot) {
+        long count = slot.count.getAndSet(CLOSED);
+        long suppressed = count - (allowedRepetitions + 1);
+        if (suppressed <= 0) {
+            return;
+        }
+        LoggingEvent summary = new LoggingEvent(Logger.FQCN, slot.logger, slot.level, SUMMARY_MESSAGE, null,
+                new Object[]{suppressed, window, slot.format});
+        summary.addMarker(SUMMARY_MARKER);
+        slot.logger.callAppenders(summary);
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public int getAllowedRepetitions() {
+        return allowedRepetitions;
+    }
+
+    public void setAllowedRepetitions(int allowedRepetitions) {
+        this.allowedRepetitions = allowedRepetitions;
+    }
+
+    public int getTableSize() {
+        return tableSize;
+    }
+
+    public void setTableSize(int tableSize) {
+        this.tableSize = tableSize;
+    }
+
+    public Level getExemptLevel() {
+        return exemptLevel;
+    }
+
+    public void setExemptLevel(Level exemptLevel) {
+        this.exemptLevel = exemptLevel;
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Counter for one template, logger and level during one window
+     */
+    private static final class Slot {
+        final String format;
+        final Logger logger;
+        final Level level;
+        final long windowStart;
+        final AtomicLong count = new AtomicLong(1);
+
+        Slot(String format, Logger logger, Level level, long windowStart) {
+            this.format = format;
+            this.logger = logger;
+            this.level = level;
+            this.windowStart = windowStart;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.RollingPolicy;
+import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
+import ch.qos.logback.core.rolling.helper.CompressionMode;
+import ch.qos.logback.core.util.FileSize;
+import ch.qos.logback.core.util.FileUtil;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * {@code RollingFileAppender} that keeps a sidecar {@link LogIndex} next to each log file, so
+ * that {@link LogViewer} can go straight to the blocks that hold a time range or level instead
+ * of scanning every file.
+ * <p>
+ * The index of the active file is {@code <file>.idx}. Each write adds its length, level and
+ * timestamp to the current block, under the write lock the appender takes anyway; every
+ * {@code indexBlockSize} bytes (default 64 KB) the block is appended to the index as one 32 byte
+ * entry, and the block in progress is added when the file is closed. On rollover the index is
+ * renamed along with the file, to the archive's name plus {@code .idx}, and index files whose
+ * log was removed by {@code maxHistory} or {@code totalSizeCap} are deleted. Offsets in the index
+ * of a compressed archive refer to its uncompressed content.
+ * <pre>
+ * &lt;appender name="FILE" class="dev.gamov.colorfullogback.IndexedRollingFileAppender"&gt;
+ *     &lt;file&gt;logs/application.log&lt;/file&gt;
+ *     &lt;rollingPolicy class="ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy"&gt;
+ *         &lt;fileNamePattern&gt;logs/application.%d{yyyy-MM-dd}.%i.log.gz&lt;/fileNamePattern&gt;
+ *         &lt;maxFileSize&gt;10MB&lt;/maxFileSize&gt;
+ *     &lt;/rollingPolicy&gt;
+ *     &lt;encoder&gt;...&lt;/encoder&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ * Archive names are known for time based rolling policies only; with other policies, such as
+ * {@code FixedWindowRollingPolicy}, the index of a rolled file is dropped.
+ */
+public class IndexedRollingFileAppender extends RollingFileAppender<ILoggingEvent> {
+
+    public static final FileSize DEFAULT_INDEX_BLOCK_SIZE = new FileSize(64 * FileSize.KB_COEFFICIENT);
+
+    private static final long MIN_INDEX_BLOCK_SIZE = 4 * FileSize.KB_COEFFICIENT;
+    private static final ThreadLocal<ILoggingEvent> WRITING = new ThreadLocal<>();
+
+    private FileSize indexBlockSize = DEFAULT_INDEX_BLOCK_SIZE;
+    private LogIndex.Writer index;
+    private Path indexedFile;
+
+    @Override
+    public void start() {
+        if (indexBlockSize.getSize() < MIN_INDEX_BLOCK_SIZE || indexBlockSize.getSize() > Integer.MAX_VALUE / 2) {
+            addError("indexBlockSize must be between 4KB and 1GB, was [" + indexBlockSize + "]");
+            return;
+        }
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        streamWriteLock.lock();
+        try {
+            super.stop();
+            closeIndex();
+        } finally {
+            streamWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void openFile(String fileName) throws IOException {
+        streamWriteLock.lock();
+        try {
+            closeIndex();
+            Path file = Paths.get(fileName);
+            // the index is opened first, before the file appender creates the directories
+            FileUtil.createMissingParentDirectories(file.toFile());
+            long length = isAppend() && Files.exists(file) ? Files.size(file) : 0;
+            try {
+                index = LogIndex.Writer.open(file, length, indexBlockSize.getSize());
+                indexedFile = file;
+            } catch (IOException e) {
+                addWarn("Failed to open the index of [" + fileName + "], the file is written without one", e);
+            }
+            super.openFile(fileName);
+        } finally {
+            streamWriteLock.unlock();
+        }
+    }
+
+    @Override
+    public void rollover() {
+        streamWriteLock.lock();
+        try {
+            // the file written so far, which is not the active file name without a file property
+            Path rolled = indexedFile;
+            String archive = archiveName();
+            closeIndex();
+            if (rolled == null) {
+                super.rollover();
+                return;
+            }
+            Path sidecar = LogIndex.sidecar(rolled);
+            try {
+                if (archive == null) {
+                    Files.deleteIfExists(sidecar);
+                } else if (Files.exists(sidecar)) {
+                    Files.move(sidecar, LogIndex.sidecar(Paths.get(archive)));
+                }
+            } catch (IOException e) {
+                addWarn("Failed to move the index [" + sidecar + "] along with its file", e);
+            }
+            super.rollover();
+            deleteOrphanedIndexes(archive == null ? rolled : Paths.get(archive));
+        } finally {
+            streamWriteLock.unlock();
+        }
+    }
+
+    @Override
+    protected void writeOut(ILoggingEvent event) throws IOException {
+        // the bytes reach updateByteCount on this thread, after encoding outside the lock
+        WRITING.set(event);
+        try {
+            super.writeOut(event);
+        } finally {
+            WRITING.remove();
+        }
+    }
+
+    @Override
+    protected void updateByteCount(byte[] byteArray) {
+        super.updateByteCount(byteArray);
+        LogIndex.Writer writer = index;
+        if (writer == null || byteArray == null) {
+            return;
+        }
+        ILoggingEvent event = WRITING.get();
+        try {
+            if (event == null) {
+                writer.record(byteArray.length, 0, 0, false);
+            } else {
+                writer.record(byteArray.length, LogIndex.levelBit(event.getLevel()), event.getTimeStamp(), true);
+            }
+        } catch (IOException e) {
+            addWarn("Failed to write the index of [" + getFile() + "], continuing without one", e);
+            closeIndex();
+        }
+    }
+
+    /**
+     * The name the active file is about to be rolled to, or null if the policy does not tell.
+     */
+    private String archiveName() {
+        RollingPolicy policy = getRollingPolicy();
+        if (!(policy instanceof TimeBasedRollingPolicy)) {
+            return null;
+        }
+        String name = ((TimeBasedRollingPolicy<?>) policy).getTimeBasedFileNamingAndTriggeringPolicy()
+                .getElapsedPeriodsFileName();
+        if (name == null) {
+            return null;
+        }
+        CompressionMode mode = policy.getCompressionMode();
+        if (mode == CompressionMode.GZ) {
+            return name + CompressionMode.GZ_SUFFIX;
+        }
+        if (mode == CompressionMode.ZIP) {
+            return name + CompressionMode.ZIP_SUFFIX;
+        }
+        return name;
+    }
+
+    /**
+     * Delete index files next to the archive whose log file is gone, unless the log is still
+     * being compressed from a {@code .tmp} file.
+     */
+    private void deleteOrphanedIndexes(Path archive) {
+        Path directory = archive.toAbsolutePath().getParent();
+        if (directory == null) {
+            return;
+        }
+        try (DirectoryStream<Path> sidecars = Files.newDirectoryStream(directory, "*" + LogIndex.SUFFIX)) {
+            for (Path sidecar : sidecars) {
+                String name = sidecar.getFileName().toString();
+                Path log = sidecar.resolveSibling(name.substring(0, name.length() - LogIndex.SUFFIX.length()));
+                // in this order: a compression creates the archive before it deletes its source
+                if (!beingCompressed(log) && !Files.exists(log) && LogIndex.isIndex(sidecar)) {
+                    Files.deleteIfExists(sidecar);
+                }
+            }
+        } catch (IOException e) {
+            addWarn("Failed to clean up index files in [" + directory + "]", e);
+        }
+    }
+
+    private static boolean beingCompressed(Path log) throws IOException {
+        String name = log.getFileName().toString();
+        for (String suffix : new String[]{CompressionMode.GZ_SUFFIX, CompressionMode.ZIP_SUFFIX}) {
+            if (name.endsWith(suffix)) {
+                name = name.substring(0, name.length() - suffix.length());
+            }
+        }
+        try (DirectoryStream<Path> sources = Files.newDirectoryStream(log.getParent(), name + "*.tmp")) {
+            return sources.iterator().hasNext();
+        }
+    }
+
+    private void closeIndex() {
+        LogIndex.Writer writer = index;
+        index = null;
+        indexedFile = null;
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                addWarn("Failed to close the index of [" + getFile() + "]", e);
+            }
+        }
+    }
+
+    public FileSize getIndexBlockSize() {
+        return indexBlockSize;
+    }
+
+    public void setIndexBlockSize(FileSize indexBlockSize) {
+        this.indexBlockSize = indexBlockSize;
+    }
+}
@@ -0,0 +1,488 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import ch.qos.logback.core.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Asynchronous appender that never blocks the logging thread and sheds low-priority events first.
+ * <p>
+ * A replacement for {@code AsyncAppender} when request latency must not depend on how fast the
+ * attached appender (typically a file on a slow disk) can write. Instead of blocking when the queue
+ * is full, events are shed by level as the queue fills up:
+ * <ul>
+ *     <li>TRACE and DEBUG above {@code debugThreshold} percent of the capacity (default 50)</li>
+ *     <li>INFO above {@code infoThreshold} percent (default 80)</li>
+ *     <li>WARN when the queue is full ({@code warnThreshold}, default 100)</li>
+ *     <li>ERROR is admitted beyond the capacity into {@code errorReserve} extra slots (default 256)
+ *     and only dropped when those are exhausted as well</li>
+ * </ul>
+ * The capacity adapts to the observed drain rate: once a second it is set to the number of events
+ * the attached appender can write within {@code targetDrainTime} (default 1 second), between
+ * {@code minQueueSize} and {@code maxQueueSize}. A fast disk gets a deep queue for bursts, a slow
+ * one a short queue so that queued events do not go stale. Whenever events were shed, a summary is
+ * logged at WARN at most once per {@code summaryInterval} (default 10 seconds), with the counts as
+ * arguments so that {@code %colorArgs} highlights them:
+ * <pre>
+ * Shed 1520 events in the last 10 seconds: 1200 TRACE/DEBUG, 320 INFO, 0 WARN, 0 ERROR (queue capacity 512)
+ * </pre>
+ * Configuration:
+ * <pre>
+ * &lt;appender name="ASYNC_FILE" class="dev.gamov.colorfullogback.LevelAwareAsyncAppender"&gt;
+ *     &lt;appender-ref ref="FILE"/&gt;
+ *     &lt;minQueueSize&gt;256&lt;/minQueueSize&gt;
+ *     &lt;maxQueueSize&gt;8192&lt;/maxQueueSize&gt;
+ *     &lt;infoThreshold&gt;80&lt;/infoThreshold&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ * The fill level is checked without a lock, so the capacity is a soft bound: concurrent producers
+ * can overshoot it by at most one event each.
+ */
+public class LevelAwareAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent>
+        implements AppenderAttachable<ILoggingEvent> {
+
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    public static final int DEFAULT_MIN_QUEUE_SIZE = 256;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 16384;
+    public static final int DEFAULT_ERROR_RESERVE = 256;
+    public static final Duration DEFAULT_TARGET_DRAIN_TIME = Duration.buildBySeconds(1);
+    public static final Duration DEFAULT_SUMMARY_INTERVAL = Duration.buildBySeconds(10);
+    public static final int DEFAULT_MAX_FLUSH_TIME = 1000;
+
+    /**
+     * Marker carried by the summary of shed events
+     */
+    public static final Marker SHED_SUMMARY_MARKER = MarkerFactory.getMarker("SHED_EVENTS");
+
+    static final String SUMMARY_MESSAGE =
+            "Shed {} events in the last {}: {} TRACE/DEBUG, {} INFO, {} WARN, {} ERROR (queue capacity {})";
+
+    static final int DEBUG_SLOT = 0;
+    static final int INFO_SLOT = 1;
+    static final int WARN_SLOT = 2;
+    static final int ERROR_SLOT = 3;
+
+    private static final long ADJUST_PERIOD_MILLIS = 1000L;
+    private static final long POLL_MILLIS = 100L;
+    private static final int MAX_BATCH = 256;
+
+    private final AppenderAttachableImpl<ILoggingEvent> aai = new AppenderAttachableImpl<>();
+    private final LongAdder[] shed = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+    private final long[] reportedShed = new long[shed.length];
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    // not a monitor: the summary is logged while holding it
+    private final ReentrantLock adjustLock = new ReentrantLock();
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private int minQueueSize = DEFAULT_MIN_QUEUE_SIZE;
+    private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+    private int debugThreshold = 50;
+    private int infoThreshold = 80;
+    private int warnThreshold = 100;
+    private int errorReserve = DEFAULT_ERROR_RESERVE;
+    private Duration targetDrainTime = DEFAULT_TARGET_DRAIN_TIME;
+    private Duration summaryInterval = DEFAULT_SUMMARY_INTERVAL;
+    private int maxFlushTime = DEFAULT_MAX_FLUSH_TIME;
+    private boolean includeCallerData;
+    private LongSupplier nanoClock = System::nanoTime;
+
+    private LinkedBlockingQueue<ILoggingEvent> queue;
+    private volatile int capacity;
+    private volatile int debugLimit;
+    private volatile int infoLimit;
+    private volatile int warnLimit;
+    private volatile boolean running;
+    private Thread worker;
+    private ScheduledFuture<?> adjustTask;
+    private long lastDrained;
+    private long lastBusyNanos;
+    private long lastSummaryMillis;
+    private double drainRate;
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (!aai.iteratorForAppenders().hasNext()) {
+            addError("No attached appenders found.");
+            return;
+        }
+        if (minQueueSize < 1 || maxQueueSize < minQueueSize) {
+            addError("Invalid queue bounds [" + minQueueSize + ", " + maxQueueSize + "]");
+            return;
+        }
+        if (!validThreshold(debugThreshold) || !validThreshold(infoThreshold) || !validThreshold(warnThreshold)) {
+            addError("Thresholds must be percentages between 0 and 100");
+            return;
+        }
+        queue = new LinkedBlockingQueue<>();
+        setCapacity(Math.max(minQueueSize, Math.min(maxQueueSize, queueSize)));
+        lastSummaryMillis = System.currentTimeMillis();
+        running = true;
+        worker = new Thread(this::drain, "LevelAwareAsyncAppender-Worker-" + getName());
+        worker.setDaemon(true);
+        super.start();
+        worker.start();
+        if (getContext() != null) {
+            adjustTask = getContext().getScheduledExecutorService()
+                    .scheduleAtFixedRate(this::adjust, ADJUST_PERIOD_MILLIS, ADJUST_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            getContext().addScheduledFuture(adjustTask);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        if (adjustTask != null) {
+            adjustTask.cancel(false);
+        }
+        running = false;
+        try {
+            worker.join(maxFlushTime);
+            if (worker.isAlive()) {
+                addWarn("Max queue flush timeout (" + maxFlushTime + " ms) exceeded. Approximately "
+                        + queue.size() + " queued events were possibly discarded.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addError("Interrupted while waiting for the worker to flush " + queue.size() + " queued events", e);
+        }
+        long total = 0;
+        for (LongAdder count : shed) {
+            total += count.sum();
+        }
+        if (total > 0) {
+            addWarn("Appender \"" + name + "\" shed " + total + " events since it was started");
+        }
+        aai.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        int size = queue.size();
+        int slot = slot(event.getLevel());
+        int limit;
+        switch (slot) {
+            case DEBUG_SLOT:
+                limit = debugLimit;
+                break;
+            case INFO_SLOT:
+                limit = infoLimit;
+                break;
+            case WARN_SLOT:
+                limit = warnLimit;
+                break;
+            default:
+                limit = capacity + errorReserve;
+                break;
+        }
+        if (size >= limit) {
+            shed[slot].increment();
+            return;
+        }
+        event.prepareForDeferredProcessing();
+        if (includeCallerData) {
+            event.getCallerData();
+        }
+        queue.offer(event);
+    }
+
+    private void drain() {
+        List<ILoggingEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                ILoggingEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                long start = nanoClock.getAsLong();
+                for (ILoggingEvent event : batch) {
+                    aai.appendLoopOnAppenders(event);
+                }
+                busyNanos.add(nanoClock.getAsLong() - start);
+                drained.add(batch.size());
+                batch.clear();
+            } catch (InterruptedException e) {
+                // only stop() ends the worker, after the queue was flushed
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Resize the queue from the drain rate and emit the shed summary when due.
+     */
+    void adjust() {
+        adjustLock.lock();
+        try {
+            resizeAndReport();
+        } finally {
+            adjustLock.unlock();
+        }
+    }
+
+    private void resizeAndReport() {
+        long drainedNow = drained.sum();
+        long busyNow = busyNanos.sum();
+        long events = drainedNow - lastDrained;
+        long busy = busyNow - lastBusyNanos;
+        lastDrained = drainedNow;
+        lastBusyNanos = busyNow;
+        if (events > 0 && busy > 0) {
+            double rate = events * 1_000_000_000d / busy;
+            drainRate = drainRate == 0 ? rate : 0.5 * drainRate + 0.5 * rate;
+            long target = (long) (drainRate * targetDrainTime.getMilliseconds() / 1000d);
+            setCapacity((int) Math.max(minQueueSize, Math.min(maxQueueSize, target)));
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastSummaryMillis >= summaryInterval.getMilliseconds()) {
+            emitSummary(now);
+        }
+    }
+
+    private void emitSummary(long now) {
+        long[] counts = new long[shed.length];
+        long total = 0;
+        for (int i = 0; i < shed.length; i++) {
+            long sum = shed[i].sum();
+            counts[i] = sum - reportedShed[i];
+            reportedShed[i] = sum;
+            total += counts[i];
+        }
+        Duration elapsed = Duration.buildByMilliseconds(now - lastSummaryMillis);
+        lastSummaryMillis = now;
+        if (total > 0) {
+            Logger logger = getContext() instanceof LoggerContext
+                    ? ((LoggerContext) getContext()).getLogger(LevelAwareAsyncAppender.class)
+                    : LoggerFactory.getLogger(LevelAwareAsyncAppender.class);
+            logger.warn(SHED_SUMMARY_MARKER, SUMMARY_MESSAGE, total, elapsed,
+                    counts[DEBUG_SLOT], counts[INFO_SLOT], counts[WARN_SLOT], counts[ERROR_SLOT], capacity);
+        }
+    }
+
+    private void setCapacity(int newCapacity) {
+        capacity = newCapacity;
+        debugLimit = (int) ((long) newCapacity * debugThreshold / 100);
+        infoLimit = (int) ((long) newCapacity * infoThreshold / 100);
+        warnLimit = (int) ((long) newCapacity * warnThreshold / 100);
+    }
+
+    static int slot(Level level) {
+        if (level == null) {
+            return INFO_SLOT;
+        }
+        switch (level.toInt()) {
+            case Level.ERROR_INT:
+                return ERROR_SLOT;
+            case Level.WARN_INT:
+                return WARN_SLOT;
+            case Level.INFO_INT:
+                return INFO_SLOT;
+            default:
+                return level.toInt() < Level.INFO_INT ? DEBUG_SLOT : ERROR_SLOT;
+        }
+    }
+
+    private static boolean validThreshold(int percent) {
+        return percent >= 0 && percent <= 100;
+    }
+
+    /**
+     * Get the number of events shed so far for one level group.
+     *
+     * @param level the level; TRACE and DEBUG share one count
+     * @return the shed event count
+     */
+    public long getShedCount(Level level) {
+        return shed[slot(level)].sum();
+    }
+
+    /**
+     * Get the number of events waiting to be written.
+     *
+     * @return the current queue depth
+     */
+    public int getNumberOfElementsInQueue() {
+        LinkedBlockingQueue<ILoggingEvent> q = queue;
+        return q == null ? 0 : q.size();
+    }
+
+    /**
+     * Get the current, drain-rate adjusted queue capacity, not counting the error reserve.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the smoothed number of events per second the attached appender can write.
+     *
+     * @return the drain rate, or 0 before anything was written
+     */
+    public double getDrainRate() {
+        return drainRate;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Set the initial capacity, used until the first drain rate is known.
+     *
+     * @param queueSize the initial capacity
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getMinQueueSize() {
+        return minQueueSize;
+    }
+
+    public void setMinQueueSize(int minQueueSize) {
+        this.minQueueSize = minQueueSize;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getDebugThreshold() {
+        return debugThreshold;
+    }
+
+    public void setDebugThreshold(int debugThreshold) {
+        this.debugThreshold = debugThreshold;
+    }
+
+    public int getInfoThreshold() {
+        return infoThreshold;
+    }
+
+    public void setInfoThreshold(int infoThreshold) {
+        this.infoThreshold = infoThreshold;
+    }
+
+    public int getWarnThreshold() {
+        return warnThreshold;
+    }
+
+    public void setWarnThreshold(int warnThreshold) {
+        this.warnThreshold = warnThreshold;
+    }
+
+    public int getErrorReserve() {
+        return errorReserve;
+    }
+
+    public void setErrorReserve(int errorReserve) {
+        this.errorReserve = errorReserve;
+    }
+
+    public Duration getTargetDrainTime() {
+        return targetDrainTime;
+    }
+
+    public void setTargetDrainTime(Duration targetDrainTime) {
+        this.targetDrainTime = targetDrainTime;
+    }
+
+    public Duration getSummaryInterval() {
+        return summaryInterval;
+    }
+
+    public void setSummaryInterval(Duration summaryInterval) {
+        this.summaryInterval = summaryInterval;
+    }
+
+    public int getMaxFlushTime() {
+        return maxFlushTime;
+    }
+
+    public void setMaxFlushTime(int maxFlushTime) {
+        this.maxFlushTime = maxFlushTime;
+    }
+
+    public boolean isIncludeCallerData() {
+        return includeCallerData;
+    }
+
+    public void setIncludeCallerData(boolean includeCallerData) {
+        this.includeCallerData = includeCallerData;
+    }
+
+    void setNanoClock(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> newAppender) {
+        aai.addAppender(newAppender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return aai.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return aai.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return aai.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        aai.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return aai.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return aai.detachAppender(name);
+    }
+}
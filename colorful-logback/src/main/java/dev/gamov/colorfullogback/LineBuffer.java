@@ -0,0 +1,161 @@
+package dev.gamov.colorfullogback;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that a log line is rendered into. Characters are encoded to
+ * UTF-8 while they are appended, so no intermediate String or charset encoder is
+ * needed, and pre-encoded ANSI sequences are copied in as-is.
+ * <p>
+ * Instances are not thread-safe; they are meant to be reused per thread.
+ */
+final class LineBuffer {
+
+    private static final int DEFAULT_CAPACITY = 512;
+
+    private byte[] bytes;
+    private int length;
+    private StringBuilder scratch = new StringBuilder(128);
+    private char[] chars = new char[256];
+
+    LineBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    LineBuffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Drop everything after the first {@code newLength} bytes.
+     *
+     * @param newLength the length to keep, not larger than the current length
+     */
+    void truncate(int newLength) {
+        length = newLength;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    void append(byte b) {
+        ensureCapacity(length + 1);
+        bytes[length++] = b;
+    }
+
+    void append(byte[] src) {
+        append(src, 0, src.length);
+    }
+
+    void append(byte[] src, int offset, int count) {
+        ensureCapacity(length + count);
+        System.arraycopy(src, offset, bytes, length, count);
+        length += count;
+    }
+
+    void appendUtf8(CharSequence s) {
+        if (s != null) {
+            appendUtf8(s, 0, s.length());
+        }
+    }
+
+    void appendUtf8(CharSequence s, int start, int end) {
+        int count = end - start;
+        if (count > chars.length) {
+            chars = new char[Math.max(count, chars.length << 1)];
+        }
+        // bulk copy first so the encoding loop below runs over a plain array
+        if (s instanceof String) {
+            ((String) s).getChars(start, end, chars, 0);
+        } else if (s instanceof StringBuilder) {
+            ((StringBuilder) s).getChars(start, end, chars, 0);
+        } else {
+            for (int i = 0; i < count; i++) {
+                chars[i] = s.charAt(start + i);
+            }
+        }
+        appendUtf8(chars, count);
+    }
+
+    private void appendUtf8(char[] src, int count) {
+        // worst case is three bytes per UTF-16 char
+        ensureCapacity(length + count * 3);
+        byte[] dst = bytes;
+        int pos = length;
+        int i = 0;
+        while (i < count && src[i] < 0x80) {
+            dst[pos++] = (byte) src[i++];
+        }
+        for (; i < count; i++) {
+            char c = src[i];
+            if (c < 0x80) {
+                dst[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[pos++] = (byte) (0xC0 | (c >> 6));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(src[i + 1])) {
+                int codePoint = Character.toCodePoint(c, src[++i]);
+                dst[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                dst[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                dst[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, same replacement as String.getBytes(UTF_8)
+                dst[pos++] = (byte) '?';
+            } else {
+                dst[pos++] = (byte) (0xE0 | (c >> 12));
+                dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        length = pos;
+    }
+
+    /**
+     * Get an empty scratch builder for converters that can only render into a StringBuilder.
+     *
+     * @return the cleared scratch builder
+     */
+    StringBuilder scratch() {
+        scratch.setLength(0);
+        return scratch;
+    }
+
+    /**
+     * Drop oversized backing arrays after an unusually long line so a pooled buffer
+     * does not pin that memory forever.
+     *
+     * @param maxRetainedCapacity the largest capacity worth keeping
+     */
+    void trim(int maxRetainedCapacity) {
+        if (bytes.length > maxRetainedCapacity) {
+            bytes = new byte[DEFAULT_CAPACITY];
+        }
+        if (scratch.capacity() > maxRetainedCapacity) {
+            scratch = new StringBuilder(128);
+        }
+        if (chars.length > maxRetainedCapacity) {
+            chars = new char[256];
+        }
+        length = 0;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length << 1));
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sidecar index of a log file, written by {@link IndexedRollingFileAppender} to the file's
+ * name plus {@value #SUFFIX} and read by {@link LogViewer}.
+ * <p>
+ * The log is cut into blocks of about {@code blockSize} bytes at event boundaries. Per block the
+ * index holds its offset and length in the (uncompressed) log, the earliest and latest event
+ * timestamp, and a bitmap of the levels in it, so a reader looking for "ERRORs between 14:02 and
+ * 14:05" visits only the blocks that can hold one, and skips a file none of whose blocks can.
+ * Timestamps of concurrent events are not strictly ordered in the file, which the time range of
+ * each block allows for.
+ * <p>
+ * The file is an 8 byte header ({@code "CLI"}, a version byte, four reserved bytes) followed by
+ * {@value #ENTRY_SIZE} byte entries: offset (8 bytes), length (4), level bits (4), earliest and
+ * latest timestamp (8 each), big-endian. A block whose content is unknown, such as the part of a
+ * file written before it was indexed, has every level bit and the widest time range. Bytes after
+ * the last block, for instance the block in progress when the process died, are not covered.
+ */
+final class LogIndex {
+
+    static final String SUFFIX = ".idx";
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 32;
+    static final int VERSION = 1;
+    /** Level bits of a block whose content is unknown. */
+    static final int ALL_LEVELS = -1;
+
+    private static final byte[] MAGIC = {'C', 'L', 'I'};
+
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] levels;
+    private final long[] earliest;
+    private final long[] latest;
+
+    private LogIndex(int size) {
+        offsets = new long[size];
+        lengths = new int[size];
+        levels = new int[size];
+        earliest = new long[size];
+        latest = new long[size];
+    }
+
+    /**
+     * The index file of a log file.
+     */
+    static Path sidecar(Path logFile) {
+        return logFile.resolveSibling(logFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * The bit of a level in a block's level bitmap.
+     */
+    static int levelBit(Level level) {
+        if (level == null) {
+            return 0;
+        }
+        switch (level.toInt()) {
+            case Level.TRACE_INT:
+                return 1;
+            case Level.DEBUG_INT:
+                return 1 << 1;
+            case Level.INFO_INT:
+                return 1 << 2;
+            case Level.WARN_INT:
+                return 1 << 3;
+            case Level.ERROR_INT:
+                return 1 << 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * The bits of the level and all levels above it, or {@link #ALL_LEVELS} for null.
+     */
+    static int levelsFrom(Level threshold) {
+        if (threshold == null) {
+            return ALL_LEVELS;
+        }
+        int bit = levelBit(threshold);
+        return bit == 0 ? ALL_LEVELS : ~(bit - 1);
+    }
+
+    /**
+     * Read an index file, or return null if it is missing or not an index.
+     */
+    static LogIndex read(Path file) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!hasHeader(bytes)) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        LogIndex index = new LogIndex((bytes.length - HEADER_SIZE) / ENTRY_SIZE);
+        for (int i = 0; i < index.offsets.length; i++) {
+            data.position(HEADER_SIZE + i * ENTRY_SIZE);
+            index.offsets[i] = data.getLong();
+            index.lengths[i] = data.getInt();
+            index.levels[i] = data.getInt();
+            index.earliest[i] = data.getLong();
+            index.latest[i] = data.getLong();
+        }
+        return index;
+    }
+
+    /**
+     * Whether the file starts with an index header.
+     */
+    static boolean isIndex(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // keep reading
+            }
+            return hasHeader(header.array()) && header.position() == HEADER_SIZE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasHeader(byte[] bytes) {
+        if (bytes.length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return bytes[MAGIC.length] == VERSION;
+    }
+
+    int size() {
+        return offsets.length;
+    }
+
+    /**
+     * The end of the last block: later bytes of the log are not covered by the index.
+     */
+    long coveredEnd() {
+        int last = offsets.length - 1;
+        return last < 0 ? 0 : offsets[last] + lengths[last];
+    }
+
+    /**
+     * The byte ranges of the log that can hold an event in the time range with one of the levels:
+     * the matching blocks, merged where adjacent, plus everything after the covered part.
+     *
+     * @param from the earliest timestamp, inclusive
+     * @param to the latest timestamp, inclusive
+     * @param levelMask the wanted level bits
+     * @param logLength the length of the log, or {@link Long#MAX_VALUE} if not known
+     * @return start and end offset pairs
+     */
+    List<long[]> ranges(long from, long to, int levelMask, long logLength) {
+        List<long[]> ranges = new ArrayList<>();
+        for (int i = 0; i < offsets.length; i++) {
+            if ((levels[i] & levelMask) == 0 || latest[i] < from || earliest[i] > to) {
+                continue;
+            }
+            add(ranges, offsets[i], offsets[i] + lengths[i]);
+        }
+        if (coveredEnd() < logLength) {
+            add(ranges, coveredEnd(), logLength);
+        }
+        return ranges;
+    }
+
+    private static void add(List<long[]> ranges, long start, long end) {
+        long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+        if (last != null && last[1] == start) {
+            last[1] = end;
+        } else {
+            ranges.add(new long[]{start, end});
+        }
+    }
+
+    /**
+     * Accumulates the current block and appends it to the index file when it is full. Used under
+     * the appender's write lock.
+     */
+    static final class Writer {
+        private final FileChannel channel;
+        private final long blockSize;
+        private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        private long blockStart;
+        private long blockLength;
+        private int blockLevels;
+        private long blockEarliest = Long.MAX_VALUE;
+        private long blockLatest = Long.MIN_VALUE;
+
+        private Writer(FileChannel channel, long blockSize, long position) {
+            this.channel = channel;
+            this.blockSize = blockSize;
+            this.blockStart = position;
+        }
+
+        /**
+         * Open the index of a log file about to be written at {@code logLength}. An existing
+         * index is continued if it fits the log; otherwise, or if there is none, it is started
+         * over, and any content not covered is recorded as an unknown block.
+         */
+        static Writer open(Path logFile, long logLength, long blockSize) throws IOException {
+            Path file = sidecar(logFile);
+            LogIndex existing = logLength > 0 ? read(file) : null;
+            boolean keep = existing != null && existing.coveredEnd() <= logLength;
+            FileChannel channel;
+            if (keep) {
+                channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                channel.position(HEADER_SIZE + (long) existing.size() * ENTRY_SIZE);
+                channel.truncate(channel.position());
+            } else {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(MAGIC).put((byte) VERSION).position(HEADER_SIZE).flip();
+                write(channel, header);
+            }
+            long covered = keep ? existing.coveredEnd() : 0;
+            Writer writer = new Writer(channel, blockSize, covered);
+            while (covered < logLength) {
+                long length = Math.min(logLength - covered, Integer.MAX_VALUE);
+                writer.writeEntry(covered, length, ALL_LEVELS, Long.MIN_VALUE, Long.MAX_VALUE);
+                covered += length;
+            }
+            writer.blockStart = covered;
+            return writer;
+        }
+
+        /**
+         * Account for bytes written to the log.
+         *
+         * @param length the number of bytes
+         * @param levelBit the bit of the event's level, or 0 for bytes that are not an event
+         * @param timeStamp the event's timestamp
+         * @param event whether the bytes are an event
+         */
+        void record(int length, int levelBit, long timeStamp, boolean event) throws IOException {
+            blockLength += length;
+            if (event) {
+                blockLevels |= levelBit;
+                blockEarliest = Math.min(blockEarliest, timeStamp);
+                blockLatest = Math.max(blockLatest, timeStamp);
+            }
+            if (blockLength >= blockSize) {
+                finishBlock();
+            }
+        }
+
+        /**
+         * Write out the block in progress and close the index.
+         */
+        void close() throws IOException {
+            try {
+                finishBlock();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void finishBlock() throws IOException {
+            if (blockLength == 0) {
+                return;
+            }
+            boolean anyEvent = blockEarliest <= blockLatest;
+            writeEntry(blockStart, blockLength, blockLevels,
+                    anyEvent ? blockEarliest : Long.MAX_VALUE, anyEvent ? blockLatest : Long.MIN_VALUE);
+            blockStart += blockLength;
+            blockLength = 0;
+            blockLevels = 0;
+            blockEarliest = Long.MAX_VALUE;
+            blockLatest = Long.MIN_VALUE;
+        }
+
+        private void writeEntry(long offset, long length, int levels, long earliest, long latest)
+                throws IOException {
+            entry.clear();
+            entry.putLong(offset).putInt((int) length).putInt(levels)
+                    .putLong(earliest).putLong(latest).flip();
+            write(channel, entry);
+        }
+
+        private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
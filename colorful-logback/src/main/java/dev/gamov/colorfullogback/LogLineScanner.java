@@ -0,0 +1,335 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Filters and colors the lines of a text log file straight from its bytes, for {@link LogViewer}.
+ * <p>
+ * A line starting with a {@code yyyy-MM-dd HH:mm:ss.SSS} timestamp opens an event, laid out as
+ * the library's patterns write it: timestamp, level, {@code [thread]}, logger (or caller) and
+ * {@code ": "} before the message. Any other line, such as a stack frame, belongs to the event
+ * before it and is kept or dropped with it. Level, logger prefix and time range are checked on
+ * the raw bytes; the time range compares the timestamp text, which sorts like the time. Only
+ * matching events are decoded, into an event rendered by the viewer's encoder; their other lines
+ * are copied as they are. Escape sequences in the input are removed first, and a zero byte at
+ * the start of a line ends the content (a file preallocated by {@link MappedFileAppender}).
+ * <p>
+ * A scanner keeps the state of the event in progress, so one instance reads one file from
+ * start to end, in as many pieces as it arrives. It is not thread-safe.
+ */
+final class LogLineScanner {
+
+    static final int TIMESTAMP_LENGTH = "yyyy-MM-dd HH:mm:ss.SSS".length();
+
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final byte ESC = 0x1b;
+    private static final byte[][] LEVEL_NAMES = {
+            bytes("TRACE"), bytes("DEBUG"), bytes("INFO"), bytes("WARN"), bytes("ERROR")};
+    private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR};
+
+    private final ColorfulPatternEncoder encoder;
+    private final Level threshold;
+    private final byte[][] loggerPrefixes;
+    private final byte[] from;
+    private final byte[] to;
+    private OutputStream out;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final LineBuffer buffer = new LineBuffer(FLUSH_THRESHOLD + 1024);
+    private byte[] scratch = new byte[256];
+    private boolean inMatch;
+
+    /**
+     * @param encoder renders matching events
+     * @param threshold the lowest level to keep, or null for all
+     * @param loggerPrefixes keep loggers starting with one of these; all if empty
+     * @param from the earliest timestamp to keep, a prefix of {@code yyyy-MM-dd HH:mm:ss.SSS}, or null
+     * @param to the latest timestamp to keep, compared on its length only, or null
+     * @param out receives the rendered lines
+     */
+    LogLineScanner(ColorfulPatternEncoder encoder, Level threshold, List<String> loggerPrefixes,
+                   String from, String to, OutputStream out) {
+        this.encoder = encoder;
+        this.threshold = threshold;
+        List<String> prefixes = loggerPrefixes == null ? Collections.emptyList() : loggerPrefixes;
+        this.loggerPrefixes = new byte[prefixes.size()][];
+        for (int i = 0; i < prefixes.size(); i++) {
+            this.loggerPrefixes[i] = bytes(prefixes.get(i));
+        }
+        this.from = from == null ? null : bytes(from);
+        this.to = to == null ? null : bytes(to);
+        this.out = out;
+        // lines before the first event are shown unless something is filtered
+        this.inMatch = threshold == null && prefixes.isEmpty() && from == null && to == null;
+    }
+
+    /**
+     * Scan the complete lines in a range of the data.
+     *
+     * @param data the file content
+     * @param start the first byte, at the start of a line
+     * @param end the end of the range
+     * @param endOfInput whether a line cut off at {@code end} is complete
+     * @return where scanning stopped: after the last complete line, or at the end of the content
+     */
+    int scan(ByteBuffer data, int start, int end, boolean endOfInput) throws IOException {
+        int position = start;
+        while (position < end) {
+            if (data.get(position) == 0) {
+                break;
+            }
+            int newline = indexOf(data, (byte) '\n', position, end);
+            if (newline < 0 && !endOfInput) {
+                break;
+            }
+            int lineEnd = newline < 0 ? end : newline;
+            line(data, position, lineEnd > position && data.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd);
+            position = newline < 0 ? end : newline + 1;
+            if (buffer.length() >= FLUSH_THRESHOLD) {
+                flush();
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Write out what was rendered so far.
+     */
+    void flush() throws IOException {
+        if (buffer.length() > 0) {
+            out.write(buffer.array(), 0, buffer.length());
+            buffer.reset();
+        }
+        buffer.trim(FLUSH_THRESHOLD + 1024);
+    }
+
+    /**
+     * Send further output elsewhere, keeping the state of the event in progress.
+     */
+    void setOut(OutputStream out) {
+        this.out = out;
+    }
+
+    private void line(ByteBuffer data, int start, int end) {
+        if (indexOf(data, ESC, start, end) >= 0) {
+            int length = end - start;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            data.get(start, scratch, 0, length);
+            int stripped = AnsiStripper.strip(scratch, 0, length);
+            data = ByteBuffer.wrap(scratch, 0, stripped);
+            start = 0;
+            end = stripped;
+        }
+        if (!isTimestamp(data, start, end)) {
+            if (inMatch) {
+                appendRaw(data, start, end);
+            }
+            return;
+        }
+        inMatch = header(data, start, end);
+    }
+
+    /**
+     * Filter and render the first line of an event.
+     *
+     * @return whether the event matched
+     */
+    private boolean header(ByteBuffer data, int start, int end) {
+        int timestampEnd = start + TIMESTAMP_LENGTH;
+        if (from != null && compare(data, start, timestampEnd, from) < 0
+                || to != null && compare(data, start, timestampEnd, to) > 0) {
+            return false;
+        }
+        int position = skipSpaces(data, timestampEnd, end);
+        int levelEnd = indexOf(data, (byte) ' ', position, end);
+        Level level = level(data, position, levelEnd < 0 ? end : levelEnd);
+        if (threshold != null && (level == null || !level.isGreaterOrEqual(threshold))) {
+            return false;
+        }
+        int threadStart = -1;
+        int threadEnd = -1;
+        if (level != null) {
+            position = skipSpaces(data, levelEnd < 0 ? end : levelEnd, end);
+            if (position < end && data.get(position) == '[') {
+                int close = indexOf(data, "] ", position + 1, end);
+                if (close >= 0) {
+                    threadStart = position + 1;
+                    threadEnd = close;
+                    position = close + 2;
+                }
+            }
+        }
+        int separator = threadStart < 0 ? -1 : indexOf(data, ": ", position, end);
+        if (loggerPrefixes.length > 0 && (separator < 0 || !startsWithAny(data, position, separator))) {
+            return false;
+        }
+        if (separator < 0) {
+            // not laid out as expected: keep the line as it is
+            appendRaw(data, start, end);
+            return true;
+        }
+        LoggingEvent event = new LoggingEvent();
+        event.setTimeStamp(timestamp(data, start));
+        event.setLevel(level);
+        event.setThreadName(string(data, threadStart, threadEnd));
+        event.setLoggerName(string(data, position, separator));
+        event.setMessage(string(data, separator + 2, end));
+        event.setMDCPropertyMap(Collections.emptyMap());
+        encoder.encodeTo(event, buffer);
+        return true;
+    }
+
+    private void appendRaw(ByteBuffer data, int start, int end) {
+        int length = end - start;
+        if (data.hasArray()) {
+            buffer.append(data.array(), data.arrayOffset() + start, length);
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            data.get(start, scratch, 0, length);
+            buffer.append(scratch, 0, length);
+        }
+        buffer.append((byte) '\n');
+    }
+
+    private boolean startsWithAny(ByteBuffer data, int start, int end) {
+        for (byte[] prefix : loggerPrefixes) {
+            if (prefix.length <= end - start && compare(data, start, start + prefix.length, prefix) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long timestamp(ByteBuffer data, int start) {
+        LocalDateTime time = LocalDateTime.of(digits(data, start, 4), digits(data, start + 5, 2),
+                digits(data, start + 8, 2), digits(data, start + 11, 2), digits(data, start + 14, 2),
+                digits(data, start + 17, 2), digits(data, start + 20, 3) * 1_000_000);
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Whether the line starts with a {@code yyyy-MM-dd HH:mm:ss.SSS} timestamp.
+     */
+    static boolean isTimestamp(ByteBuffer data, int start, int end) {
+        if (end - start < TIMESTAMP_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            byte b = data.get(start + i);
+            boolean ok;
+            switch (i) {
+                case 4:
+                case 7:
+                    ok = b == '-';
+                    break;
+                case 10:
+                    ok = b == ' ' || b == 'T';
+                    break;
+                case 13:
+                case 16:
+                    ok = b == ':';
+                    break;
+                case 19:
+                    ok = b == '.' || b == ',';
+                    break;
+                default:
+                    ok = b >= '0' && b <= '9';
+            }
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare the bytes of a range, cut to the length of {@code other}, with {@code other}.
+     */
+    static int compare(ByteBuffer data, int start, int end, byte[] other) {
+        int length = Math.min(end - start, other.length);
+        for (int i = 0; i < length; i++) {
+            byte b = data.get(start + i);
+            byte o = other[i];
+            if (b != o) {
+                // a 'T' between date and time sorts like the space
+                if (i == 10 && (b == 'T' || b == ' ') && (o == 'T' || o == ' ')) {
+                    continue;
+                }
+                return (b & 0xFF) - (o & 0xFF);
+            }
+        }
+        return end - start < other.length ? -1 : 0;
+    }
+
+    private static Level level(ByteBuffer data, int start, int end) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            byte[] name = LEVEL_NAMES[i];
+            if (name.length == end - start && compare(data, start, end, name) == 0) {
+                return LEVELS[i];
+            }
+        }
+        return null;
+    }
+
+    private static int digits(ByteBuffer data, int start, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            value = value * 10 + data.get(start + i) - '0';
+        }
+        return value;
+    }
+
+    private static int skipSpaces(ByteBuffer data, int position, int end) {
+        while (position < end && data.get(position) == ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    static int indexOf(ByteBuffer data, byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(ByteBuffer data, String twoChars, int start, int end) {
+        byte first = (byte) twoChars.charAt(0);
+        byte second = (byte) twoChars.charAt(1);
+        for (int i = start; i + 1 < end; i++) {
+            if (data.get(i) == first && data.get(i + 1) == second) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String string(ByteBuffer data, int start, int end) {
+        int length = end - start;
+        if (data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        data.get(start, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,610 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line viewer for the text log files of a rolling appender, colored like the console.
+ * <p>
+ * The files are filtered in parallel, one file per worker, and printed in the order of their
+ * first timestamp, so {@code logs/application*.log*} reads from the oldest archive to the active
+ * file whatever order the shell expands it in. Plain files are memory-mapped and scanned in
+ * place; {@code .gz} archives are decompressed as a stream. Matching lines are rendered with
+ * the converters of this library (see {@link LogLineScanner} for the expected layout), so levels
+ * and packages get the same colors, and theme, as on the console:
+ * <pre>
+ * java -cp colorful-logback.jar:logback-classic.jar:logback-core.jar:slf4j-api.jar \
+ *     dev.gamov.colorfullogback.LogViewer [options] file ...
+ *
+ *   --level &lt;level&gt;              only this level and above
+ *   --logger &lt;prefix&gt;            only loggers starting with the prefix (repeatable)
+ *   --from &lt;time&gt;, --to &lt;time&gt;  only this time range, e.g. "2025-07-01 14:02"; both ends inclusive
+ *   -f, --follow                 keep printing what is appended to the last plain file
+ *   --threads &lt;n&gt;                files filtered at once (default: available processors)
+ *   --pattern &lt;pattern&gt;          pattern to render with (default {@value #DEFAULT_PATTERN})
+ *   --color auto|always|never    whether to emit colors (default auto)
+ *   --theme &lt;file&gt;               color theme, as for the colorful.logback.theme property
+ * </pre>
+ * Following waits on a {@link WatchService} for changes to the file's directory and starts over
+ * when the file is rolled. Writes through a memory mapping raise no change event on some
+ * systems, so the file is also checked every {@value #FOLLOW_RECHECK_MILLIS} ms without one.
+ * <p>
+ * A file written by {@link IndexedRollingFileAppender} has a sidecar {@link LogIndex}; with
+ * {@code --level}, {@code --from} or {@code --to} only its blocks that can match are read, and a
+ * file none of whose blocks can is not opened. A {@code .gz} archive is still decompressed up
+ * to the last matching block, but not scanned. Index times are compared in the viewer's time
+ * zone, which has to be the one the log was written in. Index files among the arguments are
+ * skipped, so {@code logs/application.log*} can name them too.
+ */
+public final class LogViewer {
+
+    public static final String DEFAULT_PATTERN =
+            "%colorTimeLevel{yyyy-MM-dd HH:mm:ss.SSS} %colorPackage([%thread] %logger): %msg%n";
+
+    static final long FOLLOW_RECHECK_MILLIS = 1000;
+
+    private static final String USAGE = "Usage: LogViewer [--level <level>] [--logger <prefix>]... "
+            + "[--from <time>] [--to <time>] [-f|--follow] [--threads <n>] [--pattern <pattern>] "
+            + "[--color auto|always|never] [--theme <file>] file ...";
+    private static final Pattern TIME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}([ T]\\d{2}(:\\d{2}(:\\d{2}(\\.\\d{1,3})?)?)?)?");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss.SSS");
+    // completions of a --from and --to prefix to the first and last millisecond it names
+    private static final String EARLIEST = "0000-01-01 00:00:00.000";
+    private static final String LATEST = "9999-12-31 23:59:59.999";
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    private static final int READ_CHUNK = 64 * 1024;
+    private static final int QUEUED_CHUNKS = 64;
+    private static final byte[] END = new byte[0];
+
+    private LogViewer() {
+    }
+
+    public static void main(String[] args) {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Filter and print the log files named in the arguments. With {@code --follow} this returns
+     * only when the calling thread is interrupted.
+     *
+     * @param args the command line
+     * @param out receives the rendered lines
+     * @param err receives usage and error messages
+     * @return the exit status: 0 on success, 1 if a file could not be read, 2 on bad usage
+     */
+    static int run(String[] args, OutputStream out, PrintStream err) {
+        Options options = new Options();
+        String problem = options.parse(args);
+        if (problem != null) {
+            if (!problem.isEmpty()) {
+                err.println(problem);
+            }
+            err.println(USAGE);
+            return problem.isEmpty() ? 0 : 2;
+        }
+
+        LoggerContext context = BinaryLogRenderer.newContext(options.color, options.theme);
+        ExecutorService workers = null;
+        try {
+            ColorfulPatternEncoder encoder = BinaryLogRenderer.newEncoder(context, options.pattern, err);
+            if (encoder == null) {
+                return 2;
+            }
+            OutputStream buffered = new BufferedOutputStream(out, READ_CHUNK);
+            List<Scan> scans = new ArrayList<>();
+            for (String file : options.files) {
+                Path path = Paths.get(file);
+                if (file.endsWith(LogIndex.SUFFIX) && LogIndex.isIndex(path)) {
+                    // matched by logs/application.log* along with the logs
+                    continue;
+                }
+                scans.add(new Scan(path, options, encoder));
+            }
+            int status = 0;
+            for (Scan scan : scans) {
+                try {
+                    scan.firstTimestamp = firstTimestamp(scan.file);
+                } catch (IOException e) {
+                    scan.fail(e);
+                }
+            }
+            List<Scan> ordered = new ArrayList<>(scans);
+            ordered.sort(Comparator.comparing((Scan scan) -> scan.firstTimestamp,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+            Scan active = null;
+            for (Scan scan : ordered) {
+                if (!isGzip(scan.file)) {
+                    active = scan;
+                }
+            }
+            for (Scan scan : ordered) {
+                scan.holdTail = options.follow && scan == active;
+            }
+
+            AtomicInteger threadCount = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(options.threads, runnable -> {
+                Thread thread = new Thread(runnable, "log-viewer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            // files ahead of the one printed wait with at most QUEUED_CHUNKS rendered chunks each
+            Deque<Scan> submitted = new ArrayDeque<>();
+            int next = 0;
+            for (Scan scan : ordered) {
+                while (next < ordered.size() && submitted.size() <= options.threads) {
+                    Scan ahead = ordered.get(next++);
+                    submitted.add(ahead);
+                    workers.execute(ahead);
+                }
+                submitted.remove(scan);
+                for (byte[] chunk = scan.chunks.take(); chunk != END; chunk = scan.chunks.take()) {
+                    buffered.write(chunk);
+                }
+                if (scan.failure != null) {
+                    buffered.flush();
+                    err.println(scan.file + ": " + scan.failure.getMessage());
+                    status = 1;
+                }
+            }
+            buffered.flush();
+
+            if (options.follow) {
+                if (active == null || active.failure != null) {
+                    err.println("Nothing to follow: no plain log file could be read");
+                    return 1;
+                }
+                follow(active, buffered);
+            }
+            return status;
+        } catch (InterruptedException | InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (IOException e) {
+            err.println("Failed to write: " + e.getMessage());
+            return 1;
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            context.stop();
+        }
+    }
+
+    /**
+     * Print what is appended to the file until the thread is interrupted, starting where its scan
+     * stopped, and start over at the top of the file when it is replaced or truncated.
+     */
+    private static void follow(Scan scan, OutputStream out) throws IOException, InterruptedException {
+        Path file = scan.file.toAbsolutePath();
+        LogLineScanner scanner = scan.scanner(out);
+        long position = scan.position;
+        Object identity = scan.identity;
+        ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK);
+        try (WatchService watcher = file.getFileSystem().newWatchService()) {
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!Thread.currentThread().isInterrupted()) {
+                BasicFileAttributes attributes = attributes(file);
+                if (attributes != null) {
+                    Object current = attributes.fileKey();
+                    if (!Objects.equals(current, identity) || attributes.size() < position) {
+                        // rolled over: the name now belongs to a new file
+                        identity = current;
+                        position = 0;
+                    }
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        int pending = 0;
+                        chunk.clear();
+                        while (true) {
+                            int read = channel.read(chunk, position + pending);
+                            if (read <= 0) {
+                                break;
+                            }
+                            pending += read;
+                            int consumed = scanner.scan(chunk, 0, pending, false);
+                            if (consumed == 0 && pending == chunk.capacity()) {
+                                // a line longer than the chunk: print it in pieces
+                                consumed = scanner.scan(chunk, 0, pending, true);
+                            }
+                            if (consumed == 0) {
+                                break;
+                            }
+                            System.arraycopy(chunk.array(), consumed, chunk.array(), 0, pending - consumed);
+                            position += consumed;
+                            pending -= consumed;
+                            chunk.position(pending);
+                        }
+                        // an unfinished line, or zero bytes about to be overwritten in place, is read again
+                    }
+                    scanner.flush();
+                    out.flush();
+                }
+                WatchKey key = watcher.poll(FOLLOW_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed while waiting: done
+        }
+    }
+
+    private static BasicFileAttributes attributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // between the roll and the first event of the new file
+            return null;
+        }
+    }
+
+    /**
+     * The timestamp text of the first event in the file, or null if it has none up front.
+     */
+    static String firstTimestamp(Path file) throws IOException {
+        byte[] head = new byte[READ_CHUNK];
+        int length;
+        try (InputStream in = open(file)) {
+            length = in.readNBytes(head, 0, head.length);
+        }
+        ByteBuffer data = ByteBuffer.wrap(head, 0, length);
+        int position = 0;
+        while (position < length) {
+            int newline = LogLineScanner.indexOf(data, (byte) '\n', position, length);
+            int lineEnd = newline < 0 ? length : newline;
+            if (LogLineScanner.isTimestamp(data, position, lineEnd)) {
+                return new String(head, position, LogLineScanner.TIMESTAMP_LENGTH, StandardCharsets.UTF_8)
+                        .replace('T', ' ');
+            }
+            position = lineEnd + 1;
+        }
+        return null;
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        return isGzip(file) ? new GZIPInputStream(in, READ_CHUNK) : in;
+    }
+
+    private static boolean isGzip(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * One file, filtered on a worker into a bounded queue of rendered chunks.
+     */
+    private static final class Scan implements Runnable {
+        final Path file;
+        final Options options;
+        final ColorfulPatternEncoder encoder;
+        final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS + 1);
+        String firstTimestamp;
+        boolean holdTail;
+        volatile IOException failure;
+        /** Where the scan stopped, and the file it read, for following it afterwards. */
+        volatile long position;
+        volatile Object identity;
+        private LogLineScanner scanner;
+
+        Scan(Path file, Options options, ColorfulPatternEncoder encoder) {
+            this.file = file;
+            this.options = options;
+            this.encoder = encoder;
+        }
+
+        /**
+         * The scanner of this file, created on first use and writing to {@code out} from now on.
+         */
+        LogLineScanner scanner(OutputStream out) {
+            if (scanner == null) {
+                scanner = new LogLineScanner(encoder, options.level, options.loggers, options.from, options.to, out);
+            } else {
+                scanner.setOut(out);
+            }
+            return scanner;
+        }
+
+        void fail(IOException e) {
+            failure = e;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (failure == null) {
+                    LogLineScanner scanner = scanner(new ChunkQueue(chunks));
+                    if (isGzip(file)) {
+                        scanStream(scanner);
+                    } else {
+                        scanMapped(scanner);
+                    }
+                    scanner.flush();
+                }
+            } catch (InterruptedIOException e) {
+                return;
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException | InternalError e) {
+                // InternalError: the mapped file was truncated under the scan
+                failure = new IOException(e.toString(), e);
+            }
+            try {
+                chunks.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void scanMapped(LogLineScanner scanner) throws IOException {
+            identity = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                // with nothing after the last range, following starts at the end of the file
+                position = size;
+                for (long[] range : ranges(size)) {
+                    long end = Math.min(range[1], size);
+                    long offset = range[0];
+                    // a range of the index ends with an event, only the end of the file may not
+                    boolean hold = holdTail && end == size;
+                    while (offset < end) {
+                        long length = Math.min(MAP_WINDOW, end - offset);
+                        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                        boolean last = offset + length == end;
+                        int consumed = scanner.scan(window, 0, (int) length, last && !hold);
+                        if (consumed == 0) {
+                            if (last || window.get(0) == 0) {
+                                break;
+                            }
+                            // a line longer than the window: print it in pieces
+                            consumed = scanner.scan(window, 0, (int) length, true);
+                        }
+                        offset += consumed;
+                        if (consumed < length && last) {
+                            break;
+                        }
+                    }
+                    if (end == size) {
+                        position = offset;
+                    }
+                }
+            }
+        }
+
+        private void scanStream(LogLineScanner scanner) throws IOException {
+            List<long[]> ranges = ranges(Long.MAX_VALUE);
+            if (ranges.isEmpty()) {
+                // nothing to decompress
+                return;
+            }
+            byte[] chunk = new byte[READ_CHUNK];
+            ByteBuffer data = ByteBuffer.wrap(chunk);
+            try (InputStream in = open(file)) {
+                long offset = 0;
+                for (long[] range : ranges) {
+                    long skip = range[0] - offset;
+                    if (in.skip(skip) < skip) {
+                        return;
+                    }
+                    offset = range[0];
+                    int pending = 0;
+                    while (true) {
+                        int wanted = (int) Math.min(chunk.length - pending, range[1] - offset - pending);
+                        int read = wanted == 0 ? -1 : in.read(chunk, pending, wanted);
+                        if (read < 0) {
+                            scanner.scan(data, 0, pending, true);
+                            offset += pending;
+                            break;
+                        }
+                        pending += read;
+                        int consumed = scanner.scan(data, 0, pending, false);
+                        if (consumed == 0 && pending == chunk.length) {
+                            consumed = scanner.scan(data, 0, pending, true);
+                        }
+                        System.arraycopy(chunk, consumed, chunk, 0, pending - consumed);
+                        pending -= consumed;
+                        offset += consumed;
+                    }
+                    if (offset < range[1]) {
+                        // the end of the file
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * The parts of the file that can hold a match: all of it, unless a sidecar index written
+         * by {@link IndexedRollingFileAppender} rules blocks out by time or level.
+         *
+         * @param length the length of the file, or {@link Long#MAX_VALUE} for a compressed file
+         */
+        private List<long[]> ranges(long length) {
+            LogIndex index = null;
+            if (options.level != null || options.from != null || options.to != null) {
+                try {
+                    index = LogIndex.read(LogIndex.sidecar(file));
+                } catch (IOException e) {
+                    // scan the whole file instead
+                }
+            }
+            if (index == null) {
+                List<long[]> all = new ArrayList<>();
+                all.add(new long[]{0, length});
+                return all;
+            }
+            return index.ranges(options.fromMillis, options.toMillis, LogIndex.levelsFrom(options.level), length);
+        }
+    }
+
+    /**
+     * Hands rendered bytes to the printing thread, blocking while the queue is full.
+     */
+    private static final class ChunkQueue extends OutputStream {
+        private final BlockingQueue<byte[]> chunks;
+
+        ChunkQueue(BlockingQueue<byte[]> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            try {
+                chunks.put(Arrays.copyOfRange(b, off, off + len));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted");
+            }
+        }
+    }
+
+    /**
+     * The parsed command line.
+     */
+    private static final class Options {
+        Level level;
+        final List<String> loggers = new ArrayList<>();
+        String from;
+        String to;
+        /** The time range in the viewer's time zone, for the sidecar index. */
+        long fromMillis = Long.MIN_VALUE;
+        long toMillis = Long.MAX_VALUE;
+        boolean follow;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String pattern = DEFAULT_PATTERN;
+        String color = "auto";
+        String theme;
+        final List<String> files = new ArrayList<>();
+
+        /**
+         * @return null if the command line is usable, an empty string for help, otherwise the problem
+         */
+        String parse(String[] args) {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-f") || arg.equals("--follow")) {
+                    follow = true;
+                    continue;
+                }
+                if (arg.equals("-h") || arg.equals("--help")) {
+                    return "";
+                }
+                if (!arg.startsWith("--")) {
+                    files.add(arg);
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    return "Missing value for " + arg;
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--level":
+                        level = Level.toLevel(value, null);
+                        if (level == null) {
+                            return "Unknown level " + value;
+                        }
+                        break;
+                    case "--logger":
+                        loggers.add(value);
+                        break;
+                    case "--from":
+                    case "--to":
+                        if (!TIME.matcher(value).matches()) {
+                            return "Bad time " + value + ", expected yyyy-MM-dd[ HH[:mm[:ss[.SSS]]]]";
+                        }
+                        try {
+                            if (arg.equals("--from")) {
+                                from = value.replace('T', ' ');
+                                fromMillis = LocalDateTime.parse(from + EARLIEST.substring(from.length()), TIME_FORMAT)
+                                        .atZone(ZoneId.systemDefault()).withEarlierOffsetAtOverlap()
+                                        .toInstant().toEpochMilli();
+                            } else {
+                                to = value.replace('T', ' ');
+                                toMillis = LocalDateTime.parse(to + LATEST.substring(to.length()), TIME_FORMAT)
+                                        .atZone(ZoneId.systemDefault()).withLaterOffsetAtOverlap()
+                                        .toInstant().toEpochMilli();
+                            }
+                        } catch (DateTimeParseException e) {
+                            return "Bad time " + value + ", " + e.getMessage();
+                        }
+                        break;
+                    case "--threads":
+                        try {
+                            threads = Integer.parseInt(value);
+                        } catch (NumberFormatException e) {
+                            threads = 0;
+                        }
+                        if (threads < 1) {
+                            return "Bad thread count " + value;
+                        }
+                        break;
+                    case "--pattern":
+                        pattern = value;
+                        break;
+                    case "--color":
+                        color = value;
+                        break;
+                    case "--theme":
+                        theme = value;
+                        break;
+                    default:
+                        return "Unknown option " + arg;
+                }
+            }
+            if (files.isEmpty()) {
+                return "No log file given";
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.FilterReply;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Marker;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer binder exporting what logging costs: events, bytes, encode time and async backpressure.
+ * <p>
+ * Meters, all tagged with the appender name where it applies:
+ * <ul>
+ *     <li>{@code logback.pipeline.events} (level, logger): enabled log statements per level and
+ *     logger prefix, the first {@code loggerDepth} segments of the logger name (default
+ *     {@value #DEFAULT_LOGGER_DEPTH}). After {@code maxLoggerPrefixes} distinct prefixes new ones
+ *     are counted as {@code other}.</li>
+ *     <li>{@code logback.pipeline.bytes}: bytes rendered by a {@link ColorfulPatternEncoder}</li>
+ *     <li>{@code logback.pipeline.encode}: count and total time of events rendered by a
+ *     {@link ColorfulPatternEncoder}, so dashboards get the mean encode time</li>
+ *     <li>{@code logback.pipeline.encode.histogram} (le): the same events counted cumulatively
+ *     into power-of-two buckets from 256 ns to about 16 ms plus {@code +Inf}, with the bounds in
+ *     seconds, for percentiles over a window (e.g. Prometheus {@code histogram_quantile})</li>
+ *     <li>{@code logback.pipeline.queue.size} and {@code logback.pipeline.queue.remaining}: depth
+ *     and free capacity of {@code AsyncAppender} queues and {@link RingBufferConsoleAppender}
+ *     ring buffers</li>
+ *     <li>{@code logback.pipeline.blocked}: time producers waited on a full
+ *     {@link MeteredAsyncAppender} queue</li>
+ *     <li>{@code logback.pipeline.dropped}: events a {@link RingBufferConsoleAppender} dropped</li>
+ *     <li>{@code logback.pipeline.shed} (level): events a {@link LevelAwareAsyncAppender} shed,
+ *     with TRACE and DEBUG counted as {@code debug}</li>
+ *     <li>{@code logback.pipeline.compression.backlog} and {@code logback.pipeline.compression.bytes}:
+ *     rolled bytes waiting for and done with compression by a {@link ParallelGzipRollingPolicy}</li>
+ * </ul>
+ * The appenders are discovered when the binder is bound, including the ones nested in async
+ * appenders; appenders added by a later reconfiguration are not picked up. Everything on the
+ * logging path is a {@link LongAdder} increment, plus two clock reads per event for the encode
+ * time and bucket; the meters are function counters and timers that read the adders when they are
+ * published, so no meter is touched per event.
+ * With Spring Boot, exposing the binder as a bean is enough:
+ * <pre>
+ * &#64;Bean
+ * LoggingPipelineMetrics loggingPipelineMetrics() {
+ *     return new LoggingPipelineMetrics((LoggerContext) LoggerFactory.getILoggerFactory());
+ * }
+ * </pre>
+ * Requires {@code io.micrometer:micrometer-core}, an optional dependency of this library.
+ */
+public class LoggingPipelineMetrics implements MeterBinder, AutoCloseable {
+
+    public static final int DEFAULT_LOGGER_DEPTH = 2;
+    public static final int DEFAULT_MAX_LOGGER_PREFIXES = 100;
+
+    static final String OTHER_PREFIX = "other";
+
+    private static final String[] LEVEL_TAGS = {"error", "warn", "info", "debug", "trace"};
+    private static final Level[] SHED_LEVELS = {Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG};
+
+    private final LoggerContext context;
+    private final int loggerDepth;
+    private final int maxLoggerPrefixes;
+    private final List<ColorfulPatternEncoder> timedEncoders = new ArrayList<>();
+    private EventCounter eventCounter;
+
+    public LoggingPipelineMetrics(LoggerContext context) {
+        this(context, DEFAULT_LOGGER_DEPTH, DEFAULT_MAX_LOGGER_PREFIXES);
+    }
+
+    public LoggingPipelineMetrics(LoggerContext context, int loggerDepth, int maxLoggerPrefixes) {
+        this.context = context;
+        this.loggerDepth = Math.max(1, loggerDepth);
+        this.maxLoggerPrefixes = Math.max(1, maxLoggerPrefixes);
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        EventCounter counter = new EventCounter(registry);
+        counter.setContext(context);
+        counter.setName("loggingPipelineMetrics");
+        counter.start();
+        context.addTurboFilter(counter);
+        eventCounter = counter;
+
+        Set<Appender<ILoggingEvent>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Logger logger : context.getLoggerList()) {
+            bindAppenders(registry, logger, seen);
+        }
+    }
+
+    /**
+     * Remove the event counter from the context and stop timing encoders.
+     */
+    @Override
+    public synchronized void close() {
+        if (eventCounter != null) {
+            context.getTurboFilterList().remove(eventCounter);
+            eventCounter.stop();
+            eventCounter = null;
+        }
+        for (ColorfulPatternEncoder encoder : timedEncoders) {
+            encoder.setEncodeTimeListener(null);
+        }
+        timedEncoders.clear();
+    }
+
+    private void bindAppenders(MeterRegistry registry, AppenderAttachable<ILoggingEvent> attachable,
+                               Set<Appender<ILoggingEvent>> seen) {
+        for (Iterator<Appender<ILoggingEvent>> it = attachable.iteratorForAppenders(); it.hasNext(); ) {
+            Appender<ILoggingEvent> appender = it.next();
+            if (seen.add(appender)) {
+                bindAppender(registry, appender, seen);
+            }
+        }
+    }
+
+    private void bindAppender(MeterRegistry registry, Appender<ILoggingEvent> appender,
+                              Set<Appender<ILoggingEvent>> seen) {
+        String name = appender.getName() != null ? appender.getName() : appender.getClass().getSimpleName();
+        Encoder<ILoggingEvent> encoder = encoderOf(appender);
+        if (encoder instanceof ColorfulPatternEncoder) {
+            ColorfulPatternEncoder colorful = (ColorfulPatternEncoder) encoder;
+            FunctionCounter.builder("logback.pipeline.bytes", colorful, ColorfulPatternEncoder::getBytesEncoded)
+                    .description("Bytes rendered for the appender")
+                    .baseUnit("bytes")
+                    .tag("appender", name)
+                    .register(registry);
+            EncodeTime encodeTime = new EncodeTime();
+            FunctionTimer.builder("logback.pipeline.encode", encodeTime, EncodeTime::getCount,
+                            EncodeTime::getTotalNanos, TimeUnit.NANOSECONDS)
+                    .description("Time spent rendering events")
+                    .tag("appender", name)
+                    .register(registry);
+            for (int i = 0; i <= EncodeTime.BUCKETS; i++) {
+                int bucket = i;
+                String le = i == EncodeTime.BUCKETS ? "+Inf"
+                        : BigDecimal.valueOf(EncodeTime.upperBoundNanos(i), 9).stripTrailingZeros().toPlainString();
+                FunctionCounter.builder("logback.pipeline.encode.histogram", encodeTime,
+                                t -> t.getCumulativeCount(bucket))
+                        .description("Events rendered in at most le seconds")
+                        .tag("appender", name)
+                        .tag("le", le)
+                        .register(registry);
+            }
+            colorful.setEncodeTimeListener(encodeTime);
+            timedEncoders.add(colorful);
+        }
+        if (appender instanceof AsyncAppenderBase) {
+            AsyncAppenderBase<ILoggingEvent> async = (AsyncAppenderBase<ILoggingEvent>) appender;
+            queueGauges(registry, name, async, AsyncAppenderBase::getNumberOfElementsInQueue,
+                    AsyncAppenderBase::getRemainingCapacity);
+            bindAppenders(registry, async, seen);
+        }
+        if (appender instanceof LevelAwareAsyncAppender) {
+            LevelAwareAsyncAppender levelAware = (LevelAwareAsyncAppender) appender;
+            queueGauges(registry, name, levelAware, LevelAwareAsyncAppender::getNumberOfElementsInQueue,
+                    a -> Math.max(0, a.getCapacity() - a.getNumberOfElementsInQueue()));
+            for (Level level : SHED_LEVELS) {
+                FunctionCounter.builder("logback.pipeline.shed", levelAware, a -> a.getShedCount(level))
+                        .description("Events shed to keep the queue from blocking")
+                        .tag("appender", name)
+                        .tag("level", level.levelStr.toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+            bindAppenders(registry, levelAware, seen);
+        }
+        if (appender instanceof MeteredAsyncAppender) {
+            FunctionTimer.builder("logback.pipeline.blocked", (MeteredAsyncAppender) appender,
+                            MeteredAsyncAppender::getBlockedCount, MeteredAsyncAppender::getBlockedNanos,
+                            TimeUnit.NANOSECONDS)
+                    .description("Time producers waited for space in a full queue")
+                    .tag("appender", name)
+                    .register(registry);
+        }
+        if (appender instanceof RollingFileAppender
+                && ((RollingFileAppender<ILoggingEvent>) appender).getRollingPolicy() instanceof ParallelGzipRollingPolicy) {
+            ParallelGzipRollingPolicy<?> policy =
+                    (ParallelGzipRollingPolicy<?>) ((RollingFileAppender<ILoggingEvent>) appender).getRollingPolicy();
+            Gauge.builder("logback.pipeline.compression.backlog", policy, ParallelGzipRollingPolicy::getBacklogBytes)
+                    .description("Rolled bytes waiting to be compressed")
+                    .baseUnit("bytes")
+                    .tag("appender", name)
+                    .register(registry);
+            FunctionCounter.builder("logback.pipeline.compression.bytes", policy,
+                            ParallelGzipRollingPolicy::getCompressedBytes)
+                    .description("Rolled bytes compressed, counted before compression")
+                    .baseUnit("bytes")
+                    .tag("appender", name)
+                    .register(registry);
+        }
+        if (appender instanceof RingBufferConsoleAppender) {
+            RingBufferConsoleAppender ring = (RingBufferConsoleAppender) appender;
+            queueGauges(registry, name, ring, RingBufferConsoleAppender::getBacklog,
+                    r -> r.getBufferSize() - r.getBacklog());
+            FunctionCounter.builder("logback.pipeline.dropped", ring, RingBufferConsoleAppender::getDroppedCount)
+                    .description("Events dropped because the buffer was full")
+                    .tag("appender", name)
+                    .register(registry);
+        }
+    }
+
+    private static <T> void queueGauges(MeterRegistry registry, String name, T appender,
+                                        ToDoubleFunction<T> size, ToDoubleFunction<T> remaining) {
+        Gauge.builder("logback.pipeline.queue.size", appender, size)
+                .description("Events waiting to be written")
+                .tag("appender", name)
+                .register(registry);
+        Gauge.builder("logback.pipeline.queue.remaining", appender, remaining)
+                .description("Free capacity of the queue")
+                .tag("appender", name)
+                .register(registry);
+    }
+
+    private static Encoder<ILoggingEvent> encoderOf(Appender<ILoggingEvent> appender) {
+        if (appender instanceof OutputStreamAppender) {
+            return ((OutputStreamAppender<ILoggingEvent>) appender).getEncoder();
+        }
+        if (appender instanceof RingBufferConsoleAppender) {
+            return ((RingBufferConsoleAppender) appender).getEncoder();
+        }
+        if (appender instanceof CoalescingConsoleAppender) {
+            return ((CoalescingConsoleAppender) appender).getEncoder();
+        }
+        if (appender instanceof MappedFileAppender) {
+            return ((MappedFileAppender) appender).getEncoder();
+        }
+        return null;
+    }
+
+    /**
+     * The first {@code depth} dot-separated segments of a logger name.
+     */
+    static String loggerPrefix(String loggerName, int depth) {
+        int end = -1;
+        for (int i = 0; i < depth; i++) {
+            end = loggerName.indexOf('.', end + 1);
+            if (end < 0) {
+                return loggerName;
+            }
+        }
+        return loggerName.substring(0, end);
+    }
+
+    /**
+     * Encode count, time and distribution of one encoder, read by a function timer and the histogram
+     * counters. The encoder holds the only strong reference, so it goes away once {@link #close()}
+     * removes the listener.
+     * <p>
+     * Bucket {@code i} counts times up to {@code 2^(MIN_SHIFT + i)} nanoseconds; one more bucket
+     * takes everything slower, so recording is a shift and an increment.
+     */
+    static final class EncodeTime implements LongConsumer {
+        static final int MIN_SHIFT = 8;
+        static final int MAX_SHIFT = 24;
+        static final int BUCKETS = MAX_SHIFT - MIN_SHIFT + 1;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS + 1];
+
+        EncodeTime() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void accept(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            buckets[bucket(nanos)].increment();
+        }
+
+        /**
+         * @return the first bucket whose upper bound is at least {@code nanos}, or {@link #BUCKETS}
+         */
+        static int bucket(long nanos) {
+            if (nanos <= 1) {
+                return 0;
+            }
+            // smallest k with nanos <= 2^k
+            int log2 = 64 - Long.numberOfLeadingZeros(nanos - 1);
+            return Math.min(Math.max(log2 - MIN_SHIFT, 0), BUCKETS);
+        }
+
+        static long upperBoundNanos(int bucket) {
+            return 1L << (MIN_SHIFT + bucket);
+        }
+
+        double getCumulativeCount(int bucket) {
+            long sum = 0;
+            for (int i = 0; i <= bucket; i++) {
+                sum += buckets[i].sum();
+            }
+            return sum;
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        double getTotalNanos() {
+            return totalNanos.sum();
+        }
+    }
+
+    /**
+     * Counts enabled statements; decides nothing
+     */
+    private final class EventCounter extends TurboFilter {
+        private final MeterRegistry registry;
+        private final BoundedCache<Logger, LongAdder[]> byLogger = new BoundedCache<>(1024, true);
+        private final ConcurrentHashMap<String, LongAdder[]> byPrefix = new ConcurrentHashMap<>();
+        private final Function<Logger, LongAdder[]> countersOf = this::counters;
+
+        EventCounter(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+            if (format == null || logger == null || level == null
+                    || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+                // level checks and disabled statements are not counted
+                return FilterReply.NEUTRAL;
+            }
+            int index = BaseColorConverter.levelIndex(level);
+            if (index < LEVEL_TAGS.length) {
+                byLogger.computeIfAbsent(logger, countersOf)[index].increment();
+            }
+            return FilterReply.NEUTRAL;
+        }
+
+        private LongAdder[] counters(Logger logger) {
+            String prefix = loggerPrefix(logger.getName(), loggerDepth);
+            LongAdder[] counters = byPrefix.get(prefix);
+            if (counters != null) {
+                return counters;
+            }
+            if (byPrefix.size() >= maxLoggerPrefixes) {
+                prefix = OTHER_PREFIX;
+            }
+            return byPrefix.computeIfAbsent(prefix, this::register);
+        }
+
+        private LongAdder[] register(String prefix) {
+            LongAdder[] counters = new LongAdder[LEVEL_TAGS.length];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new LongAdder();
+                FunctionCounter.builder("logback.pipeline.events", counters[i], LongAdder::sum)
+                        .description("Enabled log statements")
+                        .tag("level", LEVEL_TAGS[i])
+                        .tag("logger", prefix)
+                        .register(registry);
+            }
+            return counters;
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.rolling.helper.DateTokenConverter;
+import ch.qos.logback.core.rolling.helper.FileNamePattern;
+import ch.qos.logback.core.rolling.helper.RollingCalendar;
+import ch.qos.logback.core.rolling.helper.SizeAndTimeBasedArchiveRemover;
+import ch.qos.logback.core.util.Duration;
+import ch.qos.logback.core.util.FileSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rolling file appender that writes through a memory-mapped window instead of stream writes,
+ * and strips ANSI colors while copying.
+ * <p>
+ * The active file is mapped {@code segmentSize} bytes at a time (default 4 MB); a line is a
+ * memory copy into the page cache, with no system call until the window is full and the next
+ * segment is mapped, which also preallocates it. Because of that preallocation the file is
+ * longer than its content while it is active: the rest of the segment is zero bytes that later
+ * lines overwrite in place. {@code tail -f} and similar tools, which only follow the file length,
+ * print those zeros and miss the lines written over them; follow the file with
+ * {@code LogViewer --follow} instead, which waits at the first zero byte. On a clean stop or roll
+ * the file is truncated to its content; after a crash it ends in zero bytes, which are skipped
+ * when appending to it again.
+ * <p>
+ * A segment is unmapped as soon as the next one is mapped and on close, through
+ * {@code sun.misc.Unsafe.invokeCleaner} of the {@code jdk.unsupported} module. Where that is not
+ * available, a replaced mapping stays in the address space until the buffer is garbage collected,
+ * so many rollovers between collections can add up to many mapped segments.
+ * <p>
+ * Rolling follows {@code SizeAndTimeBasedRollingPolicy}: the active file is renamed to
+ * {@code fileNamePattern} (which needs {@code %d} and {@code %i}) when the period of the
+ * {@code %d} token ends or the file reaches {@code maxFileSize}, and {@code maxHistory} and
+ * {@code totalSizeCap} are applied to the archives. Archives are not compressed. Periods are
+ * judged by the event timestamps.
+ * <p>
+ * With the default {@code stripAnsi}, escape sequences are removed at the byte level as the
+ * line is copied into the mapping, so the file can share the console's colored pattern
+ * without rendering it twice. Data reaches the disk when the kernel writes the pages back;
+ * {@code forceInterval} additionally forces the window to the device periodically.
+ * <pre>
+ * &lt;appender name="FILE" class="dev.gamov.colorfullogback.MappedFileAppender"&gt;
+ *     &lt;file&gt;logs/application.log&lt;/file&gt;
+ *     &lt;fileNamePattern&gt;logs/application.%d{yyyy-MM-dd}.%i.log&lt;/fileNamePattern&gt;
+ *     &lt;maxFileSize&gt;10MB&lt;/maxFileSize&gt;
+ *     &lt;maxHistory&gt;30&lt;/maxHistory&gt;
+ *     &lt;forceInterval&gt;5 seconds&lt;/forceInterval&gt;
+ *     &lt;encoder class="dev.gamov.colorfullogback.ColorfulPatternEncoder"&gt;
+ *         &lt;pattern&gt;${CONSOLE_PATTERN}&lt;/pattern&gt;
+ *     &lt;/encoder&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class MappedFileAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    public static final FileSize DEFAULT_SEGMENT_SIZE = new FileSize(4 * FileSize.MB_COEFFICIENT);
+    public static final FileSize DEFAULT_MAX_FILE_SIZE = new FileSize(10 * FileSize.MB_COEFFICIENT);
+
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final long NO_PERIOD = Long.MIN_VALUE;
+    private static final ThreadBuffers<LineBuffer> LINE_BUFFERS = new ThreadBuffers<>(LineBuffer::new);
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private String file;
+    private String fileNamePattern;
+    private FileSize maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private FileSize segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int maxHistory;
+    private FileSize totalSizeCap = new FileSize(0);
+    private Duration forceInterval;
+    private boolean stripAnsi = true;
+    private Encoder<ILoggingEvent> encoder;
+
+    private FileNamePattern archivePattern;
+    private RollingCalendar calendar;
+    private SizeAndTimeBasedArchiveRemover archiveRemover;
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long periodStart;
+    private long nextCheck;
+    private int periodIndex;
+    private long rolloverCount;
+    private ScheduledFuture<?> forceTask;
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (encoder == null) {
+            addError("No encoder set for the appender named \"" + name + "\".");
+            return;
+        }
+        if (file == null || fileNamePattern == null) {
+            addError("Both file and fileNamePattern must be set for the appender named \"" + name + "\".");
+            return;
+        }
+        if (segmentSize.getSize() < 4096 || segmentSize.getSize() > Integer.MAX_VALUE) {
+            addError("segmentSize must be between 4KB and 2GB, was " + segmentSize);
+            return;
+        }
+        archivePattern = new FileNamePattern(fileNamePattern, getContext());
+        DateTokenConverter<Object> dateToken = archivePattern.getPrimaryDateTokenConverter();
+        if (dateToken == null || !archivePattern.hasIntegerTokenCOnverter()) {
+            addError("fileNamePattern [" + fileNamePattern + "] must contain %d and %i");
+            return;
+        }
+        String lower = fileNamePattern.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".gz") || lower.endsWith(".zip") || lower.endsWith(".xz")) {
+            addError("Compressed archives are not supported by " + getClass().getSimpleName());
+            return;
+        }
+        calendar = dateToken.getZoneId() != null
+                ? new RollingCalendar(dateToken.getDatePattern(), TimeZone.getTimeZone(dateToken.getZoneId()), Locale.getDefault())
+                : new RollingCalendar(dateToken.getDatePattern());
+        if (!calendar.isCollisionFree()) {
+            addError("The date format in fileNamePattern [" + fileNamePattern + "] would reuse archive names");
+            return;
+        }
+        if (maxHistory > 0 || totalSizeCap.getSize() > 0) {
+            archiveRemover = new SizeAndTimeBasedArchiveRemover(archivePattern, calendar);
+            archiveRemover.setContext(getContext());
+            archiveRemover.setMaxHistory(maxHistory);
+            archiveRemover.setTotalSizeCap(totalSizeCap.getSize());
+        }
+
+        File active = new File(file);
+        // an existing file belongs to the period it was last written in, a new one to the first event's
+        periodStart = active.length() > 0 ? active.lastModified() : NO_PERIOD;
+        if (periodStart != NO_PERIOD) {
+            startPeriod(periodStart);
+        }
+        try {
+            open(active);
+        } catch (IOException e) {
+            addError("Failed to open [" + file + "]", e);
+            return;
+        }
+        super.start();
+
+        if (forceInterval != null && forceInterval.getMilliseconds() > 0 && getContext() != null) {
+            long period = forceInterval.getMilliseconds();
+            forceTask = getContext().getScheduledExecutorService()
+                    .scheduleAtFixedRate(this::force, period, period, TimeUnit.MILLISECONDS);
+            getContext().addScheduledFuture(forceTask);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        if (forceTask != null) {
+            forceTask.cancel(false);
+        }
+        lock.lock();
+        try {
+            super.stop();
+            close();
+        } catch (IOException e) {
+            addError("Failed to close [" + file + "]", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        LineBuffer line = LINE_BUFFERS.acquire();
+        try {
+            line.reset();
+            if (encoder instanceof ColorfulPatternEncoder) {
+                ((ColorfulPatternEncoder) encoder).encodeTo(event, line);
+            } else {
+                byte[] bytes = encoder.encode(event);
+                if (bytes != null) {
+                    line.append(bytes);
+                }
+            }
+            write(line, event.getTimeStamp());
+        } catch (IOException e) {
+            addError("Failed to write to [" + file + "]", e);
+        } finally {
+            line.trim(MAX_RETAINED_CAPACITY);
+            LINE_BUFFERS.release(line);
+        }
+    }
+
+    private void write(LineBuffer line, long timestamp) throws IOException {
+        lock.lock();
+        try {
+            if (!isStarted()) {
+                return;
+            }
+            if (periodStart == NO_PERIOD) {
+                startPeriod(timestamp);
+            } else if (timestamp >= nextCheck) {
+                rollover(timestamp, true);
+            } else if (position() >= maxFileSize.getSize()) {
+                rollover(timestamp, false);
+            }
+            byte[] bytes = line.array();
+            int length = line.length();
+            if (length <= window.remaining()) {
+                // common case: strip while copying into the mapping
+                if (stripAnsi) {
+                    AnsiStripper.copy(bytes, 0, length, window);
+                } else {
+                    window.put(bytes, 0, length);
+                }
+                return;
+            }
+            if (stripAnsi) {
+                // the line spans two segments; the scratch buffer is ours to strip in place
+                length = AnsiStripper.strip(bytes, 0, length);
+            }
+            int offset = 0;
+            while (offset < length) {
+                if (!window.hasRemaining()) {
+                    map(windowStart + window.position());
+                }
+                int chunk = Math.min(window.remaining(), length - offset);
+                window.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rollover(long timestamp, boolean periodEnded) throws IOException {
+        close();
+        File active = new File(file);
+        File archive = new File(archivePattern.convertMultipleArguments(Instant.ofEpochMilli(periodStart), periodIndex));
+        if (active.length() > 0) {
+            File parent = archive.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            try {
+                Files.move(active.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                addError("Failed to rename [" + file + "] to [" + archive + "], continuing in the same file", e);
+            }
+            rolloverCount++;
+        }
+        if (periodEnded) {
+            startPeriod(timestamp);
+        } else {
+            periodIndex++;
+        }
+        open(active);
+        if (archiveRemover != null) {
+            archiveRemover.cleanAsynchronously(Instant.ofEpochMilli(timestamp));
+        }
+    }
+
+    private void startPeriod(long timestamp) {
+        periodStart = timestamp;
+        nextCheck = calendar.getNextTriggeringDate(Instant.ofEpochMilli(timestamp)).toEpochMilli();
+        periodIndex = 0;
+        // continue after the archives of a period that was interrupted by a restart
+        while (new File(archivePattern.convertMultipleArguments(Instant.ofEpochMilli(periodStart), periodIndex)).exists()) {
+            periodIndex++;
+        }
+    }
+
+    private void open(File active) throws IOException {
+        File parent = active.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        channel = FileChannel.open(active.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(contentEnd(channel));
+    }
+
+    private void map(long start) throws IOException {
+        MappedByteBuffer previous = window;
+        if (previous != null && forceInterval != null) {
+            previous.force();
+        }
+        window = channel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize.getSize());
+        windowStart = start;
+        if (previous != null) {
+            unmap(previous);
+        }
+    }
+
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    private void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        long end = position();
+        if (forceInterval != null) {
+            window.force();
+        }
+        // unmap before truncating; without a cleaner the mapping goes when it is collected
+        MappedByteBuffer mapping = window;
+        window = null;
+        unmap(mapping);
+        try {
+            channel.truncate(end);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void force() {
+        lock.lock();
+        try {
+            if (isStarted() && window != null) {
+                window.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a mapping right away. Only the lock holder touches the window, so no one can use the
+     * buffer afterwards.
+     *
+     * @return false if the mapping is left to the garbage collector
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return false;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    static boolean canUnmap() {
+        return INVOKE_CLEANER != null;
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.publicLookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The end of the content of a file that may end in preallocated zero bytes.
+     */
+    static long contentEnd(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer chunk = ByteBuffer.allocate(8192);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - chunk.capacity());
+            chunk.clear().limit((int) (end - start));
+            while (chunk.hasRemaining() && channel.read(chunk, start + chunk.position()) >= 0) {
+                // fill the chunk
+            }
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) != 0) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the number of files rolled into archives since the appender was started.
+     *
+     * @return the rollover count
+     */
+    public long getRolloverCount() {
+        lock.lock();
+        try {
+            return rolloverCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public String getFileNamePattern() {
+        return fileNamePattern;
+    }
+
+    public void setFileNamePattern(String fileNamePattern) {
+        this.fileNamePattern = fileNamePattern;
+    }
+
+    public FileSize getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(FileSize maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public FileSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(FileSize segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public int getMaxHistory() {
+        return maxHistory;
+    }
+
+    public void setMaxHistory(int maxHistory) {
+        this.maxHistory = maxHistory;
+    }
+
+    public FileSize getTotalSizeCap() {
+        return totalSizeCap;
+    }
+
+    public void setTotalSizeCap(FileSize totalSizeCap) {
+        this.totalSizeCap = totalSizeCap;
+    }
+
+    public Duration getForceInterval() {
+        return forceInterval;
+    }
+
+    public void setForceInterval(Duration forceInterval) {
+        this.forceInterval = forceInterval;
+    }
+
+    public boolean isStripAnsi() {
+        return stripAnsi;
+    }
+
+    public void setStripAnsi(boolean stripAnsi) {
+        this.stripAnsi = stripAnsi;
+    }
+
+    public Encoder<ILoggingEvent> getEncoder() {
+        return encoder;
+    }
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+}
@@ -0,0 +1,52 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * logback's {@link AsyncAppender} that also measures how long producers were blocked on a full queue.
+ * <p>
+ * A drop-in replacement for {@code ch.qos.logback.classic.AsyncAppender}. When an event arrives
+ * while the queue is full (and it is neither discarded nor offered with {@code neverBlock}), the
+ * time until it was accepted is added to {@link #getBlockedNanos()}; that is the latency the
+ * logging thread, e.g. a request thread, paid for a slow downstream appender. The numbers are
+ * exported by {@link LoggingPipelineMetrics}.
+ */
+public class MeteredAsyncAppender extends AsyncAppender {
+
+    private final LongAdder blockedCount = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (isNeverBlock() || getRemainingCapacity() > 0
+                || (getDiscardingThreshold() > 0 && isDiscardable(event))) {
+            super.append(event);
+            return;
+        }
+        long start = System.nanoTime();
+        super.append(event);
+        blockedNanos.add(System.nanoTime() - start);
+        blockedCount.increment();
+    }
+
+    /**
+     * Get the number of events whose producer found the queue full and had to wait.
+     *
+     * @return the blocked append count
+     */
+    public long getBlockedCount() {
+        return blockedCount.sum();
+    }
+
+    /**
+     * Get the total time producers waited for space in the queue.
+     *
+     * @return the blocked time in nanoseconds
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.sum();
+    }
+}
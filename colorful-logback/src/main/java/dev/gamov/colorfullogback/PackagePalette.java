@@ -0,0 +1,134 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.core.pattern.color.ANSIConstants;
+import ch.qos.logback.core.spi.ContextAware;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Per-package colors of {@code %colorPackage} and {@code %colorCaller}, configured with the
+ * options {@code palette}, {@code cacheSize=N} and {@code prefix=color}.
+ * <p>
+ * Names are matched against the configured prefixes (longest prefix wins, on package
+ * boundaries); names without a match get a color picked by hashing their package name, so all
+ * classes of one package share a color. Resolved colors are cached per name in a bounded
+ * lock-free cache.
+ */
+final class PackagePalette {
+
+    static final String PALETTE_OPTION = "palette";
+    static final String CACHE_SIZE_OPTION = "cacheSize";
+    static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final String[] FALLBACK_PALETTE = {
+            ANSIConstants.CYAN_FG,
+            ANSIConstants.BLUE_FG,
+            ANSIConstants.MAGENTA_FG,
+            ANSIConstants.GREEN_FG,
+            ANSIConstants.BOLD + ANSIConstants.CYAN_FG,
+            ANSIConstants.BOLD + ANSIConstants.BLUE_FG,
+            ANSIConstants.BOLD + ANSIConstants.MAGENTA_FG,
+            ANSIConstants.BOLD + ANSIConstants.GREEN_FG
+    };
+
+    private final PackageColor[] mappings;
+    private final AnsiSequence[] fallbackSequences;
+    private final BoundedCache<String, AnsiSequence> cache;
+    // created once: a method reference in colorFor would allocate on every event
+    private final Function<String, AnsiSequence> resolver = this::resolve;
+
+    private PackagePalette(PackageColor[] mappings, int cacheSize) {
+        this.mappings = mappings;
+        this.fallbackSequences = new AnsiSequence[FALLBACK_PALETTE.length];
+        for (int i = 0; i < FALLBACK_PALETTE.length; i++) {
+            fallbackSequences[i] = AnsiSequence.of(FALLBACK_PALETTE[i]);
+        }
+        this.cache = new BoundedCache<>(Math.max(cacheSize, 16), false);
+    }
+
+    /**
+     * Parse the palette options of a converter, reporting invalid ones through the converter.
+     *
+     * @return the palette, or null if neither the palette option nor a package mapping was given
+     */
+    static PackagePalette parse(List<String> options, ContextAware owner) {
+        boolean enabled = false;
+        int cacheSize = DEFAULT_CACHE_SIZE;
+        List<PackageColor> configured = new ArrayList<>();
+        for (String option : options) {
+            String trimmed = option.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (PALETTE_OPTION.equals(trimmed)) {
+                enabled = true;
+                continue;
+            }
+            int eq = trimmed.indexOf('=');
+            if (eq <= 0) {
+                owner.addWarn("Ignoring option [" + trimmed + "], expected [palette], [cacheSize=N] or [prefix=color]");
+                continue;
+            }
+            String key = trimmed.substring(0, eq).trim();
+            String value = trimmed.substring(eq + 1).trim();
+            if (CACHE_SIZE_OPTION.equals(key)) {
+                try {
+                    cacheSize = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    owner.addWarn("Invalid cacheSize [" + value + "], using " + DEFAULT_CACHE_SIZE);
+                }
+                continue;
+            }
+            try {
+                configured.add(new PackageColor(key,
+                        AnsiSequence.of(AnsiColors.parse(value, ColorSupport.colorDepth(owner.getContext())))));
+                enabled = true;
+            } catch (IllegalArgumentException e) {
+                owner.addError("Invalid color for package [" + key + "]: " + e.getMessage());
+            }
+        }
+        if (!enabled) {
+            return null;
+        }
+        // longest prefix first, so the first match is the most specific one
+        configured.sort((a, b) -> Integer.compare(b.prefix.length(), a.prefix.length()));
+        return new PackagePalette(configured.toArray(new PackageColor[0]), cacheSize);
+    }
+
+    /**
+     * @return the cached color of a logger or class name
+     */
+    AnsiSequence colorFor(String name) {
+        return cache.computeIfAbsent(name, resolver);
+    }
+
+    AnsiSequence resolve(String name) {
+        for (PackageColor mapping : mappings) {
+            if (mapping.matches(name)) {
+                return mapping.sequence;
+            }
+        }
+        int lastDot = name.lastIndexOf('.');
+        String packageName = lastDot > 0 ? name.substring(0, lastDot) : name;
+        int h = packageName.hashCode();
+        h ^= h >>> 16;
+        return fallbackSequences[Math.floorMod(h, fallbackSequences.length)];
+    }
+
+    private static final class PackageColor {
+        final String prefix;
+        final AnsiSequence sequence;
+
+        PackageColor(String prefix, AnsiSequence sequence) {
+            this.prefix = prefix;
+            this.sequence = sequence;
+        }
+
+        boolean matches(String name) {
+            return name.startsWith(prefix)
+                    && (name.length() == prefix.length() || name.charAt(prefix.length()) == '.');
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.spi.LifeCycle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compression in independent blocks on a bounded worker pool, in the manner of pigz.
+ * <p>
+ * The file is cut into blocks that are deflated in parallel. Every block but the last ends
+ * with a sync flush, which leaves the deflate stream byte-aligned and unfinished, so the
+ * compressed blocks concatenate into one valid deflate stream; the last block finishes it.
+ * Each block is primed with the final 32 KB of the block before it as a preset dictionary,
+ * which keeps the ratio close to single-threaded gzip. The calling thread reads the blocks,
+ * computes the CRC-32 over the whole file, and writes the results in order.
+ * <p>
+ * One pool is shared by all users in a logger context, so the number of compression threads
+ * is capped no matter how many files roll at once; it is raised to the largest size asked for
+ * and its threads exit when idle. Only {@code java.util.zip} is used.
+ */
+final class ParallelGzipCompressor extends ContextAwareBase implements LifeCycle {
+
+    static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final String CONTEXT_KEY = ParallelGzipCompressor.class.getName();
+    private static final ReentrantLock REGISTRY_LOCK = new ReentrantLock();
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int OUTPUT_CHUNK = 64 * 1024;
+
+    private final ThreadPoolExecutor workers;
+    private volatile boolean started;
+
+    ParallelGzipCompressor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "logback-gzip-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The compressor of the context, created on first use and stopped when the context is reset.
+     *
+     * @param context the logger context
+     * @param threads the number of worker threads needed; the pool grows to the largest request
+     * @return the shared compressor
+     */
+    static ParallelGzipCompressor forContext(Context context, int threads) {
+        REGISTRY_LOCK.lock();
+        try {
+            Object existing = context.getObject(CONTEXT_KEY);
+            if (existing instanceof ParallelGzipCompressor && ((ParallelGzipCompressor) existing).isStarted()) {
+                ParallelGzipCompressor compressor = (ParallelGzipCompressor) existing;
+                compressor.ensureThreads(threads);
+                return compressor;
+            }
+            ParallelGzipCompressor compressor = new ParallelGzipCompressor(threads);
+            compressor.setContext(context);
+            compressor.start();
+            context.register(compressor);
+            context.putObject(CONTEXT_KEY, compressor);
+            return compressor;
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+    }
+
+    private void ensureThreads(int threads) {
+        if (threads > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(threads);
+            workers.setCorePoolSize(threads);
+        }
+    }
+
+    int getThreads() {
+        return workers.getMaximumPoolSize();
+    }
+
+    /**
+     * Compress a file into a new gzip file.
+     *
+     * @param source the file to compress
+     * @param target the gzip file, which must not exist yet
+     * @param blockSize the number of input bytes per block
+     * @param level the deflate level
+     * @param progress receives the number of input bytes of each block once it is written
+     * @throws IOException if reading or writing fails, or the calling thread is interrupted
+     */
+    void compress(File source, File target, int blockSize, int level, LongConsumer progress) throws IOException {
+        int window = 2 * workers.getMaximumPoolSize();
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>(window);
+        Deque<Integer> inFlightLengths = new ArrayDeque<>(window);
+        CRC32 crc = new CRC32();
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             OutputStream out = Files.newOutputStream(target.toPath(), StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE)) {
+            long size = in.size();
+            writeHeader(out);
+            byte[] previous = null;
+            long position = 0;
+            do {
+                int length = (int) Math.min(blockSize, size - position);
+                byte[] block = read(in, position, length);
+                crc.update(block, 0, length);
+                position += length;
+                byte[] dictionary = previous == null ? null
+                        : Arrays.copyOfRange(previous, Math.max(0, previous.length - DICTIONARY_SIZE), previous.length);
+                boolean last = position >= size;
+                inFlight.addLast(submit(() -> deflate(block, dictionary, last, level)));
+                inFlightLengths.addLast(length);
+                if (inFlight.size() >= window) {
+                    out.write(await(inFlight.removeFirst()));
+                    progress.accept(inFlightLengths.removeFirst());
+                }
+                previous = block;
+            } while (position < size);
+            while (!inFlight.isEmpty()) {
+                out.write(await(inFlight.removeFirst()));
+                progress.accept(inFlightLengths.removeFirst());
+            }
+            writeTrailer(out, crc.getValue(), size);
+        } finally {
+            for (Future<byte[]> pending : inFlight) {
+                pending.cancel(false);
+            }
+        }
+    }
+
+    private Future<byte[]> submit(Callable<byte[]> task) {
+        try {
+            return workers.submit(task);
+        } catch (RejectedExecutionException e) {
+            // the pool is shut down while a roll is still compressing: finish on this thread
+            FutureTask<byte[]> inline = new FutureTask<>(task);
+            inline.run();
+            return inline;
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress a block", e.getCause());
+        }
+    }
+
+    private static byte[] read(FileChannel in, long position, int length) throws IOException {
+        byte[] block = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("File shrank while compressing it");
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Deflate one block as raw deflate data: sync-flushed, or finished if it is the last one.
+     */
+    static byte[] deflate(byte[] block, byte[] dictionary, boolean last, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null && dictionary.length > 0) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(block);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(256, block.length / 3));
+            byte[] chunk = new byte[OUTPUT_CHUNK];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+                    out.write(chunk, 0, count);
+                } while (count == chunk.length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeHeader(OutputStream out) throws IOException {
+        // magic, deflate, no flags, no modification time, no extra flags, unknown OS
+        out.write(new byte[]{(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+    }
+
+    private static void writeTrailer(OutputStream out, long crc, long size) throws IOException {
+        byte[] trailer = new byte[8];
+        writeInt(trailer, 0, (int) crc);
+        writeInt(trailer, 4, (int) size);
+        out.write(trailer);
+    }
+
+    private static void writeInt(byte[] buf, int offset, int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >> 8);
+        buf[offset + 2] = (byte) (value >> 16);
+        buf[offset + 3] = (byte) (value >> 24);
+    }
+
+    @Override
+    public void start() {
+        started = true;
+    }
+
+    @Override
+    public void stop() {
+        started = false;
+        workers.shutdown();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return started;
+    }
+}
@@ -0,0 +1,265 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.rolling.RolloverFailure;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.rolling.TimeBasedFileNamingAndTriggeringPolicy;
+import ch.qos.logback.core.rolling.helper.ArchiveRemover;
+import ch.qos.logback.core.rolling.helper.CompressionMode;
+import ch.qos.logback.core.rolling.helper.RenameUtil;
+import ch.qos.logback.core.util.FileSize;
+import ch.qos.logback.core.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * {@code SizeAndTimeBasedRollingPolicy} that gzips rolled files on several threads.
+ * <p>
+ * With a {@code .gz} file name pattern, the stock policy compresses each rolled file on one
+ * thread; on a busy node that falls behind rolling and saturates a core in bursts. This policy
+ * rolls and cleans up exactly like its parent, but compresses in independent
+ * {@code blockSize} blocks on a worker pool shared by the logger context and capped at
+ * {@code compressionThreads} threads, producing a single standard gzip stream (see
+ * {@link ParallelGzipCompressor}). Other compression modes are left to the parent.
+ * <pre>
+ * &lt;rollingPolicy class="dev.gamov.colorfullogback.ParallelGzipRollingPolicy"&gt;
+ *     &lt;fileNamePattern&gt;logs/application.%d{yyyy-MM-dd}.%i.log.gz&lt;/fileNamePattern&gt;
+ *     &lt;maxFileSize&gt;10MB&lt;/maxFileSize&gt;
+ *     &lt;maxHistory&gt;30&lt;/maxHistory&gt;
+ *     &lt;compressionThreads&gt;2&lt;/compressionThreads&gt;
+ * &lt;/rollingPolicy&gt;
+ * </pre>
+ * Progress is exposed as the number of rolled bytes still waiting to be compressed and the
+ * totals compressed so far, which {@link LoggingPipelineMetrics} exports.
+ *
+ * @param <E> the event type
+ */
+public class ParallelGzipRollingPolicy<E> extends SizeAndTimeBasedRollingPolicy<E> {
+
+    public static final FileSize DEFAULT_BLOCK_SIZE = new FileSize(512 * FileSize.KB_COEFFICIENT);
+
+    private static final long MIN_BLOCK_SIZE = 64 * FileSize.KB_COEFFICIENT;
+    private static final long MAX_BLOCK_SIZE = 64 * FileSize.MB_COEFFICIENT;
+
+    private FileSize blockSize = DEFAULT_BLOCK_SIZE;
+    private int compressionThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private final RenameUtil renameUtil = new RenameUtil();
+    private final Queue<Future<?>> compressions = new ConcurrentLinkedQueue<>();
+    private final LongAdder backlogBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressedFiles = new LongAdder();
+    private ParallelGzipCompressor compressor;
+    private Future<?> cleanUpFuture;
+
+    @Override
+    public void start() {
+        if (blockSize.getSize() < MIN_BLOCK_SIZE || blockSize.getSize() > MAX_BLOCK_SIZE) {
+            addError("blockSize must be between 64KB and 64MB, was [" + blockSize + "]");
+            return;
+        }
+        if (compressionThreads < 1) {
+            addError("compressionThreads must be at least 1, was " + compressionThreads);
+            return;
+        }
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            addError("compressionLevel must be between -1 and 9, was " + compressionLevel);
+            return;
+        }
+        renameUtil.setContext(context);
+        super.start();
+        if (!isStarted()) {
+            return;
+        }
+        if (compressionMode == CompressionMode.GZ) {
+            compressor = ParallelGzipCompressor.forContext(context, compressionThreads);
+            addInfo("Rolled files will be compressed in blocks of [" + blockSize + "] on up to "
+                    + compressor.getThreads() + " threads");
+        } else {
+            addWarn("Parallel compression applies to .gz file name patterns only; [" + fileNamePatternStr
+                    + "] is handled like SizeAndTimeBasedRollingPolicy");
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        for (Future<?> compression : compressions) {
+            waitFor(compression, "compression");
+        }
+        compressions.clear();
+        waitFor(cleanUpFuture, "clean-up");
+        super.stop();
+    }
+
+    @Override
+    public void rollover() throws RolloverFailure {
+        if (compressor == null) {
+            super.rollover();
+            return;
+        }
+        // same steps as TimeBasedRollingPolicy, with the compressor swapped
+        TimeBasedFileNamingAndTriggeringPolicy<E> naming = getTimeBasedFileNamingAndTriggeringPolicy();
+        String elapsedPeriodsFileName = naming.getElapsedPeriodsFileName();
+        String source = elapsedPeriodsFileName;
+        if (getParentsRawFileProperty() != null) {
+            source = elapsedPeriodsFileName + System.nanoTime() + ".tmp";
+            renameUtil.rename(getParentsRawFileProperty(), source);
+        }
+        File file = new File(source);
+        File target = new File(elapsedPeriodsFileName + CompressionMode.GZ_SUFFIX);
+        long size = file.length();
+        backlogBytes.add(size);
+        compressions.removeIf(Future::isDone);
+        compressions.add(context.getExecutorService().submit(() -> compress(file, target, size)));
+
+        ArchiveRemover archiveRemover = naming.getArchiveRemover();
+        if (getMaxHistory() != CoreConstants.UNBOUNDED_HISTORY && archiveRemover != null) {
+            cleanUpFuture = archiveRemover.cleanAsynchronously(Instant.ofEpochMilli(naming.getCurrentTime()));
+        }
+    }
+
+    private void compress(File source, File target, long size) {
+        long[] done = new long[1];
+        try {
+            if (!source.exists()) {
+                addWarn("The file to compress named [" + source + "] does not exist.");
+                return;
+            }
+            if (target.exists()) {
+                addWarn("The target compressed file named [" + target + "] exist already. Aborting file compression.");
+                return;
+            }
+            if (!FileUtil.createMissingParentDirectories(target)) {
+                addError("Failed to create parent directories for [" + target.getAbsolutePath() + "]");
+            }
+            addInfo("GZ compressing [" + source + "] as [" + target + "]");
+            try {
+                compressor.compress(source, target, (int) blockSize.getSize(), compressionLevel, bytes -> {
+                    done[0] += bytes;
+                    backlogBytes.add(-bytes);
+                    compressedBytes.add(bytes);
+                });
+            } catch (IOException | RuntimeException e) {
+                addError("Error occurred while compressing [" + source + "] into [" + target + "].", e);
+                if (!target.delete()) {
+                    addWarn("Could not delete the partial [" + target + "].");
+                }
+                return;
+            }
+            compressedFiles.increment();
+            addInfo("Done GZ compressing [" + source + "] as [" + target + "]");
+            if (!source.delete()) {
+                addWarn("Could not delete [" + source + "].");
+            }
+        } finally {
+            // whatever was not compressed leaves the backlog too
+            backlogBytes.add(done[0] - size);
+        }
+    }
+
+    private void waitFor(Future<?> future, String jobDescription) {
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get(CoreConstants.SECONDS_TO_WAIT_FOR_COMPRESSION_JOBS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            addError("Timeout while waiting for " + jobDescription + " job to finish", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            addError("Unexpected exception while waiting for " + jobDescription + " job to finish", e);
+        }
+    }
+
+    /**
+     * Get the number of rolled bytes that are not compressed yet, including the remainder of
+     * the files being compressed.
+     *
+     * @return the compression backlog in bytes
+     */
+    public long getBacklogBytes() {
+        return backlogBytes.sum();
+    }
+
+    /**
+     * Get the number of bytes compressed so far, counted before compression.
+     *
+     * @return the compressed input byte count
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Get the number of rolled files compressed so far.
+     *
+     * @return the compressed file count
+     */
+    public long getCompressedFiles() {
+        return compressedFiles.sum();
+    }
+
+    /**
+     * Get the number of compressions submitted and not finished.
+     *
+     * @return the pending compression count
+     */
+    public int getPendingCompressions() {
+        int pending = 0;
+        for (Future<?> compression : compressions) {
+            if (!compression.isDone()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    public FileSize getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(FileSize blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    /**
+     * Set the number of threads compressing blocks. The pool is shared by all policies of the
+     * logger context and sized to the largest value among them.
+     *
+     * @param compressionThreads the thread cap, default half the available processors
+     */
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public String toString() {
+        return "dev.gamov.colorfullogback.ParallelGzipRollingPolicy@" + this.hashCode();
+    }
+}
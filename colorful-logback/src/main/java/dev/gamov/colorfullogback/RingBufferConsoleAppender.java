@@ -0,0 +1,325 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.joran.spi.ConsoleTarget;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous console appender backed by a preallocated, lock-free ring buffer.
+ * <p>
+ * Logging threads only claim a slot and publish the event into it; a single consumer
+ * thread encodes (colorizes) the events and writes them to the console in batches.
+ * When the buffer is full the event is dropped instead of blocking the caller, and the
+ * number of dropped events is available from {@link #getDroppedCount()}.
+ * <pre>
+ * &lt;appender name="CONSOLE" class="dev.gamov.colorfullogback.RingBufferConsoleAppender"&gt;
+ *     &lt;bufferSize&gt;8192&lt;/bufferSize&gt;
+ *     &lt;waitStrategy&gt;PARK&lt;/waitStrategy&gt;
+ *     &lt;encoder class="dev.gamov.colorfullogback.ColorfulPatternEncoder"&gt;
+ *         &lt;pattern&gt;%colorLevel(%-5level) %colorMessage(%msg%n)&lt;/pattern&gt;
+ *     &lt;/encoder&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class RingBufferConsoleAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    /**
+     * How the consumer thread waits for new events
+     */
+    public enum WaitStrategy {
+        /**
+         * Busy-spin; lowest latency, burns a core
+         */
+        SPIN,
+        /**
+         * Yield the CPU between polls
+         */
+        YIELD,
+        /**
+         * Park until a producer signals new events; lowest CPU usage
+         */
+        PARK
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final int DEFAULT_MAX_FLUSH_TIME = 1000;
+
+    private static final long PARK_NANOS = 1_000_000L;
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+    private String target = ConsoleTarget.SystemOut.getName();
+    private boolean includeCallerData;
+    private int maxFlushTime = DEFAULT_MAX_FLUSH_TIME;
+    private Encoder<ILoggingEvent> encoder;
+    private OutputStream outputStream;
+
+    private ILoggingEvent[] slots;
+    private AtomicLongArray published;
+    private int mask;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong consumedSequence = new AtomicLong();
+    private final LongAdder droppedCount = new LongAdder();
+    private volatile boolean consumerParked;
+    private volatile boolean running;
+    private Thread consumer;
+    private CallerLocator callerLocator;
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (encoder == null) {
+            addError("No encoder set for the appender named \"" + name + "\".");
+            return;
+        }
+        if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+            addError("bufferSize must be a power of two greater than one, was " + bufferSize);
+            return;
+        }
+        if (outputStream == null) {
+            ConsoleTarget consoleTarget = ConsoleTarget.findByName(target);
+            if (consoleTarget == null) {
+                addError("[" + target + "] should be one of System.out or System.err");
+                return;
+            }
+            outputStream = consoleTarget.getStream();
+        }
+        slots = new ILoggingEvent[bufferSize];
+        published = new AtomicLongArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            published.set(i, -1L);
+        }
+        mask = bufferSize - 1;
+        callerLocator = new CallerLocator(getContext(), CallerLocator.DEFAULT_MAX_DEPTH);
+        claimSequence.set(0);
+        consumedSequence.set(0);
+
+        running = true;
+        consumer = new Thread(this::consume, "colorful-ring-buffer-" + getName());
+        consumer.setDaemon(true);
+        super.start();
+        consumer.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(maxFlushTime);
+            if (consumer.isAlive()) {
+                addWarn("Max flush time of " + maxFlushTime + "ms exceeded, "
+                        + (claimSequence.get() - consumedSequence.get()) + " events were not written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addError("Interrupted while waiting for the consumer thread to finish", e);
+        }
+        long dropped = droppedCount.sum();
+        if (dropped > 0) {
+            addWarn("Appender \"" + name + "\" dropped " + dropped + " events because the ring buffer was full");
+        }
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (claimSequence.get() - consumedSequence.get() >= bufferSize) {
+            // skip preparing an event that would be dropped anyway
+            droppedCount.increment();
+            return;
+        }
+        // prepare before claiming: a claimed slot must be published, or the consumer waits on it forever
+        event.prepareForDeferredProcessing();
+        if (includeCallerData && !event.hasCallerData()) {
+            if (event instanceof LoggingEvent) {
+                ((LoggingEvent) event).setCallerData(callerLocator.locateCallerData());
+            } else {
+                event.getCallerData();
+            }
+        }
+        long sequence;
+        do {
+            sequence = claimSequence.get();
+            if (sequence - consumedSequence.get() >= bufferSize) {
+                droppedCount.increment();
+                return;
+            }
+        } while (!claimSequence.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & mask);
+        slots[index] = event;
+        published.set(index, sequence);
+
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        LineBuffer batch = new LineBuffer(MAX_BATCH_BYTES);
+        long next = consumedSequence.get();
+        int idle = 0;
+        while (true) {
+            int index = (int) (next & mask);
+            if (published.get(index) == next) {
+                ILoggingEvent event = slots[index];
+                slots[index] = null;
+                consumedSequence.lazySet(++next);
+                encode(event, batch);
+                if (batch.length() >= MAX_BATCH_BYTES) {
+                    flush(batch);
+                }
+                idle = 0;
+            } else {
+                if (batch.length() > 0) {
+                    flush(batch);
+                }
+                if (!running && claimSequence.get() == next) {
+                    break;
+                }
+                idle = await(idle);
+            }
+        }
+    }
+
+    private void encode(ILoggingEvent event, LineBuffer batch) {
+        try {
+            if (encoder instanceof ColorfulPatternEncoder) {
+                ((ColorfulPatternEncoder) encoder).encodeTo(event, batch);
+            } else {
+                byte[] bytes = encoder.encode(event);
+                if (bytes != null) {
+                    batch.append(bytes);
+                }
+            }
+        } catch (RuntimeException e) {
+            addError("Failed to encode event for appender \"" + name + "\"", e);
+        }
+    }
+
+    private void flush(LineBuffer batch) {
+        try {
+            outputStream.write(batch.array(), 0, batch.length());
+            outputStream.flush();
+        } catch (IOException e) {
+            addError("Failed to write to " + target, e);
+        }
+        batch.trim(MAX_BATCH_BYTES * 2);
+    }
+
+    private int await(int idle) {
+        switch (waitStrategy) {
+            case SPIN:
+                Thread.onSpinWait();
+                return idle;
+            case YIELD:
+                Thread.yield();
+                return idle;
+            case PARK:
+            default:
+                // spin briefly before parking so bursts do not pay the wake-up cost
+                if (idle < 100) {
+                    Thread.onSpinWait();
+                    return idle + 1;
+                }
+                consumerParked = true;
+                if (running && claimSequence.get() == consumedSequence.get()) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                consumerParked = false;
+                return idle;
+        }
+    }
+
+    /**
+     * Get the number of events dropped because the ring buffer was full.
+     *
+     * @return the dropped event count
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Get the number of events published but not yet written.
+     *
+     * @return the current backlog
+     */
+    public int getBacklog() {
+        return (int) (claimSequence.get() - consumedSequence.get());
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    /**
+     * Capture the caller on the logging thread. Only the calling frame is recorded, found with a
+     * bounded stack walk, which is enough for {@code %M}, {@code %line} and {@code %colorCaller}.
+     *
+     * @return whether caller data is captured
+     */
+    public boolean isIncludeCallerData() {
+        return includeCallerData;
+    }
+
+    public void setIncludeCallerData(boolean includeCallerData) {
+        this.includeCallerData = includeCallerData;
+    }
+
+    public int getMaxFlushTime() {
+        return maxFlushTime;
+    }
+
+    public void setMaxFlushTime(int maxFlushTime) {
+        this.maxFlushTime = maxFlushTime;
+    }
+
+    public Encoder<ILoggingEvent> getEncoder() {
+        return encoder;
+    }
+
+    public void setEncoder(Encoder<ILoggingEvent> encoder) {
+        this.encoder = encoder;
+    }
+
+    void setOutputStream(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+}
@@ -0,0 +1,261 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Context;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * {@link ColorfulPatternEncoder} that renders each event once for all appenders using the same pattern.
+ * <p>
+ * When the console and a file both log every event with the same colored pattern, the converter
+ * chain would run once per appender. Instead, all {@code SharedRenderEncoder}s of a context that
+ * have the same pattern and charset share a render stage: the first of them to see an event runs
+ * the converters, and the others copy its bytes. With {@code plain} set, the encoder emits the
+ * line without ANSI escape sequences, derived from the colored bytes rather than rendered again,
+ * so one pattern drives a colored console and a plain file:
+ * <pre>
+ * &lt;appender name="CONSOLE" class="dev.gamov.colorfullogback.RingBufferConsoleAppender"&gt;
+ *     &lt;encoder class="dev.gamov.colorfullogback.SharedRenderEncoder"&gt;
+ *         &lt;pattern&gt;${PATTERN}&lt;/pattern&gt;
+ *     &lt;/encoder&gt;
+ * &lt;/appender&gt;
+ * &lt;appender name="FILE" class="ch.qos.logback.core.rolling.RollingFileAppender"&gt;
+ *     ...
+ *     &lt;encoder class="dev.gamov.colorfullogback.SharedRenderEncoder"&gt;
+ *         &lt;pattern&gt;${PATTERN}&lt;/pattern&gt;
+ *         &lt;plain&gt;true&lt;/plain&gt;
+ *     &lt;/encoder&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ * Rendered lines are kept in a small table keyed by event identity, and dropped once every
+ * encoder of the stage has taken them. The table has {@code cacheSize} slots (default 1024);
+ * an asynchronous appender that lags further behind than that simply renders the event itself.
+ * <p>
+ * Slots are allocated once and reused: the first encoder renders into its own pooled buffer and
+ * copies the bytes into the slot's array, the others copy them out, stripping escape sequences
+ * on the way when {@code plain} is set. Readers take no lock; a slot overwritten while it was read
+ * is detected and the event is rendered again, so sharing never allocates per event.
+ */
+public class SharedRenderEncoder extends ColorfulPatternEncoder {
+
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final String CONTEXT_KEY = SharedRenderEncoder.class.getName();
+    private static final ReentrantLock REGISTRY_LOCK = new ReentrantLock();
+
+    private boolean plain;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private Stage stage;
+
+    @Override
+    public void start() {
+        super.start();
+        if (isStarted()) {
+            stage = attach(context, getPattern() + '\u0000' + getCharset().name(), cacheSize);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (stage != null) {
+            detach(context, stage);
+            stage = null;
+        }
+        super.stop();
+    }
+
+    @Override
+    void render(ILoggingEvent event, LineBuffer out) {
+        Stage current = stage;
+        if (current == null || current.encoders < 2) {
+            renderOwn(event, out);
+            return;
+        }
+        RenderedLine line = current.lineFor(event);
+        if (line.copyTo(event, out, plain)) {
+            line.taken(event);
+            return;
+        }
+        int start = out.length();
+        super.render(event, out);
+        line.publish(event, out.array(), start, out.length() - start, current.encoders - 1);
+        if (plain) {
+            out.truncate(start + AnsiStripper.strip(out.array(), start, out.length() - start));
+        }
+    }
+
+    private void renderOwn(ILoggingEvent event, LineBuffer out) {
+        int start = out.length();
+        super.render(event, out);
+        if (plain) {
+            out.truncate(start + AnsiStripper.strip(out.array(), start, out.length() - start));
+        }
+    }
+
+    public boolean isPlain() {
+        return plain;
+    }
+
+    /**
+     * Emit the line without ANSI escape sequences, e.g. for a file next to a colored console.
+     *
+     * @param plain whether to strip colors
+     */
+    public void setPlain(boolean plain) {
+        this.plain = plain;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    private static Stage attach(Context context, String key, int cacheSize) {
+        REGISTRY_LOCK.lock();
+        try {
+            Map<String, Stage> stages = stages(context);
+            Stage stage = stages.get(key);
+            if (stage == null) {
+                stage = new Stage(key, cacheSize);
+                stages.put(key, stage);
+            }
+            stage.encoders++;
+            return stage;
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+    }
+
+    private static void detach(Context context, Stage stage) {
+        REGISTRY_LOCK.lock();
+        try {
+            if (--stage.encoders == 0) {
+                stages(context).remove(stage.key, stage);
+            }
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Stage> stages(Context context) {
+        Object existing = context.getObject(CONTEXT_KEY);
+        if (existing instanceof Map) {
+            return (Map<String, Stage>) existing;
+        }
+        Map<String, Stage> stages = new HashMap<>();
+        context.putObject(CONTEXT_KEY, stages);
+        return stages;
+    }
+
+    /**
+     * The lines rendered for the encoders sharing one pattern.
+     */
+    private static final class Stage {
+        final String key;
+        final RenderedLine[] lines;
+        final int mask;
+        // changed under REGISTRY_LOCK, read without it on the logging path
+        volatile int encoders;
+
+        Stage(String key, int cacheSize) {
+            this.key = key;
+            int size = Integer.highestOneBit(Math.max(cacheSize, 16) - 1) << 1;
+            this.lines = new RenderedLine[size];
+            for (int i = 0; i < size; i++) {
+                lines[i] = new RenderedLine();
+            }
+            this.mask = size - 1;
+        }
+
+        RenderedLine lineFor(ILoggingEvent event) {
+            int h = System.identityHashCode(event);
+            return lines[(h ^ (h >>> 16)) & mask];
+        }
+    }
+
+    /**
+     * A reusable slot holding the colored bytes of one event until every encoder took them.
+     * Writers take the write lock without waiting, readers read optimistically and validate.
+     */
+    private static final class RenderedLine {
+        final StampedLock lock = new StampedLock();
+        final AtomicInteger pending = new AtomicInteger();
+        private ILoggingEvent event;
+        private byte[] colored = new byte[0];
+        private int length;
+
+        /**
+         * Append the line of the event, if this slot holds it.
+         *
+         * @return false if the slot holds another event or was overwritten during the copy
+         */
+        boolean copyTo(ILoggingEvent wanted, LineBuffer out, boolean plain) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0 || event != wanted) {
+                return false;
+            }
+            byte[] bytes = colored;
+            int count = length;
+            if (count > bytes.length) {
+                return false;
+            }
+            int start = out.length();
+            if (plain) {
+                AnsiStripper.copy(bytes, 0, count, out);
+            } else {
+                out.append(bytes, 0, count);
+            }
+            if (!lock.validate(stamp)) {
+                out.truncate(start);
+                return false;
+            }
+            return true;
+        }
+
+        void taken(ILoggingEvent taken) {
+            if (pending.decrementAndGet() <= 0) {
+                long stamp = lock.tryWriteLock();
+                if (stamp != 0) {
+                    if (event == taken) {
+                        event = null;
+                    }
+                    lock.unlockWrite(stamp);
+                }
+            }
+        }
+
+        void publish(ILoggingEvent rendered, byte[] src, int offset, int count, int consumers) {
+            if (count > MAX_RETAINED_CAPACITY) {
+                // not worth pinning a large array in the slot; the other encoders render it themselves
+                return;
+            }
+            long stamp = lock.tryWriteLock();
+            if (stamp == 0) {
+                // another encoder is publishing into this slot right now
+                return;
+            }
+            try {
+                if (colored.length < count) {
+                    colored = new byte[Math.max(count, 256)];
+                }
+                System.arraycopy(src, offset, colored, 0, count);
+                length = count;
+                event = rendered;
+                pending.set(consumers);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+}
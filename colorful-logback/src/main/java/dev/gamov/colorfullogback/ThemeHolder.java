@@ -0,0 +1,206 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.util.Duration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the active {@link ColorTheme} of a logback context and reloads it when its file changes.
+ * <p>
+ * The theme is configured with the {@value #THEME_PROPERTY} context property or system property,
+ * either a file path or {@code classpath:some/theme.properties}:
+ * <pre>
+ * &lt;property scope="context" name="colorful.logback.theme" value="/etc/myapp/log-theme.properties"/&gt;
+ * </pre>
+ * When the theme resolves to a file, its modification time is checked on the context's scheduler
+ * once per scan period ({@value #SCAN_PERIOD_PROPERTY}, default 5 seconds). A changed file is
+ * compiled off the logging path and published with a single volatile write; converters read the
+ * current theme with a single volatile read per event, never lock and never parse. A theme that
+ * fails to load is reported on the status manager and the previous theme stays active.
+ */
+final class ThemeHolder extends ContextAwareBase {
+
+    static final String THEME_PROPERTY = "colorful.logback.theme";
+    static final String SCAN_PERIOD_PROPERTY = "colorful.logback.theme.scanPeriod";
+    static final Duration DEFAULT_SCAN_PERIOD = Duration.buildBySeconds(5);
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final String CONTEXT_KEY = ThemeHolder.class.getName();
+    // locks instead of monitors: loading reads a file, which must not pin a virtual carrier thread
+    private static final ReentrantLock REGISTRY_LOCK = new ReentrantLock();
+
+    private final String source;
+    private final AnsiColors.Depth depth;
+    private final File file;
+    private final URL resource;
+    private volatile ColorTheme current = ColorTheme.defaults();
+    private long lastModified = Long.MIN_VALUE;
+    private long lastLength = -1;
+    private final ReentrantLock lock = new ReentrantLock();
+    private ScheduledFuture<?> scanTask;
+
+    ThemeHolder(Context context, String source, AnsiColors.Depth depth) {
+        setContext(context);
+        this.source = source;
+        this.depth = depth;
+        if (source.startsWith(CLASSPATH_PREFIX)) {
+            String name = source.substring(CLASSPATH_PREFIX.length());
+            this.resource = ThemeHolder.class.getClassLoader().getResource(name.startsWith("/") ? name.substring(1) : name);
+            this.file = toFile(resource);
+        } else {
+            this.file = new File(source);
+            this.resource = null;
+        }
+    }
+
+    /**
+     * Get the theme holder of a context, creating and loading it on first use.
+     *
+     * @param context the logback context, may be null
+     * @return the holder, or null when no theme is configured
+     */
+    static ThemeHolder forContext(Context context) {
+        String source = property(context, THEME_PROPERTY);
+        if (source == null || source.trim().isEmpty()) {
+            return null;
+        }
+        source = source.trim();
+        if (context == null) {
+            ThemeHolder holder = new ThemeHolder(null, source, ColorSupport.colorDepth(null));
+            holder.checkForChange();
+            return holder;
+        }
+        REGISTRY_LOCK.lock();
+        try {
+            Object existing = context.getObject(CONTEXT_KEY);
+            if (existing instanceof ThemeHolder && ((ThemeHolder) existing).source.equals(source)) {
+                ThemeHolder holder = (ThemeHolder) existing;
+                // a reconfiguration cancels the context's scheduled tasks
+                holder.checkForChange();
+                holder.scheduleScan();
+                return holder;
+            }
+            if (existing instanceof ThemeHolder) {
+                ((ThemeHolder) existing).cancelScan();
+            }
+            ThemeHolder holder = new ThemeHolder(context, source, ColorSupport.colorDepth(context));
+            holder.checkForChange();
+            holder.scheduleScan();
+            context.putObject(CONTEXT_KEY, holder);
+            return holder;
+        } finally {
+            REGISTRY_LOCK.unlock();
+        }
+    }
+
+    /**
+     * The active theme.
+     *
+     * @return the current theme, never null
+     */
+    ColorTheme current() {
+        return current;
+    }
+
+    /**
+     * Load the theme if it was never loaded or its file changed since the last check.
+     */
+    void checkForChange() {
+        lock.lock();
+        try {
+            load();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void load() {
+        if (file != null) {
+            long modified = file.lastModified();
+            long length = file.length();
+            if (modified == 0L) {
+                if (lastModified == Long.MIN_VALUE) {
+                    addError("Theme file [" + file + "] does not exist, using the default colors");
+                    lastModified = 0L;
+                }
+                return;
+            }
+            if (modified == lastModified && length == lastLength) {
+                return;
+            }
+            lastModified = modified;
+            lastLength = length;
+        } else if (lastModified != Long.MIN_VALUE) {
+            // classpath resources inside a jar do not change
+            return;
+        } else {
+            lastModified = 0L;
+            if (resource == null) {
+                addError("Theme [" + source + "] not found, using the default colors");
+                return;
+            }
+        }
+        try (InputStream in = file != null ? new FileInputStream(file) : resource.openStream()) {
+            ColorTheme theme = ColorTheme.read(file != null ? file.getName() : resource.getPath(), in, depth);
+            current = theme;
+            addInfo("Loaded color theme [" + source + "] for " + depth);
+        } catch (IOException | IllegalArgumentException e) {
+            addError("Could not load color theme [" + source + "], keeping " + current, e);
+        }
+    }
+
+    private void scheduleScan() {
+        Context context = getContext();
+        if (file == null || context == null || (scanTask != null && !scanTask.isDone())) {
+            return;
+        }
+        long period = DEFAULT_SCAN_PERIOD.getMilliseconds();
+        String configured = property(context, SCAN_PERIOD_PROPERTY);
+        if (configured != null) {
+            try {
+                period = Duration.valueOf(configured.trim()).getMilliseconds();
+            } catch (IllegalArgumentException e) {
+                addWarn("Invalid " + SCAN_PERIOD_PROPERTY + " [" + configured + "], using " + DEFAULT_SCAN_PERIOD);
+            }
+        }
+        if (period <= 0) {
+            return;
+        }
+        scanTask = context.getScheduledExecutorService()
+                .scheduleAtFixedRate(this::checkForChange, period, period, TimeUnit.MILLISECONDS);
+        context.addScheduledFuture(scanTask);
+    }
+
+    private void cancelScan() {
+        if (scanTask != null) {
+            scanTask.cancel(false);
+        }
+    }
+
+    private static String property(Context context, String key) {
+        String value = context != null ? context.getProperty(key) : null;
+        return value != null ? value : System.getProperty(key);
+    }
+
+    private static File toFile(URL url) {
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI()).toFile();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package dev.gamov.colorfullogback;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Reusable scratch objects for the rendering path, per platform thread and pooled for virtual threads.
+ * <p>
+ * A {@code ThreadLocal} is the cheapest way to reuse a buffer on a platform thread, but with
+ * virtual threads every request runs on a new thread: the buffer would be allocated, used once
+ * and kept reachable until the thread ends. Virtual threads therefore borrow from a small
+ * lock-free pool sized to the number of carrier threads, and create a fresh object only when
+ * the pool is empty. Neither path takes a lock, so rendering never pins a carrier thread.
+ * <p>
+ * {@link #release(Object)} must be called for every {@link #acquire()}, after the caller has
+ * trimmed the object; it is a no-op on platform threads.
+ *
+ * @param <T> the type of the scratch object
+ */
+final class ThreadBuffers<T> {
+
+    private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+    private final Supplier<T> factory;
+    private final ThreadLocal<T> local;
+    private final AtomicReferenceArray<T> pool;
+    private final int mask;
+
+    ThreadBuffers(Supplier<T> factory) {
+        this(factory, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    ThreadBuffers(Supplier<T> factory, int poolSize) {
+        int size = Integer.highestOneBit(Math.max(1, poolSize - 1)) << 1;
+        this.factory = factory;
+        this.local = ThreadLocal.withInitial(factory);
+        this.pool = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Get a scratch object owned by the current thread until it is released.
+     *
+     * @return the object
+     */
+    T acquire() {
+        Thread thread = Thread.currentThread();
+        if (!isVirtual(thread)) {
+            return local.get();
+        }
+        int start = slot(thread);
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+            if (pool.get(index) != null) {
+                T value = pool.getAndSet(index, null);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return factory.get();
+    }
+
+    /**
+     * Return a scratch object obtained from {@link #acquire()}.
+     *
+     * @param value the object, no longer used by the caller
+     */
+    void release(T value) {
+        Thread thread = Thread.currentThread();
+        if (!isVirtual(thread)) {
+            return;
+        }
+        int start = slot(thread);
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+            if (pool.get(index) == null && pool.compareAndSet(index, null, value)) {
+                return;
+            }
+        }
+        // pool is full, leave the object to the garbage collector
+    }
+
+    @SuppressWarnings("deprecation")
+    private int slot(Thread thread) {
+        long id = thread.getId();
+        return (int) (id ^ (id >>> 32)) & mask;
+    }
+
+    /**
+     * Whether the thread is a virtual thread; always false before Java 21.
+     */
+    static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle findIsVirtual() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.pattern.LiteralConverter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static dev.gamov.colorfullogback.ConverterFixtures.event;
+import static dev.gamov.colorfullogback.ConverterFixtures.layout;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BaseColorConverterTest {
+
+    private static final String RESET = "\u001b[0;39m";
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+    }
+
+    @Test
+    void convert_shouldWrapChildOutputInLevelColor() {
+        PatternLayout layout = layout(loggerContext, "%colorLevel(%-5level)");
+
+        String output = layout.doLayout(event(logger, Level.INFO, "hello"));
+
+        assertThat(output).isEqualTo("\u001b[32mINFO " + RESET);
+    }
+
+    @Test
+    void convert_shouldMatchStockTransformOutput() {
+        PatternLayout layout = layout(loggerContext, "%colorMessage(%msg)");
+        LoggingEvent event = event(logger, Level.WARN, "disk almost full");
+        CustomHighlightingMessage converter = new CustomHighlightingMessage();
+
+        String output = layout.doLayout(event);
+
+        assertThat(output).isEqualTo(converter.transform(event, "disk almost full"));
+        assertThat(output).isEqualTo("\u001b[33mdisk almost full" + RESET);
+    }
+
+    @Test
+    void convert_shouldRenderNestedColorConverters() {
+        PatternLayout layout = layout(loggerContext, "%colorLevel([%colorPackage(%logger)] %level)");
+
+        String output = layout.doLayout(event(logger, Level.DEBUG, "nested"));
+
+        assertThat(output).isEqualTo("\u001b[34m[\u001b[36mcom.example.service.OrderService" + RESET + "] DEBUG" + RESET);
+    }
+
+    @Test
+    void convert_shouldHonorFormattingOnColoredSpan() {
+        PatternLayout layout = layout(loggerContext, "%-20colorLevel(%level)|");
+
+        String output = layout.doLayout(event(logger, Level.ERROR, "padded"));
+
+        assertThat(output).isEqualTo("\u001b[31mERROR" + RESET + "   |");
+    }
+
+    @Test
+    void convert_shouldReuseBufferAcrossEvents() {
+        PatternLayout layout = layout(loggerContext, "%colorMessage(%msg)");
+
+        String first = layout.doLayout(event(logger, Level.ERROR, "a much longer first message"));
+        String second = layout.doLayout(event(logger, Level.TRACE, "short"));
+
+        assertThat(first).isEqualTo("\u001b[31ma much longer first message" + RESET);
+        assertThat(second).isEqualTo("\u001b[35mshort" + RESET);
+    }
+
+    @Test
+    void writeTo_shouldAppendWithoutIntermediateResult() {
+        CustomHighlightingPackageName converter = new CustomHighlightingPackageName();
+        converter.setContext(loggerContext);
+        converter.setChildConverter(new LiteralConverter<>("com.example.service.OrderService"));
+        converter.start();
+        StringBuilder buf = new StringBuilder("prefix ");
+
+        converter.writeTo(buf, event(logger, Level.WARN, "ignored"));
+
+        assertThat(buf.toString()).isEqualTo("prefix \u001b[33mcom.example.service.OrderService" + RESET);
+    }
+
+    @Test
+    void convert_shouldPassChildOutputThroughWhenColorIsDisabled() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        PatternLayout layout = layout(loggerContext, "%colorLevel(%-5level) %colorPackage([%logger]) %colorMessage(%msg)");
+
+        String output = layout.doLayout(event(logger, Level.ERROR, "plain"));
+
+        assertThat(output).isEqualTo("ERROR [com.example.service.OrderService] plain");
+    }
+
+    @Test
+    void writeTo_shouldPassChildBytesThroughWhenColorIsDisabled() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        CustomHighlightingMessage converter = new CustomHighlightingMessage();
+        converter.setContext(loggerContext);
+        converter.setChildConverter(new LiteralConverter<>("plain bytes"));
+        converter.start();
+        LineBuffer out = new LineBuffer();
+
+        converter.writeTo(out, event(logger, Level.WARN, "ignored"));
+
+        assertThat(converter.isColorEnabled()).isFalse();
+        assertThat(new String(out.toByteArray(), java.nio.charset.StandardCharsets.UTF_8)).isEqualTo("plain bytes");
+    }
+
+    @Test
+    void levelIndex_shouldMapNullAndUnknownLevelsToDefaultSlot() {
+        assertThat(BaseColorConverter.levelIndex(null)).isEqualTo(BaseColorConverter.DEFAULT_INDEX);
+        assertThat(BaseColorConverter.levelIndex(Level.OFF)).isEqualTo(BaseColorConverter.DEFAULT_INDEX);
+        assertThat(BaseColorConverter.levelIndex(Level.ERROR)).isEqualTo(BaseColorConverter.ERROR_INDEX);
+        assertThat(BaseColorConverter.levelIndex(Level.TRACE)).isEqualTo(BaseColorConverter.TRACE_INDEX);
+    }
+}
@@ -0,0 +1,204 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.KeyValuePair;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryLogEncoderTest {
+
+    private static final String TEXT_PATTERN = "%d{yyyy-MM-dd HH:mm:ss.SSS} %-5level [%thread] %logger{36}: %msg%n";
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+    private BinaryLogEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        encoder = new BinaryLogEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void reader_shouldRestoreEveryStoredField() throws IOException {
+        LoggingEvent event = event(Level.ERROR, "com.example.orders.OrderService", "Order {} failed for {}",
+                new IllegalStateException("payment declined", new IllegalArgumentException("card expired")),
+                "A-42", new int[]{1, 2});
+        event.setMDCPropertyMap(Map.of("requestId", "r-1"));
+        event.addMarker(MarkerFactory.getMarker("AUDIT"));
+        event.addKeyValuePair(new KeyValuePair("tenant", 7));
+
+        List<ILoggingEvent> events = read(encoder.headerBytes(), encoder.encode(event));
+
+        assertThat(events).hasSize(1);
+        ILoggingEvent decoded = events.get(0);
+        assertThat(decoded.getTimeStamp()).isEqualTo(event.getTimeStamp());
+        assertThat(decoded.getLevel()).isEqualTo(Level.ERROR);
+        assertThat(decoded.getLoggerName()).isEqualTo("com.example.orders.OrderService");
+        assertThat(decoded.getThreadName()).isEqualTo("worker-1");
+        assertThat(decoded.getMessage()).isEqualTo("Order {} failed for {}");
+        assertThat(decoded.getArgumentArray()).containsExactly("A-42", "[1, 2]");
+        assertThat(decoded.getFormattedMessage()).isEqualTo(event.getFormattedMessage());
+        assertThat(decoded.getMDCPropertyMap()).containsExactly(Map.entry("requestId", "r-1"));
+        assertThat(decoded.getMarkerList()).extracting("name").containsExactly("AUDIT");
+        assertThat(decoded.getKeyValuePairs()).extracting(p -> p.key + "=" + p.value).containsExactly("tenant=7");
+        assertThat(decoded.getThrowableProxy().getClassName()).isEqualTo(IllegalStateException.class.getName());
+        assertThat(decoded.getThrowableProxy().getCause().getMessage()).isEqualTo("card expired");
+        assertThat(decoded.getThrowableProxy().getStackTraceElementProxyArray())
+                .hasSameSizeAs(event.getThrowableProxy().getStackTraceElementProxyArray());
+    }
+
+    @Test
+    void renderer_shouldReproduceTheTextPattern() throws IOException {
+        ColorfulPatternEncoder text = new ColorfulPatternEncoder();
+        text.setContext(loggerContext);
+        text.setPattern(TEXT_PATTERN + "%ex");
+        text.start();
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        binary.write(encoder.headerBytes());
+        for (LoggingEvent event : List.of(
+                event(Level.INFO, "com.example.web.OrderController", "Order {} accepted", null, "A-1"),
+                event(Level.WARN, "com.example.web.OrderController", "Slow request: {} ms", null, 1234),
+                event(Level.ERROR, "com.example.orders.OrderService", "Order failed",
+                        new IllegalStateException("boom")))) {
+            binary.write(encoder.encode(event));
+            expected.write(text.encode(event));
+        }
+        Path file = Files.write(tempDir.resolve("app.bin"), binary.toByteArray());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int status = BinaryLogRenderer.run(new String[]{"--color", "never", "--pattern", TEXT_PATTERN + "%ex",
+                file.toString()}, new ByteArrayInputStream(new byte[0]), out, new PrintStream(err));
+
+        assertThat(status).isZero();
+        assertThat(err.toString(StandardCharsets.UTF_8)).isEmpty();
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void renderer_shouldColorWithTheConverterMapping() {
+        byte[] binary = concat(encoder.headerBytes(),
+                encoder.encode(event(Level.ERROR, "com.example.Service", "failed", null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int status = BinaryLogRenderer.run(new String[]{"--color", "always", "--pattern", "%colorLevel(%level) %msg"},
+                new ByteArrayInputStream(binary), out, new PrintStream(new ByteArrayOutputStream()));
+
+        assertThat(status).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("\u001b[31mERROR\u001b[0;39m failed");
+    }
+
+    @Test
+    void renderer_shouldRejectFilesThatAreNotBinaryLogs() throws IOException {
+        Path text = Files.writeString(tempDir.resolve("app.log"), "2025-07-01 INFO plain text\n");
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int status = BinaryLogRenderer.run(new String[]{text.toString()}, new ByteArrayInputStream(new byte[0]),
+                new ByteArrayOutputStream(), new PrintStream(err));
+
+        assertThat(status).isEqualTo(1);
+        assertThat(err.toString(StandardCharsets.UTF_8)).contains("app.log").contains("Not a binary log");
+    }
+
+    @Test
+    void header_shouldRepeatTheDictionarySoARolledFileReadsOnItsOwn() throws IOException {
+        encoder.encode(event(Level.INFO, "com.example.First", "before the roll", null));
+        byte[] secondFile = concat(encoder.headerBytes(),
+                encoder.encode(event(Level.INFO, "com.example.First", "after the roll", null)));
+
+        List<ILoggingEvent> events = read(secondFile);
+
+        assertThat(events).extracting(ILoggingEvent::getLoggerName, ILoggingEvent::getThreadName)
+                .containsExactly(org.assertj.core.groups.Tuple.tuple("com.example.First", "worker-1"));
+    }
+
+    @Test
+    void reader_shouldWaitForDefinitionsWrittenByAnotherThread() throws IOException {
+        byte[] header = encoder.headerBytes();
+        byte[] defining = encoder.encode(event(Level.INFO, "com.example.Shared", "first", null));
+        byte[] using = encoder.encode(event(Level.INFO, "com.example.Shared", "second", null));
+
+        List<ILoggingEvent> events = read(header, using, defining);
+
+        assertThat(events).extracting(ILoggingEvent::getLoggerName).containsOnly("com.example.Shared");
+        assertThat(events).extracting(ILoggingEvent::getMessage).containsExactlyInAnyOrder("first", "second");
+    }
+
+    @Test
+    void encode_shouldBeMuchSmallerThanTheTextPattern() {
+        ColorfulPatternEncoder text = new ColorfulPatternEncoder();
+        text.setContext(loggerContext);
+        text.setPattern(TEXT_PATTERN);
+        text.start();
+        long binaryBytes = encoder.headerBytes().length;
+        long textBytes = 0;
+        String[] loggers = {"com.example.web.OrderController", "com.example.orders.OrderService",
+                "com.example.payments.PaymentGateway", "org.springframework.web.servlet.DispatcherServlet"};
+        for (int i = 0; i < 1000; i++) {
+            LoggingEvent event = event(Level.INFO, loggers[i % loggers.length],
+                    "Processed order {} for customer {} in {} ms", null, "A-" + i, "customer-" + (i % 97), i % 250);
+            binaryBytes += encoder.encode(event).length;
+            textBytes += text.encode(event).length;
+        }
+
+        assertThat(binaryBytes).isLessThan(textBytes / 2);
+    }
+
+    private LoggingEvent event(Level level, String logger, String message, Throwable throwable, Object... args) {
+        LoggingEvent event = new LoggingEvent(BinaryLogEncoderTest.class.getName(), loggerContext.getLogger(logger),
+                level, message, throwable, args.length == 0 ? null : args);
+        event.setThreadName("worker-1");
+        event.setTimeStamp(1_751_364_000_000L);
+        return event;
+    }
+
+    private static List<ILoggingEvent> read(byte[]... chunks) throws IOException {
+        List<ILoggingEvent> events = new ArrayList<>();
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(concat(chunks)))) {
+            for (ILoggingEvent event = reader.next(); event != null; event = reader.next()) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private static byte[] concat(byte[]... chunks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            out.write(chunk, 0, chunk.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,169 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.util.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescingConsoleAppenderTest {
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+    private RecordingChannel channel;
+    private CoalescingConsoleAppender appender;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+        channel = new RecordingChannel();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void append_shouldCoalesceLinesUntilStop() {
+        startAppender(64 * 1024, Duration.buildByMinutes(1));
+
+        for (int i = 0; i < 100; i++) {
+            appender.doAppend(event(Level.DEBUG, "line " + i));
+        }
+        assertThat(channel.writes).isZero();
+        appender.stop();
+
+        assertThat(channel.writes).isEqualTo(1);
+        assertThat(appender.getWriteCount()).isEqualTo(1);
+        assertThat(channel.content().split("\n")).hasSize(100).startsWith("line 0").endsWith("line 99");
+    }
+
+    @Test
+    void append_shouldFlushImmediatelyForWarnAndError() {
+        startAppender(64 * 1024, Duration.buildByMinutes(1));
+
+        appender.doAppend(event(Level.INFO, "before"));
+        appender.doAppend(event(Level.WARN, "urgent"));
+
+        assertThat(channel.writes).isEqualTo(1);
+        assertThat(channel.content()).isEqualTo("before\nurgent\n");
+    }
+
+    @Test
+    void append_shouldFlushWhenBufferIsFull() {
+        startAppender(16, Duration.buildByMinutes(1));
+
+        appender.doAppend(event(Level.INFO, "0123456"));
+        appender.doAppend(event(Level.INFO, "abcdefg"));
+
+        assertThat(channel.writes).isEqualTo(1);
+        assertThat(channel.content()).isEqualTo("0123456\nabcdefg\n");
+    }
+
+    @Test
+    void append_shouldGatherOversizedLineWithPendingBatch() {
+        startAppender(16, Duration.buildByMinutes(1));
+
+        appender.doAppend(event(Level.INFO, "short"));
+        appender.doAppend(event(Level.INFO, "a line that is much longer than the buffer"));
+
+        assertThat(channel.writes).isEqualTo(1);
+        assertThat(channel.gatheringWrites).isEqualTo(1);
+        assertThat(channel.content()).isEqualTo("short\na line that is much longer than the buffer\n");
+    }
+
+    @Test
+    void append_shouldFlushStaleBatchAfterMaxFlushDelay() throws InterruptedException {
+        startAppender(64 * 1024, Duration.buildByMilliseconds(20));
+
+        appender.doAppend(event(Level.INFO, "eventually"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (channel.writes == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(channel.content()).isEqualTo("eventually\n");
+    }
+
+    private void startAppender(int bufferSize, Duration maxFlushDelay) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+
+        appender = new CoalescingConsoleAppender();
+        appender.setContext(loggerContext);
+        appender.setEncoder(encoder);
+        appender.setBufferSize(bufferSize);
+        appender.setMaxFlushDelay(maxFlushDelay);
+        appender.setChannel(channel);
+        appender.start();
+    }
+
+    private LoggingEvent event(Level level, String message) {
+        return new LoggingEvent(getClass().getName(), logger, level, message, null, null);
+    }
+
+    private static final class RecordingChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private volatile int writes;
+        private int gatheringWrites;
+
+        @Override
+        public synchronized int write(ByteBuffer src) {
+            writes++;
+            return drain(src);
+        }
+
+        @Override
+        public synchronized long write(ByteBuffer[] srcs, int offset, int length) {
+            writes++;
+            gatheringWrites++;
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                total += drain(srcs[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        synchronized String content() {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+
+        private int drain(ByteBuffer src) {
+            int count = src.remaining();
+            byte[] chunk = new byte[count];
+            src.get(chunk);
+            bytes.write(chunk, 0, count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
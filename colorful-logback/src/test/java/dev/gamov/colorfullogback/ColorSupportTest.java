@@ -0,0 +1,80 @@
+package dev.gamov.colorfullogback;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColorSupportTest {
+
+    @Test
+    void detect_shouldFollowTerminalWhenEnvironmentIsSilent() {
+        assertThat(ColorSupport.detect(Map.of(), true)).isTrue();
+        assertThat(ColorSupport.detect(Map.of(), false)).isFalse();
+    }
+
+    @Test
+    void detect_shouldDisableColorsWhenNoColorIsSet() {
+        assertThat(ColorSupport.detect(Map.of("NO_COLOR", "1"), true)).isFalse();
+        assertThat(ColorSupport.detect(Map.of("NO_COLOR", "1", "CLICOLOR_FORCE", "1"), true)).isFalse();
+    }
+
+    @Test
+    void detect_shouldIgnoreEmptyNoColor() {
+        assertThat(ColorSupport.detect(Map.of("NO_COLOR", ""), true)).isTrue();
+    }
+
+    @Test
+    void detect_shouldForceColorsWithoutTerminal() {
+        assertThat(ColorSupport.detect(Map.of("CLICOLOR_FORCE", "1"), false)).isTrue();
+        assertThat(ColorSupport.detect(Map.of("CLICOLOR_FORCE", "1", "TERM", "dumb"), false)).isTrue();
+        assertThat(ColorSupport.detect(Map.of("CLICOLOR_FORCE", "0"), false)).isFalse();
+    }
+
+    @Test
+    void detect_shouldDisableColorsOnDumbTerminal() {
+        assertThat(ColorSupport.detect(Map.of("TERM", "dumb"), true)).isFalse();
+        assertThat(ColorSupport.detect(Map.of("TERM", "xterm-256color"), true)).isTrue();
+    }
+
+    @Test
+    void isTerminal_shouldAskTheConsoleWhenItCanTell() throws ReflectiveOperationException {
+        // JDK 22+: a console exists for redirected output too, Console.isTerminal() tells them apart
+        MethodHandle redirected = MethodHandles.lookup().findStatic(ColorSupportTest.class, "redirected",
+                MethodType.methodType(boolean.class, Object.class));
+        MethodHandle attached = MethodHandles.lookup().findStatic(ColorSupportTest.class, "attached",
+                MethodType.methodType(boolean.class, Object.class));
+        Object console = new Object();
+
+        assertThat(ColorSupport.isTerminal(console, redirected)).isFalse();
+        assertThat(ColorSupport.isTerminal(console, attached)).isTrue();
+        assertThat(ColorSupport.detect(Map.of(), ColorSupport.isTerminal(console, redirected))).isFalse();
+    }
+
+    @Test
+    void isTerminal_shouldTrustTheConsoleBeforeJdk22() {
+        assertThat(ColorSupport.isTerminal(new Object(), null)).isTrue();
+        assertThat(ColorSupport.isTerminal(null, null)).isFalse();
+    }
+
+    @Test
+    void resolve_shouldLetExplicitModeOverrideEnvironment() {
+        assertThat(ColorSupport.resolve("always", false)).isTrue();
+        assertThat(ColorSupport.resolve("NEVER", true)).isFalse();
+        assertThat(ColorSupport.resolve("auto", true)).isTrue();
+        assertThat(ColorSupport.resolve("auto", false)).isFalse();
+        assertThat(ColorSupport.resolve(null, false)).isFalse();
+    }
+
+    private static boolean redirected(Object console) {
+        return false;
+    }
+
+    private static boolean attached(Object console) {
+        return true;
+    }
+}
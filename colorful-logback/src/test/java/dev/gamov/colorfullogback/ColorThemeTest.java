@@ -0,0 +1,161 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Properties;
+
+import static dev.gamov.colorfullogback.ConverterFixtures.event;
+import static dev.gamov.colorfullogback.ConverterFixtures.layout;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColorThemeTest {
+
+    private static final String RESET = "\u001b[0;39m";
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        loggerContext.putProperty(ColorSupport.DEPTH_PROPERTY, "truecolor");
+        logger = loggerContext.getLogger("com.example.Service");
+    }
+
+    @Test
+    void parse_shouldAcceptExtendedColorsAndAttributes() {
+        assertThat(AnsiColors.parse("boldBlue")).isEqualTo("1;34");
+        assertThat(AnsiColors.parse("brightRed")).isEqualTo("91");
+        assertThat(AnsiColors.parse("color(208)")).isEqualTo("38;5;208");
+        assertThat(AnsiColors.parse("#ff8700")).isEqualTo("38;2;255;135;0");
+        assertThat(AnsiColors.parse("#f80")).isEqualTo("38;2;255;136;0");
+        assertThat(AnsiColors.parse("bold underline rgb(255, 135, 0)")).isEqualTo("1;4;38;2;255;135;0");
+        assertThat(AnsiColors.parse("1;34")).isEqualTo("1;34");
+        assertThatThrownBy(() -> AnsiColors.parse("red blue")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> AnsiColors.parse("color(300)")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void parse_shouldMapColorsToTheTerminalDepth() {
+        assertThat(AnsiColors.parse("#ff8700", AnsiColors.Depth.ANSI_256)).isEqualTo("38;5;208");
+        assertThat(AnsiColors.parse("#ff0000", AnsiColors.Depth.ANSI_16)).isEqualTo("91");
+        assertThat(AnsiColors.parse("color(196)", AnsiColors.Depth.ANSI_16)).isEqualTo("91");
+        assertThat(AnsiColors.parse("color(4)", AnsiColors.Depth.ANSI_16)).isEqualTo("34");
+        assertThat(AnsiColors.parse("#808080", AnsiColors.Depth.ANSI_256)).isEqualTo("38;5;244");
+        assertThat(AnsiColors.parse("green", AnsiColors.Depth.ANSI_16)).isEqualTo("32");
+    }
+
+    @Test
+    void detectDepth_shouldFollowColortermAndTerm() {
+        assertThat(ColorSupport.detectDepth(Map.of("COLORTERM", "truecolor"))).isEqualTo(AnsiColors.Depth.TRUECOLOR);
+        assertThat(ColorSupport.detectDepth(Map.of("TERM", "xterm-256color"))).isEqualTo(AnsiColors.Depth.ANSI_256);
+        assertThat(ColorSupport.detectDepth(Map.of("TERM", "xterm"))).isEqualTo(AnsiColors.Depth.ANSI_16);
+        assertThat(ColorSupport.resolveDepth("256", AnsiColors.Depth.ANSI_16)).isEqualTo(AnsiColors.Depth.ANSI_256);
+    }
+
+    @Test
+    void compile_shouldFallBackToBuiltInColorsAndDeriveMessageAndArgumentColors() {
+        Properties properties = new Properties();
+        properties.setProperty("level.info", "#00ff00");
+
+        ColorTheme theme = ColorTheme.compile("test", properties, AnsiColors.Depth.TRUECOLOR);
+
+        assertThat(theme.table(ColorTheme.Role.LEVEL)[BaseColorConverter.INFO_INDEX].chars).isEqualTo("\u001b[38;2;0;255;0m");
+        assertThat(theme.table(ColorTheme.Role.LEVEL)[BaseColorConverter.ERROR_INDEX].chars).isEqualTo("\u001b[31m");
+        assertThat(theme.table(ColorTheme.Role.PACKAGE)[BaseColorConverter.INFO_INDEX].chars).isEqualTo("\u001b[36m");
+        assertThat(theme.table(ColorTheme.Role.MESSAGE)[BaseColorConverter.INFO_INDEX].chars).isEqualTo("\u001b[38;2;0;255;0m");
+        assertThat(theme.table(ColorTheme.Role.ARGUMENT)[BaseColorConverter.INFO_INDEX].chars).isEqualTo("\u001b[1;38;2;0;255;0m");
+        assertThatThrownBy(() -> ColorTheme.compile("typo", props("levl.info", "red"), AnsiColors.Depth.TRUECOLOR))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("levl.info");
+    }
+
+    @Test
+    void read_shouldLoadTheXmlPropertiesFormat() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!DOCTYPE properties SYSTEM \"http://java.sun.com/dtd/properties.dtd\">\n"
+                + "<properties><entry key=\"package.debug\">color(141)</entry></properties>";
+
+        ColorTheme theme = ColorTheme.read("dark.xml",
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), AnsiColors.Depth.ANSI_256);
+
+        assertThat(theme.table(ColorTheme.Role.PACKAGE)[BaseColorConverter.DEBUG_INDEX].chars).isEqualTo("\u001b[38;5;141m");
+    }
+
+    @Test
+    void converters_shouldUseTheThemeAndPickUpChangesOfItsFile() throws Exception {
+        Path file = tempDir.resolve("theme.properties");
+        Files.writeString(file, "level.info = #00ff00\nmessage.info = color(250)\n");
+        loggerContext.putProperty(ThemeHolder.THEME_PROPERTY, file.toString());
+        PatternLayout layout = layout(loggerContext, "%colorLevel(%level) %colorMessage(%msg)");
+
+        assertThat(layout.doLayout(event(logger, Level.INFO, "message")))
+                .isEqualTo("\u001b[38;2;0;255;0mINFO" + RESET + " \u001b[38;5;250mmessage" + RESET);
+
+        Files.writeString(file, "level.info = brightBlue\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5_000));
+        ThemeHolder.forContext(loggerContext).checkForChange();
+
+        assertThat(layout.doLayout(event(logger, Level.INFO, "message")))
+                .isEqualTo("\u001b[94mINFO" + RESET + " \u001b[94mmessage" + RESET);
+    }
+
+    @Test
+    void themeHolder_shouldKeepThePreviousThemeWhenTheFileIsBroken() throws Exception {
+        Path file = tempDir.resolve("theme.properties");
+        Files.writeString(file, "level.warn = color(214)\n");
+        loggerContext.putProperty(ThemeHolder.THEME_PROPERTY, file.toString());
+        ThemeHolder holder = ThemeHolder.forContext(loggerContext);
+        ColorTheme loaded = holder.current();
+
+        Files.writeString(file, "level.warn = not-a-color\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5_000));
+        holder.checkForChange();
+
+        assertThat(holder.current()).isSameAs(loaded);
+        assertThat(loaded.table(ColorTheme.Role.LEVEL)[BaseColorConverter.WARN_INDEX].chars).isEqualTo("\u001b[38;5;214m");
+        assertThat(ThemeHolder.forContext(loggerContext)).isSameAs(holder);
+    }
+
+    @Test
+    void timestampLevel_shouldRebuildCachedPrefixesAfterAThemeSwap() throws Exception {
+        Path file = tempDir.resolve("theme.properties");
+        Files.writeString(file, "level.error = #ff0000\n");
+        loggerContext.putProperty(ThemeHolder.THEME_PROPERTY, file.toString());
+        PatternLayout layout = layout(loggerContext, "%colorTimeLevel{HH:mm:ss, UTC}");
+        LoggingEvent event = event(logger, Level.ERROR, "message");
+        event.setTimeStamp(0L);
+
+        assertThat(layout.doLayout(event)).isEqualTo("\u001b[38;2;255;0;0m00:00:00 ERROR" + RESET);
+
+        Files.writeString(file, "level.error = magenta\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5_000));
+        ThemeHolder.forContext(loggerContext).checkForChange();
+
+        assertThat(layout.doLayout(event)).isEqualTo("\u001b[35m00:00:00 ERROR" + RESET);
+    }
+
+    private static Properties props(String key, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        return properties;
+    }
+}
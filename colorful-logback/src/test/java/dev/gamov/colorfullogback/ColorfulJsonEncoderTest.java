@@ -0,0 +1,171 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+import org.slf4j.event.KeyValuePair;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColorfulJsonEncoderTest {
+
+    private static final String RED = "\u001b[31m";
+    private static final String BOLD_RED = "\u001b[1;31m";
+    private static final String RESET = "\u001b[0;39m";
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void encode_shouldWriteOneCompactObjectPerEvent() {
+        ColorfulJsonEncoder encoder = encoder(false);
+        LoggingEvent event = event(Level.INFO, "Order {} of {} paid: {} {}", null,
+                "A-42", 12, true, new BigDecimal("9.90"));
+        Map<String, String> mdc = new LinkedHashMap<>();
+        mdc.put("requestId", "r-1");
+        mdc.put("user", "ann");
+        event.setMDCPropertyMap(mdc);
+        event.addMarker(MarkerFactory.getMarker("AUDIT"));
+        event.addKeyValuePair(new KeyValuePair("tenant", 7L));
+
+        assertThat(encode(encoder, event)).isEqualTo("{\"timestamp\":\"2025-07-01T10:00:00.042Z\",\"level\":\"INFO\","
+                + "\"thread\":\"worker-1\",\"logger\":\"com.example.Orders\",\"message\":\"Order A-42 of 12 paid: true 9.90\","
+                + "\"arguments\":[\"A-42\",12,true,9.90],\"mdc\":{\"requestId\":\"r-1\",\"user\":\"ann\"},"
+                + "\"markers\":[\"AUDIT\"],\"keyValues\":{\"tenant\":7}}\n");
+    }
+
+    @Test
+    void encode_shouldEscapeStringsAndKeepUnicode() {
+        ColorfulJsonEncoder encoder = encoder(false);
+        LoggingEvent event = event(Level.WARN, "say \"hi\" \\ tab\there\nnext \u001b[31m caf\u00e9 \uD83D\uDE00 \u0001", null);
+        event.setMDCPropertyMap(Map.of("odd\"key", "line\r\n"));
+
+        String json = encode(encoder, event);
+
+        assertThat(json).contains("\"message\":\"say \\\"hi\\\" \\\\ tab\\there\\nnext \\u001b[31m caf\u00e9 \uD83D\uDE00 \\u0001\"")
+                .contains("\"mdc\":{\"odd\\\"key\":\"line\\r\\n\"}")
+                .endsWith("}\n");
+        assertThat(json.indexOf('\n')).isEqualTo(json.length() - 1);
+    }
+
+    @Test
+    void encode_shouldWriteThrowableWithCauseAndCommonFrames() {
+        ColorfulJsonEncoder encoder = encoder(false);
+        StackTraceElement shared = new StackTraceElement("com.example.Main", "main", "Main.java", 7);
+        IllegalArgumentException cause = new IllegalArgumentException("card expired");
+        cause.setStackTrace(new StackTraceElement[]{
+                new StackTraceElement("com.example.Card", "check", null, -1), shared});
+        IllegalStateException failure = new IllegalStateException("payment declined", cause);
+        failure.setStackTrace(new StackTraceElement[]{
+                new StackTraceElement("com.example.Orders", "pay", "Orders.java", 42), shared});
+        failure.addSuppressed(new RuntimeException());
+        failure.getSuppressed()[0].setStackTrace(new StackTraceElement[0]);
+
+        String json = encode(encoder, event(Level.ERROR, "Payment failed", failure));
+
+        assertThat(json).endsWith(",\"message\":\"Payment failed\",\"throwable\":{"
+                + "\"class\":\"java.lang.IllegalStateException\",\"message\":\"payment declined\","
+                + "\"frames\":[\"com.example.Orders.pay(Orders.java:42)\",\"com.example.Main.main(Main.java:7)\"],"
+                + "\"suppressed\":[{\"class\":\"java.lang.RuntimeException\"}],"
+                + "\"cause\":{\"class\":\"java.lang.IllegalArgumentException\",\"message\":\"card expired\","
+                + "\"frames\":[\"com.example.Card.check(Unknown Source)\"],\"commonFrames\":1}}}\n");
+    }
+
+    @Test
+    void encode_shouldPrettyPrintWithLevelColorsWhenColorsAreOn() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        ColorfulJsonEncoder encoder = encoder(true);
+        LoggingEvent event = event(Level.ERROR, "Stock {} low", null, 3);
+        event.setMDCPropertyMap(Map.of("requestId", "r-1"));
+
+        assertThat(encode(encoder, event)).isEqualTo("{\n"
+                + "  " + key("timestamp") + ": \"2025-07-01T10:00:00.042Z\",\n"
+                + "  " + key("level") + ": " + RED + "\"ERROR\"" + RESET + ",\n"
+                + "  " + key("thread") + ": \"worker-1\",\n"
+                + "  " + key("logger") + ": \"com.example.Orders\",\n"
+                + "  " + key("message") + ": " + RED + "\"Stock 3 low\"" + RESET + ",\n"
+                + "  " + key("arguments") + ": [\n"
+                + "    " + BOLD_RED + "3" + RESET + "\n"
+                + "  ],\n"
+                + "  " + key("mdc") + ": {\n"
+                + "    " + key("requestId") + ": \"r-1\"\n"
+                + "  }\n"
+                + "}\n");
+    }
+
+    @Test
+    void encode_shouldPrettyPrintWithoutColorsWhenColorsAreOff() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        ColorfulJsonEncoder encoder = encoder(true);
+
+        String json = encode(encoder, event(Level.INFO, "Ready", null));
+
+        assertThat(json).doesNotContain("\u001b").startsWith("{\n  \"timestamp\": \"2025-07-01T10:00:00.042Z\",\n")
+                .endsWith("  \"message\": \"Ready\"\n}\n");
+    }
+
+    @Test
+    void encode_shouldFormatTimestampsAcrossSecondsAndBeforeTheEpoch() {
+        ColorfulJsonEncoder encoder = encoder(false);
+        LoggingEvent before = event(Level.INFO, "a", null);
+        before.setTimeStamp(-1L);
+        LoggingEvent later = event(Level.INFO, "b", null);
+        later.setTimeStamp(1_751_364_061_005L);
+
+        assertThat(encode(encoder, before)).startsWith("{\"timestamp\":\"1969-12-31T23:59:59.999Z\"");
+        assertThat(encode(encoder, later)).startsWith("{\"timestamp\":\"2025-07-01T10:01:01.005Z\"");
+    }
+
+    @Test
+    void number_shouldPrintWholeNumbersLikeLongToString() {
+        for (long value : new long[]{0, 7, -7, 10, 99, 100, 1_000_000_007L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            LineBuffer out = new LineBuffer();
+            ColorfulJsonEncoder.number(out, value);
+            assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(Long.toString(value));
+        }
+    }
+
+    private static String key(String name) {
+        return RED + '"' + name + '"' + RESET;
+    }
+
+    private ColorfulJsonEncoder encoder(boolean pretty) {
+        ColorfulJsonEncoder encoder = new ColorfulJsonEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPretty(pretty);
+        encoder.start();
+        return encoder;
+    }
+
+    private static String encode(ColorfulJsonEncoder encoder, LoggingEvent event) {
+        return new String(encoder.encode(event), StandardCharsets.UTF_8);
+    }
+
+    private LoggingEvent event(Level level, String message, Throwable throwable, Object... args) {
+        LoggingEvent event = new LoggingEvent(ColorfulJsonEncoderTest.class.getName(),
+                loggerContext.getLogger("com.example.Orders"), level, message, throwable, args.length == 0 ? null : args);
+        event.setThreadName("worker-1");
+        event.setTimeStamp(1_751_364_000_042L);
+        return event;
+    }
+}
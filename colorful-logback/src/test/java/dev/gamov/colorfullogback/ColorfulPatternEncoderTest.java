@@ -0,0 +1,106 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static dev.gamov.colorfullogback.ConverterFixtures.event;
+import static dev.gamov.colorfullogback.ConverterFixtures.layout;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColorfulPatternEncoderTest {
+
+    private static final String PATTERN =
+            "%colorLevel(%d{yyyy-MM-dd HH:mm:ss.SSS} %-5level) %colorPackage([%thread] %logger{36}): %colorMessage(%msg%n)";
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        ConverterFixtures.registerConverters(loggerContext);
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+    }
+
+    @Test
+    void encode_shouldProduceSameBytesAsPatternLayout() {
+        ColorfulPatternEncoder encoder = startEncoder(PATTERN);
+        PatternLayout layout = layout(loggerContext, PATTERN);
+        LoggingEvent event = event(logger, Level.INFO, "Order {} shipped", "A-42");
+
+        byte[] encoded = encoder.encode(event);
+
+        assertThat(new String(encoded, StandardCharsets.UTF_8)).isEqualTo(layout.doLayout(event));
+    }
+
+    @Test
+    void encode_shouldEncodeNonAsciiCharacters() {
+        ColorfulPatternEncoder encoder = startEncoder("%colorMessage(%msg)");
+        LoggingEvent event = event(logger, Level.WARN, "⚠️ naïve café 🎨");
+
+        byte[] encoded = encoder.encode(event);
+
+        assertThat(encoded).isEqualTo("\u001b[33m⚠️ naïve café 🎨\u001b[0;39m".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encode_shouldAppendThrowableLikePatternLayout() {
+        ColorfulPatternEncoder encoder = startEncoder("%colorLevel(%level) %msg%n");
+        PatternLayout layout = layout(loggerContext, "%colorLevel(%level) %msg%n");
+        LoggingEvent event = new LoggingEvent(getClass().getName(), logger, Level.ERROR, "boom",
+                new IllegalStateException("broken"), null);
+
+        String encoded = new String(encoder.encode(event), StandardCharsets.UTF_8);
+
+        assertThat(encoded).isEqualTo(layout.doLayout(event));
+        assertThat(encoded).contains("java.lang.IllegalStateException: broken");
+    }
+
+    @Test
+    void encode_shouldHonorFormattingModifiersOnColoredSpans() {
+        ColorfulPatternEncoder encoder = startEncoder("%-20colorLevel(%level)|");
+        PatternLayout layout = layout(loggerContext, "%-20colorLevel(%level)|");
+        LoggingEvent event = event(logger, Level.DEBUG, "padded");
+
+        assertThat(new String(encoder.encode(event), StandardCharsets.UTF_8)).isEqualTo(layout.doLayout(event));
+    }
+
+    @Test
+    void encode_shouldFallBackToStringRenderingForOtherCharsets() {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%msg");
+        encoder.setCharset(StandardCharsets.ISO_8859_1);
+        encoder.start();
+
+        byte[] encoded = encoder.encode(event(logger, Level.INFO, "café"));
+
+        assertThat(encoded).isEqualTo("café".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void start_shouldNotStartWithoutPattern() {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+
+        encoder.start();
+
+        assertThat(encoder.isStarted()).isFalse();
+    }
+
+    private ColorfulPatternEncoder startEncoder(String pattern) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(pattern);
+        encoder.start();
+        return encoder;
+    }
+}
@@ -0,0 +1,73 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.pattern.DynamicConverter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Layouts and events shared by the converter and encoder tests. Every conversion word of the
+ * library is registered under the name the README and the demo configuration use.
+ */
+final class ConverterFixtures {
+
+    @SuppressWarnings("rawtypes")
+    private static final Map<String, Supplier<DynamicConverter>> CONVERTERS = new LinkedHashMap<>();
+
+    static {
+        CONVERTERS.put("colorLevel", CustomHighlightingLogLevel::new);
+        CONVERTERS.put("colorPackage", CustomHighlightingPackageName::new);
+        CONVERTERS.put("colorMessage", CustomHighlightingMessage::new);
+        CONVERTERS.put("colorArgs", CustomHighlightingArguments::new);
+        CONVERTERS.put("colorEx", CustomHighlightingThrowable::new);
+        CONVERTERS.put("colorTimeLevel", CustomHighlightingTimestampLevel::new);
+        CONVERTERS.put("colorCaller", CustomHighlightingCallerLocation::new);
+        CONVERTERS.put("colorMdc", CustomHighlightingMdc::new);
+    }
+
+    private ConverterFixtures() {
+    }
+
+    /**
+     * Start a layout for the pattern with the library's conversion words.
+     */
+    static PatternLayout layout(LoggerContext context, String pattern) {
+        PatternLayout layout = new PatternLayout();
+        layout.setContext(context);
+        layout.getInstanceConverterMap().putAll(CONVERTERS);
+        layout.setPattern(pattern);
+        layout.start();
+        return layout;
+    }
+
+    /**
+     * Register the library's conversion words in the context, for encoders that build their own layout.
+     */
+    static void registerConverters(LoggerContext context) {
+        Map<String, Supplier<?>> rules = new HashMap<>(CONVERTERS);
+        context.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+    }
+
+    static LoggingEvent event(Logger logger, Level level, String message, Object... args) {
+        return new LoggingEvent(ConverterFixtures.class.getName(), logger, level, message, null,
+                args.length == 0 ? null : args);
+    }
+
+    static LoggingEvent event(Logger logger, Level level, long timestamp) {
+        LoggingEvent event = event(logger, level, "message");
+        event.setTimeStamp(timestamp);
+        return event;
+    }
+
+    static LoggingEvent event(Logger logger, Level level, String message, Throwable throwable) {
+        return new LoggingEvent(ConverterFixtures.class.getName(), logger, level, message, throwable, null);
+    }
+}
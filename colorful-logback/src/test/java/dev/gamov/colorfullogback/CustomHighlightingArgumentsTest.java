@@ -0,0 +1,120 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static dev.gamov.colorfullogback.ConverterFixtures.event;
+import static dev.gamov.colorfullogback.ConverterFixtures.layout;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomHighlightingArgumentsTest {
+
+    private static final String RESET = "\u001b[0;39m";
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+    }
+
+    @Test
+    void convert_shouldHighlightArgumentsInBoldLevelColor() {
+        PatternLayout layout = layout(loggerContext, "%colorArgs");
+
+        String output = layout.doLayout(event(logger, Level.INFO, "Order {} shipped to {}", "A-42", "Berlin"));
+
+        assertThat(output).isEqualTo("\u001b[32mOrder \u001b[1;32mA-42\u001b[32m shipped to \u001b[1;32mBerlin\u001b[32m" + RESET);
+    }
+
+    @Test
+    void convert_shouldUseConfiguredArgumentColor() {
+        PatternLayout layout = layout(loggerContext, "%colorArgs{boldYellow}");
+
+        String output = layout.doLayout(event(logger, Level.ERROR, "Payment {} failed", 7L));
+
+        assertThat(output).isEqualTo("\u001b[31mPayment \u001b[1;33m7\u001b[31m failed" + RESET);
+    }
+
+    @Test
+    void convert_shouldMatchSlf4jFormattingWhenColorIsDisabled() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        CustomHighlightingArguments converter = startConverter();
+        Object[][] cases = {
+                {"no placeholders", new Object[]{"ignored"}},
+                {"{} and {} and {}", new Object[]{1, 2}},
+                {"escaped \\{} then {}", new Object[]{"x"}},
+                {"double \\\\{} escaped", new Object[]{"y"}},
+                {"{}{}", new Object[]{null, "z"}},
+                {"arrays {} {} {}", new Object[]{new int[]{1, 2}, new String[]{"a", "b"}, new Object[]{new long[]{3}}}},
+                {"unicode ✓ {} café {}", new Object[]{"é", 1.5}},
+                {"trailing {", new Object[]{"w"}},
+                {"{} broken", new Object[]{new Object() {
+                    @Override
+                    public String toString() {
+                        throw new IllegalStateException("no");
+                    }
+                }}},
+        };
+
+        for (Object[] testCase : cases) {
+            LoggingEvent event = event(logger, Level.INFO, (String) testCase[0], (Object[]) testCase[1]);
+            LineBuffer out = new LineBuffer();
+            converter.writeTo(out, event);
+
+            assertThat(converter.convert(event)).isEqualTo(event.getFormattedMessage());
+            assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(event.getFormattedMessage());
+        }
+    }
+
+    @Test
+    void writeTo_shouldMatchConvertWithColors() {
+        CustomHighlightingArguments converter = startConverter();
+        LoggingEvent event = event(logger, Level.WARN, "Retry {} of {} for \\{} {}", 2, 5, "job");
+        LineBuffer out = new LineBuffer();
+
+        converter.writeTo(out, event);
+
+        assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(converter.convert(event));
+    }
+
+    @Test
+    void convert_shouldWriteMessageWithoutArgumentsVerbatim() {
+        PatternLayout layout = layout(loggerContext, "%colorArgs");
+
+        String output = layout.doLayout(event(logger, Level.DEBUG, "literal {} stays"));
+
+        assertThat(output).isEqualTo("\u001b[34mliteral {} stays" + RESET);
+    }
+
+    @Test
+    void template_shouldBeParsedOncePerTemplateInstance() {
+        CustomHighlightingArguments converter = startConverter();
+        String template = "User {} logged in";
+
+        CustomHighlightingArguments.MessageTemplate first = converter.template(template);
+        CustomHighlightingArguments.MessageTemplate second = converter.template(template);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.siteChars).containsExactly(5);
+    }
+
+    private CustomHighlightingArguments startConverter(String... options) {
+        CustomHighlightingArguments converter = new CustomHighlightingArguments();
+        converter.setContext(loggerContext);
+        converter.setOptionList(List.of(options));
+        converter.start();
+        return converter;
+    }
+}
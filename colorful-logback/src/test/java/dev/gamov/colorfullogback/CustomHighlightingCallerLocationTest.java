@@ -0,0 +1,163 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomHighlightingCallerLocationTest {
+
+    private static final String RESET = "\u001b[0;39m";
+    private static final String TEST_CLASS = CustomHighlightingCallerLocationTest.class.getName();
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+    private ByteArrayOutputStream output;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        Map<String, Supplier<?>> rules = new HashMap<>();
+        rules.put("colorCaller", CustomHighlightingCallerLocation::new);
+        loggerContext.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+        output = new ByteArrayOutputStream();
+    }
+
+    @Test
+    void encoder_shouldRenderCallerOfTheLoggingStatement() {
+        attach(colorfulEncoder("%colorCaller %msg%n"));
+
+        logger.info("hello");
+        int line = currentLine() - 1;
+
+        assertThat(output()).isEqualTo(
+                "\u001b[36m" + TEST_CLASS + ".encoder_shouldRenderCallerOfTheLoggingStatement(" + line + ")" + RESET + " hello\n");
+    }
+
+    @Test
+    void layout_shouldAbbreviateClassAndUseLevelColor() {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%colorCaller{20}");
+        encoder.start();
+        attach(encoder);
+
+        logger.warn("careful");
+        int line = currentLine() - 1;
+
+        assertThat(output()).isEqualTo(
+                "\u001b[33md.g.c.CustomHighlightingCallerLocationTest.layout_shouldAbbreviateClassAndUseLevelColor(" + line + ")" + RESET);
+    }
+
+    @Test
+    void encoder_shouldRenderEveryCallSiteSeparately() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        attach(colorfulEncoder("%colorCaller{1}|"));
+
+        for (int i = 0; i < 3; i++) {
+            logger.info("first");
+            logger.info("second");
+        }
+        int line = currentLine() - 2;
+
+        String first = "d.g.c.CustomHighlightingCallerLocationTest.encoder_shouldRenderEveryCallSiteSeparately(" + (line - 1) + ")|";
+        String second = "d.g.c.CustomHighlightingCallerLocationTest.encoder_shouldRenderEveryCallSiteSeparately(" + line + ")|";
+        assertThat(output()).isEqualTo((first + second).repeat(3));
+    }
+
+    @Test
+    void lookup_shouldUseCallerDataAttachedToTheEvent() {
+        CustomHighlightingCallerLocation converter = startConverter();
+        StackTraceElement caller = new StackTraceElement("com.example.service.OrderService", "placeOrder", "OrderService.java", 42);
+
+        CustomHighlightingCallerLocation.CallSiteText first = converter.lookup(eventWithCallerData(caller));
+        CustomHighlightingCallerLocation.CallSiteText second = converter.lookup(eventWithCallerData(caller));
+
+        assertThat(first.chars).isEqualTo("com.example.service.OrderService.placeOrder(42)");
+        assertThat(second).isSameAs(first);
+        assertThat(converter.convert(eventWithCallerData(caller)))
+                .isEqualTo("\u001b[36mcom.example.service.OrderService.placeOrder(42)" + RESET);
+    }
+
+    @Test
+    void convert_shouldRenderPlaceholderOutsideOfALoggingCall() {
+        CustomHighlightingCallerLocation converter = startConverter();
+
+        String rendered = converter.convert(new LoggingEvent(TEST_CLASS, logger, Level.ERROR, "detached", null, null));
+
+        assertThat(rendered).isEqualTo("\u001b[31m" + CustomHighlightingCallerLocation.NA_TEXT + RESET);
+    }
+
+    @Test
+    void convert_shouldColorCallerClassFromThePackagePalette() {
+        CustomHighlightingCallerLocation converter = startConverter("36", "palette", "com.example.service=blue");
+        StackTraceElement caller = new StackTraceElement("com.example.service.OrderService", "placeOrder", "OrderService.java", 42);
+        LoggingEvent warning = new LoggingEvent(TEST_CLASS, logger, Level.WARN, "careful", null, null);
+        warning.setCallerData(new StackTraceElement[]{caller});
+
+        assertThat(converter.convert(eventWithCallerData(caller)))
+                .isEqualTo("\u001b[34mcom.example.service.OrderService.placeOrder(42)" + RESET);
+        assertThat(converter.convert(warning))
+                .isEqualTo("\u001b[33mcom.example.service.OrderService.placeOrder(42)" + RESET);
+    }
+
+    private CustomHighlightingCallerLocation startConverter(String... options) {
+        CustomHighlightingCallerLocation converter = new CustomHighlightingCallerLocation();
+        converter.setContext(loggerContext);
+        converter.setOptionList(List.of(options));
+        converter.start();
+        return converter;
+    }
+
+    private ILoggingEvent eventWithCallerData(StackTraceElement caller) {
+        LoggingEvent event = new LoggingEvent(TEST_CLASS, logger, Level.INFO, "message", null, null);
+        event.setCallerData(new StackTraceElement[]{caller});
+        return event;
+    }
+
+    private ColorfulPatternEncoder colorfulEncoder(String pattern) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(pattern);
+        encoder.start();
+        return encoder;
+    }
+
+    private void attach(Encoder<ILoggingEvent> encoder) {
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(loggerContext);
+        appender.setName("TEST");
+        appender.setEncoder(encoder);
+        appender.setOutputStream(output);
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    private String output() {
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static int currentLine() {
+        return StackWalker.getInstance().walk(frames -> frames.skip(1).findFirst().orElseThrow().getLineNumber());
+    }
+}
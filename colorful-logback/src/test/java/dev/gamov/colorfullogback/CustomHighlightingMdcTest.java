@@ -0,0 +1,146 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.CoreConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomHighlightingMdcTest {
+
+    private static final String BLUE = "\u001b[34m";
+    private static final String GREEN = "\u001b[32m";
+    private static final String RESET = "\u001b[0;39m";
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Map<String, Supplier<?>> rules = new HashMap<>();
+        rules.put("colorMdc", CustomHighlightingMdc::new);
+        loggerContext.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void encoder_shouldKeepOneColorPerValueAndDifferentColorsForConcurrentValues() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        ColorfulPatternEncoder encoder = encoder("[%colorMdc{requestId:-none}] %msg%n");
+
+        String first = encode(encoder, event("r-1", "a"));
+        String second = encode(encoder, event("r-2", "b"));
+        String again = encode(encoder, event("r-1", "c"));
+
+        assertThat(first).startsWith("[\u001b[").endsWith("r-1" + RESET + "] a\n");
+        assertThat(again).isEqualTo(first.replace("] a", "] c"));
+        assertThat(color(second)).isNotEqualTo(color(first));
+        assertThat(encode(encoder, event(null, "d"))).isEqualTo("[none] d\n");
+    }
+
+    @Test
+    void assign_shouldGiveEachLiveValueItsOwnColorUntilThePaletteRunsOut() {
+        CustomHighlightingMdc converter = converter("requestId");
+        Set<Integer> colors = new HashSet<>();
+        for (int i = 0; i < 12; i++) {
+            colors.add(converter.assignments().assign("r-" + i).color);
+        }
+
+        assertThat(colors).hasSize(12);
+        assertThat(converter.assignments().assign("r-3")).isSameAs(converter.assignments().assign("r-3"));
+    }
+
+    @Test
+    void assign_shouldEvictTheLeastRecentlyUsedValueAndReuseItsColor() {
+        CustomHighlightingMdc converter = converter("requestId", "capacity=2", "blue", "green");
+        CustomHighlightingMdc.Assignments assignments = converter.assignments();
+        CustomHighlightingMdc.Assignment a = assignments.assign("a");
+        CustomHighlightingMdc.Assignment b = assignments.assign("b");
+        assignments.assign("a");
+
+        CustomHighlightingMdc.Assignment c = assignments.assign("c");
+
+        assertThat(assignments.size()).isEqualTo(2);
+        assertThat(a.prefix.chars).isEqualTo(BLUE);
+        assertThat(b.prefix.chars).isEqualTo(GREEN);
+        assertThat(b.evicted).isTrue();
+        assertThat(c.prefix.chars).isEqualTo(GREEN);
+        assertThat(assignments.assign("a")).isSameAs(a);
+        assertThat(assignments.assign("b")).isNotSameAs(b);
+        assertThat(assignments.size()).isEqualTo(2);
+    }
+
+    @Test
+    void convert_shouldReturnTheCachedTextOrThePlainValue() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        CustomHighlightingMdc colored = converter("requestId", "blue");
+        String text = colored.convert(event("r-1", "a"));
+
+        assertThat(text).isEqualTo(BLUE + "r-1" + RESET);
+        assertThat(colored.convert(event("r-1", "b"))).isSameAs(text);
+
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        CustomHighlightingMdc plain = converter("requestId");
+        assertThat(plain.convert(event("r-1", "a"))).isEqualTo("r-1");
+        assertThat(plain.convert(event(null, "a"))).isEmpty();
+    }
+
+    @Test
+    void start_shouldRequireAKey() {
+        CustomHighlightingMdc converter = new CustomHighlightingMdc();
+        converter.setContext(loggerContext);
+
+        converter.start();
+
+        assertThat(converter.isStarted()).isFalse();
+    }
+
+    private CustomHighlightingMdc converter(String... options) {
+        CustomHighlightingMdc converter = new CustomHighlightingMdc();
+        converter.setContext(loggerContext);
+        converter.setOptionList(List.of(options));
+        converter.start();
+        return converter;
+    }
+
+    private ColorfulPatternEncoder encoder(String pattern) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(pattern);
+        encoder.start();
+        return encoder;
+    }
+
+    private static String encode(ColorfulPatternEncoder encoder, LoggingEvent event) {
+        return new String(encoder.encode(event), StandardCharsets.UTF_8);
+    }
+
+    private static String color(String line) {
+        return line.substring(1, line.indexOf('m') + 1);
+    }
+
+    private LoggingEvent event(String requestId, String message) {
+        LoggingEvent event = new LoggingEvent(CustomHighlightingMdcTest.class.getName(),
+                loggerContext.getLogger("com.example.Orders"), Level.INFO, message, null, null);
+        event.setMDCPropertyMap(requestId == null ? Map.of() : Map.of("requestId", requestId));
+        return event;
+    }
+}
@@ -0,0 +1,118 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static dev.gamov.colorfullogback.ConverterFixtures.event;
+import static dev.gamov.colorfullogback.ConverterFixtures.layout;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomHighlightingThrowableTest {
+
+    private static final String RESET = "\u001b[0;39m";
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+    }
+
+    @Test
+    void convert_shouldMatchStockThrowableOutputWhenColorAndDedupAreOff() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        PatternLayout colored = layout(loggerContext, "%colorEx{full, nodedup}");
+        PatternLayout stock = layout(loggerContext, "%ex{full}");
+        IllegalStateException failure = failure("outer", new IllegalArgumentException("inner"));
+        failure.addSuppressed(new RuntimeException("suppressed"));
+        LoggingEvent event = event(logger, Level.ERROR, "failed", failure);
+
+        assertThat(colored.doLayout(event)).isEqualTo(stock.doLayout(event));
+    }
+
+    @Test
+    void convert_shouldColorHeaderAndDimFrameworkFrames() {
+        PatternLayout layout = layout(loggerContext, "%colorEx{full, nodedup}");
+
+        String output = layout.doLayout(event(logger, Level.ERROR, "failed", failure("boom", null)));
+
+        assertThat(output).startsWith("\u001b[1;31mjava.lang.IllegalStateException" + RESET + ": \u001b[31mboom" + RESET);
+        assertThat(output).contains("\t\u001b[36mat dev.gamov.colorfullogback.CustomHighlightingThrowableTest.failure(");
+        assertThat(output).contains("\t\u001b[2mat org.junit.");
+    }
+
+    @Test
+    void convert_shouldCollapseRepeatedTraces() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        PatternLayout layout = layout(loggerContext, "%colorEx");
+        String[] outputs = new String[3];
+
+        for (int i = 0; i < outputs.length; i++) {
+            IllegalStateException failure = failure("attempt " + i, new IllegalArgumentException("cause " + i));
+            outputs[i] = layout.doLayout(event(logger, Level.ERROR, "failed", failure));
+        }
+
+        String nl = System.lineSeparator();
+        assertThat(outputs[0]).startsWith("java.lang.IllegalStateException: attempt 0 [trace #1]" + nl + "\tat ");
+        assertThat(outputs[0]).contains("Caused by: java.lang.IllegalArgumentException: cause 0" + nl + "\t... ");
+        assertThat(outputs[2]).isEqualTo("java.lang.IllegalStateException: attempt 2" + nl
+                + "\t... identical to trace #1" + nl
+                + "Caused by: java.lang.IllegalArgumentException: cause 2" + nl);
+    }
+
+    @Test
+    void convert_shouldNumberDifferentTracesSeparately() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        PatternLayout layout = layout(loggerContext, "%colorEx");
+
+        String first = layout.doLayout(event(logger, Level.ERROR, "failed", failure("one", null)));
+        String second = layout.doLayout(event(logger, Level.ERROR, "failed", new UnsupportedOperationException("two")));
+
+        assertThat(first).contains("[trace #1]");
+        assertThat(second).contains("[trace #2]");
+    }
+
+    @Test
+    void writeTo_shouldMatchConvertAndHonorShortDepth() {
+        CustomHighlightingThrowable converter = new CustomHighlightingThrowable();
+        converter.setContext(loggerContext);
+        converter.setOptionList(List.of("short", "nodedup"));
+        converter.start();
+        LoggingEvent event = event(logger, Level.ERROR, "failed", failure("short", null));
+        LineBuffer out = new LineBuffer();
+
+        converter.writeTo(out, event);
+
+        String rendered = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(rendered).isEqualTo(converter.convert(event));
+        assertThat(rendered.split(System.lineSeparator())).hasSize(2);
+    }
+
+    @Test
+    void traceHash_shouldIgnoreMessagesButNotFrames() {
+        long[] hashes = new long[2];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = CustomHighlightingThrowable.traceHash(new ThrowableProxy(failure("message " + i, null)));
+        }
+        long otherSite = CustomHighlightingThrowable.traceHash(new ThrowableProxy(new IllegalStateException("a")));
+
+        assertThat(hashes[1]).isEqualTo(hashes[0]);
+        assertThat(otherSite).isNotEqualTo(hashes[0]);
+    }
+
+    private static IllegalStateException failure(String message, Throwable cause) {
+        return new IllegalStateException(message, cause);
+    }
+}
@@ -0,0 +1,110 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.status.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static dev.gamov.colorfullogback.ConverterFixtures.event;
+import static dev.gamov.colorfullogback.ConverterFixtures.layout;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomHighlightingTimestampLevelTest {
+
+    private static final long BASE_TIME = 1_760_000_000_000L;
+    private static final Level[] LEVELS = {Level.INFO, Level.WARN, Level.ERROR, Level.DEBUG, Level.TRACE};
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"yyyy-MM-dd HH:mm:ss.SSS", "ISO8601", "HH:mm:ss", "SSS 'at' HH:mm:ss", "HH:mm:ss.SS"})
+    void convert_shouldMatchColorLevelAroundDateAndLevel(String datePattern) {
+        PatternLayout cached = layout(loggerContext, "%colorTimeLevel{" + datePattern + ", UTC}");
+        PatternLayout reference = layout(loggerContext, "%colorLevel(%d{" + datePattern + ", UTC} %-5level)");
+        CustomHighlightingTimestampLevel converter = startConverter(datePattern, "UTC");
+
+        long[] offsets = {0, 0, 1, 7, 999, 1000, 1001, 1999, 59_999, 60_000, 3_600_123, 86_400_000, 86_400_017};
+        for (long offset : offsets) {
+            for (Level level : LEVELS) {
+                LoggingEvent event = event(logger, level, BASE_TIME + offset);
+                String expected = reference.doLayout(event);
+
+                assertThat(cached.doLayout(event)).isEqualTo(expected);
+                LineBuffer out = new LineBuffer();
+                converter.writeTo(out, event);
+                assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void convert_shouldRenderDefaultPatternWithPaddedLevel() {
+        PatternLayout layout = layout(loggerContext, "%colorTimeLevel{, UTC}|");
+
+        String output = layout.doLayout(event(logger, Level.WARN, 0L));
+
+        assertThat(output).isEqualTo("\u001b[33m1970-01-01 00:00:00.000 WARN \u001b[0;39m|");
+    }
+
+    @Test
+    void start_shouldFallBackToTheDefaultZoneForAnInvalidZone() {
+        PatternLayout layout = layout(loggerContext, "%colorTimeLevel{HH:mm:ss.SSS, Mars/Olympus}");
+        PatternLayout reference = layout(loggerContext, "%colorLevel(%d{HH:mm:ss.SSS} %-5level)");
+        LoggingEvent event = event(logger, Level.INFO, BASE_TIME);
+
+        assertThat(layout.isStarted()).isTrue();
+        assertThat(layout.doLayout(event)).isEqualTo(reference.doLayout(event));
+        assertThat(loggerContext.getStatusManager().getCopyOfStatusList())
+                .anyMatch(status -> status.getLevel() == Status.WARN && status.getMessage().contains("Mars/Olympus"));
+    }
+
+    @Test
+    void convert_shouldNotEmitColorWhenDisabled() {
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        PatternLayout layout = layout(loggerContext, "%colorTimeLevel{HH:mm:ss.SSS, UTC}");
+
+        assertThat(layout.doLayout(event(logger, Level.INFO, 1_234L))).isEqualTo("00:00:01.234 INFO ");
+        assertThat(layout.doLayout(event(logger, Level.INFO, 1_567L))).isEqualTo("00:00:01.567 INFO ");
+    }
+
+    @Test
+    void convert_shouldKeepPerThreadCachesIndependent() throws InterruptedException {
+        PatternLayout layout = layout(loggerContext, "%colorTimeLevel{HH:mm:ss.SSS, UTC}");
+        String[] otherThread = new String[1];
+
+        String first = layout.doLayout(event(logger, Level.INFO, 1_001L));
+        Thread thread = new Thread(() -> otherThread[0] = layout.doLayout(event(logger, Level.INFO, 2_002L)));
+        thread.start();
+        thread.join();
+        String second = layout.doLayout(event(logger, Level.INFO, 1_003L));
+
+        assertThat(first).isEqualTo("\u001b[32m00:00:01.001 INFO \u001b[0;39m");
+        assertThat(otherThread[0]).isEqualTo("\u001b[32m00:00:02.002 INFO \u001b[0;39m");
+        assertThat(second).isEqualTo("\u001b[32m00:00:01.003 INFO \u001b[0;39m");
+    }
+
+    private CustomHighlightingTimestampLevel startConverter(String... options) {
+        CustomHighlightingTimestampLevel converter = new CustomHighlightingTimestampLevel();
+        converter.setContext(loggerContext);
+        converter.setOptionList(List.of(options));
+        converter.start();
+        return converter;
+    }
+}
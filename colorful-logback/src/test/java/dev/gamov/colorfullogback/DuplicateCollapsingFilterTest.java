@@ -0,0 +1,195 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.util.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateCollapsingFilterTest {
+
+    private static final String DEGRADED = "Performance degradation detected - operation took {} ms";
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private LoggerContext loggerContext;
+    private Logger logger;
+    private ListAppender<ILoggingEvent> appender;
+    private DuplicateCollapsingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+        logger.setLevel(Level.INFO);
+        appender = new ListAppender<>();
+        appender.setContext(loggerContext);
+        appender.start();
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(appender);
+
+        filter = new DuplicateCollapsingFilter();
+        filter.setContext(loggerContext);
+        filter.setWindow(Duration.buildBySeconds(10));
+        filter.setAllowedRepetitions(2);
+        filter.setClock(clock::get);
+        filter.start();
+        loggerContext.addTurboFilter(filter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void decide_shouldSuppressRepeatsAndSummarizeWhenWindowCloses() {
+        for (int i = 0; i < 100; i++) {
+            logger.warn(DEGRADED, i);
+        }
+        clock.addAndGet(10_000L);
+        logger.warn(DEGRADED, 100);
+
+        assertThat(messages()).hasSize(5);
+        ILoggingEvent summary = appender.list.get(3);
+        assertThat(summary.getLevel()).isEqualTo(Level.WARN);
+        assertThat(summary.getMarkerList()).containsExactly(DuplicateCollapsingFilter.SUMMARY_MARKER);
+        assertThat(summary.getFormattedMessage())
+                .isEqualTo("Last message repeated 97 more times within 10 seconds: " + DEGRADED);
+        assertThat(appender.list.get(4).getFormattedMessage()).endsWith("took 100 ms");
+    }
+
+    @Test
+    void sweep_shouldSummarizeStatementsThatWentQuiet() {
+        for (int i = 0; i < 10; i++) {
+            logger.warn(DEGRADED, i);
+        }
+
+        filter.sweep();
+        assertThat(messages()).hasSize(3);
+
+        clock.addAndGet(10_000L);
+        filter.sweep();
+        assertThat(messages()).hasSize(4);
+        assertThat(appender.list.get(3).getArgumentArray()[0]).isEqualTo(7L);
+    }
+
+    @Test
+    void decide_shouldTrackTemplatesAndLoggersSeparately() {
+        Logger other = loggerContext.getLogger("com.example.repository.OrderRepository");
+        for (int i = 0; i < 5; i++) {
+            logger.info("first {}", i);
+            logger.info("second {}", i);
+            other.info("first {}", i);
+        }
+
+        assertThat(messages()).hasSize(9);
+    }
+
+    @Test
+    void decide_shouldNotCountDisabledStatements() {
+        for (int i = 0; i < 50; i++) {
+            logger.debug(DEGRADED, i);
+        }
+        clock.addAndGet(10_000L);
+        filter.sweep();
+
+        assertThat(appender.list).isEmpty();
+    }
+
+    @Test
+    void decide_shouldPassEventsMarkedNotToCollapse() {
+        for (int i = 0; i < 50; i++) {
+            logger.warn(DuplicateCollapsingFilter.NO_COLLAPSE_MARKER, DEGRADED, i);
+        }
+        clock.addAndGet(10_000L);
+        filter.sweep();
+
+        assertThat(messages()).hasSize(50).allMatch(message -> message.startsWith("Performance degradation"));
+    }
+
+    @Test
+    void decide_shouldTrackLevelsSeparately() {
+        for (int i = 0; i < 5; i++) {
+            logger.info(DEGRADED, i);
+            logger.warn(DEGRADED, i);
+        }
+
+        assertThat(appender.list).hasSize(6);
+        assertThat(appender.list).filteredOn(event -> event.getLevel() == Level.INFO).hasSize(3);
+    }
+
+    @Test
+    void decide_shouldPassEventsWithAThrowable() {
+        IllegalStateException failure = new IllegalStateException("boom");
+        for (int i = 0; i < 10; i++) {
+            logger.warn("Payment call failed", failure);
+            logger.warn("Payment call {} failed", i, failure);
+        }
+        clock.addAndGet(10_000L);
+        filter.sweep();
+
+        assertThat(appender.list).hasSize(20).allMatch(event -> event.getThrowableProxy() != null);
+    }
+
+    @Test
+    void decide_shouldNotCollapseErrorsByDefault() {
+        for (int i = 0; i < 10; i++) {
+            logger.error(DEGRADED, i);
+        }
+
+        assertThat(appender.list).hasSize(10);
+    }
+
+    @Test
+    void decide_shouldCollapseErrorsWhenExemptLevelIsOff() {
+        filter.setExemptLevel(Level.OFF);
+        for (int i = 0; i < 10; i++) {
+            logger.error(DEGRADED, i);
+        }
+        clock.addAndGet(10_000L);
+        filter.sweep();
+
+        assertThat(appender.list).hasSize(4);
+        assertThat(appender.list.get(3).getLevel()).isEqualTo(Level.ERROR);
+        assertThat(appender.list.get(3).getArgumentArray()[0]).isEqualTo(7L);
+    }
+
+    @Test
+    void decide_shouldAccountForEveryEventUnderConcurrency() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    logger.warn(DEGRADED, i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        filter.stop();
+
+        assertThat(appender.list).hasSize(4);
+        assertThat(appender.list.get(3).getArgumentArray()[0]).isEqualTo(8_000L - 3);
+    }
+
+    private List<String> messages() {
+        List<String> messages = new ArrayList<>();
+        for (ILoggingEvent event : appender.list) {
+            messages.add(event.getFormattedMessage());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,254 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.util.FileSize;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexedRollingFileAppenderTest {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss.SSS} %-5level [%thread] %logger: %msg%n";
+    private static final long START = LocalDateTime.of(2025, 7, 1, 14, 0)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void append_shouldIndexEachBlockWithItsLevelsAndTimeRange() throws IOException {
+        IndexedRollingFileAppender appender = appender(new SizeAndTimeBasedRollingPolicy<>(), "app.%d{yyyy-MM-dd}.%i.log", 1024);
+        for (int i = 0; i < 1000; i++) {
+            append(appender, i, i == 700 ? Level.ERROR : Level.INFO);
+        }
+        appender.stop();
+
+        Path file = tempDir.resolve("app.log");
+        LogIndex index = LogIndex.read(LogIndex.sidecar(file));
+        assertThat(index).isNotNull();
+        assertThat(index.size()).isGreaterThan(10);
+        assertThat(index.coveredEnd()).isEqualTo(Files.size(file));
+        assertThat(index.ranges(Long.MIN_VALUE, Long.MAX_VALUE, LogIndex.ALL_LEVELS, Files.size(file)))
+                .containsExactly(new long[]{0, Files.size(file)});
+
+        List<long[]> errors = index.ranges(Long.MIN_VALUE, Long.MAX_VALUE, LogIndex.levelsFrom(Level.ERROR),
+                Files.size(file));
+        assertThat(errors).hasSize(1);
+        String errorBlock = read(file, errors.get(0));
+        assertThat(errorBlock).contains("ERROR [main] com.example.Orders: event 700\n");
+        assertThat(errorBlock).startsWith("2025-07-01 14:").endsWith("\n");
+
+        List<long[]> minute = index.ranges(START + 600_000, START + 659_999, LogIndex.ALL_LEVELS, Files.size(file));
+        String minuteBlocks = minute.stream().map(range -> read(file, range)).collect(Collectors.joining());
+        assertThat(minuteBlocks).contains(": event 600\n", ": event 659\n").doesNotContain(": event 500\n");
+    }
+
+    @Test
+    void openFile_shouldIndexAFileInADirectoryThatDoesNotExistYet() throws IOException {
+        Path file = tempDir.resolve("logs/app.log");
+        IndexedRollingFileAppender appender = appender(new SizeAndTimeBasedRollingPolicy<>(), "app.%d{yyyy-MM-dd}.%i.log",
+                1024, file);
+        append(appender, 1, Level.INFO);
+        appender.stop();
+
+        LogIndex index = LogIndex.read(LogIndex.sidecar(file));
+        assertThat(index).isNotNull();
+        assertThat(index.coveredEnd()).isEqualTo(Files.size(file));
+    }
+
+    @Test
+    void openFile_shouldContinueTheIndexAndMarkUnindexedContentAsUnknown() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "written before the index\n");
+        IndexedRollingFileAppender appender = appender(new SizeAndTimeBasedRollingPolicy<>(), "app.%d{yyyy-MM-dd}.%i.log", 1024);
+        for (int i = 0; i < 100; i++) {
+            append(appender, i, Level.WARN);
+        }
+        appender.stop();
+        LogIndex first = LogIndex.read(LogIndex.sidecar(file));
+
+        appender = appender(new SizeAndTimeBasedRollingPolicy<>(), "app.%d{yyyy-MM-dd}.%i.log", 1024);
+        for (int i = 100; i < 200; i++) {
+            append(appender, i, Level.DEBUG);
+        }
+        appender.stop();
+
+        LogIndex index = LogIndex.read(LogIndex.sidecar(file));
+        assertThat(index.size()).isGreaterThan(first.size());
+        assertThat(index.coveredEnd()).isEqualTo(Files.size(file));
+        // the unknown head matches any level, the DEBUG events appended later do not match WARN
+        List<long[]> warnings = index.ranges(Long.MIN_VALUE, Long.MAX_VALUE, LogIndex.levelsFrom(Level.WARN),
+                Files.size(file));
+        assertThat(warnings).hasSize(1);
+        assertThat(warnings.get(0)[0]).isZero();
+        assertThat(read(file, warnings.get(0))).startsWith("written before the index\n")
+                .contains(": event 99\n").doesNotContain(": event 199\n");
+    }
+
+    @Test
+    void rollover_shouldMoveTheIndexAlongWithTheCompressedArchive() throws IOException {
+        Path orphan = LogIndex.sidecar(tempDir.resolve("app.2020-01-01.0.log.gz"));
+        LogIndex.Writer.open(tempDir.resolve("app.2020-01-01.0.log.gz"), 0, 4096).close();
+        ParallelGzipRollingPolicy<ILoggingEvent> policy = new ParallelGzipRollingPolicy<>();
+        policy.setCompressionThreads(2);
+        IndexedRollingFileAppender appender = appender(policy, "app.%d{yyyy-MM-dd}.%i.log.gz", 64);
+        for (int i = 0; i < 3000; i++) {
+            append(appender, i, i % 1000 == 999 ? Level.ERROR : Level.INFO);
+        }
+        appender.stop();
+
+        List<Path> archives = files(".log.gz");
+        assertThat(archives).hasSizeGreaterThan(1);
+        for (Path archive : archives) {
+            LogIndex index = LogIndex.read(LogIndex.sidecar(archive));
+            assertThat(index).as(archive.toString()).isNotNull();
+            assertThat(index.coveredEnd()).isEqualTo(gunzippedSize(archive));
+        }
+        assertThat(LogIndex.sidecar(tempDir.resolve("app.log"))).exists();
+        assertThat(orphan).doesNotExist();
+        assertThat(files(".idx")).hasSize(archives.size() + 1);
+
+        List<String> args = new ArrayList<>(List.of("--color", "never", "--pattern", "%msg%n", "--level", "ERROR"));
+        for (Path file : files("")) {
+            args.add(file.toString());
+        }
+        assertThat(view(args.toArray(new String[0]))).isEqualTo("event 999\nevent 1999\nevent 2999\n");
+    }
+
+    @Test
+    void logViewer_shouldReadOnlyTheBlocksTheIndexAllows() throws IOException {
+        IndexedRollingFileAppender appender = appender(new SizeAndTimeBasedRollingPolicy<>(), "app.%d{yyyy-MM-dd}.%i.log", 1024);
+        for (int i = 0; i < 1000; i++) {
+            append(appender, i, i == 700 ? Level.ERROR : Level.INFO);
+        }
+        appender.stop();
+        // forge an ERROR within the time range into the first block, which the index says is neither
+        Path file = tempDir.resolve("app.log");
+        byte[] content = Files.readAllBytes(file);
+        String firstLine = new String(content, StandardCharsets.UTF_8).lines().findFirst().orElseThrow();
+        String header = "2025-07-01 14:10:30.000 ERROR [main] com.example.Orders: ";
+        String message = "forged" + "!".repeat(firstLine.length() - header.length() - "forged".length());
+        byte[] forged = (header + message).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(forged, 0, content, 0, forged.length);
+        Files.write(file, content);
+
+        String errors = view("--color", "never", "--pattern", "%msg%n", "--level", "ERROR", file.toString());
+        String minute = view("--color", "never", "--pattern", "%msg%n",
+                "--from", "2025-07-01 14:10", "--to", "2025-07-01 14:10:59", file.toString());
+
+        assertThat(errors).isEqualTo("event 700\n");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 600; i < 660; i++) {
+            expected.append("event ").append(i).append('\n');
+        }
+        assertThat(minute).isEqualTo(expected.toString());
+        Files.delete(LogIndex.sidecar(file));
+        assertThat(view("--color", "never", "--pattern", "%msg%n", "--level", "ERROR", file.toString()))
+                .isEqualTo(message + "\nevent 700\n");
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private IndexedRollingFileAppender appender(SizeAndTimeBasedRollingPolicy policy, String fileNamePattern,
+                                                int maxFileSizeKb) {
+        return appender(policy, fileNamePattern, maxFileSizeKb, tempDir.resolve("app.log"));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private IndexedRollingFileAppender appender(SizeAndTimeBasedRollingPolicy policy, String fileNamePattern,
+                                                int maxFileSizeKb, Path file) {
+        IndexedRollingFileAppender appender = new IndexedRollingFileAppender();
+        appender.setContext(loggerContext);
+        appender.setName("FILE");
+        appender.setFile(file.toString());
+        appender.setIndexBlockSize(new FileSize(4 * FileSize.KB_COEFFICIENT));
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve(fileNamePattern).toString());
+        policy.setMaxFileSize(new FileSize(maxFileSizeKb * FileSize.KB_COEFFICIENT));
+        policy.start();
+        appender.setRollingPolicy(policy);
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.start();
+        return appender;
+    }
+
+    private void append(IndexedRollingFileAppender appender, int i, Level level) {
+        LoggingEvent event = new LoggingEvent(getClass().getName(), loggerContext.getLogger("com.example.Orders"),
+                level, "event " + i, null, null);
+        event.setTimeStamp(START + i * 1000L);
+        event.setThreadName("main");
+        appender.doAppend(event);
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(p -> p.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String read(Path file, long[] range) {
+        try {
+            byte[] content = Files.readAllBytes(file);
+            return new String(content, (int) range[0], (int) (range[1] - range[0]), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long gunzippedSize(Path archive) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static String view(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int status = LogViewer.run(args, out, new PrintStream(err));
+
+        assertThat(err.toString(StandardCharsets.UTF_8)).isEmpty();
+        assertThat(status).isZero();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,176 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.util.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LevelAwareAsyncAppenderTest {
+
+    private LoggerContext loggerContext;
+    private LevelAwareAsyncAppender async;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        async = new LevelAwareAsyncAppender();
+        async.setContext(loggerContext);
+        async.setName("ASYNC");
+    }
+
+    @AfterEach
+    void tearDown() {
+        async.stop();
+        loggerContext.stop();
+    }
+
+    @Test
+    void append_shouldShedLowLevelsFirstAndAdmitErrorsIntoTheReserve() throws Exception {
+        GatedAppender gated = new GatedAppender();
+        start(gated, 10, 10);
+        async.setErrorReserve(5);
+        async.start();
+
+        async.doAppend(event(Level.ERROR, "blocker"));
+        assertThat(gated.first.await(5, TimeUnit.SECONDS)).isTrue();
+        for (Level level : new Level[]{Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR}) {
+            for (int i = 0; i < 10; i++) {
+                async.doAppend(event(level, "event"));
+            }
+        }
+
+        // debug up to 50% of 10, info up to 80%, warn up to 100%, error up to 10 + 5
+        assertThat(async.getShedCount(Level.TRACE)).isEqualTo(15);
+        assertThat(async.getShedCount(Level.INFO)).isEqualTo(7);
+        assertThat(async.getShedCount(Level.WARN)).isEqualTo(8);
+        assertThat(async.getShedCount(Level.ERROR)).isEqualTo(5);
+        assertThat(async.getNumberOfElementsInQueue()).isEqualTo(15);
+
+        gated.release.countDown();
+        async.stop();
+        assertThat(gated.count).isEqualTo(16);
+    }
+
+    @Test
+    void adjust_shouldSizeTheQueueFromTheDrainRate() throws Exception {
+        GatedAppender fast = new GatedAppender();
+        fast.release.countDown();
+        // the attached appender advances the drain clock, so the measured rate does not depend on the JIT
+        fast.costNanos = TimeUnit.MICROSECONDS.toNanos(10);
+        start(fast, 16, 4096);
+        async.setTargetDrainTime(Duration.buildByMilliseconds(100));
+        async.setNanoClock(fast.clock::get);
+        async.start();
+
+        for (int i = 0; i < 2000; i++) {
+            async.doAppend(event(Level.INFO, "fast"));
+        }
+        awaitDrained();
+        async.adjust();
+
+        assertThat(async.getDrainRate()).isGreaterThan(40_960.0);
+        assertThat(async.getCapacity()).isEqualTo(4096);
+
+        fast.costNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        // the smoothed rate halves its distance to the slow rate with every adjustment
+        for (int i = 0; i < 20; i++) {
+            async.doAppend(event(Level.INFO, "slow"));
+            awaitDrained();
+            async.adjust();
+        }
+
+        assertThat(async.getCapacity()).isEqualTo(16);
+    }
+
+    @Test
+    void adjust_shouldLogASummaryOfShedEvents() throws Exception {
+        ListAppender<ILoggingEvent> summaries = new ListAppender<>();
+        summaries.setContext(loggerContext);
+        summaries.start();
+        loggerContext.getLogger(LevelAwareAsyncAppender.class).addAppender(summaries);
+        GatedAppender gated = new GatedAppender();
+        start(gated, 4, 4);
+        async.setErrorReserve(0);
+        async.setSummaryInterval(Duration.buildByMilliseconds(0));
+        async.start();
+
+        async.doAppend(event(Level.ERROR, "blocker"));
+        assertThat(gated.first.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 6; i++) {
+            async.doAppend(event(Level.DEBUG, "event"));
+            async.doAppend(event(Level.INFO, "event"));
+        }
+        async.adjust();
+        gated.release.countDown();
+
+        assertThat(summaries.list).hasSize(1);
+        ILoggingEvent summary = summaries.list.get(0);
+        assertThat(summary.getLevel()).isEqualTo(Level.WARN);
+        assertThat(summary.getMarkerList()).containsExactly(LevelAwareAsyncAppender.SHED_SUMMARY_MARKER);
+        assertThat(summary.getMessage()).isEqualTo(LevelAwareAsyncAppender.SUMMARY_MESSAGE);
+        // 1 debug and 2 info admitted into a capacity of 4
+        Object[] arguments = summary.getArgumentArray();
+        assertThat(arguments[0]).isEqualTo(9L);
+        assertThat(arguments[2]).isEqualTo(5L);
+        assertThat(arguments[3]).isEqualTo(4L);
+        assertThat(arguments[6]).isEqualTo(4);
+    }
+
+    private void start(GatedAppender appender, int minQueueSize, int maxQueueSize) {
+        appender.setContext(loggerContext);
+        appender.setName("GATED");
+        appender.start();
+        async.addAppender(appender);
+        async.setMinQueueSize(minQueueSize);
+        async.setMaxQueueSize(maxQueueSize);
+        async.setQueueSize(minQueueSize);
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (async.getNumberOfElementsInQueue() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // the last batch may still be in the attached appender
+        Thread.sleep(50);
+    }
+
+    private LoggingEvent event(Level level, String message) {
+        return new LoggingEvent(LevelAwareAsyncAppenderTest.class.getName(),
+                loggerContext.getLogger("com.example.Service"), level, message, null, null);
+    }
+
+    private static final class GatedAppender extends AppenderBase<ILoggingEvent> {
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicLong clock = new AtomicLong();
+        volatile long costNanos;
+        volatile int count;
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            first.countDown();
+            try {
+                release.await();
+                clock.addAndGet(costNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count++;
+        }
+    }
+}
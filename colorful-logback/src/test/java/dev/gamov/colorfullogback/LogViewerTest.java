@@ -0,0 +1,198 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogViewerTest {
+
+    private static final String PLAIN = "%d{yyyy-MM-dd HH:mm:ss.SSS} %-5level [%thread] %logger: %msg%n";
+    // COLORFUL_PATTERN of the demo's logback-spring.xml, which its development log file is written with
+    private static final String DEMO_PATTERN = "%colorTimeLevel{yyyy-MM-dd HH:mm:ss.SSS} "
+            + "%colorPackage([%thread]){palette} %colorCaller{36, palette}: %colorMdc{requestId:--} %colorArgs%n%colorEx";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void run_shouldFilterRolledFilesAndPrintThemOldestFirst() throws IOException {
+        Path active = write("app.log",
+                "2025-07-01 14:06:00.000 ERROR [main] com.example.orders.OrderService: too late\n");
+        Path archive = gzip("app.2025-07-01.0.log.gz",
+                "2025-07-01 14:01:59.999 ERROR [main] com.example.orders.OrderService: too early\n"
+                        + "2025-07-01 14:02:00.000 ERROR [http-1] com.example.orders.OrderService: payment failed\n"
+                        + "java.lang.IllegalStateException: declined\n"
+                        + "\tat com.example.orders.OrderService.pay(OrderService.java:42)\n"
+                        + "2025-07-01 14:02:30.000 INFO  [http-1] com.example.orders.OrderService: not an error\n"
+                        + "\tat com.example.Hidden.frame(Hidden.java:1)\n"
+                        + "2025-07-01 14:03:00.000 ERROR [http-2] org.springframework.web.Servlet: other logger\n");
+        Path later = write("app.2025-07-01.1.log",
+                "2025-07-01 14:05:59.123 ERROR [http-3] com.example.orders.OrderService: retry failed\n");
+
+        String output = run(0, "--color", "never", "--pattern", PLAIN, "--level", "ERROR",
+                "--logger", "com.example", "--from", "2025-07-01 14:02", "--to", "2025-07-01T14:05",
+                active.toString(), later.toString(), archive.toString());
+
+        assertThat(output).isEqualTo(
+                "2025-07-01 14:02:00.000 ERROR [http-1] com.example.orders.OrderService: payment failed\n"
+                        + "java.lang.IllegalStateException: declined\n"
+                        + "\tat com.example.orders.OrderService.pay(OrderService.java:42)\n"
+                        + "2025-07-01 14:05:59.123 ERROR [http-3] com.example.orders.OrderService: retry failed\n");
+    }
+
+    @Test
+    void run_shouldColorLikeTheConsole() throws IOException {
+        Path file = write("app.log", "2025-07-01 14:02:00.000 WARN  [main] com.example.Service: slow\n");
+
+        String output = run(0, "--color", "always", "--pattern", "%colorLevel(%level) %msg%n", file.toString());
+
+        assertThat(output).isEqualTo("\u001b[33mWARN\u001b[0;39m slow\n");
+    }
+
+    @Test
+    void run_shouldStripColorsAndStopAtPreallocatedSpace() throws IOException {
+        byte[] content = ("\u001b[32m2025-07-01 14:02:00.000 INFO \u001b[0;39m [main] com.example.Service: ready\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[content.length + 4096];
+        System.arraycopy(content, 0, padded, 0, content.length);
+        Path file = Files.write(tempDir.resolve("app-dev.log"), padded);
+
+        String output = run(0, "--color", "never", "--pattern", PLAIN, file.toString());
+
+        assertThat(output).isEqualTo("2025-07-01 14:02:00.000 INFO  [main] com.example.Service: ready\n");
+    }
+
+    @Test
+    void run_shouldFilterLinesWrittenWithTheDemoPattern() throws IOException {
+        LoggerContext context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        context.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        PatternLayout layout = ConverterFixtures.layout(context, DEMO_PATTERN);
+        String failed = plain(layout.doLayout(demoEvent(context, "com.example.orders.OrderService", Level.ERROR,
+                "payment failed", "abc123")));
+        String slow = plain(layout.doLayout(demoEvent(context, "org.springframework.web.Servlet", Level.WARN,
+                "slow request", "abc123")));
+        String info = plain(layout.doLayout(demoEvent(context, "com.example.orders.OrderService", Level.INFO,
+                "order placed", null)));
+        Path file = write("spring-demo-dev.log", failed + slow + info);
+
+        String output = run(0, "--color", "never", "--pattern", PLAIN, "--level", "WARN",
+                "--logger", "com.example", file.toString());
+
+        assertThat(failed).contains("ERROR [http-1] com.example.orders.OrderService.run(42): abc123 payment failed");
+        assertThat(info).contains(": - order placed");
+        assertThat(output).isEqualTo(failed);
+    }
+
+    @Test
+    void run_shouldReportUnreadableFilesAndBadUsage() throws IOException {
+        Path file = write("app.log", "2025-07-01 14:02:00.000 INFO  [main] com.example.Service: ready\n");
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int status = LogViewer.run(new String[]{"--color", "never", file.toString(),
+                tempDir.resolve("missing.log").toString()}, new ByteArrayOutputStream(), new PrintStream(err));
+
+        assertThat(status).isEqualTo(1);
+        assertThat(err.toString(StandardCharsets.UTF_8)).contains("missing.log");
+        assertThat(LogViewer.run(new String[]{"--level", "LOUD", file.toString()}, new ByteArrayOutputStream(),
+                new PrintStream(new ByteArrayOutputStream()))).isEqualTo(2);
+        assertThat(LogViewer.run(new String[]{"--from", "yesterday", file.toString()}, new ByteArrayOutputStream(),
+                new PrintStream(new ByteArrayOutputStream()))).isEqualTo(2);
+    }
+
+    @Test
+    void follow_shouldPrintAppendedLinesAndContinueAfterARoll() throws Exception {
+        Path file = write("app.log", "2025-07-01 14:00:00.000 INFO  [main] com.example.Service: started\n"
+                + "2025-07-01 14:00:01.000 INFO  [main] com.example.Service: half a li");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicInteger status = new AtomicInteger(-1);
+        Thread viewer = new Thread(() -> status.set(LogViewer.run(new String[]{"--follow", "--color", "never",
+                "--pattern", "%msg%n", file.toString()}, out, new PrintStream(new ByteArrayOutputStream()))));
+        viewer.start();
+        try {
+            awaitOutput(out, "started\n");
+            assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("started\n");
+
+            append(file, "ne\n2025-07-01 14:00:02.000 INFO  [main] com.example.Service: appended\n");
+            awaitOutput(out, "started\nhalf a line\nappended\n");
+
+            Files.move(file, tempDir.resolve("app.2025-07-01.0.log"));
+            write("app.log", "2025-07-01 14:00:03.000 INFO  [main] com.example.Service: after the roll\n");
+            awaitOutput(out, "started\nhalf a line\nappended\nafter the roll\n");
+        } finally {
+            viewer.interrupt();
+            viewer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        assertThat(viewer.isAlive()).isFalse();
+        assertThat(status.get()).isZero();
+    }
+
+    private String run(int expectedStatus, String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int status = LogViewer.run(args, out, new PrintStream(err));
+
+        assertThat(err.toString(StandardCharsets.UTF_8)).isEmpty();
+        assertThat(status).isEqualTo(expectedStatus);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static LoggingEvent demoEvent(LoggerContext context, String loggerName, Level level, String message,
+                                          String requestId) {
+        LoggingEvent event = new LoggingEvent(LogViewerTest.class.getName(), context.getLogger(loggerName), level,
+                message, null, null);
+        event.setThreadName("http-1");
+        event.setCallerData(new StackTraceElement[]{new StackTraceElement(loggerName, "run", "Source.java", 42)});
+        event.setMDCPropertyMap(requestId == null ? Map.of() : Map.of("requestId", requestId));
+        return event;
+    }
+
+    private static String plain(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return new String(bytes, 0, AnsiStripper.strip(bytes, 0, bytes.length), StandardCharsets.UTF_8);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(tempDir.resolve(name), content);
+    }
+
+    private static void append(Path file, String content) throws IOException {
+        Files.writeString(file, content, StandardOpenOption.APPEND);
+    }
+
+    private Path gzip(String name, String content) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private static void awaitOutput(ByteArrayOutputStream out, String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!out.toString(StandardCharsets.UTF_8).equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+    }
+}
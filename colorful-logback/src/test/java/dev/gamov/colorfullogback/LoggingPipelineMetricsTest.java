@@ -0,0 +1,214 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.OutputStreamAppender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoggingPipelineMetricsTest {
+
+    private LoggerContext loggerContext;
+    private SimpleMeterRegistry registry;
+    private LoggingPipelineMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "never");
+        Map<String, Supplier<?>> rules = new HashMap<>();
+        rules.put("colorLevel", CustomHighlightingLogLevel::new);
+        loggerContext.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (metrics != null) {
+            metrics.close();
+        }
+        loggerContext.stop();
+    }
+
+    @Test
+    void events_shouldBeCountedPerLevelAndLoggerPrefix() {
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.INFO);
+        bind(new LoggingPipelineMetrics(loggerContext));
+
+        loggerContext.getLogger("com.example.service.OrderService").info("created {}", 1);
+        loggerContext.getLogger("com.example.web.OrderController").info("request");
+        loggerContext.getLogger("com.example.web.OrderController").warn("slow");
+        loggerContext.getLogger("com.example.web.OrderController").debug("disabled");
+
+        assertThat(registry.get("logback.pipeline.events").tags("level", "info", "logger", "com.example").functionCounter().count())
+                .isEqualTo(2.0);
+        assertThat(registry.get("logback.pipeline.events").tags("level", "warn", "logger", "com.example").functionCounter().count())
+                .isEqualTo(1.0);
+        assertThat(registry.get("logback.pipeline.events").tags("level", "debug", "logger", "com.example").functionCounter().count())
+                .isZero();
+    }
+
+    @Test
+    void events_shouldCollapseLoggerPrefixesBeyondTheLimit() {
+        bind(new LoggingPipelineMetrics(loggerContext, 1, 2));
+
+        loggerContext.getLogger("alpha.One").info("a");
+        loggerContext.getLogger("beta.Two").info("b");
+        loggerContext.getLogger("gamma.Three").info("c");
+        loggerContext.getLogger("delta.Four").info("d");
+
+        assertThat(registry.get("logback.pipeline.events").tags("level", "info", "logger", LoggingPipelineMetrics.OTHER_PREFIX)
+                .functionCounter().count()).isEqualTo(2.0);
+        assertThat(LoggingPipelineMetrics.loggerPrefix("com.example.web.Controller", 2)).isEqualTo("com.example");
+        assertThat(LoggingPipelineMetrics.loggerPrefix("ROOT", 2)).isEqualTo("ROOT");
+    }
+
+    @Test
+    void colorfulEncoder_shouldReportBytesAndEncodeTime() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(loggerContext);
+        appender.setName("CAPTURE");
+        appender.setEncoder(encoder("%colorLevel(%-5level) %msg%n"));
+        appender.setOutputStream(out);
+        appender.start();
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(appender);
+        bind(new LoggingPipelineMetrics(loggerContext));
+
+        loggerContext.getLogger("com.example.Service").info("hello");
+        loggerContext.getLogger("com.example.Service").info("world");
+
+        assertThat(registry.get("logback.pipeline.bytes").tag("appender", "CAPTURE").functionCounter().count())
+                .isEqualTo(out.size());
+        assertThat(registry.get("logback.pipeline.encode").tag("appender", "CAPTURE").functionTimer().count()).isEqualTo(2);
+        assertThat(registry.get("logback.pipeline.encode.histogram").tags("appender", "CAPTURE", "le", "+Inf")
+                .functionCounter().count()).isEqualTo(2.0);
+        assertThat(registry.get("logback.pipeline.encode.histogram").tags("appender", "CAPTURE", "le", "0.000000256")
+                .functionCounter().count()).isBetween(0.0, 2.0);
+    }
+
+    @Test
+    void encodeTime_shouldCountTimesIntoCumulativePowerOfTwoBuckets() {
+        LoggingPipelineMetrics.EncodeTime encodeTime = new LoggingPipelineMetrics.EncodeTime();
+
+        encodeTime.accept(0);
+        encodeTime.accept(256);
+        encodeTime.accept(257);
+        encodeTime.accept(1_000);
+        encodeTime.accept(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(LoggingPipelineMetrics.EncodeTime.bucket(257)).isEqualTo(1);
+        assertThat(LoggingPipelineMetrics.EncodeTime.upperBoundNanos(2)).isEqualTo(1_024);
+        assertThat(encodeTime.getCumulativeCount(0)).isEqualTo(2.0);
+        assertThat(encodeTime.getCumulativeCount(1)).isEqualTo(3.0);
+        assertThat(encodeTime.getCumulativeCount(2)).isEqualTo(4.0);
+        assertThat(encodeTime.getCumulativeCount(LoggingPipelineMetrics.EncodeTime.BUCKETS - 1)).isEqualTo(4.0);
+        assertThat(encodeTime.getCumulativeCount(LoggingPipelineMetrics.EncodeTime.BUCKETS)).isEqualTo(5.0);
+    }
+
+    @Test
+    void meteredAsyncAppender_shouldExposeQueueAndBlockedTime() throws Exception {
+        SlowAppender slow = new SlowAppender();
+        slow.setContext(loggerContext);
+        slow.setName("SLOW");
+        slow.start();
+        MeteredAsyncAppender async = new MeteredAsyncAppender();
+        async.setContext(loggerContext);
+        async.setName("ASYNC");
+        async.setQueueSize(1);
+        async.setDiscardingThreshold(0);
+        async.addAppender(slow);
+        async.start();
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(async);
+        bind(new LoggingPipelineMetrics(loggerContext));
+
+        Logger logger = loggerContext.getLogger("com.example.Service");
+        for (int i = 0; i < 5; i++) {
+            logger.info("event {}", i);
+        }
+
+        assertThat(registry.get("logback.pipeline.queue.remaining").tag("appender", "ASYNC").gauge().value())
+                .isBetween(0.0, 1.0);
+        assertThat(registry.get("logback.pipeline.blocked").tag("appender", "ASYNC").functionTimer().count())
+                .isPositive();
+        assertThat(registry.get("logback.pipeline.blocked").tag("appender", "ASYNC").functionTimer()
+                .totalTime(TimeUnit.MILLISECONDS)).isGreaterThan(10.0);
+        async.stop();
+        assertThat(slow.count).isEqualTo(5);
+    }
+
+    @Test
+    void levelAwareAsyncAppender_shouldExposeShedEventsPerLevel() {
+        SlowAppender slow = new SlowAppender();
+        slow.setContext(loggerContext);
+        slow.setName("SLOW");
+        slow.start();
+        LevelAwareAsyncAppender async = new LevelAwareAsyncAppender();
+        async.setContext(loggerContext);
+        async.setName("ASYNC");
+        async.setMinQueueSize(2);
+        async.setMaxQueueSize(2);
+        async.setQueueSize(2);
+        async.addAppender(slow);
+        async.start();
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.DEBUG);
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(async);
+        bind(new LoggingPipelineMetrics(loggerContext));
+
+        Logger logger = loggerContext.getLogger("com.example.Service");
+        for (int i = 0; i < 10; i++) {
+            logger.debug("event {}", i);
+        }
+
+        assertThat(registry.get("logback.pipeline.shed").tags("appender", "ASYNC", "level", "debug")
+                .functionCounter().count()).isGreaterThanOrEqualTo(7.0);
+        assertThat(registry.get("logback.pipeline.shed").tags("appender", "ASYNC", "level", "error")
+                .functionCounter().count()).isZero();
+        assertThat(registry.get("logback.pipeline.queue.size").tag("appender", "ASYNC").gauge().value())
+                .isLessThanOrEqualTo(1.0);
+        async.stop();
+    }
+
+    private void bind(LoggingPipelineMetrics binder) {
+        metrics = binder;
+        metrics.bindTo(registry);
+    }
+
+    private ColorfulPatternEncoder encoder(String pattern) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(pattern);
+        encoder.start();
+        return encoder;
+    }
+
+    private static final class SlowAppender extends AppenderBase<ILoggingEvent> {
+        volatile int count;
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count++;
+        }
+    }
+}
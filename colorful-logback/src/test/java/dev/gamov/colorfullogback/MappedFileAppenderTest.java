@@ -0,0 +1,196 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.util.FileSize;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MappedFileAppenderTest {
+
+    private static final long DAY_ONE = LocalDate.of(2025, 7, 1).atTime(10, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+    private MappedFileAppender appender;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        Map<String, Supplier<?>> rules = new HashMap<>();
+        rules.put("colorLevel", CustomHighlightingLogLevel::new);
+        rules.put("colorMessage", CustomHighlightingMessage::new);
+        loggerContext.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (appender != null) {
+            appender.stop();
+        }
+        loggerContext.stop();
+    }
+
+    @Test
+    void stripper_shouldRemoveEscapeSequencesOnly() {
+        byte[] colored = "\u001b[1;31mERROR\u001b[0;39m café \u001b[38;2;255;0;0mred\u001b[0m\u001b[".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer copied = ByteBuffer.allocate(colored.length);
+
+        int copiedLength = AnsiStripper.copy(colored, 0, colored.length, copied);
+        int strippedLength = AnsiStripper.strip(colored, 0, colored.length);
+
+        assertThat(new String(copied.array(), 0, copiedLength, StandardCharsets.UTF_8)).isEqualTo("ERROR café red");
+        assertThat(new String(colored, 0, strippedLength, StandardCharsets.UTF_8)).isEqualTo("ERROR café red");
+    }
+
+    @Test
+    void append_shouldWriteThePlainTextOfAColoredPattern() throws Exception {
+        start(new FileSize(FileSize.MB_COEFFICIENT), new FileSize(4096));
+
+        appender.doAppend(event(Level.INFO, "started", DAY_ONE));
+        appender.doAppend(event(Level.ERROR, "failed", DAY_ONE + 1));
+        appender.stop();
+
+        assertThat(Files.readString(active())).isEqualTo("INFO  started\nERROR failed\n");
+    }
+
+    @Test
+    void append_shouldContinueAcrossSegmentsAndRollBySize() throws Exception {
+        start(new FileSize(2 * 4096), new FileSize(4096));
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String message = "line " + i + " " + "x".repeat(i % 7 == 0 ? 3000 : 40);
+            expected.add("DEBUG " + message);
+            appender.doAppend(event(Level.DEBUG, message, DAY_ONE + i));
+        }
+        appender.stop();
+
+        List<Path> archives = archives();
+        assertThat(archives).isNotEmpty();
+        assertThat(archives.get(0).getFileName().toString()).isEqualTo("app.2025-07-01.0.log");
+        assertThat(appender.getRolloverCount()).isEqualTo(archives.size());
+        List<String> lines = new ArrayList<>();
+        for (Path archive : archives) {
+            assertThat(Files.size(archive)).isLessThan(2 * 4096 + 3100);
+            lines.addAll(Files.readAllLines(archive));
+        }
+        lines.addAll(Files.readAllLines(active()));
+        assertThat(lines).isEqualTo(expected);
+    }
+
+    @Test
+    void append_shouldUnmapReplacedSegmentsAndUnmapOnStop() throws Exception {
+        Path maps = Path.of("/proc/self/maps");
+        assumeTrue(Files.isReadable(maps) && MappedFileAppender.canUnmap(), "needs /proc and Unsafe.invokeCleaner");
+        start(new FileSize(FileSize.MB_COEFFICIENT), new FileSize(4096));
+        for (int i = 0; i < 200; i++) {
+            appender.doAppend(event(Level.INFO, "line " + i + " " + "x".repeat(60), DAY_ONE + i));
+        }
+        String path = active().toRealPath().toString();
+
+        assertThat(Files.size(active())).isGreaterThan(3 * 4096);
+        assertThat(mappingsOf(maps, path)).isEqualTo(1);
+        appender.stop();
+        assertThat(mappingsOf(maps, path)).isZero();
+    }
+
+    @Test
+    void append_shouldRollWhenThePeriodEnds() throws Exception {
+        start(new FileSize(FileSize.MB_COEFFICIENT), new FileSize(4096));
+
+        appender.doAppend(event(Level.INFO, "day one", DAY_ONE));
+        appender.doAppend(event(Level.INFO, "day two", DAY_ONE + CoreConstants.MILLIS_IN_ONE_DAY));
+        appender.stop();
+
+        assertThat(Files.readString(tempDir.resolve("app.2025-07-01.0.log"))).isEqualTo("INFO  day one\n");
+        assertThat(Files.readString(active())).isEqualTo("INFO  day two\n");
+    }
+
+    @Test
+    void start_shouldAppendAfterTheContentOfAFileLeftByACrash() throws Exception {
+        byte[] leftover = new byte[8192];
+        byte[] content = "INFO  before crash\n".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(content, 0, leftover, 0, content.length);
+        Files.write(active(), leftover);
+        Files.setLastModifiedTime(active(), java.nio.file.attribute.FileTime.fromMillis(DAY_ONE));
+
+        start(new FileSize(FileSize.MB_COEFFICIENT), new FileSize(4096));
+        appender.doAppend(event(Level.INFO, "after restart", DAY_ONE + 1));
+        appender.stop();
+
+        assertThat(Files.readString(active())).isEqualTo("INFO  before crash\nINFO  after restart\n");
+    }
+
+    private void start(FileSize maxFileSize, FileSize segmentSize) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%colorLevel(%-5level) %colorMessage(%msg%n)");
+        encoder.start();
+        appender = new MappedFileAppender();
+        appender.setContext(loggerContext);
+        appender.setName("MAPPED");
+        appender.setFile(active().toString());
+        appender.setFileNamePattern(tempDir.resolve("app.%d{yyyy-MM-dd, UTC}.%i.log").toString());
+        appender.setMaxFileSize(maxFileSize);
+        appender.setSegmentSize(segmentSize);
+        appender.setEncoder(encoder);
+        appender.start();
+        assertThat(appender.isStarted()).isTrue();
+    }
+
+    private static long mappingsOf(Path maps, String path) throws Exception {
+        try (Stream<String> lines = Files.lines(maps)) {
+            return lines.filter(line -> line.endsWith(" " + path)).count();
+        }
+    }
+
+    private Path active() {
+        return tempDir.resolve("app.log");
+    }
+
+    private List<Path> archives() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(p -> !p.equals(active()))
+                    .sorted((a, b) -> Integer.compare(index(a), index(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int index(Path archive) {
+        String name = archive.getFileName().toString();
+        return Integer.parseInt(name.substring(name.lastIndexOf('.', name.length() - 5) + 1, name.length() - 4));
+    }
+
+    private LoggingEvent event(Level level, String message, long timestamp) {
+        LoggingEvent event = new LoggingEvent(MappedFileAppenderTest.class.getName(),
+                loggerContext.getLogger("com.example.Service"), level, message, null, null);
+        event.setTimeStamp(timestamp);
+        return event;
+    }
+}
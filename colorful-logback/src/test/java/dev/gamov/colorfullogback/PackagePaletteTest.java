@@ -0,0 +1,110 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static dev.gamov.colorfullogback.ConverterFixtures.event;
+import static dev.gamov.colorfullogback.ConverterFixtures.layout;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackagePaletteTest {
+
+    private static final String RESET = "\u001b[0;39m";
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+    }
+
+    @Test
+    void palette_shouldUseConfiguredColorForLongestMatchingPrefix() {
+        PatternLayout layout = layout(loggerContext, 
+                "%colorPackage(%logger){com.example=green, com.example.service=blue, com.example.repository=boldMagenta}");
+
+        assertThat(layout.doLayout(event(loggerContext.getLogger("com.example.service.OrderService"), Level.INFO, "message")))
+                .isEqualTo("\u001b[34mcom.example.service.OrderService" + RESET);
+        assertThat(layout.doLayout(event(loggerContext.getLogger("com.example.repository.OrderRepository"), Level.DEBUG, "message")))
+                .isEqualTo("\u001b[1;35mcom.example.repository.OrderRepository" + RESET);
+        assertThat(layout.doLayout(event(loggerContext.getLogger("com.example.util.Strings"), Level.INFO, "message")))
+                .isEqualTo("\u001b[32mcom.example.util.Strings" + RESET);
+    }
+
+    @Test
+    void palette_shouldOnlyMatchPrefixesOnPackageBoundaries() {
+        CustomHighlightingPackageName converter = startConverter("com.example.service=blue");
+
+        AnsiSequence service = converter.resolve("com.example.service");
+
+        assertThat(service.chars).isEqualTo("\u001b[34m");
+        assertThat(converter.resolve("com.example.service.OrderService")).isSameAs(service);
+        assertThat(converter.resolve("com.example.serviceregistry.Lookup")).isNotSameAs(service);
+    }
+
+    @Test
+    void palette_shouldKeepLevelColorsForWarnAndError() {
+        PatternLayout layout = layout(loggerContext, "%colorPackage(%logger){com.example.service=blue}");
+
+        assertThat(layout.doLayout(event(loggerContext.getLogger("com.example.service.OrderService"), Level.WARN, "message")))
+                .isEqualTo("\u001b[33mcom.example.service.OrderService" + RESET);
+        assertThat(layout.doLayout(event(loggerContext.getLogger("com.example.service.OrderService"), Level.ERROR, "message")))
+                .isEqualTo("\u001b[31mcom.example.service.OrderService" + RESET);
+    }
+
+    @Test
+    void palette_shouldGiveClassesOfOnePackageTheSameStableColor() {
+        CustomHighlightingPackageName first = startConverter("palette");
+        CustomHighlightingPackageName second = startConverter("palette");
+
+        AnsiSequence service = first.resolve("com.example.service.OrderService");
+
+        assertThat(first.resolve("com.example.service.PaymentService")).isSameAs(service);
+        assertThat(second.resolve("com.example.service.OrderService").chars).isEqualTo(service.chars);
+    }
+
+    @Test
+    void palette_shouldStayCorrectWhenDynamicLoggerNamesOverflowTheCache() {
+        PatternLayout layout = layout(loggerContext, "%colorPackage(%logger){cacheSize=16, com.example.service=blue}");
+
+        for (int i = 0; i < 10_000; i++) {
+            layout.doLayout(event(loggerContext.getLogger("dynamic.logger" + i + ".Worker"), Level.INFO, "message"));
+        }
+
+        assertThat(layout.doLayout(event(loggerContext.getLogger("com.example.service.OrderService"), Level.INFO, "message")))
+                .isEqualTo("\u001b[34mcom.example.service.OrderService" + RESET);
+    }
+
+    @Test
+    void withoutPaletteOption_shouldKeepCyanForAllPackages() {
+        PatternLayout layout = layout(loggerContext, "%colorPackage(%logger)");
+
+        assertThat(layout.doLayout(event(loggerContext.getLogger("com.example.util.Strings"), Level.INFO, "message")))
+                .isEqualTo("\u001b[36mcom.example.util.Strings" + RESET);
+    }
+
+    @Test
+    void boundedCache_shouldEvictCollidingEntries() {
+        BoundedCache<String, String> cache = new BoundedCache<>(4, false);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+
+        assertThat(cache.capacity()).isEqualTo(4);
+        assertThat(cache.get("key99")).isEqualTo("value99");
+        assertThat(cache.computeIfAbsent("key0", k -> "reloaded")).isIn("value0", "reloaded");
+    }
+
+    private CustomHighlightingPackageName startConverter(String... options) {
+        CustomHighlightingPackageName converter = new CustomHighlightingPackageName();
+        converter.setContext(loggerContext);
+        converter.setOptionList(java.util.List.of(options));
+        converter.start();
+        return converter;
+    }
+}
@@ -0,0 +1,184 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.util.FileSize;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelGzipRollingPolicyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        loggerContext.stop();
+    }
+
+    @Test
+    void compressor_shouldProduceOneGzipStreamFromParallelBlocks() throws Exception {
+        byte[] content = logLines(3_300_000);
+        Path source = Files.write(tempDir.resolve("app.log"), content);
+        Path target = tempDir.resolve("app.log.gz");
+        ParallelGzipCompressor compressor = ParallelGzipCompressor.forContext(loggerContext, 4);
+        List<Long> progress = new ArrayList<>();
+
+        compressor.compress(source.toFile(), target.toFile(), 64 * 1024, Deflater.DEFAULT_COMPRESSION, progress::add);
+
+        assertThat(gunzip(target)).isEqualTo(content);
+        assertThat(progress).hasSize(51);
+        assertThat(progress.stream().mapToLong(Long::longValue).sum()).isEqualTo(content.length);
+        assertThat(Files.size(target)).isLessThan(gzipSize(content) * 105 / 100);
+    }
+
+    @Test
+    void compressor_shouldHandleEmptyAndSingleBlockFiles() throws Exception {
+        ParallelGzipCompressor compressor = ParallelGzipCompressor.forContext(loggerContext, 2);
+        for (byte[] content : new byte[][]{new byte[0], "one line\n".getBytes(StandardCharsets.UTF_8)}) {
+            Path source = Files.write(tempDir.resolve("small.log"), content);
+            Path target = tempDir.resolve("small.log.gz");
+            Files.deleteIfExists(target);
+
+            compressor.compress(source.toFile(), target.toFile(), 64 * 1024, Deflater.BEST_SPEED, bytes -> { });
+
+            assertThat(gunzip(target)).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void compressor_shouldBeSharedPerContextAndGrowToTheLargestRequest() {
+        ParallelGzipCompressor first = ParallelGzipCompressor.forContext(loggerContext, 2);
+        ParallelGzipCompressor second = ParallelGzipCompressor.forContext(loggerContext, 3);
+        ParallelGzipCompressor third = ParallelGzipCompressor.forContext(loggerContext, 1);
+
+        assertThat(second).isSameAs(first);
+        assertThat(third).isSameAs(first);
+        assertThat(first.getThreads()).isEqualTo(3);
+
+        loggerContext.reset();
+        assertThat(first.isStarted()).isFalse();
+        assertThat(ParallelGzipCompressor.forContext(loggerContext, 1)).isNotSameAs(first);
+    }
+
+    @Test
+    void rollover_shouldCompressRolledFilesInBlocks() throws Exception {
+        RollingFileAppender<ILoggingEvent> appender = new RollingFileAppender<>();
+        appender.setContext(loggerContext);
+        appender.setName("FILE");
+        appender.setFile(tempDir.resolve("app.log").toString());
+        ParallelGzipRollingPolicy<ILoggingEvent> policy = new ParallelGzipRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("app.%d{yyyy-MM-dd}.%i.log.gz").toString());
+        policy.setMaxFileSize(new FileSize(200 * FileSize.KB_COEFFICIENT));
+        policy.setBlockSize(new FileSize(64 * FileSize.KB_COEFFICIENT));
+        policy.setCompressionThreads(2);
+        policy.start();
+        appender.setRollingPolicy(policy);
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%-5level %msg%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.start();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            String message = "order " + i + " accepted for customer-" + (i % 97) + " " + "x".repeat(i % 50);
+            expected.add("INFO  " + message);
+            appender.doAppend(new LoggingEvent(getClass().getName(), loggerContext.getLogger("com.example.Orders"),
+                    Level.INFO, message, null, null));
+        }
+        appender.stop();
+
+        List<Path> archives = archives();
+        assertThat(archives).isNotEmpty().allMatch(p -> p.toString().endsWith(".log.gz"));
+        List<String> lines = new ArrayList<>();
+        for (Path archive : archives) {
+            lines.addAll(List.of(new String(gunzip(archive), StandardCharsets.UTF_8).split("\n")));
+        }
+        lines.addAll(Files.readAllLines(tempDir.resolve("app.log")));
+        assertThat(lines).isEqualTo(expected);
+        assertThat(policy.getCompressedFiles()).isEqualTo(archives.size());
+        assertThat(policy.getCompressedBytes()).isPositive();
+        assertThat(policy.getBacklogBytes()).isZero();
+        assertThat(policy.getPendingCompressions()).isZero();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertThat(files.map(p -> p.getFileName().toString())).noneMatch(name -> name.endsWith(".tmp"));
+        }
+    }
+
+    private List<Path> archives() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(p -> p.toString().endsWith(".gz"))
+                    .sorted((a, b) -> Integer.compare(index(a), index(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int index(Path archive) {
+        String name = archive.getFileName().toString();
+        String withoutSuffix = name.substring(0, name.length() - ".log.gz".length());
+        return Integer.parseInt(withoutSuffix.substring(withoutSuffix.lastIndexOf('.') + 1));
+    }
+
+    private static byte[] logLines(int size) {
+        Random random = new Random(42);
+        String[] words = {"order", "payment", "shipped", "declined", "retry", "customer", "warehouse", "invoice"};
+        StringBuilder text = new StringBuilder(size + 100);
+        while (text.length() < size) {
+            text.append("2025-07-01 10:00:0").append(random.nextInt(10)).append(" INFO ");
+            for (int i = 0; i < 8; i++) {
+                text.append(words[random.nextInt(words.length)]).append('-').append(random.nextInt(1000)).append(' ');
+            }
+            text.append('\n');
+        }
+        return text.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static long gzipSize(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,181 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferConsoleAppenderTest {
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        logger = loggerContext.getLogger("com.example.service.OrderService");
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingBufferConsoleAppender.WaitStrategy.class)
+    void append_shouldWriteEveryEventFromConcurrentProducers(RingBufferConsoleAppender.WaitStrategy waitStrategy)
+            throws InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RingBufferConsoleAppender appender = startAppender(1024, waitStrategy, output);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int producer = t;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    appender.doAppend(event("p" + producer + "-" + i));
+                    if (i % 50 == 0) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        appender.stop();
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(800 - (int) appender.getDroppedCount());
+        assertThat(appender.getDroppedCount()).isZero();
+        assertThat(lines).contains("p0-0", "p3-199");
+    }
+
+    @Test
+    void append_shouldDropInsteadOfBlockingWhenBufferIsFull() throws InterruptedException {
+        CountDownLatch consumerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream blockingOutput = new OutputStream() {
+            @Override
+            public void write(int b) {
+                written.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                consumerBlocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.write(b, off, len);
+            }
+        };
+        RingBufferConsoleAppender appender = startAppender(4, RingBufferConsoleAppender.WaitStrategy.PARK, blockingOutput);
+
+        appender.doAppend(event("first"));
+        assertThat(consumerBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 10; i++) {
+            appender.doAppend(event("overflow-" + i));
+        }
+        release.countDown();
+        appender.stop();
+
+        assertThat(appender.getDroppedCount()).isEqualTo(6);
+        assertThat(written.toString(StandardCharsets.UTF_8).split("\n")).hasSize(5);
+    }
+
+    @Test
+    void append_shouldKeepWritingAfterAnEventFailedToPrepare() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RingBufferConsoleAppender appender = startAppender(16, RingBufferConsoleAppender.WaitStrategy.PARK, output);
+        // without an MDC adapter, preparing the event for the consumer thread throws
+        LoggerContext noMdc = new LoggerContext();
+        LoggingEvent broken = new LoggingEvent(getClass().getName(), noMdc.getLogger("broken"), Level.INFO,
+                "broken", null, null);
+
+        appender.doAppend(broken);
+        for (int i = 0; i < 10; i++) {
+            appender.doAppend(event("after-" + i));
+        }
+        appender.stop();
+
+        assertThat(output.toString(StandardCharsets.UTF_8)).doesNotContain("broken").contains("after-0", "after-9");
+        assertThat(appender.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void append_shouldCaptureCallerOnTheLoggingThread() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RingBufferConsoleAppender appender = new RingBufferConsoleAppender();
+        appender.setContext(loggerContext);
+        appender.setName("TEST");
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%M:%line%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setIncludeCallerData(true);
+        appender.setOutputStream(output);
+        appender.start();
+        logger.addAppender(appender);
+
+        logger.info("where am I");
+        int line = new Throwable().getStackTrace()[0].getLineNumber() - 1;
+        appender.stop();
+
+        assertThat(output.toString(StandardCharsets.UTF_8))
+                .isEqualTo("append_shouldCaptureCallerOnTheLoggingThread:" + line + "\n");
+    }
+
+    @Test
+    void start_shouldRejectBufferSizeThatIsNotPowerOfTwo() {
+        RingBufferConsoleAppender appender = new RingBufferConsoleAppender();
+        appender.setContext(loggerContext);
+        appender.setEncoder(encoder());
+        appender.setBufferSize(1000);
+
+        appender.start();
+
+        assertThat(appender.isStarted()).isFalse();
+    }
+
+    private RingBufferConsoleAppender startAppender(int bufferSize, RingBufferConsoleAppender.WaitStrategy waitStrategy,
+                                                    OutputStream output) {
+        RingBufferConsoleAppender appender = new RingBufferConsoleAppender();
+        appender.setContext(loggerContext);
+        appender.setName("TEST");
+        appender.setEncoder(encoder());
+        appender.setBufferSize(bufferSize);
+        appender.setWaitStrategy(waitStrategy);
+        appender.setOutputStream(output);
+        appender.start();
+        return appender;
+    }
+
+    private ColorfulPatternEncoder encoder() {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+        return encoder;
+    }
+
+    private LoggingEvent event(String message) {
+        return new LoggingEvent(getClass().getName(), logger, Level.INFO, message, null, null);
+    }
+}
@@ -0,0 +1,153 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.CoreConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedRenderEncoderTest {
+
+    private static final String PATTERN = "%colorLevel(%-5level) %count %colorMessage(%msg%n)";
+
+    private final AtomicInteger renders = new AtomicInteger();
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        Map<String, Supplier<?>> rules = new HashMap<>();
+        rules.put("colorLevel", CustomHighlightingLogLevel::new);
+        rules.put("colorMessage", CustomHighlightingMessage::new);
+        rules.put("count", () -> new ClassicConverter() {
+            @Override
+            public String convert(ILoggingEvent event) {
+                return "#" + renders.incrementAndGet();
+            }
+        });
+        loggerContext.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+    }
+
+    @Test
+    void encode_shouldRenderOnceForColoredAndPlainEncoders() {
+        SharedRenderEncoder console = start(PATTERN, false);
+        SharedRenderEncoder file = start(PATTERN, true);
+        LoggingEvent event = event("Order shipped");
+
+        String plain = new String(file.encode(event), StandardCharsets.UTF_8);
+        String colored = new String(console.encode(event), StandardCharsets.UTF_8);
+
+        assertThat(renders).hasValue(1);
+        assertThat(plain).isEqualTo("INFO  #1 Order shipped\n");
+        assertThat(colored).contains("\u001b[").isNotEqualTo(plain);
+        assertThat(strip(colored)).isEqualTo(plain);
+    }
+
+    @Test
+    void encode_shouldRenderAgainOnceEveryEncoderTookTheLine() {
+        SharedRenderEncoder console = start(PATTERN, false);
+        SharedRenderEncoder file = start(PATTERN, true);
+        LoggingEvent event = event("Order shipped");
+
+        console.encode(event);
+        file.encode(event);
+        console.encode(event);
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void encode_shouldNotShareBetweenDifferentPatterns() {
+        SharedRenderEncoder console = start(PATTERN, false);
+        SharedRenderEncoder other = start("%count %msg%n", true);
+        LoggingEvent event = event("Order shipped");
+
+        console.encode(event);
+        assertThat(new String(other.encode(event), StandardCharsets.UTF_8)).isEqualTo("#2 Order shipped\n");
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void encode_shouldStripColorsWithoutAPartner() {
+        SharedRenderEncoder file = start(PATTERN, true);
+
+        assertThat(new String(file.encode(event("alone")), StandardCharsets.UTF_8)).isEqualTo("INFO  #1 alone\n");
+
+        SharedRenderEncoder console = start(PATTERN, false);
+        file.stop();
+        console.encode(event("after stop"));
+        console.encode(event("after stop"));
+        assertThat(renders).hasValue(3);
+    }
+
+    @Test
+    void encode_shouldNeverMixLinesOfEventsSharingASlot() throws InterruptedException {
+        SharedRenderEncoder console = start(PATTERN, false, 16);
+        SharedRenderEncoder file = start(PATTERN, true, 16);
+        ConcurrentLinkedQueue<String> mismatches = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    String message = "event " + thread + "-" + i;
+                    LoggingEvent event = event(message);
+                    String colored = new String(console.encode(event), StandardCharsets.UTF_8);
+                    String plain = new String(file.encode(event), StandardCharsets.UTF_8);
+                    if (!strip(colored).endsWith(" " + message + "\n") || !plain.endsWith(" " + message + "\n")
+                            || !plain.startsWith("INFO  #")) {
+                        mismatches.add(colored + " / " + plain);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(mismatches).isEmpty();
+    }
+
+    private SharedRenderEncoder start(String pattern, boolean plain) {
+        return start(pattern, plain, SharedRenderEncoder.DEFAULT_CACHE_SIZE);
+    }
+
+    private SharedRenderEncoder start(String pattern, boolean plain, int cacheSize) {
+        SharedRenderEncoder encoder = new SharedRenderEncoder();
+        encoder.setCacheSize(cacheSize);
+        encoder.setContext(loggerContext);
+        encoder.setPattern(pattern);
+        encoder.setPlain(plain);
+        encoder.start();
+        assertThat(encoder.isStarted()).isTrue();
+        return encoder;
+    }
+
+    private LoggingEvent event(String message) {
+        return new LoggingEvent(SharedRenderEncoderTest.class.getName(),
+                loggerContext.getLogger("com.example.Service"), Level.INFO, message, null, null);
+    }
+
+    private static String strip(String colored) {
+        byte[] bytes = colored.getBytes(StandardCharsets.UTF_8);
+        return new String(bytes, 0, AnsiStripper.strip(bytes, 0, bytes.length), StandardCharsets.UTF_8);
+    }
+}
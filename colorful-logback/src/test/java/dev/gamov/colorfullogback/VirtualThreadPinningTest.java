@@ -0,0 +1,295 @@
+package dev.gamov.colorfullogback;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.OutputStreamAppender;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the output path on virtual threads while recording {@code jdk.VirtualThreadPinned} JFR
+ * events, which the JDK emits for every virtual thread that blocks while holding a monitor. This
+ * is the check {@code -Djdk.tracePinnedThreads} prints to stdout, but in-process and without the
+ * hang that flag can cause on early Java 21 updates. Skipped before Java 21, and on JDKs where
+ * monitors no longer pin.
+ */
+class VirtualThreadPinningTest {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int TASKS = 200;
+
+    @TempDir
+    Path tempDir;
+
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads require Java 21");
+        loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        loggerContext.putProperty(ColorSupport.COLOR_PROPERTY, "always");
+        Map<String, Supplier<?>> rules = new HashMap<>();
+        rules.put("colorLevel", CustomHighlightingLogLevel::new);
+        rules.put("colorPackage", CustomHighlightingPackageName::new);
+        rules.put("colorArgs", CustomHighlightingArguments::new);
+        rules.put("colorEx", CustomHighlightingThrowable::new);
+        rules.put("colorTimeLevel", CustomHighlightingTimestampLevel::new);
+        rules.put("colorCaller", CustomHighlightingCallerLocation::new);
+        rules.put("colorMdc", CustomHighlightingMdc::new);
+        loggerContext.putObject(CoreConstants.PATTERN_RULE_REGISTRY_FOR_SUPPLIERS, rules);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (loggerContext != null) {
+            loggerContext.stop();
+        }
+    }
+
+    @Test
+    void outputPath_shouldNotPinCarrierThreads() throws Exception {
+        assumeTrue(pinningIsTraced(), "pinned virtual threads are not traced on this JDK");
+        Path theme = tempDir.resolve("theme.properties");
+        Files.writeString(theme, "level.info = color(114)\n");
+        loggerContext.putProperty(ThemeHolder.THEME_PROPERTY, theme.toString());
+
+        SlowOutputStream file = new SlowOutputStream();
+        OutputStreamAppender<ILoggingEvent> direct = new OutputStreamAppender<>();
+        direct.setContext(loggerContext);
+        direct.setName("DIRECT");
+        // more request ids than capacity, so assignments are evicted and reassigned under the lock
+        direct.setEncoder(encoder("%colorTimeLevel %colorMdc{requestId, capacity=8} %colorCaller "
+                + "%colorPackage(%logger{20}) %colorArgs%n%colorEx"));
+        direct.setOutputStream(file);
+        direct.start();
+
+        SlowAppender slow = new SlowAppender();
+        slow.setContext(loggerContext);
+        slow.setName("SLOW");
+        slow.start();
+        LevelAwareAsyncAppender levelAware = new LevelAwareAsyncAppender();
+        levelAware.setContext(loggerContext);
+        levelAware.setName("LEVEL_AWARE");
+        levelAware.addAppender(slow);
+        levelAware.start();
+
+        SlowAppender blocking = new SlowAppender();
+        blocking.setContext(loggerContext);
+        blocking.setName("BLOCKING");
+        blocking.start();
+        MeteredAsyncAppender metered = new MeteredAsyncAppender();
+        metered.setContext(loggerContext);
+        metered.setName("METERED");
+        metered.setQueueSize(4);
+        metered.setDiscardingThreshold(0);
+        metered.addAppender(blocking);
+        metered.start();
+
+        DuplicateCollapsingFilter collapsing = new DuplicateCollapsingFilter();
+        collapsing.setContext(loggerContext);
+        collapsing.setAllowedRepetitions(TASKS);
+        collapsing.start();
+        loggerContext.addTurboFilter(collapsing);
+        Logger root = loggerContext.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.addAppender(direct);
+        root.addAppender(levelAware);
+        root.addAppender(metered);
+
+        Logger logger = loggerContext.getLogger("com.example.web.OrderController");
+        List<RecordedEvent> pinned = recordPinning("output", () -> runOnVirtualThreads(i -> {
+            loggerContext.getMDCAdapter().put("requestId", "req-" + (i % 32));
+            logger.info("Order {} accepted for {}", i, "customer-" + (i % 7));
+            if (i % 20 == 0) {
+                logger.error("Order {} failed", i, new IllegalStateException("payment declined"));
+            }
+        }));
+        metered.stop();
+        levelAware.stop();
+
+        assertThat(pinned).extracting(RecordedEvent::getStackTrace).isEmpty();
+        assertThat(file.size()).isPositive();
+        assertThat(blocking.count).isEqualTo(TASKS + TASKS / 20);
+    }
+
+    @Test
+    void threadBuffers_shouldPoolBuffersOfVirtualThreads() throws Exception {
+        ThreadBuffers<StringBuilder> buffers = new ThreadBuffers<>(StringBuilder::new, 4);
+        AtomicReference<StringBuilder> first = new AtomicReference<>();
+        AtomicReference<StringBuilder> second = new AtomicReference<>();
+        AtomicReference<Boolean> virtual = new AtomicReference<>();
+
+        runOnVirtualThread(() -> {
+            virtual.set(ThreadBuffers.isVirtual(Thread.currentThread()));
+            StringBuilder buffer = buffers.acquire();
+            first.set(buffer);
+            buffers.release(buffer);
+        });
+        runOnVirtualThread(() -> {
+            StringBuilder buffer = buffers.acquire();
+            second.set(buffer);
+            buffers.release(buffer);
+        });
+
+        assertThat(virtual.get()).isTrue();
+        assertThat(second.get()).isSameAs(first.get());
+        assertThat(ThreadBuffers.isVirtual(Thread.currentThread())).isFalse();
+        assertThat(buffers.acquire()).isSameAs(buffers.acquire()).isNotSameAs(first.get());
+    }
+
+    /**
+     * A virtual thread sleeping inside a monitor is pinned; if that is not recorded, the
+     * check above would pass vacuously.
+     */
+    private boolean pinningIsTraced() throws Exception {
+        Object monitor = new Object();
+        return !recordPinning("control", () -> runOnVirtualThread(() -> {
+            synchronized (monitor) {
+                park();
+            }
+        })).isEmpty();
+    }
+
+    private List<RecordedEvent> recordPinning(String name, Workload workload) throws Exception {
+        Path dump = tempDir.resolve(name + ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED_EVENT).withThreshold(java.time.Duration.ZERO).withStackTrace();
+            recording.start();
+            workload.run();
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            if (event.getEventType().getName().equals(PINNED_EVENT)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private void runOnVirtualThread(Runnable task) throws Exception {
+        ExecutorService executor = virtualThreadExecutor();
+        try {
+            executor.submit(task).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void runOnVirtualThreads(IndexedTask task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService executor = virtualThreadExecutor();
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                int index = i;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService virtualThreadExecutor() throws ReflectiveOperationException {
+        // compiled for Java 17, so the Java 21 factory is looked up reflectively
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+
+    private ColorfulPatternEncoder encoder(String pattern) {
+        ColorfulPatternEncoder encoder = new ColorfulPatternEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(pattern);
+        encoder.start();
+        return encoder;
+    }
+
+    private interface Workload {
+        void run() throws Exception;
+    }
+
+    private interface IndexedTask {
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * Stands in for a slow disk: every write parks the writing thread.
+     */
+    private static final class SlowOutputStream extends OutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            park();
+            synchronized (bytes) {
+                bytes.write(b, off, len);
+            }
+        }
+
+        int size() {
+            synchronized (bytes) {
+                return bytes.size();
+            }
+        }
+    }
+
+    private static final class SlowAppender extends AppenderBase<ILoggingEvent> {
+        volatile int count;
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            park();
+            count++;
+        }
+    }
+
+    private static void park() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}